@@ -0,0 +1,58 @@
+#!/bin/bash
+# Login and registration under the same closed-loop load, the servlet application in ../demo
+# against this one, both on the same database. Reports throughput and latency per scenario and
+# each server's peak thread count and resident memory. Database arguments come from APP_ARGS
+# (servlet) and REACTIVE_ARGS, e.g.
+#   APP_ARGS="--spring.datasource.url=jdbc:mysql://localhost:3307/demodb" \
+#   REACTIVE_ARGS="--spring.r2dbc.url=r2dbc:mysql://localhost:3307/demodb" scripts/auth-load-test.sh 128 30
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+CONCURRENCY=${1:-64}
+DURATION=${2:-20}
+SERVLET_PORT=${SERVLET_PORT:-8080}
+REACTIVE_PORT=${REACTIVE_PORT:-8081}
+MVN=${MVN:-mvn}
+
+if [ "${SKIP_BUILD:-}" != "1" ]; then
+	(cd ../demo && $MVN -B -q package -DskipTests)
+	$MVN -B -q package -DskipTests
+fi
+
+PIDS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null || true' EXIT
+
+start() {
+	local label=$1 port=$2 jar=$3 args=$4
+	java -jar "$jar" --server.port="$port" $args > "target/load-$label.log" 2>&1 &
+	local pid=$!
+	PIDS+=("$pid")
+	# Ready only after the servlet side's warm-up; the comparison starts from warm servers
+	until [ "$(curl -s -o /dev/null -w '%{http_code}' "http://localhost:$port/actuator/health/readiness")" = "200" ]; do
+		sleep 0.2
+		kill -0 "$pid" 2>/dev/null || { echo "$label failed to start, see target/load-$label.log"; exit 1; }
+	done
+	# Peak threads and RSS while the load runs
+	(peak_threads=0; peak_rss=0
+	 while kill -0 "$pid" 2>/dev/null; do
+		threads=$(awk '/^Threads/ {print $2}' "/proc/$pid/status" 2>/dev/null || echo 0)
+		rss=$(awk '/^VmRSS/ {print $2}' "/proc/$pid/status" 2>/dev/null || echo 0)
+		[ "${threads:-0}" -gt "$peak_threads" ] && peak_threads=$threads
+		[ "${rss:-0}" -gt "$peak_rss" ] && peak_rss=$rss
+		echo "$peak_threads $peak_rss" > "target/load-$label.peak"
+		sleep 0.5
+	 done) &
+	PIDS+=("$!")
+}
+
+start servlet "$SERVLET_PORT" ../demo/target/pharmacy-0.0.1-SNAPSHOT.jar "${APP_ARGS:-}"
+start reactive "$REACTIVE_PORT" target/pharmacy-reactive-auth-0.0.1-SNAPSHOT.jar "${REACTIVE_ARGS:-}"
+
+$MVN -B -q test-compile exec:java -Dexec.classpathScope=test \
+	-Dexec.mainClass=pharmacy.reactive.bench.AuthLoadTest \
+	-Dexec.args="http://localhost:$SERVLET_PORT http://localhost:$REACTIVE_PORT $CONCURRENCY $DURATION"
+
+for label in servlet reactive; do
+	read -r threads rss < "target/load-$label.peak"
+	printf '%-8s peak: %5d threads  %8d KB RSS\n' "$label" "$threads" "$rss"
+done
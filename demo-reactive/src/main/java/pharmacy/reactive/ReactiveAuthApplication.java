@@ -0,0 +1,20 @@
+package pharmacy.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Login, registration and token introspection on WebFlux and R2DBC, for auth traffic that is
+ * bursty and mostly waiting on the database. It runs next to the servlet application in
+ * {@code ../demo}, on the same database and with the same tokens; that application owns the
+ * schema and its migrations.
+ */
+@SpringBootApplication
+@EnableScheduling
+public class ReactiveAuthApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveAuthApplication.class, args);
+    }
+}
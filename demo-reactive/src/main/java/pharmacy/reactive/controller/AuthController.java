@@ -0,0 +1,164 @@
+package pharmacy.reactive.controller;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.reactive.dao.UserRepository;
+import pharmacy.reactive.dao.UserRoleRepository;
+import pharmacy.reactive.dto.AuthRegisterResponseDTO;
+import pharmacy.reactive.dto.AuthResponseDTO;
+import pharmacy.reactive.dto.IntrospectionDTO;
+import pharmacy.reactive.dto.IntrospectionResponseDTO;
+import pharmacy.reactive.dto.LoginDTO;
+import pharmacy.reactive.dto.RefreshTokenDTO;
+import pharmacy.reactive.dto.RegisterDTO;
+import pharmacy.reactive.entity.ERole;
+import pharmacy.reactive.entity.User;
+import pharmacy.reactive.entity.UserRole;
+import pharmacy.reactive.security.JwtUtils;
+import pharmacy.reactive.security.PasswordHasher;
+import pharmacy.reactive.service.TokenService;
+import pharmacy.reactive.service.UserService;
+import reactor.core.publisher.Mono;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * The servlet application's {@code /api/auth} endpoints, plus token introspection for
+ * services that want to check a token without holding the signing key. Responses have the
+ * same shape, and tokens issued here are accepted there and the other way round.
+ */
+@RestController
+@CrossOrigin
+@RequestMapping("/api/auth")
+public class AuthController {
+
+    private final UserRepository userRepository;
+    private final UserRoleRepository roleRepository;
+    private final UserService userService;
+    private final PasswordHasher passwordHasher;
+    private final TokenService tokenService;
+    private final JwtUtils jwtUtils;
+
+    public AuthController(UserRepository userRepository, UserRoleRepository roleRepository,
+                          UserService userService, PasswordHasher passwordHasher, TokenService tokenService,
+                          JwtUtils jwtUtils) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.userService = userService;
+        this.passwordHasher = passwordHasher;
+        this.tokenService = tokenService;
+        this.jwtUtils = jwtUtils;
+    }
+
+    @PostMapping("/login")
+    public Mono<ResponseEntity<?>> authenticateUser(@RequestBody LoginDTO loginRequest) {
+        String username = loginRequest.getUsername();
+        // Unknown users are hashed against a dummy so they answer as slowly as known ones
+        Mono<Optional<String>> storedHash = username == null || username.isBlank()
+                ? Mono.just(Optional.empty())
+                : userRepository.findByUsername(username).map(user -> Optional.ofNullable(user.getPassword()))
+                        .defaultIfEmpty(Optional.empty());
+
+        return storedHash
+                .flatMap(hash -> passwordHasher.matches(loginRequest.getPassword(), hash.orElse(null)))
+                .map(matches -> matches
+                        ? ResponseEntity.ok(toResponse(tokenService.login(username)))
+                        : ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Error: Invalid username or password"));
+    }
+
+    @PostMapping("/refresh")
+    public Mono<ResponseEntity<?>> refreshToken(@RequestBody RefreshTokenDTO refreshRequest) {
+        return tokenService.refresh(refreshRequest.getRefreshToken())
+                .<ResponseEntity<?>>map(tokens -> ResponseEntity.ok(toResponse(tokens)))
+                .defaultIfEmpty(ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Error: Refresh token is invalid or revoked"));
+    }
+
+    @PostMapping("/logout")
+    public Mono<ResponseEntity<Void>> logout(@RequestBody RefreshTokenDTO logoutRequest) {
+        return tokenService.logout(logoutRequest.getRefreshToken())
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    /**
+     * Whether an access token is currently usable and whose it is, in the shape of RFC 7662.
+     * Besides signature and expiry, the session must not have ended and the user must still
+     * exist; their current roles come with the answer.
+     */
+    @PostMapping("/introspect")
+    public Mono<IntrospectionResponseDTO> introspect(@RequestBody IntrospectionDTO introspectionRequest) {
+        Claims claims = jwtUtils.parseClaims(introspectionRequest.getToken());
+        if (claims == null || !tokenService.isAccessTokenUsable(claims)) {
+            return Mono.just(IntrospectionResponseDTO.inactive());
+        }
+        return userRepository.findByUsername(claims.getSubject())
+                .flatMap(user -> roleRepository.findByUserId(user.getId())
+                        .map(role -> role.getName().name())
+                        .sort()
+                        .collectList())
+                .map(roles -> IntrospectionResponseDTO.active(claims.getSubject(), claims.getId(),
+                        TimeUnit.MILLISECONDS.toSeconds(claims.getIssuedAt().getTime()),
+                        TimeUnit.MILLISECONDS.toSeconds(claims.getExpiration().getTime()), roles))
+                .defaultIfEmpty(IntrospectionResponseDTO.inactive());
+    }
+
+    private AuthResponseDTO toResponse(TokenService.TokenPair tokens) {
+        return new AuthResponseDTO(tokens.accessToken(), tokens.refreshToken(), tokens.expiresInMs() / 1000);
+    }
+
+    @PostMapping("/register")
+    public Mono<ResponseEntity<?>> registerUser(@RequestBody RegisterDTO signUpRequest) {
+        return userRepository.existsByUsername(signUpRequest.getUsername()).flatMap(usernameTaken -> {
+            if (usernameTaken) {
+                return Mono.<ResponseEntity<?>>just(ResponseEntity.badRequest().body("Error: Username is already taken!"));
+            }
+            return userRepository.existsByEmail(signUpRequest.getEmail()).flatMap(emailTaken -> {
+                if (emailTaken) {
+                    return Mono.<ResponseEntity<?>>just(ResponseEntity.badRequest().body("Error: Email is already in use!"));
+                }
+                return requestedRoles(signUpRequest.getRoles()).flatMap(roles -> {
+                    if (roles.isEmpty()) {
+                        return Mono.<ResponseEntity<?>>just(ResponseEntity.badRequest().body("Error: None of the specified roles are valid!"));
+                    }
+                    // Hashed before the transaction opens, so no connection waits on BCrypt
+                    return passwordHasher.encode(signUpRequest.getPassword())
+                            .flatMap(hash -> {
+                                User user = new User();
+                                user.setUsername(signUpRequest.getUsername());
+                                user.setPassword(hash);
+                                user.setEmail(signUpRequest.getEmail());
+                                return userService.create(user, roles);
+                            })
+                            .<ResponseEntity<?>>map(user -> ResponseEntity.ok(new AuthRegisterResponseDTO(user)))
+                            // Lost a race with a concurrent registration to the unique indexes
+                            .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(
+                                    ResponseEntity.badRequest().body("Error: Username or email is already taken!")));
+                });
+            });
+        });
+    }
+
+    // Five seeded rows: one read for all of them instead of one per requested name
+    private Mono<Set<UserRole>> requestedRoles(Set<String> requested) {
+        return roleRepository.findAll().collectMap(role -> role.getName().name()).map(byName -> {
+            if (requested == null || requested.isEmpty()) {
+                // Default role if none specified
+                UserRole customerRole = byName.get(ERole.ROLE_CUSTOMER.name());
+                if (customerRole == null) {
+                    throw new IllegalStateException("Error: Customer role not found.");
+                }
+                return Set.of(customerRole);
+            }
+            return requested.stream()
+                    .map(byName::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+        });
+    }
+}
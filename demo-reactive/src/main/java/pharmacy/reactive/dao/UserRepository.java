@@ -0,0 +1,26 @@
+package pharmacy.reactive.dao;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import pharmacy.reactive.entity.User;
+import reactor.core.publisher.Mono;
+
+/**
+ * The lookups of the servlet application's {@code UserRepository} that login and
+ * registration need.
+ */
+@Repository
+public interface UserRepository extends ReactiveCrudRepository<User, Integer> {
+
+    // Users soft-deleted on the servlet side are gone for login, but keep their username and email until purged
+    @Query("select * from users where username = :username and deleted_at is null")
+    Mono<User> findByUsername(String username);
+
+    Mono<Boolean> existsByUsername(String username);
+
+    Mono<Boolean> existsByEmail(String email);
+
+    @Query("select * from users where email = :email and deleted_at is null")
+    Mono<User> findByEmail(String email);
+}
@@ -0,0 +1,19 @@
+package pharmacy.reactive.dao;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import pharmacy.reactive.entity.UserRole;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface UserRoleRepository extends ReactiveCrudRepository<UserRole, Integer> {
+
+    // The user_roles join table the servlet application maps with @ManyToMany
+    @Query("select r.* from roles r join user_roles ur on ur.role_id = r.id where ur.user_id = :userId")
+    Flux<UserRole> findByUserId(int userId);
+
+    @Modifying
+    @Query("insert into user_roles (user_id, role_id) values (:userId, :roleId)")
+    Mono<Integer> grant(int userId, int roleId);
+}
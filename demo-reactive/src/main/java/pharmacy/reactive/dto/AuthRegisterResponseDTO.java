@@ -0,0 +1,24 @@
+package pharmacy.reactive.dto;
+
+import pharmacy.reactive.entity.User;
+
+// Same shape as the servlet response, password included as null
+public class AuthRegisterResponseDTO {
+    private final int id;
+    private final String username;
+    private String email;
+    private String password;
+
+    public AuthRegisterResponseDTO(User user) {
+        this.id = user.getId();
+        this.username = user.getUsername();
+    }
+
+    public int getId() {return id;}
+
+    public String getUsername() {return username;}
+
+    public String getEmail() {return email;}
+
+    public String getPassword() {return password;}
+}
@@ -0,0 +1,34 @@
+package pharmacy.reactive.dto;
+
+public class AuthResponseDTO {
+    private String accessToken;
+
+    private String tokenType = "Bearer ";
+
+    private String refreshToken;
+
+    private long expiresIn;
+
+    public AuthResponseDTO(String accessToken, String refreshToken, long expiresIn) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
+    }
+
+    public String getAccessToken() {
+        return accessToken;
+    }
+
+    public String getTokenType() {
+        return tokenType;
+    }
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    // Seconds until the access token expires
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+}
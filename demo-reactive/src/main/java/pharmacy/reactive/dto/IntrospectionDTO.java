@@ -0,0 +1,13 @@
+package pharmacy.reactive.dto;
+
+public class IntrospectionDTO {
+    private String token;
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+}
@@ -0,0 +1,68 @@
+package pharmacy.reactive.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Introspection result in the shape of RFC 7662: an inactive token yields only
+ * {@code "active": false}, whatever the reason, so callers learn nothing about it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IntrospectionResponseDTO {
+    private final boolean active;
+    private String sub;
+    private String jti;
+    private Long iat;
+    private Long exp;
+    private List<String> roles;
+
+    private IntrospectionResponseDTO(boolean active) {
+        this.active = active;
+    }
+
+    public static IntrospectionResponseDTO inactive() {
+        return new IntrospectionResponseDTO(false);
+    }
+
+    public static IntrospectionResponseDTO active(String sub, String jti, long iatSeconds, long expSeconds,
+                                                  List<String> roles) {
+        IntrospectionResponseDTO response = new IntrospectionResponseDTO(true);
+        response.sub = sub;
+        response.jti = jti;
+        response.iat = iatSeconds;
+        response.exp = expSeconds;
+        response.roles = roles;
+        return response;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public String getSub() {
+        return sub;
+    }
+
+    public String getJti() {
+        return jti;
+    }
+
+    public Long getIat() {
+        return iat;
+    }
+
+    public Long getExp() {
+        return exp;
+    }
+
+    @JsonProperty("token_type")
+    public String getTokenType() {
+        return active ? "Bearer" : null;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+}
@@ -0,0 +1,10 @@
+package pharmacy.reactive.entity;
+
+// Same constants as the servlet application; stored by name in roles.name
+public enum ERole {
+    ROLE_ADMIN,
+    ROLE_PHARMACIST,
+    ROLE_CASHIER,
+    ROLE_CUSTOMER,
+    ROLE_SUPPLIER
+}
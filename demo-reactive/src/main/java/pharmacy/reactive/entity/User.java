@@ -0,0 +1,77 @@
+package pharmacy.reactive.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Row of the {@code users} table. R2DBC has no join mapping, so the roles are read and
+ * written through {@link pharmacy.reactive.dao.UserRoleRepository} and only carried here.
+ */
+@Table("users")
+public class User {
+    @Id
+    private Integer id;
+    private String username;
+    private String email;
+    private String password;
+
+    // Shared with the servlet application's optimistic locking and user ETags
+    @Version
+    private long version;
+
+    @Transient
+    private Set<UserRole> roles = new HashSet<>();
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Set<UserRole> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Set<UserRole> roles) {
+        this.roles = roles;
+    }
+}
@@ -0,0 +1,167 @@
+package pharmacy.reactive.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * The servlet application's {@code invalidation_log} change log, read and written over R2DBC,
+ * so sessions ended on either side are honoured on the other. Region names and keys are the
+ * ones the servlet {@code InvalidationBus} uses.
+ * <p>
+ * Polling follows the JDBC transport there: the cursor on the row id only moves over a gap
+ * once the row after it is older than {@code gapGrace}, and rows above the cursor that were
+ * already delivered are remembered. Old rows are purged by the servlet nodes, not here.
+ */
+@Component
+public class InvalidationLog implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationLog.class);
+
+    public static final String USERS = "users";
+    public static final String SESSIONS = "sessions";
+
+    private record Row(long id, String region, String key, String origin, long createdAt) {
+    }
+
+    private final DatabaseClient databaseClient;
+    private final Duration pollInterval;
+    private final Duration gapGrace;
+    private final int batchSize;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, List<Function<String, Mono<Void>>>> subscribers = new ConcurrentHashMap<>();
+
+    // Only touched from the poll loop, which runs one poll at a time
+    private long cursor = -1;
+    private final TreeSet<Long> deliveredAboveCursor = new TreeSet<>();
+    private volatile Disposable polling;
+
+    public InvalidationLog(DatabaseClient databaseClient,
+                           @Value("${invalidation.poll-interval:PT1S}") Duration pollInterval,
+                           @Value("${invalidation.gap-grace:PT30S}") Duration gapGrace,
+                           @Value("${invalidation.batch-size:500}") int batchSize) {
+        this.databaseClient = databaseClient;
+        this.pollInterval = pollInterval;
+        this.gapGrace = gapGrace;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Listeners for events other nodes published; this node applies its own changes itself.
+     */
+    public void subscribe(String region, Function<String, Mono<Void>> listener) {
+        subscribers.computeIfAbsent(region, r -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Appends an event; inside a transactional pipeline the row commits with it.
+     */
+    public Mono<Void> publish(String region, Object key) {
+        return databaseClient.sql("insert into invalidation_log (region, item_key, origin, created_at) "
+                        + "values (:region, :key, :origin, :createdAt)")
+                .bind("region", region)
+                .bind("key", String.valueOf(key))
+                .bind("origin", nodeId)
+                .bind("createdAt", System.currentTimeMillis())
+                .then();
+    }
+
+    // A node that just started has nothing cached yet, so it starts at the head of the log
+    private Mono<Integer> positionCursor() {
+        return databaseClient.sql("select coalesce(max(id), 0) as head from invalidation_log")
+                .map(row -> row.get("head", Long.class))
+                .one()
+                .doOnNext(head -> cursor = head)
+                .thenReturn(0);
+    }
+
+    /**
+     * Delivers the rows committed since the last poll and emits how many there were.
+     */
+    Mono<Integer> poll() {
+        if (cursor < 0) {
+            return positionCursor();
+        }
+        return databaseClient.sql("select id, region, item_key, origin, created_at from invalidation_log "
+                        + "where id > :cursor order by id limit :limit")
+                .bind("cursor", cursor)
+                .bind("limit", batchSize)
+                .map(row -> new Row(row.get("id", Long.class), row.get("region", String.class),
+                        row.get("item_key", String.class), row.get("origin", String.class),
+                        row.get("created_at", Long.class)))
+                .all()
+                .collectList()
+                .flatMap(this::deliver);
+    }
+
+    private Mono<Integer> deliver(List<Row> rows) {
+        long settled = System.currentTimeMillis() - gapGrace.toMillis();
+        boolean advancing = true;
+        List<Row> fresh = new ArrayList<>();
+        for (Row row : rows) {
+            if (deliveredAboveCursor.add(row.id())) {
+                fresh.add(row);
+            }
+            advancing = advancing && (row.id() == cursor + 1 || row.createdAt() <= settled);
+            if (advancing) {
+                cursor = row.id();
+            }
+        }
+        deliveredAboveCursor.headSet(cursor, true).clear();
+
+        return Flux.fromIterable(fresh)
+                .filter(row -> !nodeId.equals(row.origin()))
+                .concatMap(row -> Flux.fromIterable(subscribers.getOrDefault(row.region(), List.of()))
+                        .concatMap(listener -> listener.apply(row.key())
+                                .onErrorResume(e -> {
+                                    log.warn("Invalidation listener for {} failed on key {}", row.region(), row.key(), e);
+                                    return Mono.empty();
+                                })))
+                .then(Mono.just(fresh.size()));
+    }
+
+    @Override
+    public void start() {
+        polling = Flux.interval(Duration.ZERO, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> poll().onErrorResume(e -> {
+                    log.warn("Polling the invalidation log failed: {}", e.getMessage());
+                    return Mono.just(0);
+                }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void stop() {
+        Disposable current = polling;
+        if (current != null) {
+            current.dispose();
+        }
+        polling = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return polling != null;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+}
@@ -0,0 +1,40 @@
+package pharmacy.reactive.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Writes user lifecycle events to the servlet application's {@code user_outbox}, whose relay
+ * publishes them. Event types and payloads are the ones the servlet side writes.
+ */
+@Component
+public class UserOutbox {
+
+    public static final String USER_CREATED = "USER_CREATED";
+
+    private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+
+    public UserOutbox(DatabaseClient databaseClient, ObjectMapper objectMapper) {
+        this.databaseClient = databaseClient;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Appends an event; inside a transactional pipeline the row commits with it.
+     */
+    public Mono<Void> append(String type, int userId, Map<String, ?> data) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(data))
+                .flatMap(payload -> databaseClient.sql("insert into user_outbox (event_type, user_id, payload, created_at) "
+                                + "values (:type, :userId, :payload, :createdAt)")
+                        .bind("type", type)
+                        .bind("userId", userId)
+                        .bind("payload", payload)
+                        .bind("createdAt", System.currentTimeMillis())
+                        .then());
+    }
+}
@@ -0,0 +1,76 @@
+package pharmacy.reactive.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Issues and verifies the same tokens as the servlet application: same key, algorithm and
+ * claims, so either side accepts what the other issued.
+ */
+@Component
+public class JwtUtils {
+
+    public static final String TYPE_CLAIM = "typ";
+    public static final String FAMILY_CLAIM = "fam";
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+
+    private String jwtSecret = "secretKey";
+
+    @Value("${jwt.access-expiration-ms:900000}")
+    private long jwtExpirationMs = 900000; // 15 minutes
+
+    @Value("${jwt.refresh-expiration-ms:604800000}")
+    private long refreshExpirationMs = 604800000; // 7 days
+
+    public String generateAccessToken(String username, String family) {
+        return token(UUID.randomUUID().toString(), username, ACCESS, family, jwtExpirationMs);
+    }
+
+    public String generateRefreshToken(String username, String family, String id) {
+        return token(id, username, REFRESH, family, refreshExpirationMs);
+    }
+
+    private String token(String id, String username, String type, String family, long ttlMs) {
+        Date now = new Date();
+        return Jwts.builder()
+                .setId(id)
+                .setSubject(username)
+                .claim(TYPE_CLAIM, type)
+                .claim(FAMILY_CLAIM, family)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + ttlMs))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+    }
+
+    /**
+     * Verifies the signature and expiry once and returns the claims, or null for any token
+     * that should not be trusted.
+     */
+    public Claims parseClaims(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public long getJwtExpirationMs() {
+        return jwtExpirationMs;
+    }
+
+    public long getRefreshExpirationMs() {
+        return refreshExpirationMs;
+    }
+}
@@ -0,0 +1,53 @@
+package pharmacy.reactive.security;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs BCrypt off the event loop. A hash takes tens of milliseconds of CPU, so it goes to its
+ * own scheduler with a thread per core by default and a bounded queue in front; once the
+ * queue is full, new work fails with {@link java.util.concurrent.RejectedExecutionException}
+ * instead of piling up behind requests whose clients have long given up.
+ */
+@Component
+public class PasswordHasher implements DisposableBean {
+
+    // Any valid hash; unknown users are checked against it so they take as long as known ones
+    private static final String UNKNOWN_USER_HASH = new BCryptPasswordEncoder().encode("unknown-user");
+
+    private final PasswordEncoder encoder = new BCryptPasswordEncoder();
+    private final Scheduler scheduler;
+
+    public PasswordHasher(@Value("${auth.bcrypt.threads:0}") int threads,
+                          @Value("${auth.bcrypt.queue:256}") int queue) {
+        int threadCap = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.scheduler = Schedulers.newBoundedElastic(threadCap, queue, "bcrypt", 60, true);
+    }
+
+    public Mono<String> encode(String rawPassword) {
+        return Mono.fromCallable(() -> encoder.encode(rawPassword)).subscribeOn(scheduler);
+    }
+
+    /**
+     * Whether the password matches; a null hash (no such user) is compared against a dummy
+     * hash and never matches.
+     */
+    public Mono<Boolean> matches(String rawPassword, String encodedPassword) {
+        return Mono.fromCallable(() -> {
+            boolean matches = encoder.matches(rawPassword == null ? "" : rawPassword,
+                    encodedPassword == null ? UNKNOWN_USER_HASH : encodedPassword);
+            return matches && encodedPassword != null;
+        }).subscribeOn(scheduler);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
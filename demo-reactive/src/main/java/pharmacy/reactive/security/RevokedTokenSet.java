@@ -0,0 +1,70 @@
+package pharmacy.reactive.security;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Token ids that must no longer be accepted, grouped by when the token would have expired
+ * anyway. An id only has to be remembered until then, so whole buckets are dropped once the
+ * newest expiry they can hold has passed; no per-entry timestamps or sweeps are needed.
+ */
+public class RevokedTokenSet {
+
+    private final long bucketMillis;
+    private final ConcurrentSkipListMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+    public RevokedTokenSet(long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+    }
+
+    public void revoke(String id, long expiresAt) {
+        if (expiresAt <= System.currentTimeMillis()) {
+            return;
+        }
+        buckets.computeIfAbsent(expiresAt / bucketMillis, bucket -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    /**
+     * Looks in the one bucket the id would have been filed under; for callers that know the
+     * token's expiry, which is any caller holding the verified token.
+     */
+    public boolean isRevoked(String id, long expiresAt) {
+        Set<String> bucket = buckets.get(expiresAt / bucketMillis);
+        return bucket != null && bucket.contains(id);
+    }
+
+    public boolean isRevoked(String id) {
+        for (Set<String> bucket : buckets.values()) {
+            if (bucket.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops every bucket whose tokens have all expired and returns how many ids went with them.
+     */
+    public int discardExpired() {
+        int removed = 0;
+        // A bucket's last expiry is just before (bucket + 1) * bucketMillis
+        Map<Long, Set<String>> expired = buckets.headMap(System.currentTimeMillis() / bucketMillis);
+        for (Long bucket : expired.keySet()) {
+            Set<String> ids = buckets.remove(bucket);
+            if (ids != null) {
+                removed += ids.size();
+            }
+        }
+        return removed;
+    }
+
+    public int bucketCount() {
+        return buckets.size();
+    }
+
+    public int size() {
+        return buckets.values().stream().mapToInt(Set::size).sum();
+    }
+}
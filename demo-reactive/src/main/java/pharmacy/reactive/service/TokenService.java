@@ -0,0 +1,170 @@
+package pharmacy.reactive.service;
+
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pharmacy.reactive.invalidation.InvalidationLog;
+import pharmacy.reactive.security.JwtUtils;
+import pharmacy.reactive.security.RevokedTokenSet;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Refresh token families under the servlet {@code RefreshTokenService}'s rules: one per login,
+ * rotated on every refresh, and ended whole when a rotated token is presented again. Unlike the
+ * servlet's shared table, the state here is in memory and only touched without blocking, so the
+ * methods that do not announce anything stay plain.
+ * <p>
+ * Ended families go out on the shared invalidation log with the servlet's keys, and families
+ * ended there are honoured here.
+ */
+@Service
+public class TokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenService.class);
+
+    private static final String FAMILY_PREFIX = "family:";
+    private static final String USER_PREFIX = "user:";
+    private static final String DEFAULT_TENANT = "default";
+
+    public record TokenPair(String accessToken, String refreshToken, long expiresInMs) {
+    }
+
+    private record Family(String username, String currentId, long expiresAt) {
+    }
+
+    private final JwtUtils jwtUtils;
+    private final InvalidationLog invalidationLog;
+    // Rotated refresh token ids, kept until the token would have expired
+    private final RevokedTokenSet revokedTokens;
+    // Ended sessions, kept only as long as an access token issued from them can live
+    private final RevokedTokenSet revokedFamilies;
+    private final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+
+    public TokenService(JwtUtils jwtUtils, InvalidationLog invalidationLog,
+                        @Value("${jwt.revocation-bucket-ms:3600000}") long revocationBucketMillis) {
+        this.jwtUtils = jwtUtils;
+        this.invalidationLog = invalidationLog;
+        this.revokedTokens = new RevokedTokenSet(revocationBucketMillis);
+        this.revokedFamilies = new RevokedTokenSet(Math.max(1000, jwtUtils.getJwtExpirationMs() / 4));
+        invalidationLog.subscribe(InvalidationLog.SESSIONS, this::onSessionsInvalidated);
+    }
+
+    public TokenPair login(String username) {
+        String family = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        families.put(family, new Family(username, id, refreshExpiry()));
+        return pair(username, family, id);
+    }
+
+    /**
+     * Exchanges a refresh token for a new pair; empty when the token is invalid, expired,
+     * revoked or a replay of one that was already rotated.
+     */
+    public Mono<TokenPair> refresh(String refreshToken) {
+        Claims claims = jwtUtils.parseClaims(refreshToken);
+        if (claims == null || !JwtUtils.REFRESH.equals(claims.get(JwtUtils.TYPE_CLAIM))
+                || claims.get(JwtUtils.FAMILY_CLAIM) == null || claims.getId() == null) {
+            return Mono.empty();
+        }
+        String family = claims.get(JwtUtils.FAMILY_CLAIM, String.class);
+        if (revokedTokens.isRevoked(claims.getId(), claims.getExpiration().getTime())) {
+            Family reused = families.get(family);
+            if (reused == null) {
+                return Mono.empty();
+            }
+            log.warn("Rotated refresh token presented again for user {}; ending the session", reused.username());
+            return revokeFamily(family).then(Mono.empty());
+        }
+
+        String next = UUID.randomUUID().toString();
+        Family rotated = families.computeIfPresent(family, (id, state) -> state.currentId().equals(claims.getId())
+                ? new Family(state.username(), next, refreshExpiry())
+                : state);
+        if (rotated == null || !rotated.currentId().equals(next)) {
+            // Unknown family (ended, issued by another node or from before a restart), or lost a race
+            return Mono.empty();
+        }
+        revokedTokens.revoke(claims.getId(), claims.getExpiration().getTime());
+        return Mono.just(pair(rotated.username(), family, next));
+    }
+
+    /**
+     * Ends the session the refresh token belongs to. Tokens that do not verify are ignored.
+     */
+    public Mono<Void> logout(String refreshToken) {
+        Claims claims = jwtUtils.parseClaims(refreshToken);
+        if (claims == null || claims.get(JwtUtils.FAMILY_CLAIM) == null) {
+            return Mono.empty();
+        }
+        return revokeFamily(claims.get(JwtUtils.FAMILY_CLAIM, String.class));
+    }
+
+    /**
+     * Whether an access token may still be used: it must not be a refresh token and its
+     * session must not have ended.
+     */
+    public boolean isAccessTokenUsable(Claims claims) {
+        if (JwtUtils.REFRESH.equals(claims.get(JwtUtils.TYPE_CLAIM))) {
+            return false;
+        }
+        String family = claims.get(JwtUtils.FAMILY_CLAIM, String.class);
+        return family == null || !revokedFamilies.isRevoked(family);
+    }
+
+    private Mono<Void> revokeFamily(String family) {
+        forgetFamily(family);
+        return invalidationLog.publish(InvalidationLog.SESSIONS, FAMILY_PREFIX + family);
+    }
+
+    private void forgetFamily(String family) {
+        // Refresh tokens of a family that is gone are rejected; only its access tokens need listing
+        families.remove(family);
+        revokedFamilies.revoke(family, System.currentTimeMillis() + jwtUtils.getJwtExpirationMs());
+    }
+
+    /**
+     * A user revoked elsewhere has their families here announced in turn, since only the
+     * issuing node knows them. The key is {@code user:<tenant>:<username>}; families here all
+     * belong to the default tenant.
+     */
+    private Mono<Void> onSessionsInvalidated(String key) {
+        if (key.startsWith(FAMILY_PREFIX)) {
+            forgetFamily(key.substring(FAMILY_PREFIX.length()));
+            return Mono.empty();
+        }
+        if (key.startsWith(USER_PREFIX + DEFAULT_TENANT + ":")) {
+            String username = key.substring(USER_PREFIX.length() + DEFAULT_TENANT.length() + 1);
+            return Flux.fromIterable(families.entrySet())
+                    .filter(entry -> entry.getValue().username().equals(username))
+                    .concatMap(entry -> revokeFamily(entry.getKey()))
+                    .then();
+        }
+        return Mono.empty();
+    }
+
+    private TokenPair pair(String username, String family, String refreshId) {
+        return new TokenPair(jwtUtils.generateAccessToken(username, family),
+                jwtUtils.generateRefreshToken(username, family, refreshId), jwtUtils.getJwtExpirationMs());
+    }
+
+    private long refreshExpiry() {
+        return System.currentTimeMillis() + jwtUtils.getRefreshExpirationMs();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation-sweep-ms:60000}")
+    public void discardExpired() {
+        long now = System.currentTimeMillis();
+        families.values().removeIf(state -> state.expiresAt() <= now);
+        int removed = revokedTokens.discardExpired() + revokedFamilies.discardExpired();
+        if (removed > 0) {
+            log.debug("Discarded {} expired revocations", removed);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package pharmacy.reactive.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pharmacy.reactive.dao.UserRepository;
+import pharmacy.reactive.dao.UserRoleRepository;
+import pharmacy.reactive.entity.User;
+import pharmacy.reactive.entity.UserRole;
+import pharmacy.reactive.invalidation.InvalidationLog;
+import pharmacy.reactive.outbox.UserOutbox;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class UserService {
+
+    private final UserRepository userRepository;
+    private final UserRoleRepository roleRepository;
+    private final InvalidationLog invalidationLog;
+    private final UserOutbox userOutbox;
+
+    public UserService(UserRepository userRepository, UserRoleRepository roleRepository,
+                       InvalidationLog invalidationLog, UserOutbox userOutbox) {
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.invalidationLog = invalidationLog;
+        this.userOutbox = userOutbox;
+    }
+
+    /**
+     * Inserts the user with their role links, announces it to the servlet nodes' user caches
+     * and records its creation in the outbox, all in one transaction. The password must already be hashed: a connection is
+     * held from here until commit.
+     */
+    @Transactional
+    public Mono<User> create(User user, Set<UserRole> roles) {
+        return userRepository.save(user)
+                .flatMap(saved -> Flux.fromIterable(roles)
+                        .concatMap(role -> roleRepository.grant(saved.getId(), role.getId()))
+                        .then(invalidationLog.publish(InvalidationLog.USERS, saved.getId()))
+                        .then(userOutbox.append(UserOutbox.USER_CREATED, saved.getId(), eventData(saved)))
+                        .then(Mono.fromSupplier(() -> {
+                            saved.setRoles(roles);
+                            return saved;
+                        })));
+    }
+
+    // Same fields as the servlet side's events; never the password hash
+    private Map<String, Object> eventData(User user) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("username", user.getUsername());
+        data.put("email", user.getEmail());
+        return data;
+    }
+}
@@ -0,0 +1,150 @@
+package pharmacy.reactive.bench;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop load on login and registration, the servlet application against the reactive
+ * one, with the same number of concurrent clients each. Both must be running on the same
+ * database; {@code scripts/auth-load-test.sh} starts them and samples their threads and memory.
+ * Run on its own with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pharmacy.reactive.bench.AuthLoadTest -Dexec.args="http://localhost:8080 http://localhost:8081 64 20"}.
+ */
+public class AuthLoadTest {
+
+	private static final String PASSWORD = "load-test-pw";
+
+	private record Result(long[] latenciesNanos, Map<Integer, Integer> statuses, long elapsedNanos) {
+	}
+
+	public static void main(String[] args) throws Exception {
+		String servlet = args.length > 0 ? args[0] : "http://localhost:8080";
+		String reactive = args.length > 1 ? args[1] : "http://localhost:8081";
+		int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		Duration duration = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 20);
+		int users = args.length > 4 ? Integer.parseInt(args[4]) : 50;
+		String run = UUID.randomUUID().toString().substring(0, 8);
+
+		HttpClient client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(5))
+				.build();
+		System.out.printf("%d concurrent clients, %d s per scenario, %d login accounts%n%n",
+				concurrency, duration.toSeconds(), users);
+
+		for (String[] target : new String[][]{{"servlet", servlet}, {"reactive", reactive}}) {
+			String label = target[0];
+			String baseUrl = target[1];
+			List<String> accounts = new ArrayList<>();
+			for (int i = 0; i < users; i++) {
+				String username = "load-" + label + "-" + run + "-" + i;
+				int status = post(client, baseUrl + "/api/auth/register", register(username));
+				if (status != 200) {
+					throw new IllegalStateException(label + " could not register " + username + ": " + status);
+				}
+				accounts.add(username);
+			}
+
+			IntFunction<String> login = request -> "{\"username\":\""
+					+ accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()))
+					+ "\",\"password\":\"" + PASSWORD + "\"}";
+			IntFunction<String> registration = request -> register("load-" + label + "-" + run + "-r" + request
+					+ "-" + Thread.currentThread().getId());
+
+			// Unrecorded pass so both sides are compared warm
+			load(client, baseUrl + "/api/auth/login", login, concurrency, Duration.ofSeconds(3));
+			report(label, "login", load(client, baseUrl + "/api/auth/login", login, concurrency, duration));
+			report(label, "register", load(client, baseUrl + "/api/auth/register", registration, concurrency, duration));
+			System.out.println();
+		}
+	}
+
+	private static String register(String username) {
+		return "{\"username\":\"" + username + "\",\"password\":\"" + PASSWORD + "\",\"email\":\"" + username
+				+ "@load.invalid\"}";
+	}
+
+	private static Result load(HttpClient client, String url, IntFunction<String> body, int concurrency,
+							   Duration duration) throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		long started = System.nanoTime();
+		long deadline = started + duration.toNanos();
+		List<Future<Result>> futures = new ArrayList<>();
+		for (int c = 0; c < concurrency; c++) {
+			futures.add(clients.submit(() -> {
+				long[] latencies = new long[1024];
+				int count = 0;
+				Map<Integer, Integer> statuses = new TreeMap<>();
+				while (System.nanoTime() < deadline) {
+					long sent = System.nanoTime();
+					int status = post(client, url, body.apply(count));
+					if (count == latencies.length) {
+						latencies = Arrays.copyOf(latencies, count * 2);
+					}
+					latencies[count++] = System.nanoTime() - sent;
+					statuses.merge(status, 1, Integer::sum);
+				}
+				return new Result(Arrays.copyOf(latencies, count), statuses, 0);
+			}));
+		}
+
+		long[] all = new long[0];
+		Map<Integer, Integer> statuses = new TreeMap<>();
+		for (Future<Result> future : futures) {
+			Result result = future.get();
+			int offset = all.length;
+			all = Arrays.copyOf(all, offset + result.latenciesNanos().length);
+			System.arraycopy(result.latenciesNanos(), 0, all, offset, result.latenciesNanos().length);
+			result.statuses().forEach((status, count) -> statuses.merge(status, count, Integer::sum));
+		}
+		clients.shutdown();
+		return new Result(all, statuses, System.nanoTime() - started);
+	}
+
+	private static int post(HttpClient client, String url, String json) {
+		HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+				.timeout(Duration.ofSeconds(30))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(json))
+				.build();
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+		} catch (Exception e) {
+			// Timeouts and refused connections count as their own outcome
+			return -1;
+		}
+	}
+
+	private static void report(String label, String scenario, Result result) {
+		long[] sorted = result.latenciesNanos().clone();
+		Arrays.sort(sorted);
+		double seconds = result.elapsedNanos() / 1e9;
+		System.out.printf("%-8s %-8s %8d req  %8.1f req/s  p50 %7.1f ms  p90 %7.1f ms  p99 %7.1f ms  max %7.1f ms  status %s%n",
+				label, scenario, sorted.length, sorted.length / seconds,
+				percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+				sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6, result.statuses());
+	}
+
+	// Nearest rank, in milliseconds
+	private static double percentile(long[] sorted, int percent) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)] / 1e6;
+	}
+}
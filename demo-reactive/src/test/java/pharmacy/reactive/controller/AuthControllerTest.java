@@ -0,0 +1,180 @@
+package pharmacy.reactive.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import pharmacy.reactive.invalidation.InvalidationLog;
+import pharmacy.reactive.security.JwtUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs against H2 in MySQL mode with the servlet application's migrations, which the build
+ * copies in from ../demo.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+		"spring.r2dbc.url=r2dbc:h2:mem:///reactive-auth?options=DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.r2dbc.username=sa",
+		"spring.r2dbc.password=",
+		"spring.flyway.url=jdbc:h2:mem:reactive-auth;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.flyway.user=sa",
+		"spring.flyway.password=",
+		"invalidation.poll-interval=PT0.05S",
+		"auth.bcrypt.threads=2",
+		"logging.level.io.r2dbc.h2.H2Connection=error",
+		// The client's idle keep-alive connections would hold a graceful shutdown for its whole timeout
+		"server.shutdown=immediate"
+})
+class AuthControllerTest {
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private DatabaseClient databaseClient;
+
+	@Autowired
+	private JwtUtils jwtUtils;
+
+	@Test
+	void registeredUsersLogInAndTheirTokensIntrospectActive() {
+		String username = register();
+
+		JsonNode tokens = login(username, "secret-pw").expectStatus().isOk()
+				.expectBody(JsonNode.class).returnResult().getResponseBody();
+		assertEquals(900, tokens.get("expiresIn").asLong());
+
+		JsonNode introspection = introspect(tokens.get("accessToken").asText());
+		assertTrue(introspection.get("active").asBoolean());
+		assertEquals(username, introspection.get("sub").asText());
+		assertEquals("Bearer", introspection.get("token_type").asText());
+		assertEquals("ROLE_CUSTOMER", introspection.get("roles").get(0).asText());
+
+		assertFalse(introspect(tokens.get("refreshToken").asText()).get("active").asBoolean());
+		assertEquals(1, introspect("not-a-token").size());
+	}
+
+	@Test
+	void wrongPasswordsAndUnknownUsersAreRejected() {
+		String username = register();
+
+		login(username, "wrong-pw").expectStatus().isUnauthorized().expectBody(String.class);
+		login("nobody-" + UUID.randomUUID(), "secret-pw").expectStatus().isUnauthorized().expectBody(String.class);
+	}
+
+	@Test
+	void takenUsernamesAndUnknownRolesAreRejected() {
+		String username = register();
+
+		post("/api/auth/register", Map.of("username", username, "password", "secret-pw",
+				"email", UUID.randomUUID() + "@example.test"))
+				.expectStatus().isBadRequest()
+				.expectBody(String.class).isEqualTo("Error: Username is already taken!");
+		post("/api/auth/register", Map.of("username", "u-" + UUID.randomUUID(), "password", "secret-pw",
+				"email", UUID.randomUUID() + "@example.test", "roles", new String[]{"ROLE_WIZARD"}))
+				.expectStatus().isBadRequest().expectBody(String.class);
+	}
+
+	@Test
+	void registrationIsAnnouncedToTheServletNodes() {
+		String username = register();
+
+		Long announced = databaseClient.sql("select count(*) as announced from invalidation_log l "
+						+ "join users u on l.item_key = cast(u.id as varchar) where l.region = 'users' and u.username = :username")
+				.bind("username", username)
+				.map(row -> row.get("announced", Long.class))
+				.one()
+				.block();
+		assertEquals(1, announced);
+
+		String event = databaseClient.sql("select o.event_type, o.payload from user_outbox o "
+						+ "join users u on o.user_id = u.id where u.username = :username")
+				.bind("username", username)
+				.map(row -> row.get("event_type", String.class) + " " + row.get("payload", String.class))
+				.one()
+				.block();
+		assertEquals("USER_CREATED {\"username\":\"" + username + "\",\"email\":\"" + username + "@example.test\"}", event);
+	}
+
+	@Test
+	void reusingARotatedRefreshTokenEndsTheSession() {
+		String username = register();
+		JsonNode first = login(username, "secret-pw").expectBody(JsonNode.class).returnResult().getResponseBody();
+
+		JsonNode second = post("/api/auth/refresh", Map.of("refreshToken", first.get("refreshToken").asText()))
+				.expectStatus().isOk()
+				.expectBody(JsonNode.class).returnResult().getResponseBody();
+		assertTrue(introspect(second.get("accessToken").asText()).get("active").asBoolean());
+
+		post("/api/auth/refresh", Map.of("refreshToken", first.get("refreshToken").asText()))
+				.expectStatus().isUnauthorized().expectBody(String.class);
+		assertFalse(introspect(second.get("accessToken").asText()).get("active").asBoolean());
+		post("/api/auth/refresh", Map.of("refreshToken", second.get("refreshToken").asText()))
+				.expectStatus().isUnauthorized().expectBody(String.class);
+	}
+
+	@Test
+	void sessionsEndedByServletNodesAreHonoured() throws InterruptedException {
+		String username = register();
+		JsonNode tokens = login(username, "secret-pw").expectBody(JsonNode.class).returnResult().getResponseBody();
+		String accessToken = tokens.get("accessToken").asText();
+		String family = jwtUtils.parseClaims(accessToken).get(JwtUtils.FAMILY_CLAIM, String.class);
+		assertTrue(introspect(accessToken).get("active").asBoolean());
+
+		// What a servlet node writes when the user changes their password
+		databaseClient.sql("insert into invalidation_log (region, item_key, origin, created_at) values (:region, :key, 'servlet-node', :at)")
+				.bind("region", InvalidationLog.SESSIONS)
+				.bind("key", "user:default:" + username)
+				.bind("at", System.currentTimeMillis())
+				.then()
+				.block();
+
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (introspect(accessToken).get("active").asBoolean() && System.nanoTime() < deadline) {
+			Thread.sleep(50);
+		}
+		assertFalse(introspect(accessToken).get("active").asBoolean());
+		post("/api/auth/refresh", Map.of("refreshToken", tokens.get("refreshToken").asText()))
+				.expectStatus().isUnauthorized().expectBody(String.class);
+
+		// The family ended here is announced back for the nodes that only saw the user key
+		Long announced = databaseClient.sql("select count(*) as announced from invalidation_log where item_key = :key")
+				.bind("key", "family:" + family)
+				.map(row -> row.get("announced", Long.class))
+				.one()
+				.block();
+		assertEquals(1, announced);
+	}
+
+	private String register() {
+		String username = "u-" + UUID.randomUUID();
+		post("/api/auth/register", Map.of("username", username, "password", "secret-pw",
+				"email", username + "@example.test"))
+				.expectStatus().isOk()
+				.expectBody()
+				.jsonPath("$.username").isEqualTo(username)
+				.jsonPath("$.id").isNumber();
+		return username;
+	}
+
+	private WebTestClient.ResponseSpec login(String username, String password) {
+		return post("/api/auth/login", Map.of("username", username, "password", password));
+	}
+
+	private JsonNode introspect(String token) {
+		return post("/api/auth/introspect", Map.of("token", token))
+				.expectStatus().isOk()
+				.expectBody(JsonNode.class).returnResult().getResponseBody();
+	}
+
+	private WebTestClient.ResponseSpec post(String uri, Map<String, ?> body) {
+		return client.post().uri(uri).bodyValue(body).exchange();
+	}
+}
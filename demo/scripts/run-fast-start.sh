@@ -0,0 +1,4 @@
+#!/bin/bash
+# Starts the output of `mvn -Pfast-start package`: AOT-initialized context plus the CDS archive from the training run.
+cd "$(dirname "$0")/../target/fast-start" || exit 1
+exec java -XX:SharedArchiveFile=application.jsa -Xshare:auto -Dspring.aot.enabled=true -jar pharmacy-0.0.1-SNAPSHOT.jar "$@"
@@ -0,0 +1,44 @@
+#!/bin/bash
+# Compares the regular jar with the fast-start build: time from JVM launch to the first HTTP
+# response, and resident memory at that point. Application arguments (datasource etc.) come
+# from APP_ARGS, e.g.
+#   APP_ARGS="--spring.datasource.url=jdbc:mysql://localhost:3307/demodb" scripts/startup-benchmark.sh 5
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+PORT=${PORT:-8080}
+JAR=pharmacy-0.0.1-SNAPSHOT.jar
+MVN=${MVN:-sh ./mvnw}
+
+if [ "${SKIP_BUILD:-}" != "1" ]; then
+	$MVN -B -q package -DskipTests
+	mkdir -p target/baseline && cp "target/$JAR" target/baseline/
+	$MVN -B -q package -DskipTests -Pfast-start
+fi
+
+measure() {
+	local label=$1 dir=$2
+	shift 2
+	local total_ms=0 total_rss=0
+	for run in $(seq 1 "$RUNS"); do
+		local started=$(date +%s%N)
+		(cd "$dir" && exec "$@" --server.port="$PORT" ${APP_ARGS:-}) > "target/startup-$label.log" 2>&1 &
+		local pid=$!
+		# Any status counts: the point is that the server answered
+		until curl -s -o /dev/null "http://localhost:$PORT/api/auth/login"; do
+			sleep 0.01
+			kill -0 "$pid" 2>/dev/null || { echo "$label failed to start, see target/startup-$label.log"; exit 1; }
+		done
+		local elapsed=$(( ($(date +%s%N) - started) / 1000000 ))
+		local rss=$(awk '/VmRSS/ {print $2}' "/proc/$pid/status")
+		kill "$pid" && wait "$pid" 2>/dev/null || true
+		total_ms=$((total_ms + elapsed))
+		total_rss=$((total_rss + rss))
+		printf '%-10s run %d: %6d ms  %7d KB RSS\n' "$label" "$run" "$elapsed" "$rss"
+	done
+	printf '%-10s mean:  %6d ms  %7d KB RSS\n\n' "$label" $((total_ms / RUNS)) $((total_rss / RUNS))
+}
+
+measure baseline target/baseline java -jar "$JAR"
+measure fast-start target/fast-start java -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$JAR"
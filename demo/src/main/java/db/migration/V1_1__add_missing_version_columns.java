@@ -0,0 +1,37 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Adds the optimistic-lock version columns to users and roles tables created before they had
+ * one. V1 leaves existing tables as they are, and MySQL has no {@code add column if not exists},
+ * so the columns are looked up first; existing rows start at version 0.
+ */
+public class V1_1__add_missing_version_columns extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        for (String table : List.of("users", "roles")) {
+            if (!hasColumn(connection, table, "version")) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("alter table " + table + " add column version bigint not null default 0");
+                }
+            }
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (ResultSet columns = connection.getMetaData()
+                .getColumns(connection.getCatalog(), connection.getSchema(), table, column)) {
+            return columns.next();
+        }
+    }
+}
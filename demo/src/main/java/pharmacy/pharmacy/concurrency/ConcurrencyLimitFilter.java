@@ -0,0 +1,134 @@
+package pharmacy.pharmacy.concurrency;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps how many requests run at once at a limit that follows their latency
+ * ({@link GradientLimit}), and answers 503 straight away to requests past their class's share
+ * of it instead of letting them queue for threads and connections. Runs in the security chain
+ * ahead of token checks, so a shed request costs no signature check or user lookup; requests
+ * count as authenticated when they carry a bearer token.
+ * <p>
+ * Asynchronous requests, such as event streams, hold their slot only until the handler
+ * returns, and give no latency sample.
+ */
+@Component
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final GradientLimit limit;
+    private final List<String> criticalPaths;
+    private final List<String> lowPriorityPaths;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    public ConcurrencyLimitFilter(MeterRegistry meterRegistry,
+                                  @Value("${concurrency.enabled:true}") boolean enabled,
+                                  @Value("${concurrency.initial-limit:20}") int initialLimit,
+                                  @Value("${concurrency.min-limit:5}") int minLimit,
+                                  @Value("${concurrency.max-limit:200}") int maxLimit,
+                                  @Value("${concurrency.tolerance:1.5}") double tolerance,
+                                  @Value("${concurrency.smoothing:0.2}") double smoothing,
+                                  @Value("${concurrency.window-samples:20}") int windowSamples,
+                                  @Value("${concurrency.baseline-windows:60}") int baselineWindows,
+                                  @Value("${concurrency.critical-paths:/actuator/health,/actuator/health/**}") List<String> criticalPaths,
+                                  @Value("${concurrency.low-priority-paths:/api/auth/register}") List<String> lowPriorityPaths) {
+        this.enabled = enabled;
+        this.limit = new GradientLimit(initialLimit, minLimit, maxLimit, tolerance, smoothing, windowSamples,
+                baselineWindows);
+        this.criticalPaths = criticalPaths;
+        this.lowPriorityPaths = lowPriorityPaths;
+        Gauge.builder("concurrency.limit", limit, GradientLimit::getLimit)
+                .description("Requests allowed to run at once")
+                .register(meterRegistry);
+        Gauge.builder("concurrency.in-flight", inFlight, AtomicInteger::get)
+                .description("Requests running under the limit")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, Counter.builder("concurrency.rejected")
+                    .description("Requests shed with 503 because their share of the limit was in use")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        Priority priority = classify(request);
+        if (priority == Priority.CRITICAL) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        int running = tryAcquire(priority);
+        if (running < 0) {
+            rejected.get(priority).increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, response);
+            completed = true;
+        } finally {
+            inFlight.decrementAndGet();
+            // A request that failed or went asynchronous says nothing about how long work takes
+            if (completed && !request.isAsyncStarted()) {
+                limit.onSample(System.nanoTime() - start, running);
+            }
+        }
+    }
+
+    Priority classify(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (criticalPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+            return Priority.CRITICAL;
+        }
+        if (lowPriorityPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path))) {
+            return Priority.LOW;
+        }
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+        return read && authorization != null && authorization.startsWith("Bearer ") ? Priority.HIGH : Priority.NORMAL;
+    }
+
+    // The number of requests running, this one included, or -1 if its class is over its share
+    private int tryAcquire(Priority priority) {
+        int permitted = Math.max(1, (int) (limit.getLimit() * priority.share()));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= permitted) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+}
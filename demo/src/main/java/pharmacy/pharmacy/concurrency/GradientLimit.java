@@ -0,0 +1,81 @@
+package pharmacy.pharmacy.concurrency;
+
+/**
+ * A concurrency limit steered by measured latency. Samples are averaged in windows of a
+ * fixed number of requests; each window's average is compared with a slow-moving baseline,
+ * and the limit is scaled by {@code tolerance * baseline / recent} (between 0.5 and 1) plus
+ * a headroom of {@code sqrt(limit)}. While latency stays near the baseline the limit creeps
+ * up; once requests start queueing, latency rises and the limit falls in proportion.
+ * <p>
+ * A window in which fewer than half the permitted requests ran says nothing about the limit
+ * and only moves the baseline. When load drops and latency falls well below the baseline,
+ * the baseline is pulled down faster than its own average would go.
+ */
+public class GradientLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final int windowSamples;
+    private final int baselineWindows;
+
+    private double limit;
+    private double baselineRtt;
+    private long windowRttSum;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private volatile int current;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing,
+                         int windowSamples, int baselineWindows) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.windowSamples = windowSamples;
+        this.baselineWindows = baselineWindows;
+        this.limit = initialLimit;
+        this.current = initialLimit;
+    }
+
+    public int getLimit() {
+        return current;
+    }
+
+    /**
+     * Records one completed request: how long it ran and how many were running when it started.
+     */
+    public synchronized void onSample(long rttNanos, int inFlight) {
+        windowRttSum += rttNanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlight);
+        if (++windowCount < windowSamples) {
+            return;
+        }
+        double recentRtt = (double) windowRttSum / windowCount;
+        boolean busy = windowMaxInFlight >= limit / 2;
+        windowRttSum = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+
+        if (baselineRtt == 0) {
+            baselineRtt = recentRtt;
+            return;
+        }
+        baselineRtt += (recentRtt - baselineRtt) / baselineWindows;
+        if (baselineRtt > 2 * recentRtt) {
+            baselineRtt *= 0.95;
+        }
+        if (!busy) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineRtt / recentRtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + target * smoothing));
+        current = (int) limit;
+    }
+}
@@ -0,0 +1,27 @@
+package pharmacy.pharmacy.concurrency;
+
+/**
+ * How much of the concurrency limit a request may use. Lower classes are shed first: a
+ * {@code LOW} request is turned away once half the limit is in use, leaving the rest for
+ * the classes above it.
+ */
+public enum Priority {
+    // Health probes; never limited, so an overloaded node is not also restarted
+    CRITICAL(Double.POSITIVE_INFINITY),
+    // Authenticated reads
+    HIGH(1.0),
+    // Everything not classed otherwise, including login and authenticated writes
+    NORMAL(0.9),
+    // Registration and bulk work
+    LOW(0.5);
+
+    private final double share;
+
+    Priority(double share) {
+        this.share = share;
+    }
+
+    public double share() {
+        return share;
+    }
+}
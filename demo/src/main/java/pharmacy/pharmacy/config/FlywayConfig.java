@@ -0,0 +1,24 @@
+package pharmacy.pharmacy.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * An AOT-processed context keeps the Flyway beans it was built with, whatever
+ * {@code spring.flyway.enabled} says at runtime. The migration is skipped here instead, so a
+ * run that turns Flyway off, such as the CDS training run, does not need a database.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FlywayConfig {
+
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(@Value("${spring.flyway.enabled:true}") boolean enabled) {
+        return flyway -> {
+            if (enabled) {
+                flyway.migrate();
+            }
+        };
+    }
+}
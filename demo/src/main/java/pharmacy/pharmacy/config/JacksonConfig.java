@@ -0,0 +1,101 @@
+package pharmacy.pharmacy.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.ClassUtils;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import pharmacy.pharmacy.dto.AuthResponseDTO;
+import pharmacy.pharmacy.entity.User;
+import pharmacy.pharmacy.entity.UserRole;
+import pharmacy.pharmacy.exception.GlobalExceptionHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration(proxyBeanMethods = false)
+public class JacksonConfig implements WebMvcConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(JacksonConfig.class);
+
+    private final ObjectProvider<Jackson2ObjectMapperBuilder> mapperBuilder;
+    private final boolean smileEnabled;
+
+    public JacksonConfig(ObjectProvider<Jackson2ObjectMapperBuilder> mapperBuilder,
+                         @Value("${http.smile.enabled:true}") boolean smileEnabled) {
+        this.mapperBuilder = mapperBuilder;
+        this.smileEnabled = smileEnabled;
+    }
+
+    // Generated lambdas replace reflective getter/setter calls; picked up by Boot for every ObjectMapper it builds
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer pooledBuffersCustomizer() {
+        return builder -> builder.factory(pooledJsonFactory());
+    }
+
+    @Bean
+    public SmartInitializingSingleton serializerPrefetch(ObjectMapper objectMapper) {
+        return () -> log.info("Prefetched JSON serializers for {} types", prefetchSerializers(objectMapper));
+    }
+
+    /**
+     * Smile goes after the JSON converter so it is only chosen when a caller asks for
+     * {@code application/x-jackson-smile}; browsers accepting any type keep getting JSON.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        if (smileEnabled) {
+            converters.add(new MappingJackson2SmileHttpMessageConverter(
+                    mapperBuilder.getObject().factory(new SmileFactory()).build()));
+        }
+    }
+
+    /**
+     * Encoding buffers go back to one shared pool instead of a soft reference per thread, so a
+     * large Tomcat pool does not pin a set of buffers per worker.
+     */
+    public static JsonFactory pooledJsonFactory() {
+        return JsonFactory.builder()
+                .recyclerPool(JsonRecyclerPools.sharedConcurrentDequePool())
+                .build();
+    }
+
+    /**
+     * Resolves the serializers for every response type up front so the first request for each
+     * does not pay for introspection. Serializers land in the mapper's shared cache.
+     */
+    public static int prefetchSerializers(ObjectMapper objectMapper) {
+        List<Class<?>> types = new ArrayList<>(List.of(User.class, UserRole.class,
+                GlobalExceptionHandler.ErrorResponse.class, GlobalExceptionHandler.ValidationErrorResponse.class));
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter((reader, factory) -> true);
+        for (BeanDefinition definition : scanner.findCandidateComponents(AuthResponseDTO.class.getPackageName())) {
+            types.add(ClassUtils.resolveClassName(definition.getBeanClassName(), JacksonConfig.class.getClassLoader()));
+        }
+        for (Class<?> type : types) {
+            objectMapper.writerFor(type);
+        }
+        return types.size();
+    }
+}
@@ -0,0 +1,43 @@
+package pharmacy.pharmacy.config;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.MethodMetadata;
+
+import java.util.List;
+
+/**
+ * Defers API documentation beans until the first docs request, so they are not on the
+ * startup path. Beans another eager bean depends on are still created eagerly.
+ */
+@Configuration
+public class LazyInitializationConfig {
+
+    private static final List<String> LAZY_PACKAGES = List.of("org.springdoc.", OpenApiConfig.class.getName());
+
+    @Bean
+    public static BeanFactoryPostProcessor lazyDocumentationBeans() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                if (isLazyCandidate(definition)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    private static boolean isLazyCandidate(BeanDefinition definition) {
+        String declaringClass = definition.getBeanClassName();
+        if (definition instanceof AnnotatedBeanDefinition annotated) {
+            MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+            if (factoryMethod != null) {
+                declaringClass = factoryMethod.getDeclaringClassName();
+            }
+        }
+        return declaringClass != null && LAZY_PACKAGES.stream().anyMatch(declaringClass::startsWith);
+    }
+}
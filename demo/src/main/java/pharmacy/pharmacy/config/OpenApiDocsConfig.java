@@ -0,0 +1,56 @@
+package pharmacy.pharmacy.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.webjars.WebJarVersionLocator;
+
+import java.time.Duration;
+
+/**
+ * Serves the OpenAPI spec that the production build generates ({@code mvn -Dprod package}),
+ * gzipped ahead of time, so no node scans the controllers to build it.
+ */
+@Configuration(proxyBeanMethods = false)
+public class OpenApiDocsConfig implements WebMvcConfigurer {
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        // The .gz next to the file goes to clients that accept gzip; Tomcat leaves encoded bodies alone
+        registry.addResourceHandler("/openapi/**")
+                .addResourceLocations("classpath:/openapi/")
+                .setCacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePublic())
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
+    }
+
+    /**
+     * Without springdoc, Swagger UI comes straight from its webjar with an initializer that
+     * loads the static spec, at the same URLs springdoc uses.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnMissingClass("org.springdoc.core.configuration.SpringDocConfiguration")
+    @ConditionalOnClass(name = "org.webjars.WebJarVersionLocator")
+    static class StaticSwaggerUi implements WebMvcConfigurer {
+
+        @Override
+        public void addResourceHandlers(ResourceHandlerRegistry registry) {
+            String version = new WebJarVersionLocator().version("swagger-ui");
+            registry.addResourceHandler("/swagger-ui/**")
+                    .addResourceLocations("classpath:/openapi-ui/",
+                            "classpath:/META-INF/resources/webjars/swagger-ui/" + version + "/")
+                    .setCacheControl(CacheControl.maxAge(Duration.ofHours(1)).cachePublic());
+        }
+
+        @Override
+        public void addViewControllers(ViewControllerRegistry registry) {
+            registry.addRedirectViewController("/swagger-ui.html", "/swagger-ui/index.html");
+            registry.addRedirectViewController("/swagger-ui/", "/swagger-ui/index.html");
+        }
+    }
+}
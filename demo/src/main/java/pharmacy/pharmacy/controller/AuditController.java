@@ -0,0 +1,53 @@
+package pharmacy.pharmacy.controller;
+
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.pharmacy.dto.AuditRecordDTO;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.AuditService;
+
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/audit")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Audit", description = "Audit trail of user and role changes")
+public class AuditController {
+
+    private final AuditService auditService;
+
+    public AuditController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    @Operation(summary = "Audit records", description = "User and role changes over a time range, oldest first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved audit records"),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @GetMapping
+    public ResponseEntity<List<AuditRecordDTO>> getRecords(
+            @Parameter(description = "Range start (inclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @Parameter(description = "Range end (exclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @Parameter(description = "Only changes to this user") @RequestParam(required = false) Integer userId,
+            @Parameter(description = "Maximum number of records") @RequestParam(defaultValue = "500") int limit) {
+        try {
+            return ResponseEntity.ok(auditService.getRecords(from, to == null ? Instant.now().plusMillis(1) : to, userId,
+                    Math.min(Math.max(limit, 1), 10000)));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error retrieving audit records", e);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -21,11 +22,13 @@ import pharmacy.pharmacy.dao.UserRepository;
 import pharmacy.pharmacy.dto.AuthRegisterResponseDTO;
 import pharmacy.pharmacy.dto.AuthResponseDTO;
 import pharmacy.pharmacy.dto.LoginDTO;
+import pharmacy.pharmacy.dto.RefreshTokenDTO;
 import pharmacy.pharmacy.dto.RegisterDTO;
 import pharmacy.pharmacy.entity.ERole;
 import pharmacy.pharmacy.entity.UserRole;
 import pharmacy.pharmacy.entity.User;
-import pharmacy.pharmacy.security.JwtUtils;
+import pharmacy.pharmacy.service.RefreshTokenService;
+import pharmacy.pharmacy.service.UserService;
 
 import java.util.HashSet;
 import java.util.Optional;
@@ -51,9 +54,12 @@ public class AuthController {
     private PasswordEncoder encoder;
 
     @Autowired
-    private JwtUtils jwtUtils;
+    private RefreshTokenService refreshTokenService;
 
-    @Operation(summary = "Authenticate user", description = "Authenticates user credentials and returns JWT token")
+    @Autowired
+    private UserService userService;
+
+    @Operation(summary = "Authenticate user", description = "Authenticates user credentials and returns a short-lived access token and a refresh token")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Authentication successful",
                     content = @Content(schema = @Schema(implementation = AuthResponseDTO.class))),
@@ -69,9 +75,44 @@ public class AuthController {
                 new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken((UserDetails) authentication.getPrincipal());
+        RefreshTokenService.TokenPair tokens = refreshTokenService.login(
+                ((UserDetails) authentication.getPrincipal()).getUsername());
+
+        return ResponseEntity.ok(toResponse(tokens));
+    }
+
+    @Operation(summary = "Refresh tokens", description = "Exchanges a refresh token for a new access token and a rotated refresh token. "
+            + "Presenting a refresh token that was already rotated ends the whole session.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tokens refreshed",
+                    content = @Content(schema = @Schema(implementation = AuthResponseDTO.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized - refresh token invalid, expired or revoked")
+    })
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refreshToken(
+            @Parameter(description = "Refresh token from login or the previous refresh", required = true)
+            @RequestBody RefreshTokenDTO refreshRequest) {
+
+        return refreshTokenService.refresh(refreshRequest.getRefreshToken())
+                .<ResponseEntity<?>>map(tokens -> ResponseEntity.ok(toResponse(tokens)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Error: Refresh token is invalid or revoked"));
+    }
+
+    @Operation(summary = "Log out", description = "Ends the session of the refresh token; access tokens issued from it stop working")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Session ended")
+    })
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @Parameter(description = "Refresh token of the session to end", required = true)
+            @RequestBody RefreshTokenDTO logoutRequest) {
+
+        refreshTokenService.logout(logoutRequest.getRefreshToken());
+        return ResponseEntity.noContent().build();
+    }
 
-        return ResponseEntity.ok(new AuthResponseDTO(jwt));
+    private AuthResponseDTO toResponse(RefreshTokenService.TokenPair tokens) {
+        return new AuthResponseDTO(tokens.accessToken(), tokens.refreshToken(), tokens.expiresInMs() / 1000);
     }
 
     @Operation(summary = "Register new user", description = "Registers a new user with selected roles (defaults to ROLE_CUSTOMER if none provided)")
@@ -120,8 +161,8 @@ public class AuthController {
         }
 
         user.setRoles(roles);
-        userRepository.save(user);
+        User saved = userService.registerUser(user);
 
-        return ResponseEntity.ok(new AuthRegisterResponseDTO(user));
+        return ResponseEntity.ok(new AuthRegisterResponseDTO(saved));
     }
 }
\ No newline at end of file
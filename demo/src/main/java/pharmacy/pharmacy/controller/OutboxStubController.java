@@ -0,0 +1,85 @@
+package pharmacy.pharmacy.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.outbox.WebhookOutboxSink;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A local receiver for the outbox webhook, so {@code outbox.sink=webhook} can run without the
+ * downstream systems: point {@code outbox.webhook.url} here and it keeps the latest events.
+ */
+@RestController
+@RequestMapping("/api/outbox/stub")
+@ConditionalOnProperty(name = "outbox.webhook.stub.enabled", havingValue = "true")
+@Tag(name = "Outbox stub", description = "Local stand-in for the user event webhook")
+public class OutboxStubController {
+
+    private static final int CAPACITY = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final byte[] secret;
+    private final Deque<JsonNode> received = new ArrayDeque<>();
+
+    public OutboxStubController(ObjectMapper objectMapper, @Value("${outbox.webhook.secret:}") String secret) {
+        this.objectMapper = objectMapper;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Operation(summary = "Receive events", description = "Webhook endpoint; the signature is checked when a secret is set")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Events accepted"),
+            @ApiResponse(responseCode = "401", description = "Missing or wrong signature")
+    })
+    @PostMapping("/events")
+    public ResponseEntity<Void> receive(@RequestBody byte[] body,
+                                        @RequestHeader(value = WebhookOutboxSink.SIGNATURE_HEADER, required = false) String signature) {
+        try {
+            if (secret.length > 0 && (signature == null || !MessageDigest.isEqual(
+                    WebhookOutboxSink.sign(secret, body).getBytes(StandardCharsets.UTF_8),
+                    signature.getBytes(StandardCharsets.UTF_8)))) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            JsonNode events = objectMapper.readTree(body).path("events");
+            synchronized (received) {
+                events.forEach(event -> {
+                    if (received.size() == CAPACITY) {
+                        received.removeFirst();
+                    }
+                    received.addLast(event);
+                });
+            }
+            return ResponseEntity.noContent().build();
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error receiving outbox events", e);
+        }
+    }
+
+    @Operation(summary = "Received events", description = "The latest events the stub received, oldest first")
+    @GetMapping("/events")
+    @PreAuthorize("hasRole('ADMIN')")
+    public List<JsonNode> received() {
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+}
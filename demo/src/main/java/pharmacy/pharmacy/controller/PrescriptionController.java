@@ -0,0 +1,142 @@
+package pharmacy.pharmacy.controller;
+
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.pharmacy.dto.PrescriptionDTO;
+import pharmacy.pharmacy.dto.PrescriptionRequestDTO;
+import pharmacy.pharmacy.dto.VerificationDTO;
+import pharmacy.pharmacy.dto.VerificationMetricsDTO;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.PrescriptionService;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/prescriptions")
+@Tag(name = "Prescriptions", description = "Prescription submission and the pharmacist verification queue")
+public class PrescriptionController {
+
+    private final PrescriptionService prescriptionService;
+
+    public PrescriptionController(PrescriptionService prescriptionService) {
+        this.prescriptionService = prescriptionService;
+    }
+
+    @Operation(summary = "Submit a prescription",
+            description = "Queue a prescription for verification. Staff may submit on behalf of a customer.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescription queued",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PrescriptionDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PostMapping
+    @PreAuthorize("hasAnyRole('CUSTOMER', 'PHARMACIST', 'ADMIN')")
+    public ResponseEntity<PrescriptionDTO> submit(
+            @Parameter(description = "Prescription to be verified") @RequestBody PrescriptionRequestDTO request,
+            Authentication authentication) {
+        try {
+            boolean onBehalf = authentication.getAuthorities().stream()
+                    .anyMatch(a -> a.getAuthority().equals("ROLE_PHARMACIST") || a.getAuthority().equals("ROLE_ADMIN"));
+            return ResponseEntity.ok(prescriptionService.submit(request, authentication.getName(), onBehalf));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error submitting prescription", e);
+        }
+    }
+
+    @Operation(summary = "Claim next prescription",
+            description = "Lease the most urgent prescription available to the calling pharmacist")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Prescription leased",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PrescriptionDTO.class))),
+            @ApiResponse(responseCode = "204", description = "Queue is empty",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PostMapping("/claim")
+    @PreAuthorize("hasRole('PHARMACIST')")
+    public ResponseEntity<PrescriptionDTO> claimNext(Authentication authentication) {
+        try {
+            return prescriptionService.claimNext(authentication.getName())
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.noContent().build());
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error claiming prescription", e);
+        }
+    }
+
+    @Operation(summary = "Renew lease", description = "Extend the lease on a prescription being verified")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Lease renewed",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PrescriptionDTO.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error or lease lost",
+                    content = @Content)
+    })
+    @PostMapping("/{id}/lease")
+    @PreAuthorize("hasRole('PHARMACIST')")
+    public ResponseEntity<PrescriptionDTO> renewLease(
+            @Parameter(description = "ID of the leased prescription") @PathVariable long id,
+            Authentication authentication) {
+        try {
+            return ResponseEntity.ok(prescriptionService.renewLease(id, authentication.getName()));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error renewing lease on prescription: " + id, e);
+        }
+    }
+
+    @Operation(summary = "Verify prescription", description = "Approve or reject a leased prescription")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Decision recorded",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = PrescriptionDTO.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error or lease lost",
+                    content = @Content)
+    })
+    @PostMapping("/{id}/verification")
+    @PreAuthorize("hasRole('PHARMACIST')")
+    public ResponseEntity<PrescriptionDTO> verify(
+            @Parameter(description = "ID of the leased prescription") @PathVariable long id,
+            @Parameter(description = "Verification decision") @RequestBody VerificationDTO verification,
+            Authentication authentication) {
+        try {
+            return ResponseEntity.ok(prescriptionService.verify(id, authentication.getName(), verification));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error verifying prescription: " + id, e);
+        }
+    }
+
+    @Operation(summary = "Queue state", description = "Backlog, leased and per-pharmacist queue sizes")
+    @GetMapping("/queue")
+    @PreAuthorize("hasAnyRole('PHARMACIST', 'ADMIN')")
+    public ResponseEntity<Map<String, Object>> getQueueState() {
+        return ResponseEntity.ok(prescriptionService.getQueueState());
+    }
+
+    @Operation(summary = "Time-to-verify metrics", description = "p50/p99 time from submission to decision, per urgency")
+    @GetMapping("/metrics")
+    @PreAuthorize("hasAnyRole('PHARMACIST', 'ADMIN')")
+    public ResponseEntity<List<VerificationMetricsDTO>> getVerificationMetrics() {
+        return ResponseEntity.ok(prescriptionService.getVerificationMetrics());
+    }
+}
@@ -0,0 +1,51 @@
+package pharmacy.pharmacy.controller;
+
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.pharmacy.dto.ReorderSuggestionDTO;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.ReplenishmentService;
+
+@RestController
+@RequestMapping("/api/replenishment")
+@Tag(name = "Replenishment", description = "Reorder points and suggested purchase orders for suppliers")
+public class ReplenishmentController {
+
+    private final ReplenishmentService replenishmentService;
+
+    public ReplenishmentController(ReplenishmentService replenishmentService) {
+        this.replenishmentService = replenishmentService;
+    }
+
+    @Operation(summary = "Get reorder suggestions",
+            description = "Page through SKUs at or below their reorder point, most urgent first")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved suggestions"),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @GetMapping("/suggestions")
+    @PreAuthorize("hasAnyRole('ADMIN', 'SUPPLIER')")
+    public ResponseEntity<PagedModel<ReorderSuggestionDTO>> getSuggestions(
+            @Parameter(description = "Only suggestions for this branch") @RequestParam(required = false) Integer branchId,
+            @Parameter(description = "Zero-based page index") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "50") int size) {
+        try {
+            PageRequest pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 500));
+            return ResponseEntity.ok(new PagedModel<>(replenishmentService.getSuggestions(branchId, pageable)));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error retrieving reorder suggestions", e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package pharmacy.pharmacy.controller;
+
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.pharmacy.dto.ReportPointDTO;
+import pharmacy.pharmacy.entity.RollupGranularity;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.AnalyticsService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/reports")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Reports", description = "Sales reports served from pre-aggregated rollups")
+public class ReportController {
+
+    private final AnalyticsService analyticsService;
+
+    public ReportController(AnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    @Operation(summary = "Top SKUs", description = "Best-selling SKUs by quantity or revenue over a UTC time range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully computed ranking"),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @GetMapping("/top-skus")
+    public ResponseEntity<List<ReportPointDTO>> getTopSkus(
+            @Parameter(description = "Range start (UTC, inclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Range end (UTC, exclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Only this branch") @RequestParam(required = false) Integer branchId,
+            @Parameter(description = "quantity or revenue") @RequestParam(defaultValue = "quantity") String metric,
+            @Parameter(description = "Number of SKUs to return") @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(analyticsService.getTopSkus(from, to, branchId, metric, Math.min(Math.max(limit, 1), 1000)));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error computing top SKUs", e);
+        }
+    }
+
+    @Operation(summary = "Sales time series", description = "Quantity and revenue per bucket over a UTC time range")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully computed series"),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @GetMapping("/time-series")
+    public ResponseEntity<List<ReportPointDTO>> getTimeSeries(
+            @Parameter(description = "Range start (UTC, inclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Range end (UTC, exclusive)") @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Only this SKU") @RequestParam(required = false) String sku,
+            @Parameter(description = "Only this branch") @RequestParam(required = false) Integer branchId,
+            @Parameter(description = "Bucket size") @RequestParam(defaultValue = "DAY") RollupGranularity granularity) {
+        try {
+            return ResponseEntity.ok(analyticsService.getTimeSeries(from, to, sku, branchId, granularity));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error computing sales time series", e);
+        }
+    }
+}
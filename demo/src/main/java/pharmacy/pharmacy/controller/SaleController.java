@@ -0,0 +1,51 @@
+package pharmacy.pharmacy.controller;
+
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import pharmacy.pharmacy.dto.SaleDTO;
+import pharmacy.pharmacy.entity.SaleLine;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.SaleService;
+
+@RestController
+@RequestMapping("/api/sales")
+@Tag(name = "Sales", description = "Endpoints for recording point-of-sale lines")
+public class SaleController {
+
+    private final SaleService saleService;
+
+    public SaleController(SaleService saleService) {
+        this.saleService = saleService;
+    }
+
+    @Operation(summary = "Record a sale", description = "Record a sold quantity of a SKU at a branch, drawing stock first-expiry-first-out")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Sale recorded successfully",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = SaleLine.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input or insufficient stock",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'PHARMACIST', 'CASHIER')")
+    public ResponseEntity<SaleLine> recordSale(
+            @Parameter(description = "Sale to be recorded") @RequestBody SaleDTO sale) {
+        try {
+            return ResponseEntity.ok(saleService.recordSale(sale));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error recording sale", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package pharmacy.pharmacy.controller;
+
+import io.sentry.Sentry;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pharmacy.pharmacy.entity.StockBatch;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.ExpiryService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/batches")
+@Tag(name = "Stock Batches", description = "Endpoints for stock lots and their expiry notifications")
+public class StockBatchController {
+
+    private final ExpiryService expiryService;
+
+    public StockBatchController(ExpiryService expiryService) {
+        this.expiryService = expiryService;
+    }
+
+    @Operation(summary = "Get all batches", description = "Retrieve every stock batch")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = StockBatch.class))),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @GetMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'PHARMACIST')")
+    public ResponseEntity<List<StockBatch>> getAllBatches() {
+        try {
+            return ResponseEntity.ok(expiryService.getAllBatches());
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error retrieving stock batches", e);
+        }
+    }
+
+    @Operation(summary = "Receive a batch", description = "Record a newly received stock lot and schedule its expiry notifications")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch recorded successfully",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = StockBatch.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'PHARMACIST')")
+    public ResponseEntity<StockBatch> receiveBatch(
+            @Parameter(description = "Batch to be recorded") @RequestBody StockBatch batch) {
+        try {
+            return ResponseEntity.ok(expiryService.receiveBatch(batch));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error receiving stock batch", e);
+        }
+    }
+
+    @Operation(summary = "Update batch", description = "Update the quantity or expiry date of a stock lot")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch updated successfully",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = StockBatch.class))),
+            @ApiResponse(responseCode = "404", description = "Batch not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PutMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PHARMACIST')")
+    public ResponseEntity<StockBatch> updateBatch(
+            @Parameter(description = "ID of the batch to be updated") @PathVariable long id,
+            @Parameter(description = "Updated batch object") @RequestBody StockBatch batch) {
+        try {
+            return ResponseEntity.ok(expiryService.updateBatch(id, batch));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error updating stock batch with id: " + id, e);
+        }
+    }
+
+    @Operation(summary = "Delete batch", description = "Remove a stock lot and cancel its pending expiry notifications")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch deleted successfully"),
+            @ApiResponse(responseCode = "404", description = "Batch not found",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'PHARMACIST')")
+    public ResponseEntity<Void> deleteBatch(
+            @Parameter(description = "ID of the batch to be deleted") @PathVariable long id) {
+        try {
+            expiryService.deleteBatch(id);
+            return ResponseEntity.ok().build();
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error deleting stock batch with id: " + id, e);
+        }
+    }
+
+    @Operation(summary = "Stream expiry events",
+            description = "Server-sent events announcing batches that are near expiry or have expired")
+    @GetMapping(value = "/expiry-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('PHARMACIST')")
+    public SseEmitter streamExpiryEvents() {
+        return expiryService.subscribe();
+    }
+}
@@ -8,24 +8,59 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import io.sentry.Sentry;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import pharmacy.pharmacy.dto.BulkRoleChangeDTO;
+import pharmacy.pharmacy.dto.BulkRoleResultDTO;
+import pharmacy.pharmacy.dto.RoleMembersDTO;
+import pharmacy.pharmacy.dto.UserSearchResultDTO;
+import pharmacy.pharmacy.entity.ERole;
 import pharmacy.pharmacy.entity.User;
 import pharmacy.pharmacy.entity.UserRole;
 import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.RoleAssignmentService;
+import pharmacy.pharmacy.service.RoleMembershipService;
+import pharmacy.pharmacy.service.UserSearchService;
 import pharmacy.pharmacy.service.UserService;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/users")
 @Tag(name = "User Management", description = "Endpoints for managing pharmacy users")
 public class UserController {
 
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_BULK_USERS = 10_000;
+
     private final UserService userService;
+    private final UserSearchService userSearchService;
+    private final RoleMembershipService roleMembershipService;
+    private final RoleAssignmentService roleAssignmentService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserSearchService userSearchService,
+                          RoleMembershipService roleMembershipService, RoleAssignmentService roleAssignmentService) {
         this.userService = userService;
+        this.userSearchService = userSearchService;
+        this.roleMembershipService = roleMembershipService;
+        this.roleAssignmentService = roleAssignmentService;
+    }
+
+    private static String etag(long version) {
+        return "\"" + version + "\"";
     }
 
     @Operation(summary = "Get all users", description = "Retrieve a list of all registered users")
@@ -33,24 +68,203 @@ public class UserController {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved list",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = User.class))),
+            @ApiResponse(responseCode = "304", description = "Unchanged since the ETag in If-None-Match",
+                    content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error",
                     content = @Content)
     })
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
+    public ResponseEntity<List<User>> getAllUsers(WebRequest request) {
         try {
-            return ResponseEntity.ok(userService.getAllUsers());
+            // Weak, because Tomcat will not gzip a response carrying a strong ETag and this is the large one
+            String etag = "W/\"" + userService.getUsersVersionTag() + "\"";
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+            return ResponseEntity.ok().eTag(etag).body(userService.getAllUsers());
         } catch (Exception e) {
             Sentry.captureException(e);
             throw new GlobalException("Error retrieving users", e);
         }
     }
 
+    @Operation(summary = "Search users", description = "Autocomplete over usernames and emails, answered from memory")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Matches, exact and username matches first",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = UserSearchResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown role",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Search index still loading, or not kept for the caller's tenant",
+                    content = @Content)
+    })
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<UserSearchResultDTO>> searchUsers(
+            @Parameter(description = "Start of a username, an email, or a part of either after a separator") @RequestParam("q") String query,
+            @Parameter(description = "Only users holding any of these roles") @RequestParam(value = "roles", required = false) List<String> roles,
+            @Parameter(description = "Maximum number of results, at most 50") @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        if (!userSearchService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        Optional<Set<ERole>> roleFilter = parseRoles(roles);
+        if (roleFilter.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(userSearchService.search(query, roleFilter.get(),
+                Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS))));
+    }
+
+    @Operation(summary = "List users by role", description = "Users holding all (or any) of the given roles, one page at a time in id order")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "The page and the number of matching users",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = RoleMembersDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown role, no role given, or a page out of range",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Role index still loading, or not kept for the caller's tenant",
+                    content = @Content)
+    })
+    @GetMapping("/roles")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<RoleMembersDTO> getUsersByRoles(
+            @Parameter(description = "Roles, with or without the ROLE_ prefix") @RequestParam("roles") List<String> roles,
+            @Parameter(description = "all: users holding every role; any: users holding at least one") @RequestParam(value = "match", defaultValue = "all") String match,
+            @Parameter(description = "Zero-based page number") @RequestParam(value = "page", defaultValue = "0") int page,
+            @Parameter(description = "Page size, at most 100") @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (!roleMembershipService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        Optional<Set<ERole>> requested = parseRoles(roles);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // The offset, page * pageSize, has to fit an int
+        if (requested.isEmpty() || requested.get().isEmpty() || page < 0 || page > Integer.MAX_VALUE / pageSize
+                || !(match.equals("all") || match.equals("any"))) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            RoleMembershipService.MembersPage members = roleMembershipService.members(requested.get(),
+                    match.equals("all"), page, pageSize);
+            return ResponseEntity.ok(new RoleMembersDTO(requested.get(), match, page, pageSize,
+                    members.total(), members.users()));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error retrieving users by role", e);
+        }
+    }
+
+    @Operation(summary = "Count users by role", description = "Number of users holding each role")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Count per role"),
+            @ApiResponse(responseCode = "503", description = "Role index still loading, or not kept for the caller's tenant",
+                    content = @Content)
+    })
+    @GetMapping("/roles/counts")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<ERole, Long>> countUsersByRole() {
+        if (!roleMembershipService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        return ResponseEntity.ok(roleMembershipService.countByRole());
+    }
+
+    @Operation(summary = "Grant roles to many users", description = "Grant roles to the listed users, or to every holder of the filter roles, one batch at a time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One result per user, in id order",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkRoleResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown or missing roles, no users given, or more than 10000 users",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Role index still loading or not kept for the caller's tenant, when selecting users by role",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PostMapping("/roles/grant")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<BulkRoleResultDTO>> grantRoles(
+            @Parameter(description = "Users and the roles to grant them") @RequestBody BulkRoleChangeDTO change) {
+        return changeRoles(change, true);
+    }
+
+    @Operation(summary = "Revoke roles from many users", description = "Revoke roles from the listed users, or from every holder of the filter roles, one batch at a time")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "One result per user, in id order",
+                    content = @Content(mediaType = "application/json",
+                            schema = @Schema(implementation = BulkRoleResultDTO.class))),
+            @ApiResponse(responseCode = "400", description = "Unknown or missing roles, no users given, or more than 10000 users",
+                    content = @Content),
+            @ApiResponse(responseCode = "503", description = "Role index still loading or not kept for the caller's tenant, when selecting users by role",
+                    content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error",
+                    content = @Content)
+    })
+    @PostMapping("/roles/revoke")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<BulkRoleResultDTO>> revokeRoles(
+            @Parameter(description = "Users and the roles to revoke from them") @RequestBody BulkRoleChangeDTO change) {
+        return changeRoles(change, false);
+    }
+
+    private ResponseEntity<List<BulkRoleResultDTO>> changeRoles(BulkRoleChangeDTO change, boolean grant) {
+        Optional<Set<ERole>> roles = parseRoles(change.getRoles() == null ? null : new ArrayList<>(change.getRoles()));
+        if (roles.isEmpty() || roles.get().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Collection<Integer> userIds = new ArrayList<>();
+        if (change.getUserIds() != null) {
+            userIds.addAll(change.getUserIds());
+        }
+        if (change.getUsersWithRoles() != null) {
+            Optional<Set<ERole>> filter = parseRoles(new ArrayList<>(change.getUsersWithRoles()));
+            String match = change.getMatch() == null ? "all" : change.getMatch();
+            if (filter.isEmpty() || filter.get().isEmpty() || !(match.equals("all") || match.equals("any"))) {
+                return ResponseEntity.badRequest().build();
+            }
+            if (!roleMembershipService.isReady()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+            }
+            for (int id : roleMembershipService.memberIds(filter.get(), match.equals("all"))) {
+                userIds.add(id);
+            }
+        } else if (change.getUserIds() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (userIds.contains(null) || userIds.size() > MAX_BULK_USERS) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(grant
+                    ? roleAssignmentService.grantRoles(userIds, roles.get())
+                    : roleAssignmentService.revokeRoles(userIds, roles.get()));
+        } catch (Exception e) {
+            Sentry.captureException(e);
+            throw new GlobalException("Error " + (grant ? "granting" : "revoking") + " roles", e);
+        }
+    }
+
+    // Empty when a name is not a role; "ADMIN" and "ROLE_ADMIN" are the same role
+    private static Optional<Set<ERole>> parseRoles(List<String> names) {
+        Set<ERole> roles = EnumSet.noneOf(ERole.class);
+        if (names != null) {
+            for (String name : names) {
+                try {
+                    roles.add(ERole.valueOf(name.startsWith("ROLE_") ? name : "ROLE_" + name));
+                } catch (IllegalArgumentException e) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(roles);
+    }
+
     @Operation(summary = "Get user by ID", description = "Retrieve a specific user by their ID")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "User found",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = User.class))),
+            @ApiResponse(responseCode = "304", description = "Unchanged since the ETag in If-None-Match",
+                    content = @Content),
             @ApiResponse(responseCode = "404", description = "User not found",
                     content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error",
@@ -58,9 +272,16 @@ public class UserController {
     })
     @GetMapping("/{id}")
     public ResponseEntity<User> getUserById(
-            @Parameter(description = "ID of the user to be retrieved") @PathVariable int id) {
+            @Parameter(description = "ID of the user to be retrieved") @PathVariable int id,
+            WebRequest request) {
         try {
-            return ResponseEntity.ok(userService.getUserById(id));
+            // Only the version column is read to answer a matching If-None-Match
+            Optional<Long> version = userService.findUserVersion(id);
+            if (version.isPresent() && request.checkNotModified(etag(version.get()))) {
+                return null;
+            }
+            User user = userService.getUserById(id);
+            return ResponseEntity.ok().eTag(etag(user.getVersion())).body(user);
         } catch (Exception e) {
             Sentry.captureException(e);
             throw new GlobalException("Error retrieving user with id: " + id, e);
@@ -95,15 +316,36 @@ public class UserController {
                             schema = @Schema(implementation = User.class))),
             @ApiResponse(responseCode = "404", description = "User not found",
                     content = @Content),
+            @ApiResponse(responseCode = "412", description = "User changed since the ETag in If-Match",
+                    content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error",
                     content = @Content)
     })
     @PutMapping("/{id}")
     public ResponseEntity<User> updateUser(
             @Parameter(description = "ID of the user to be updated") @PathVariable int id,
-            @Parameter(description = "Updated user object") @RequestBody User user) {
+            @Parameter(description = "Updated user object") @RequestBody User user,
+            @Parameter(description = "ETag of the version being updated") @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            return ResponseEntity.ok(userService.updateUser(id, user));
+            Long expectedVersion = null;
+            if (ifMatch != null) {
+                // "*" only requires the user to exist; a weak or foreign tag can never match
+                List<ETag> etags = ETag.parse(ifMatch);
+                if (etags.size() != 1 || etags.get(0).weak()) {
+                    return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+                }
+                if (!etags.get(0).isWildcard()) {
+                    try {
+                        expectedVersion = Long.parseLong(etags.get(0).tag());
+                    } catch (NumberFormatException e) {
+                        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+                    }
+                }
+            }
+            User updated = userService.updateUser(id, user, expectedVersion);
+            return ResponseEntity.ok().eTag(etag(updated.getVersion())).body(updated);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
         } catch (Exception e) {
             Sentry.captureException(e);
             throw new GlobalException("Error updating user with id: " + id, e);
@@ -0,0 +1,7 @@
+package pharmacy.pharmacy.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import pharmacy.pharmacy.entity.JobCursor;
+
+public interface JobCursorRepository extends JpaRepository<JobCursor, String> {
+}
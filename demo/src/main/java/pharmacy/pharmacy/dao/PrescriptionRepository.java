@@ -0,0 +1,46 @@
+package pharmacy.pharmacy.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pharmacy.pharmacy.entity.Prescription;
+import pharmacy.pharmacy.entity.PrescriptionStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface PrescriptionRepository extends JpaRepository<Prescription, Long> {
+
+    List<Prescription> findByStatusIn(Collection<PrescriptionStatus> statuses);
+
+    List<Prescription> findByStatusAndLeaseExpiresAtBefore(PrescriptionStatus status, Instant now);
+
+    // The row decides who holds a prescription: a claim only takes it while it is still pending
+    @Modifying
+    @Query("update Prescription p set p.status = pharmacy.pharmacy.entity.PrescriptionStatus.LEASED, " +
+            "p.leasedTo = :pharmacistId, p.leaseExpiresAt = :expiresAt " +
+            "where p.id = :id and p.status = pharmacy.pharmacy.entity.PrescriptionStatus.PENDING")
+    int claim(@Param("id") long id, @Param("pharmacistId") int pharmacistId, @Param("expiresAt") Instant expiresAt);
+
+    @Modifying
+    @Query("update Prescription p set p.leaseExpiresAt = :expiresAt where p.id = :id " +
+            "and p.status = pharmacy.pharmacy.entity.PrescriptionStatus.LEASED and p.leasedTo = :pharmacistId")
+    int renewLease(@Param("id") long id, @Param("pharmacistId") int pharmacistId, @Param("expiresAt") Instant expiresAt);
+
+    // Leases renewed since they were found expired are left alone
+    @Modifying
+    @Query("update Prescription p set p.status = pharmacy.pharmacy.entity.PrescriptionStatus.PENDING, " +
+            "p.leasedTo = null, p.leaseExpiresAt = null where p.id in :ids " +
+            "and p.status = pharmacy.pharmacy.entity.PrescriptionStatus.LEASED and p.leaseExpiresAt < :now")
+    int releaseExpiredLeases(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update Prescription p set p.status = :status, p.verifiedBy = :pharmacistId, p.completedAt = :completedAt, " +
+            "p.notes = :notes, p.leasedTo = null, p.leaseExpiresAt = null where p.id = :id " +
+            "and p.status = pharmacy.pharmacy.entity.PrescriptionStatus.LEASED and p.leasedTo = :pharmacistId")
+    int markCompleted(@Param("id") long id, @Param("status") PrescriptionStatus status,
+                      @Param("pharmacistId") int pharmacistId, @Param("completedAt") Instant completedAt,
+                      @Param("notes") String notes);
+}
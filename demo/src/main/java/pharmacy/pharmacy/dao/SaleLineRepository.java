@@ -0,0 +1,34 @@
+package pharmacy.pharmacy.dao;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pharmacy.pharmacy.entity.SaleLine;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SaleLineRepository extends JpaRepository<SaleLine, Long> {
+
+    interface DailySales {
+        String getSku();
+
+        int getBranchId();
+
+        LocalDate getDay();
+
+        long getQuantity();
+    }
+
+    @Query("select s.sku as sku, s.branchId as branchId, cast(s.soldAt as LocalDate) as day, sum(s.quantity) as quantity " +
+            "from SaleLine s where s.soldAt >= :since and s.id <= :upToId " +
+            "group by s.sku, s.branchId, cast(s.soldAt as LocalDate)")
+    List<DailySales> sumDailySalesSince(@Param("since") LocalDateTime since, @Param("upToId") long upToId);
+
+    @Query("select coalesce(max(s.id), 0) from SaleLine s")
+    long findMaxId();
+
+    List<SaleLine> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+}
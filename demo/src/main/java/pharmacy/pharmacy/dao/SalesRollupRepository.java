@@ -0,0 +1,8 @@
+package pharmacy.pharmacy.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import pharmacy.pharmacy.entity.SalesRollup;
+import pharmacy.pharmacy.entity.SalesRollupId;
+
+public interface SalesRollupRepository extends JpaRepository<SalesRollup, SalesRollupId> {
+}
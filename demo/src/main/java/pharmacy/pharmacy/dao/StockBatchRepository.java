@@ -0,0 +1,50 @@
+package pharmacy.pharmacy.dao;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pharmacy.pharmacy.entity.ExpiryStage;
+import pharmacy.pharmacy.entity.StockBatch;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+public interface StockBatchRepository extends JpaRepository<StockBatch, Long> {
+
+    interface StockLevel {
+        String getSku();
+
+        int getBranchId();
+
+        long getQuantity();
+    }
+
+    List<StockBatch> findByExpiryStageNotAndQuantityGreaterThan(ExpiryStage stage, int quantity);
+
+    // Lots a sale may draw from, first-expiry-first-out; they stay locked until the sale commits,
+    // and concurrent sales take them in the same order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from StockBatch b where b.sku = :sku and b.branchId = :branchId and b.quantity > 0 " +
+            "and b.expiryStage <> pharmacy.pharmacy.entity.ExpiryStage.EXPIRED and b.expiryDate >= :today " +
+            "order by b.expiryDate, b.id")
+    List<StockBatch> lockSellableBatches(@Param("sku") String sku, @Param("branchId") int branchId,
+                                         @Param("today") LocalDate today);
+
+    @Query("select b.sku as sku, b.branchId as branchId, sum(b.quantity) as quantity from StockBatch b " +
+            "where b.expiryStage <> pharmacy.pharmacy.entity.ExpiryStage.EXPIRED group by b.sku, b.branchId")
+    List<StockLevel> sumStockLevels();
+
+    @Query("select b.sku as sku, b.branchId as branchId, sum(b.quantity) as quantity from StockBatch b " +
+            "where b.sku in :skus and b.expiryStage <> pharmacy.pharmacy.entity.ExpiryStage.EXPIRED group by b.sku, b.branchId")
+    List<StockLevel> sumStockLevelsForSkus(@Param("skus") Collection<String> skus);
+
+    // Only while the batch still has the expiry date the transition was computed from
+    @Modifying
+    @Query("update StockBatch b set b.expiryStage = :stage where b.id = :id and b.expiryDate = :expiryDate")
+    int updateExpiryStage(@Param("id") long id, @Param("expiryDate") LocalDate expiryDate,
+                          @Param("stage") ExpiryStage stage);
+}
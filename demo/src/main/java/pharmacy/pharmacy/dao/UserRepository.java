@@ -1,22 +1,128 @@
 package pharmacy.pharmacy.dao;
 
+import org.springframework.data.domain.Limit;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import pharmacy.pharmacy.entity.ERole;
 import pharmacy.pharmacy.entity.User;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Integer> {
 
+    interface CollectionVersion {
+        long getCount();
+
+        long getVersionSum();
+
+        int getMaxId();
+    }
+
+    interface SearchRow {
+        int getId();
+
+        String getUsername();
+
+        String getEmail();
+    }
+
+    interface RoleRow {
+        int getUserId();
+
+        ERole getRole();
+    }
+
     Optional<User> findByUsername(String username);
 
-    Boolean existsByUsername(String username);
+    // Soft-deleted users hold on to their username and email until they are purged
+    @Query(value = "select count(*) from users u where u.username = :username", nativeQuery = true)
+    long countIncludingDeletedByUsername(@Param("username") String username);
+
+    @Query(value = "select count(*) from users u where u.email = :email", nativeQuery = true)
+    long countIncludingDeletedByEmail(@Param("email") String email);
+
+    default Boolean existsByUsername(String username) {
+        return countIncludingDeletedByUsername(username) > 0;
+    }
 
-    Boolean existsByEmail(String email);
+    default Boolean existsByEmail(String email) {
+        return countIncludingDeletedByEmail(email) > 0;
+    }
 
     Optional<User> findByEmail(String email);
 
-    List<User> findByRoles_Name(String roleName);
-}
\ No newline at end of file
+    List<User> findByRoles_Name(ERole roleName);
+
+    @Query("select u.username from User u where u.id = :id")
+    Optional<String> findUsernameById(@Param("id") int id);
+
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Long> findVersionById(@Param("id") int id);
+
+    // Any insert, update or delete changes at least one of the three
+    @Query("select count(u) as count, coalesce(sum(u.version), 0) as versionSum, coalesce(max(u.id), 0) as maxId from User u")
+    CollectionVersion findCollectionVersion();
+
+    // Keyset pages for loading the search index without hydrating entities and their roles
+    @Query("select u.id as id, u.username as username, u.email as email from User u where u.id > :after order by u.id")
+    List<SearchRow> findSearchRowsAfter(@Param("after") int after, Limit limit);
+
+    @Query("select u.id as userId, r.name as role from User u join u.roles r where u.id > :after and u.id <= :upTo")
+    List<RoleRow> findRoleRowsBetween(@Param("after") int after, @Param("upTo") int upTo);
+
+    @Query("select u.id as id, u.username as username, u.email as email from User u where u.id in :ids")
+    List<SearchRow> findSearchRowsByIds(@Param("ids") Collection<Integer> ids);
+
+    @Query("select u.id as userId, r.name as role from User u join u.roles r where u.id in :ids")
+    List<RoleRow> findRoleRowsByIds(@Param("ids") Collection<Integer> ids);
+
+    // Holds the users of a bulk role change until it commits; the rows are taken in id order
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u.id from User u where u.id in :ids order by u.id")
+    List<Integer> lockExistingIds(@Param("ids") Collection<Integer> ids);
+
+    // Memberships a user already holds are left alone rather than failing on the primary key
+    @Modifying
+    @Query(value = "insert into user_roles (user_id, role_id) select u.id, r.id from users u join roles r on r.name in (:roles) " +
+            "where u.id in (:ids) and not exists (select 1 from user_roles ur where ur.user_id = u.id and ur.role_id = r.id)",
+            nativeQuery = true)
+    int insertMemberships(@Param("ids") Collection<Integer> ids, @Param("roles") Collection<String> roles);
+
+    @Modifying
+    @Query(value = "delete from user_roles where user_id in (:ids) and role_id in (select r.id from roles r where r.name in (:roles))",
+            nativeQuery = true)
+    int deleteMemberships(@Param("ids") Collection<Integer> ids, @Param("roles") Collection<String> roles);
+
+    // What Hibernate does for a changed role collection, so the ETags move with set-based changes too
+    @Modifying
+    @Query("update User u set u.version = u.version + 1 where u.id in :ids")
+    int incrementVersions(@Param("ids") Collection<Integer> ids);
+
+    // The version moves as well, so cached copies and ETags of the user go stale
+    @Modifying
+    @Query("update User u set u.deletedAt = :at, u.version = u.version + 1 where u.id = :id and u.deletedAt is null")
+    int markDeleted(@Param("id") int id, @Param("at") Instant at);
+
+    // Keyset pages of users soft-deleted before the cutoff; those still named on prescriptions are left in place
+    @Query(value = "select u.id from users u where u.deleted_at < :cutoff and u.id > :after " +
+            "and not exists (select 1 from prescriptions p where p.customer_id = u.id) order by u.id limit :limit",
+            nativeQuery = true)
+    List<Integer> findPurgeableIdsAfter(@Param("after") int after, @Param("cutoff") Instant cutoff, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "delete from user_roles where user_id in (:ids)", nativeQuery = true)
+    int deleteAllMemberships(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query(value = "delete from users where id in (:ids) and deleted_at is not null", nativeQuery = true)
+    int purgeDeleted(@Param("ids") Collection<Integer> ids);
+}
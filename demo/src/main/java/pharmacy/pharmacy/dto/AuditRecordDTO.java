@@ -0,0 +1,31 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.AuditAction;
+
+import java.time.Instant;
+
+public class AuditRecordDTO {
+    private Instant timestamp;
+    private AuditAction action;
+    private int targetUserId;
+    private String actor;
+    private String detail;
+
+    public AuditRecordDTO(long timestampMillis, AuditAction action, int targetUserId, String actor, String detail) {
+        this.timestamp = Instant.ofEpochMilli(timestampMillis);
+        this.action = action;
+        this.targetUserId = targetUserId;
+        this.actor = actor;
+        this.detail = detail;
+    }
+
+    public Instant getTimestamp() {return timestamp;}
+
+    public AuditAction getAction() {return action;}
+
+    public int getTargetUserId() {return targetUserId;}
+
+    public String getActor() {return actor;}
+
+    public String getDetail() {return detail;}
+}
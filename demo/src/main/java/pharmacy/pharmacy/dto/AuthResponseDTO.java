@@ -5,10 +5,20 @@ public class AuthResponseDTO {
 
     private String tokenType = "Bearer ";
 
+    private String refreshToken;
+
+    private long expiresIn;
+
     public AuthResponseDTO(String accessToken) {
         this.accessToken = accessToken;
     }
 
+    public AuthResponseDTO(String accessToken, String refreshToken, long expiresIn) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
+    }
+
     public String getAccessToken() {
         return accessToken;
     }
@@ -24,4 +34,21 @@ public class AuthResponseDTO {
     public void setTokenType(String tokenType) {
         this.tokenType = tokenType;
     }
-}
\ No newline at end of file
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    // Seconds until the access token expires
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    public void setExpiresIn(long expiresIn) {
+        this.expiresIn = expiresIn;
+    }
+}
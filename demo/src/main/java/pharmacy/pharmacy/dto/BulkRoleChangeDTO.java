@@ -0,0 +1,31 @@
+package pharmacy.pharmacy.dto;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The users to change, given by id or as the holders of {@code usersWithRoles} (all of
+ * them, or any when {@code match} is "any"), and the roles to grant or revoke.
+ */
+public class BulkRoleChangeDTO {
+    private List<Integer> userIds;
+    private Set<String> usersWithRoles;
+    private String match = "all";
+    private Set<String> roles;
+
+    public List<Integer> getUserIds() {return userIds;}
+
+    public void setUserIds(List<Integer> userIds) {this.userIds = userIds;}
+
+    public Set<String> getUsersWithRoles() {return usersWithRoles;}
+
+    public void setUsersWithRoles(Set<String> usersWithRoles) {this.usersWithRoles = usersWithRoles;}
+
+    public String getMatch() {return match;}
+
+    public void setMatch(String match) {this.match = match;}
+
+    public Set<String> getRoles() {return roles;}
+
+    public void setRoles(Set<String> roles) {this.roles = roles;}
+}
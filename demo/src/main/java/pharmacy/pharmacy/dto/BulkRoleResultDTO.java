@@ -0,0 +1,26 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.ERole;
+
+import java.util.Set;
+
+public class BulkRoleResultDTO {
+
+    public enum Status {CHANGED, UNCHANGED, NOT_FOUND}
+
+    private int userId;
+    private Status status;
+    private Set<ERole> changedRoles;
+
+    public BulkRoleResultDTO(int userId, Status status, Set<ERole> changedRoles) {
+        this.userId = userId;
+        this.status = status;
+        this.changedRoles = changedRoles;
+    }
+
+    public int getUserId() {return userId;}
+
+    public Status getStatus() {return status;}
+
+    public Set<ERole> getChangedRoles() {return changedRoles;}
+}
@@ -0,0 +1,36 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.ExpiryStage;
+
+import java.time.LocalDate;
+
+public class ExpiryEventDTO {
+    private long batchId;
+    private String sku;
+    private int branchId;
+    private String lotNumber;
+    private LocalDate expiryDate;
+    private ExpiryStage stage;
+
+    public ExpiryEventDTO(long batchId, String sku, int branchId, String lotNumber,
+                          LocalDate expiryDate, ExpiryStage stage) {
+        this.batchId = batchId;
+        this.sku = sku;
+        this.branchId = branchId;
+        this.lotNumber = lotNumber;
+        this.expiryDate = expiryDate;
+        this.stage = stage;
+    }
+
+    public long getBatchId() {return batchId;}
+
+    public String getSku() {return sku;}
+
+    public int getBranchId() {return branchId;}
+
+    public String getLotNumber() {return lotNumber;}
+
+    public LocalDate getExpiryDate() {return expiryDate;}
+
+    public ExpiryStage getStage() {return stage;}
+}
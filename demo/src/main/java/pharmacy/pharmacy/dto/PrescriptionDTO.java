@@ -0,0 +1,61 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.Prescription;
+import pharmacy.pharmacy.entity.PrescriptionStatus;
+import pharmacy.pharmacy.entity.PrescriptionUrgency;
+
+import java.time.Instant;
+
+public class PrescriptionDTO {
+    private long id;
+    private int customerId;
+    private String medication;
+    private PrescriptionUrgency urgency;
+    private PrescriptionStatus status;
+    private Instant submittedAt;
+    private Instant slaDeadline;
+    private Integer leasedTo;
+    private Instant leaseExpiresAt;
+    private Integer verifiedBy;
+    private Instant completedAt;
+    private String notes;
+
+    public PrescriptionDTO(Prescription prescription) {
+        this.id = prescription.getId();
+        this.customerId = prescription.getCustomer().getId();
+        this.medication = prescription.getMedication();
+        this.urgency = prescription.getUrgency();
+        this.status = prescription.getStatus();
+        this.submittedAt = prescription.getSubmittedAt();
+        this.slaDeadline = prescription.getSlaDeadline();
+        this.leasedTo = prescription.getLeasedTo();
+        this.leaseExpiresAt = prescription.getLeaseExpiresAt();
+        this.verifiedBy = prescription.getVerifiedBy();
+        this.completedAt = prescription.getCompletedAt();
+        this.notes = prescription.getNotes();
+    }
+
+    public long getId() {return id;}
+
+    public int getCustomerId() {return customerId;}
+
+    public String getMedication() {return medication;}
+
+    public PrescriptionUrgency getUrgency() {return urgency;}
+
+    public PrescriptionStatus getStatus() {return status;}
+
+    public Instant getSubmittedAt() {return submittedAt;}
+
+    public Instant getSlaDeadline() {return slaDeadline;}
+
+    public Integer getLeasedTo() {return leasedTo;}
+
+    public Instant getLeaseExpiresAt() {return leaseExpiresAt;}
+
+    public Integer getVerifiedBy() {return verifiedBy;}
+
+    public Instant getCompletedAt() {return completedAt;}
+
+    public String getNotes() {return notes;}
+}
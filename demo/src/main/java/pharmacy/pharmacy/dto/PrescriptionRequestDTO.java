@@ -0,0 +1,21 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.PrescriptionUrgency;
+
+public class PrescriptionRequestDTO {
+    private Integer customerId;
+    private String medication;
+    private PrescriptionUrgency urgency;
+
+    public Integer getCustomerId() {return customerId;}
+
+    public void setCustomerId(Integer customerId) {this.customerId = customerId;}
+
+    public String getMedication() {return medication;}
+
+    public void setMedication(String medication) {this.medication = medication;}
+
+    public PrescriptionUrgency getUrgency() {return urgency;}
+
+    public void setUrgency(PrescriptionUrgency urgency) {this.urgency = urgency;}
+}
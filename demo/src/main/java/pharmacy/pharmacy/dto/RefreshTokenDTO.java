@@ -0,0 +1,13 @@
+package pharmacy.pharmacy.dto;
+
+public class RefreshTokenDTO {
+    private String refreshToken;
+
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
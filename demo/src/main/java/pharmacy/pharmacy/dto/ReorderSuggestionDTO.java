@@ -0,0 +1,32 @@
+package pharmacy.pharmacy.dto;
+
+public class ReorderSuggestionDTO {
+    private String sku;
+    private int branchId;
+    private long onHand;
+    private double dailyDemand;
+    private double reorderPoint;
+    private long suggestedQuantity;
+
+    public ReorderSuggestionDTO(String sku, int branchId, long onHand, double dailyDemand,
+                                double reorderPoint, long suggestedQuantity) {
+        this.sku = sku;
+        this.branchId = branchId;
+        this.onHand = onHand;
+        this.dailyDemand = dailyDemand;
+        this.reorderPoint = reorderPoint;
+        this.suggestedQuantity = suggestedQuantity;
+    }
+
+    public String getSku() {return sku;}
+
+    public int getBranchId() {return branchId;}
+
+    public long getOnHand() {return onHand;}
+
+    public double getDailyDemand() {return dailyDemand;}
+
+    public double getReorderPoint() {return reorderPoint;}
+
+    public long getSuggestedQuantity() {return suggestedQuantity;}
+}
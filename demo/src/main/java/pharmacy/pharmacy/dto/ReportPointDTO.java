@@ -0,0 +1,26 @@
+package pharmacy.pharmacy.dto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public class ReportPointDTO {
+    private String sku;
+    private Instant bucketStart;
+    private long quantity;
+    private BigDecimal revenue;
+
+    public ReportPointDTO(String sku, long bucketStartEpochSecond, long quantity, long revenueCents) {
+        this.sku = sku;
+        this.bucketStart = Instant.ofEpochSecond(bucketStartEpochSecond);
+        this.quantity = quantity;
+        this.revenue = BigDecimal.valueOf(revenueCents, 2);
+    }
+
+    public String getSku() {return sku;}
+
+    public Instant getBucketStart() {return bucketStart;}
+
+    public long getQuantity() {return quantity;}
+
+    public BigDecimal getRevenue() {return revenue;}
+}
@@ -0,0 +1,37 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.entity.User;
+
+import java.util.List;
+import java.util.Set;
+
+public class RoleMembersDTO {
+    private Set<ERole> roles;
+    private String match;
+    private int page;
+    private int size;
+    private long total;
+    private List<User> users;
+
+    public RoleMembersDTO(Set<ERole> roles, String match, int page, int size, long total, List<User> users) {
+        this.roles = roles;
+        this.match = match;
+        this.page = page;
+        this.size = size;
+        this.total = total;
+        this.users = users;
+    }
+
+    public Set<ERole> getRoles() {return roles;}
+
+    public String getMatch() {return match;}
+
+    public int getPage() {return page;}
+
+    public int getSize() {return size;}
+
+    public long getTotal() {return total;}
+
+    public List<User> getUsers() {return users;}
+}
@@ -0,0 +1,26 @@
+package pharmacy.pharmacy.dto;
+
+import java.math.BigDecimal;
+
+public class SaleDTO {
+    private String sku;
+    private int branchId;
+    private int quantity;
+    private BigDecimal unitPrice;
+
+    public String getSku() {return sku;}
+
+    public void setSku(String sku) {this.sku = sku;}
+
+    public int getBranchId() {return branchId;}
+
+    public void setBranchId(int branchId) {this.branchId = branchId;}
+
+    public int getQuantity() {return quantity;}
+
+    public void setQuantity(int quantity) {this.quantity = quantity;}
+
+    public BigDecimal getUnitPrice() {return unitPrice;}
+
+    public void setUnitPrice(BigDecimal unitPrice) {this.unitPrice = unitPrice;}
+}
@@ -0,0 +1,31 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.ERole;
+
+import java.util.Set;
+
+public class UserSearchResultDTO {
+    private int id;
+    private String username;
+    private String email;
+    private Set<ERole> roles;
+    private String matchedOn;
+
+    public UserSearchResultDTO(int id, String username, String email, Set<ERole> roles, String matchedOn) {
+        this.id = id;
+        this.username = username;
+        this.email = email;
+        this.roles = roles;
+        this.matchedOn = matchedOn;
+    }
+
+    public int getId() {return id;}
+
+    public String getUsername() {return username;}
+
+    public String getEmail() {return email;}
+
+    public Set<ERole> getRoles() {return roles;}
+
+    public String getMatchedOn() {return matchedOn;}
+}
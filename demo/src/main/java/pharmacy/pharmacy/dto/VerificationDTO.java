@@ -0,0 +1,14 @@
+package pharmacy.pharmacy.dto;
+
+public class VerificationDTO {
+    private boolean approved;
+    private String notes;
+
+    public boolean isApproved() {return approved;}
+
+    public void setApproved(boolean approved) {this.approved = approved;}
+
+    public String getNotes() {return notes;}
+
+    public void setNotes(String notes) {this.notes = notes;}
+}
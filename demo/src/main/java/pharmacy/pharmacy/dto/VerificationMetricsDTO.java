@@ -0,0 +1,25 @@
+package pharmacy.pharmacy.dto;
+
+import pharmacy.pharmacy.entity.PrescriptionUrgency;
+
+public class VerificationMetricsDTO {
+    private PrescriptionUrgency urgency;
+    private long count;
+    private double p50Millis;
+    private double p99Millis;
+
+    public VerificationMetricsDTO(PrescriptionUrgency urgency, long count, double p50Millis, double p99Millis) {
+        this.urgency = urgency;
+        this.count = count;
+        this.p50Millis = p50Millis;
+        this.p99Millis = p99Millis;
+    }
+
+    public PrescriptionUrgency getUrgency() {return urgency;}
+
+    public long getCount() {return count;}
+
+    public double getP50Millis() {return p50Millis;}
+
+    public double getP99Millis() {return p99Millis;}
+}
@@ -0,0 +1,10 @@
+package pharmacy.pharmacy.entity;
+
+// Persisted by ordinal in the audit journal: append new values, never reorder
+public enum AuditAction {
+    USER_CREATED,
+    USER_UPDATED,
+    USER_DELETED,
+    ROLE_ASSIGNED,
+    ROLE_REVOKED
+}
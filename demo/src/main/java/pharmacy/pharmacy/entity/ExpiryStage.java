@@ -0,0 +1,7 @@
+package pharmacy.pharmacy.entity;
+
+public enum ExpiryStage {
+    ACTIVE,
+    NEAR_EXPIRY,
+    EXPIRED
+}
@@ -0,0 +1,20 @@
+package pharmacy.pharmacy.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Durable high-water mark for background jobs that consume a table in id order
+@Entity
+@Table(name = "job_cursors")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobCursor {
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    private long position;
+}
@@ -0,0 +1,52 @@
+package pharmacy.pharmacy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "prescriptions")
+@Data
+@NoArgsConstructor
+public class Prescription {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "customer_id", nullable = false)
+    private User customer;
+
+    @Column(nullable = false)
+    private String medication;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private PrescriptionUrgency urgency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private PrescriptionStatus status = PrescriptionStatus.PENDING;
+
+    @Column(name = "submitted_at", nullable = false)
+    private Instant submittedAt;
+
+    @Column(name = "sla_deadline", nullable = false)
+    private Instant slaDeadline;
+
+    @Column(name = "leased_to")
+    private Integer leasedTo;
+
+    @Column(name = "lease_expires_at")
+    private Instant leaseExpiresAt;
+
+    @Column(name = "verified_by")
+    private Integer verifiedBy;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    private String notes;
+}
@@ -0,0 +1,8 @@
+package pharmacy.pharmacy.entity;
+
+public enum PrescriptionStatus {
+    PENDING,
+    LEASED,
+    VERIFIED,
+    REJECTED
+}
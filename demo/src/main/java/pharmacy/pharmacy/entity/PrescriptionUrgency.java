@@ -0,0 +1,9 @@
+package pharmacy.pharmacy.entity;
+
+// Declared most urgent first; the ordinal doubles as the scheduling rank
+public enum PrescriptionUrgency {
+    STAT,
+    URGENT,
+    ROUTINE,
+    REFILL
+}
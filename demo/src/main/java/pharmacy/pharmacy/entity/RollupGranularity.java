@@ -0,0 +1,24 @@
+package pharmacy.pharmacy.entity;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+public enum RollupGranularity {
+    HOUR,
+    DAY,
+    MONTH;
+
+    // Start of the bucket containing the given instant, in UTC epoch seconds
+    public long truncate(long epochSecond) {
+        switch (this) {
+            case HOUR:
+                return Math.floorDiv(epochSecond, 3600L) * 3600L;
+            case DAY:
+                return Math.floorDiv(epochSecond, 86400L) * 86400L;
+            default:
+                LocalDate date = Instant.ofEpochSecond(epochSecond).atOffset(ZoneOffset.UTC).toLocalDate();
+                return date.withDayOfMonth(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package pharmacy.pharmacy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "sale_lines")
+@Data
+@NoArgsConstructor
+public class SaleLine {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String sku;
+
+    @Column(name = "branch_id", nullable = false)
+    private int branchId;
+
+    private int quantity;
+
+    @Column(name = "unit_price", nullable = false, precision = 12, scale = 2)
+    private BigDecimal unitPrice;
+
+    @Column(name = "sold_at", nullable = false)
+    private LocalDateTime soldAt;
+}
@@ -0,0 +1,19 @@
+package pharmacy.pharmacy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "sales_rollups")
+@Data
+@NoArgsConstructor
+public class SalesRollup {
+    @EmbeddedId
+    private SalesRollupId id;
+
+    private long quantity;
+
+    @Column(name = "revenue_cents")
+    private long revenueCents;
+}
@@ -0,0 +1,27 @@
+package pharmacy.pharmacy.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesRollupId implements Serializable {
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private RollupGranularity granularity;
+
+    @Column(name = "bucket_start")
+    private long bucketStart;
+
+    @Column(length = 64)
+    private String sku;
+
+    @Column(name = "branch_id")
+    private int branchId;
+}
@@ -0,0 +1,36 @@
+package pharmacy.pharmacy.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Entity
+@Table(name = "stock_batches")
+@Data
+@NoArgsConstructor
+public class StockBatch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String sku;
+
+    @Column(name = "branch_id", nullable = false)
+    private int branchId;
+
+    @Column(name = "lot_number", nullable = false, length = 64)
+    private String lotNumber;
+
+    private int quantity;
+
+    @Column(name = "expiry_date", nullable = false)
+    private LocalDate expiryDate;
+
+    // Last expiry notification already sent, so a restart doesn't re-announce it
+    @Enumerated(EnumType.STRING)
+    @Column(name = "expiry_stage", nullable = false, length = 20)
+    private ExpiryStage expiryStage = ExpiryStage.ACTIVE;
+}
@@ -1,14 +1,19 @@
 package pharmacy.pharmacy.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.SQLRestriction;
 
+import java.time.Instant;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
 @Table(name = "users")
+// Soft-deleted users are invisible to every entity query; only native SQL still sees them
+@SQLRestriction("deleted_at is null")
 @Data
 @NoArgsConstructor
 public class User {
@@ -19,6 +24,13 @@ public class User {
     private String email;
     private String password;
 
+    // Also bumped by Hibernate when the role collection changes; the basis of the user ETags
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    @JsonIgnore
+    private Instant deletedAt;
 
     @ManyToMany(fetch = FetchType.EAGER)
     @JoinTable(
@@ -17,6 +17,10 @@ public class UserRole {
     @Column(length = 20)
     private ERole name;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
     public UserRole(ERole name) {
         this.name = name;
     }
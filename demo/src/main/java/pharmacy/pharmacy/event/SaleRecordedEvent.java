@@ -0,0 +1,7 @@
+package pharmacy.pharmacy.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public record SaleRecordedEvent(long saleId, String sku, int branchId, int quantity, BigDecimal unitPrice, LocalDateTime soldAt) {
+}
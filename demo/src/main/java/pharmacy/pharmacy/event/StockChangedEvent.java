@@ -0,0 +1,4 @@
+package pharmacy.pharmacy.event;
+
+public record StockChangedEvent(String sku, int branchId) {
+}
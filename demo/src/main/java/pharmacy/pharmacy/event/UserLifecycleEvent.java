@@ -0,0 +1,22 @@
+package pharmacy.pharmacy.event;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+/**
+ * A change to a user, as relayed from the outbox once its transaction committed. Delivery is
+ * at least once, so consumers drop ids they have already seen; a user's events arrive in the
+ * order they were committed. Ids and user ids are per tenant, since each tenant's outbox is in
+ * its own database. {@code data} is a JSON object.
+ */
+public record UserLifecycleEvent(long id, String tenant, Type type, int userId, long occurredAt,
+                                 @JsonRawValue String data) {
+
+    // Stored by name in user_outbox
+    public enum Type {
+        USER_CREATED,
+        USER_UPDATED,
+        USER_DELETED,
+        ROLE_ASSIGNED,
+        ROLE_REVOKED
+    }
+}
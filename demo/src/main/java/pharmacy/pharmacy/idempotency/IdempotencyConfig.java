@@ -0,0 +1,71 @@
+package pharmacy.pharmacy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration(proxyBeanMethods = false)
+public class IdempotencyConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyConfig.class);
+
+    /**
+     * {@code idempotency.store=jdbc} keeps responses in the database as well, for retries that
+     * reach another instance; the default keeps them in this JVM only.
+     */
+    @Bean
+    public IdempotencyStore idempotencyStore(JdbcTemplate jdbcTemplate,
+                                             @Value("${idempotency.store:memory}") String type,
+                                             @Value("${idempotency.capacity:10000}") int capacity) {
+        InMemoryIdempotencyStore memory = new InMemoryIdempotencyStore(capacity);
+        return "jdbc".equalsIgnoreCase(type) ? new JdbcIdempotencyStore(memory, jdbcTemplate) : memory;
+    }
+
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            IdempotencyStore store, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${idempotency.paths:/api/auth/register,/api/users/**}") List<String> paths,
+            @Value("${idempotency.ttl:PT24H}") Duration ttl,
+            @Value("${idempotency.wait-timeout:PT10S}") Duration waitTimeout,
+            @Value("${idempotency.max-body-bytes:65536}") int maxBodyBytes,
+            @Value("${idempotency.max-request-bytes:65536}") int maxRequestBytes) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(store, objectMapper, meterRegistry, paths, ttl, waitTimeout, maxBodyBytes,
+                        maxRequestBytes));
+        // After the security chain (-100) so keys are scoped to the authenticated caller
+        registration.setOrder(0);
+        return registration;
+    }
+
+    @Bean
+    public ExpiredKeyPurger expiredIdempotencyKeyPurger(IdempotencyStore store) {
+        return new ExpiredKeyPurger(store);
+    }
+
+    static class ExpiredKeyPurger {
+
+        private final IdempotencyStore store;
+
+        ExpiredKeyPurger(IdempotencyStore store) {
+            this.store = store;
+        }
+
+        @Scheduled(fixedDelayString = "${idempotency.purge-ms:300000}")
+        public void purge() {
+            int removed = store.purgeExpired();
+            if (removed > 0) {
+                log.debug("Purged {} expired idempotency keys", removed);
+            }
+        }
+    }
+}
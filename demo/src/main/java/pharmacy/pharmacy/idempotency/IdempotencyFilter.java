@@ -0,0 +1,297 @@
+package pharmacy.pharmacy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import pharmacy.pharmacy.exception.GlobalExceptionHandler;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Replays the stored response when a mutating request is retried with the same
+ * {@code Idempotency-Key}, instead of running the handler again. Keys are scoped to the caller,
+ * and a key reused for a different method, path or body is rejected with 422. A duplicate that
+ * arrives while the first request is still running waits for it and gets the same response.
+ * Server errors are not stored, so the client can retry them with the same key. The request
+ * body is held in memory for the fingerprint, so bodies over {@code maxRequestBytes} are
+ * refused with 413.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> MUTATING = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final List<String> paths;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final int maxBodyBytes;
+    private final int maxRequestBytes;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyFilter(IdempotencyStore store, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                             List<String> paths, Duration ttl, Duration waitTimeout, int maxBodyBytes,
+                             int maxRequestBytes) {
+        this.store = store;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.paths = paths;
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.maxBodyBytes = maxBodyBytes;
+        this.maxRequestBytes = maxRequestBytes;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(HEADER) == null || !MUTATING.contains(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(HEADER);
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            writeError(request, response, HttpStatus.BAD_REQUEST,
+                    HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+
+        // Content-Length can be absent or wrong, so what is actually read is bounded too
+        byte[] body = request.getContentLengthLong() > maxRequestBytes
+                ? null
+                : request.getInputStream().readNBytes(maxRequestBytes + 1);
+        if (body == null || body.length > maxRequestBytes) {
+            count("too_large");
+            writeError(request, response, HttpStatus.PAYLOAD_TOO_LARGE,
+                    "A request with an " + HEADER + " may carry at most " + maxRequestBytes + " bytes");
+            return;
+        }
+
+        CachedBodyRequest cachedRequest = new CachedBodyRequest(request, body);
+        String key = sha256(caller() + "\n" + idempotencyKey);
+        String fingerprint = sha256(request.getMethod() + " " + request.getRequestURI() + "\n",
+                cachedRequest.body);
+
+        while (true) {
+            Optional<StoredResponse> stored = store.find(key);
+            if (stored.isPresent()) {
+                replay(request, response, stored.get(), fingerprint, "replayed");
+                return;
+            }
+
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+            if (running == null) {
+                execute(cachedRequest, response, filterChain, key, fingerprint, mine);
+                return;
+            }
+
+            StoredResponse result;
+            try {
+                result = running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                count("in_progress");
+                writeError(request, response, HttpStatus.CONFLICT,
+                        "A request with this " + HEADER + " is still being processed");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(e);
+            } catch (ExecutionException e) {
+                result = null;
+            }
+            if (result != null) {
+                replay(request, response, result, fingerprint, "coalesced");
+                return;
+            }
+            // The first attempt failed without a storable response; take our own turn
+        }
+    }
+
+    private void execute(CachedBodyRequest request, HttpServletResponse response, FilterChain filterChain,
+                         String key, String fingerprint, CompletableFuture<StoredResponse> result)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        StoredResponse stored = null;
+        try {
+            filterChain.doFilter(request, wrapper);
+            stored = capture(wrapper, fingerprint);
+            if (stored != null) {
+                store.put(key, stored);
+            }
+            count("executed");
+        } finally {
+            // Stored before the in-flight entry goes, so a newcomer always finds one of them
+            result.complete(stored);
+            inFlight.remove(key, result);
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private StoredResponse capture(ContentCachingResponseWrapper wrapper, String fingerprint) {
+        int status = wrapper.getStatus();
+        byte[] body = wrapper.getContentAsByteArray();
+        if (status >= 500 || body.length > maxBodyBytes) {
+            return null;
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : StoredResponse.REPLAYED_HEADERS) {
+            String value = wrapper.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return new StoredResponse(fingerprint, status, wrapper.getContentType(), headers, body,
+                System.currentTimeMillis() + ttl.toMillis());
+    }
+
+    private void replay(HttpServletRequest request, HttpServletResponse response, StoredResponse stored,
+                        String fingerprint, String outcome) throws IOException {
+        if (!stored.fingerprint().equals(fingerprint)) {
+            count("mismatch");
+            writeError(request, response, HttpStatus.UNPROCESSABLE_ENTITY,
+                    HEADER + " was already used for a different request");
+            return;
+        }
+        count(outcome);
+        response.setStatus(stored.status());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.contentType() != null) {
+            response.setContentType(stored.contentType());
+        }
+        stored.headers().forEach(response::setHeader);
+        response.setContentLength(stored.body().length);
+        response.getOutputStream().write(stored.body());
+    }
+
+    private void writeError(HttpServletRequest request, HttpServletResponse response, HttpStatus status,
+                            String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new GlobalExceptionHandler.ErrorResponse(
+                LocalDateTime.now(), message, "uri=" + request.getRequestURI(), status.value()));
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("http.idempotency", "outcome", outcome).increment();
+    }
+
+    // Usernames are only unique within a tenant
+    private static String caller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String caller = authentication == null || authentication instanceof AnonymousAuthenticationToken
+                ? "anonymous"
+                : "user:" + authentication.getName();
+        return TenantContext.isDefault() ? caller : caller + "@" + TenantContext.current();
+    }
+
+    private static String sha256(String text, byte[]... extra) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            for (byte[] bytes : extra) {
+                digest.update(bytes);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The body has to be read up front for the fingerprint, so the handler reads it again from here.
+     */
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+    }
+}
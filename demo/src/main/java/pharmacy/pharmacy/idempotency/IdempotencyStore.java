@@ -0,0 +1,15 @@
+package pharmacy.pharmacy.idempotency;
+
+import java.util.Optional;
+
+public interface IdempotencyStore {
+
+    Optional<StoredResponse> find(String key);
+
+    void put(String key, StoredResponse response);
+
+    /**
+     * Drops expired entries and returns how many were removed.
+     */
+    int purgeExpired();
+}
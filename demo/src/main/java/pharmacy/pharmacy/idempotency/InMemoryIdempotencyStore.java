@@ -0,0 +1,63 @@
+package pharmacy.pharmacy.idempotency;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps responses in insertion order. Every entry gets the same TTL, so the oldest entry is
+ * always the next to expire and both expiry and the size bound only ever trim the head.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final int capacity;
+    private final LinkedHashMap<String, StoredResponse> entries = new LinkedHashMap<>();
+
+    public InMemoryIdempotencyStore(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized Optional<StoredResponse> find(String key) {
+        StoredResponse response = entries.get(key);
+        if (response == null) {
+            return Optional.empty();
+        }
+        if (response.expired(System.currentTimeMillis())) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(response);
+    }
+
+    @Override
+    public synchronized void put(String key, StoredResponse response) {
+        entries.remove(key);
+        entries.put(key, response);
+        trimHead(System.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized int purgeExpired() {
+        return trimHead(System.currentTimeMillis());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private int trimHead(long now) {
+        int removed = 0;
+        Iterator<Map.Entry<String, StoredResponse>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            StoredResponse eldest = iterator.next().getValue();
+            if (entries.size() <= capacity && !eldest.expired(now)) {
+                break;
+            }
+            iterator.remove();
+            removed++;
+        }
+        return removed;
+    }
+}
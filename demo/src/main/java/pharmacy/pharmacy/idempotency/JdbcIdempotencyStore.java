@@ -0,0 +1,81 @@
+package pharmacy.pharmacy.idempotency;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Backs the in-memory store with the {@code idempotency_keys} table so a retry that lands on
+ * another instance, or arrives after a restart, is still replayed. Reads go to memory first.
+ */
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private final InMemoryIdempotencyStore cache;
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcIdempotencyStore(InMemoryIdempotencyStore cache, JdbcTemplate jdbcTemplate) {
+        this.cache = cache;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<StoredResponse> find(String key) {
+        Optional<StoredResponse> cached = cache.find(key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<StoredResponse> stored = jdbcTemplate.query(
+                "select fingerprint, status, content_type, headers, body, expires_at from idempotency_keys where id = ?",
+                (rs, rowNum) -> new StoredResponse(rs.getString("fingerprint"), rs.getInt("status"),
+                        rs.getString("content_type"), decodeHeaders(rs.getString("headers")), rs.getBytes("body"),
+                        rs.getLong("expires_at")),
+                key).stream().findFirst().filter(response -> !response.expired(System.currentTimeMillis()));
+        stored.ifPresent(response -> cache.put(key, response));
+        return stored;
+    }
+
+    @Override
+    public void put(String key, StoredResponse response) {
+        cache.put(key, response);
+        try {
+            jdbcTemplate.update(
+                    "insert into idempotency_keys (id, fingerprint, status, content_type, headers, body, expires_at) values (?, ?, ?, ?, ?, ?, ?)",
+                    key, response.fingerprint(), response.status(), response.contentType(), encodeHeaders(response.headers()),
+                    response.body(), response.expiresAt());
+        } catch (DuplicateKeyException e) {
+            // Another instance finished the same request first; its response is equivalent
+        }
+    }
+
+    @Override
+    public int purgeExpired() {
+        cache.purgeExpired();
+        return jdbcTemplate.update("delete from idempotency_keys where expires_at <= ?", System.currentTimeMillis());
+    }
+
+    // One "Name: value" per line; header values cannot contain line breaks
+    private static String encodeHeaders(Map<String, String> headers) {
+        if (headers.isEmpty()) {
+            return null;
+        }
+        StringBuilder encoded = new StringBuilder();
+        headers.forEach((name, value) -> encoded.append(name).append(": ").append(value).append('\n'));
+        return encoded.toString();
+    }
+
+    private static Map<String, String> decodeHeaders(String encoded) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (encoded != null) {
+            for (String line : encoded.split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,23 @@
+package pharmacy.pharmacy.idempotency;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A completed response kept under an idempotency key. {@code fingerprint} identifies the
+ * request that produced it, so a key reused for a different request can be rejected.
+ * {@code headers} holds those of {@link #REPLAYED_HEADERS} the response set.
+ */
+public record StoredResponse(String fingerprint, int status, String contentType, Map<String, String> headers,
+                             byte[] body, long expiresAt) {
+
+    // What a client may act on after a retry, such as the ETag for a following conditional PUT
+    public static final List<String> REPLAYED_HEADERS = List.of(HttpHeaders.LOCATION, HttpHeaders.ETAG,
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.LAST_MODIFIED);
+
+    public boolean expired(long now) {
+        return expiresAt <= now;
+    }
+}
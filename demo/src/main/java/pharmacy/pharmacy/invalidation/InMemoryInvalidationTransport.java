@@ -0,0 +1,45 @@
+package pharmacy.pharmacy.invalidation;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers synchronously to every bus started on the same instance, so tests and single-node
+ * setups can run several buses in one JVM without a database.
+ */
+public class InMemoryInvalidationTransport implements InvalidationTransport {
+
+    private final List<Consumer<InvalidationEvent>> consumers = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(InvalidationEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deliver(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deliver(event);
+            }
+        });
+    }
+
+    @Override
+    public void start(Consumer<InvalidationEvent> consumer) {
+        consumers.add(consumer);
+    }
+
+    @Override
+    public void close() {
+        consumers.clear();
+    }
+
+    private void deliver(InvalidationEvent event) {
+        consumers.forEach(consumer -> consumer.accept(event));
+    }
+}
@@ -0,0 +1,146 @@
+package pharmacy.pharmacy.invalidation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fans cache invalidations out to every node. In-process caches subscribe to a region and
+ * drop the key they are handed; a null key means the whole region.
+ * <p>
+ * On the publishing node subscribers run once the surrounding transaction commits, as with
+ * the other after-commit hooks here. Other nodes run them when the transport delivers the
+ * event, which for the change-log transport is within one poll interval of the commit.
+ */
+public class InvalidationBus implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    public static final String USERS = "users";
+    public static final String SESSIONS = "sessions";
+
+    private final InvalidationTransport transport;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, List<Consumer<List<String>>>> batchSubscribers = new ConcurrentHashMap<>();
+    private final Timer lag;
+    private volatile boolean running;
+
+    public InvalidationBus(InvalidationTransport transport, MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.lag = Timer.builder("invalidation.lag")
+                .description("Time from publishing an invalidation to applying it on another node")
+                .register(meterRegistry);
+    }
+
+    public void subscribe(String region, Consumer<String> listener) {
+        subscribers.computeIfAbsent(region, r -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Listeners that are handed every key of a {@link #publishAll} batch in one call, so they
+     * can re-read them together. Single events, and events from other nodes, come as a list of
+     * one.
+     */
+    public void subscribeAll(String region, Consumer<List<String>> listener) {
+        batchSubscribers.computeIfAbsent(region, r -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    public void publish(String region, Object key) {
+        publishAll(region, Collections.singletonList(key));
+    }
+
+    /**
+     * Publishes one event per key, written to the transport together and applied here together
+     * once the surrounding transaction commits.
+     */
+    public void publishAll(String region, Collection<?> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<InvalidationEvent> events = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            events.add(new InvalidationEvent(region, key == null ? null : key.toString(), nodeId, now));
+        }
+        transport.publishAll(events);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(region, events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(region, events);
+            }
+        });
+    }
+
+    private void receive(InvalidationEvent event) {
+        if (nodeId.equals(event.origin())) {
+            return;
+        }
+        lag.record(Math.max(0, System.currentTimeMillis() - event.publishedAt()), TimeUnit.MILLISECONDS);
+        apply(event.region(), List.of(event));
+    }
+
+    private void apply(String region, List<InvalidationEvent> events) {
+        for (InvalidationEvent event : events) {
+            for (Consumer<String> listener : subscribers.getOrDefault(region, List.of())) {
+                try {
+                    listener.accept(event.key());
+                } catch (RuntimeException e) {
+                    log.warn("Invalidation listener for {} failed on key {}", region, event.key(), e);
+                }
+            }
+        }
+        List<Consumer<List<String>>> batchListeners = batchSubscribers.getOrDefault(region, List.of());
+        if (batchListeners.isEmpty()) {
+            return;
+        }
+        List<String> keys = events.stream().map(InvalidationEvent::key).toList();
+        for (Consumer<List<String>> listener : batchListeners) {
+            try {
+                listener.accept(keys);
+            } catch (RuntimeException e) {
+                log.warn("Invalidation listener for {} failed on {} keys", region, keys.size(), e);
+            }
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start() {
+        transport.start(this::receive);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        transport.close();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,50 @@
+package pharmacy.pharmacy.invalidation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pharmacy.pharmacy.tenancy.TenantContext;
+import pharmacy.pharmacy.tenancy.TenantDataSources;
+import pharmacy.pharmacy.tenancy.TenantInvalidationTransport;
+import pharmacy.pharmacy.tenancy.TenantRoutingDataSource;
+
+import java.time.Duration;
+
+@Configuration(proxyBeanMethods = false)
+public class InvalidationConfig {
+
+    /**
+     * {@code invalidation.transport=local} keeps invalidations inside this JVM, for tests and
+     * single-node runs; the default shares them through the database change log.
+     */
+    @Bean(destroyMethod = "")
+    public InvalidationTransport invalidationTransport(JdbcTemplate jdbcTemplate,
+                                                       ObjectProvider<TenantDataSources> tenantDataSources,
+                                                       @Value("${invalidation.transport:jdbc}") String type,
+                                                       @Value("${invalidation.poll-interval:PT1S}") Duration pollInterval,
+                                                       @Value("${invalidation.gap-grace:PT30S}") Duration gapGrace,
+                                                       @Value("${invalidation.retention:PT1H}") Duration retention,
+                                                       @Value("${invalidation.batch-size:500}") int batchSize) {
+        if ("local".equalsIgnoreCase(type)) {
+            return new InMemoryInvalidationTransport();
+        }
+        JdbcInvalidationTransport transport = new JdbcInvalidationTransport(jdbcTemplate, pollInterval, gapGrace,
+                retention, batchSize);
+        TenantDataSources tenants = tenantDataSources.getIfAvailable();
+        if (tenants == null) {
+            return transport;
+        }
+        JdbcTemplate defaultTenant = new JdbcTemplate(new TenantRoutingDataSource(tenants, TenantContext.DEFAULT));
+        return new TenantInvalidationTransport(transport,
+                new JdbcInvalidationTransport(defaultTenant, pollInterval, gapGrace, retention, batchSize));
+    }
+
+    // The bus closes the transport when it stops
+    @Bean
+    public InvalidationBus invalidationBus(InvalidationTransport transport, MeterRegistry meterRegistry) {
+        return new InvalidationBus(transport, meterRegistry);
+    }
+}
@@ -0,0 +1,8 @@
+package pharmacy.pharmacy.invalidation;
+
+/**
+ * Tells every node to drop what it caches under {@code region} for {@code key}; a null key
+ * means the whole region. {@code origin} is the publishing node, which has already applied it.
+ */
+public record InvalidationEvent(String region, String key, String origin, long publishedAt) {
+}
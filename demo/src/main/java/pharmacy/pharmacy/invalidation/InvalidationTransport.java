@@ -0,0 +1,25 @@
+package pharmacy.pharmacy.invalidation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation events between nodes. Events published inside a transaction must only
+ * reach other nodes if it commits.
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    void publish(InvalidationEvent event);
+
+    default void publishAll(List<InvalidationEvent> events) {
+        events.forEach(this::publish);
+    }
+
+    /**
+     * Starts delivering events from every node, this one included, to {@code consumer}.
+     */
+    void start(Consumer<InvalidationEvent> consumer);
+
+    @Override
+    void close();
+}
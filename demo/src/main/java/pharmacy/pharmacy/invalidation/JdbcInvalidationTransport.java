@@ -0,0 +1,149 @@
+package pharmacy.pharmacy.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Appends events to the {@code invalidation_log} table, in the publisher's transaction when
+ * there is one, and polls it for rows past a cursor on the row id.
+ * <p>
+ * Ids are handed out at insert time but become visible at commit, so a slow transaction can
+ * commit an id below rows that were already read. The cursor therefore only moves over a gap
+ * once the row after it is older than {@code gapGrace}; rows above the cursor that were
+ * already delivered are remembered so they are not delivered twice. A transaction that stays
+ * open longer than the grace period can have its events missed.
+ */
+public class JdbcInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcInvalidationTransport.class);
+
+    private record Row(long id, InvalidationEvent event, long createdAt) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration pollInterval;
+    private final Duration gapGrace;
+    private final Duration retention;
+    private final int batchSize;
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invalidation-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Consumer<InvalidationEvent> consumer;
+    private long cursor = -1;
+    private final TreeSet<Long> deliveredAboveCursor = new TreeSet<>();
+    private long lastPurge;
+
+    public JdbcInvalidationTransport(JdbcTemplate jdbcTemplate, Duration pollInterval, Duration gapGrace,
+                                     Duration retention, int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollInterval = pollInterval;
+        this.gapGrace = gapGrace;
+        this.retention = retention;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void publish(InvalidationEvent event) {
+        jdbcTemplate.update("insert into invalidation_log (region, item_key, origin, created_at) values (?, ?, ?, ?)",
+                event.region(), event.key(), event.origin(), event.publishedAt());
+    }
+
+    @Override
+    public void publishAll(List<InvalidationEvent> events) {
+        jdbcTemplate.batchUpdate("insert into invalidation_log (region, item_key, origin, created_at) values (?, ?, ?, ?)",
+                events.stream()
+                        .map(event -> new Object[]{event.region(), event.key(), event.origin(), event.publishedAt()})
+                        .toList());
+    }
+
+    @Override
+    public void start(Consumer<InvalidationEvent> consumer) {
+        this.consumer = consumer;
+        try {
+            positionCursor();
+        } catch (Exception e) {
+            log.warn("Could not read the invalidation log head, retrying on the first poll: {}", e.getMessage());
+        }
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollInterval.toMillis(), pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    // A node that just started has nothing cached yet, so it starts at the head of the log
+    private void positionCursor() {
+        Long head = jdbcTemplate.queryForObject("select max(id) from invalidation_log", Long.class);
+        cursor = head == null ? 0 : head;
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            log.warn("Polling the invalidation log failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Delivers the rows committed since the last poll and returns how many there were.
+     */
+    int poll() {
+        if (cursor < 0) {
+            positionCursor();
+            return 0;
+        }
+
+        List<Row> rows = jdbcTemplate.query(
+                "select id, region, item_key, origin, created_at from invalidation_log where id > ? order by id limit ?",
+                (rs, rowNum) -> new Row(rs.getLong("id"),
+                        new InvalidationEvent(rs.getString("region"), rs.getString("item_key"),
+                                rs.getString("origin"), rs.getLong("created_at")),
+                        rs.getLong("created_at")),
+                cursor, batchSize);
+
+        int delivered = 0;
+        long settled = System.currentTimeMillis() - gapGrace.toMillis();
+        boolean advancing = true;
+        for (Row row : rows) {
+            if (deliveredAboveCursor.add(row.id())) {
+                consumer.accept(row.event());
+                delivered++;
+            }
+            advancing = advancing && (row.id() == cursor + 1 || row.createdAt() <= settled);
+            if (advancing) {
+                cursor = row.id();
+            }
+        }
+        deliveredAboveCursor.headSet(cursor, true).clear();
+
+        purgeExpired();
+        return delivered;
+    }
+
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        if (now - lastPurge < retention.toMillis() / 10) {
+            return;
+        }
+        lastPurge = now;
+        int removed = jdbcTemplate.update("delete from invalidation_log where created_at < ?", now - retention.toMillis());
+        if (removed > 0) {
+            log.debug("Purged {} invalidation log rows", removed);
+        }
+    }
+
+    @Override
+    public void close() {
+        poller.shutdownNow();
+    }
+}
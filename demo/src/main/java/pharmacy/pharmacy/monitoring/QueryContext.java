@@ -0,0 +1,81 @@
+package pharmacy.pharmacy.monitoring;
+
+import java.util.*;
+
+/**
+ * Per-request query bookkeeping, bound to the request thread by {@link QueryContextFilter}.
+ * Samples are kept until the request ends so they can be tagged with the matched route,
+ * which is only known after handler mapping.
+ */
+public final class QueryContext {
+
+    private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Deque<String>> REPOSITORY_METHOD = ThreadLocal.withInitial(ArrayDeque::new);
+
+    static final String NONE = "none";
+
+    static final class Sample {
+        final String repository;
+        final String type;
+        final long nanos;
+        final int batchSize;
+        int rows;
+
+        Sample(String repository, String type, long nanos, int batchSize, int rows) {
+            this.repository = repository;
+            this.type = type;
+            this.nanos = nanos;
+            this.batchSize = batchSize;
+            this.rows = rows;
+        }
+    }
+
+    final String request;
+    final List<Sample> samples = new ArrayList<>();
+    // SELECT text -> executions in this request; the same statement over and over is an N+1
+    final Map<String, Integer> selectsBySql = new HashMap<>();
+    int statements;
+    long totalNanos;
+    int slowStatements;
+
+    static QueryContext current() {
+        return CURRENT.get();
+    }
+
+    private QueryContext(String request) {
+        this.request = request;
+    }
+
+    static QueryContext open(String request) {
+        QueryContext context = new QueryContext(request);
+        CURRENT.set(context);
+        return context;
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    // Innermost repository call on this thread, e.g. "UserRepository.findByUsername"
+    static String repositoryMethod() {
+        String method = REPOSITORY_METHOD.get().peek();
+        return method == null ? NONE : method;
+    }
+
+    static void enterRepository(String method) {
+        REPOSITORY_METHOD.get().push(method);
+    }
+
+    static void exitRepository() {
+        REPOSITORY_METHOD.get().pop();
+    }
+
+    List<Map.Entry<String, Integer>> repeatedSelects(int threshold) {
+        return selectsBySql.entrySet().stream().filter(e -> e.getValue() >= threshold).toList();
+    }
+
+    String summary(int nPlusOneThreshold) {
+        return String.format("count=%d; time-ms=%.1f; slow=%d; n-plus-one=%d",
+                statements, totalNanos / 1e6, slowStatements, repeatedSelects(nPlusOneThreshold).size());
+    }
+}
@@ -0,0 +1,36 @@
+package pharmacy.pharmacy.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Opens a {@link QueryContext} around each request, including the security filters, and
+ * records its statements under the matched route once the handler has run.
+ */
+public class QueryContextFilter extends OncePerRequestFilter {
+
+    private final QueryMetricsListener listener;
+
+    public QueryContextFilter(QueryMetricsListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryContext context = QueryContext.open(request.getMethod() + " " + request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            listener.finishRequest(context, pattern == null ? "unmatched" : request.getMethod() + " " + pattern);
+            QueryContext.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pharmacy.pharmacy.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Configuration(proxyBeanMethods = false)
+public class QueryMetricsConfig {
+
+    @Bean
+    public SlowQueryLog slowQueryLog(@Value("${query-metrics.slow-log-capacity:1024}") int capacity) {
+        return new SlowQueryLog(capacity);
+    }
+
+    @Bean
+    public QueryMetricsListener queryMetricsListener(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog,
+                                                     @Value("${query-metrics.slow-threshold-ms:200}") long slowThresholdMillis,
+                                                     @Value("${query-metrics.n-plus-one-threshold:10}") int nPlusOneThreshold) {
+        return new QueryMetricsListener(meterRegistry, slowQueryLog, slowThresholdMillis, nPlusOneThreshold);
+    }
+
+    @Bean
+    public FilterRegistrationBean<QueryContextFilter> queryContextFilter(QueryMetricsListener listener) {
+        FilterRegistrationBean<QueryContextFilter> registration = new FilterRegistrationBean<>(new QueryContextFilter(listener));
+        // Ahead of the security chain so the per-request user lookup is counted too
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    // Wraps the Hikari pool; Boot's DataSourceUnwrapper still reaches it for pool metrics
+    @Bean
+    public static BeanPostProcessor dataSourceProxy(ObjectProvider<QueryMetricsListener> listener) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    QueryMetricsListener metrics = listener.getObject();
+                    return ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(metrics)
+                            .methodListener(metrics)
+                            .proxyResultSet()
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    // Marks the repository method on the calling thread so statements can be tagged with it
+    @Bean
+    public static BeanPostProcessor repositoryMethodTagger() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repository) -> proxyFactory.addAdvice(tagging(repository.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+    private static MethodInterceptor tagging(Class<?> repositoryInterface) {
+        // Per repository: inherited methods such as findById share one Method object across repositories
+        Map<Method, String> names = new ConcurrentHashMap<>();
+        return invocation -> {
+            QueryContext.enterRepository(names.computeIfAbsent(invocation.getMethod(),
+                    m -> repositoryInterface.getSimpleName() + "." + m.getName()));
+            try {
+                return invocation.proceed();
+            } finally {
+                QueryContext.exitRepository();
+            }
+        };
+    }
+}
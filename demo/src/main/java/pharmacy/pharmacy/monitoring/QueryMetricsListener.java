@@ -0,0 +1,181 @@
+package pharmacy.pharmacy.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.QueryType;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryUtils;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pharmacy.pharmacy.monitoring.QueryContext.Sample;
+
+import java.sql.ResultSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every statement going through the proxied pool and counts the rows each returns.
+ * Selects are completed when their result set is closed, since rows are only known once read.
+ */
+public class QueryMetricsListener implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryMetricsListener.class);
+    private static final String START_NANOS = "startNanos";
+    private static final int MAX_OPEN_RESULT_SETS = 64;
+
+    private final MeterRegistry meterRegistry;
+    private final SlowQueryLog slowQueryLog;
+    private final long slowThresholdNanos;
+    private final int nPlusOneThreshold;
+    private final ThreadLocal<Map<Object, Sample>> openResultSets = ThreadLocal.withInitial(IdentityHashMap::new);
+
+    public QueryMetricsListener(MeterRegistry meterRegistry, SlowQueryLog slowQueryLog,
+                                long slowThresholdMillis, int nPlusOneThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.slowQueryLog = slowQueryLog;
+        this.slowThresholdNanos = slowThresholdMillis * 1_000_000;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        execInfo.addCustomValue(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long nanos = System.nanoTime() - execInfo.getCustomValue(START_NANOS, Long.class);
+        String sql = queryInfoList.isEmpty() ? "" : queryInfoList.get(0).getQuery();
+        QueryType type = QueryUtils.getQueryType(sql);
+        String repository = QueryContext.repositoryMethod();
+        int batchSize = execInfo.isBatch() ? execInfo.getBatchSize() : 1;
+
+        QueryContext context = QueryContext.current();
+        boolean slow = nanos >= slowThresholdNanos;
+        if (context != null) {
+            context.statements++;
+            context.totalNanos += nanos;
+            if (slow) {
+                context.slowStatements++;
+            }
+            if (type == QueryType.SELECT) {
+                context.selectsBySql.merge(sql, 1, Integer::sum);
+            }
+        }
+        if (slow) {
+            meterRegistry.counter("db.query.slow", "repository", repository).increment();
+            slowQueryLog.submit(nanos, context == null ? QueryContext.NONE : context.request, repository, sql);
+        }
+
+        Object result = execInfo.getResult();
+        if (result instanceof ProxyJdbcObject proxy) {
+            result = proxy.getTarget();
+        }
+        Sample sample = new Sample(repository, type.name().toLowerCase(), nanos, batchSize, affectedRows(result));
+        if (result instanceof ResultSet) {
+            Map<Object, Sample> open = openResultSets.get();
+            if (open.size() >= MAX_OPEN_RESULT_SETS) {
+                flushOpenResultSets();
+            }
+            open.put(result, sample);
+        } else {
+            complete(sample);
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (!(executionContext.getTarget() instanceof ResultSet)) {
+            return;
+        }
+        String method = executionContext.getMethod().getName();
+        if ("next".equals(method)) {
+            Sample sample = openResultSets.get().get(executionContext.getTarget());
+            if (sample != null && Boolean.TRUE.equals(executionContext.getResult())) {
+                sample.rows++;
+            }
+        } else if ("close".equals(method)) {
+            Sample sample = openResultSets.get().remove(executionContext.getTarget());
+            if (sample != null) {
+                complete(sample);
+            }
+        }
+    }
+
+    /**
+     * Records everything the request executed under its matched route and reports statements
+     * repeated often enough to look like an N+1.
+     */
+    public void finishRequest(QueryContext context, String route) {
+        flushOpenResultSets();
+        for (Sample sample : context.samples) {
+            record(sample, route);
+        }
+        for (Map.Entry<String, Integer> repeated : context.repeatedSelects(nPlusOneThreshold)) {
+            meterRegistry.counter("db.query.n_plus_one", "route", route).increment();
+            log.warn("Possible N+1 in {}: statement ran {} times: {}", route, repeated.getValue(), repeated.getKey());
+        }
+    }
+
+    public int nPlusOneThreshold() {
+        return nPlusOneThreshold;
+    }
+
+    private void complete(Sample sample) {
+        QueryContext context = QueryContext.current();
+        if (context != null) {
+            context.samples.add(sample);
+        } else {
+            record(sample, QueryContext.NONE);
+        }
+    }
+
+    private void flushOpenResultSets() {
+        Map<Object, Sample> open = openResultSets.get();
+        open.values().forEach(this::complete);
+        open.clear();
+    }
+
+    private void record(Sample sample, String route) {
+        Timer.builder("db.query")
+                .tags("repository", sample.repository, "route", route, "type", sample.type)
+                .register(meterRegistry)
+                .record(sample.nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("db.query.rows")
+                .tags("repository", sample.repository, "route", route, "type", sample.type)
+                .register(meterRegistry)
+                .record(sample.rows);
+        if (sample.batchSize > 1) {
+            DistributionSummary.builder("db.query.batch.size")
+                    .tags("repository", sample.repository, "route", route)
+                    .register(meterRegistry)
+                    .record(sample.batchSize);
+        }
+    }
+
+    private static int affectedRows(Object result) {
+        if (result instanceof Integer count) {
+            return count;
+        }
+        if (result instanceof int[] counts) {
+            int total = 0;
+            for (int count : counts) {
+                total += Math.max(count, 0);
+            }
+            return total;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,46 @@
+package pharmacy.pharmacy.monitoring;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the request's query statistics as a response header, for non-production use. The
+ * header is written just before the body, so lazy loads triggered during serialization are
+ * only reflected in the metrics and the N+1 log, not in the header.
+ */
+@ControllerAdvice
+public class QueryStatsHeaderAdvice implements ResponseBodyAdvice<Object> {
+
+    public static final String HEADER = "X-Query-Stats";
+
+    private final boolean enabled;
+    private final QueryMetricsListener listener;
+
+    public QueryStatsHeaderAdvice(@Value("${query-metrics.debug-header:false}") boolean enabled,
+                                  QueryMetricsListener listener) {
+        this.enabled = enabled;
+        this.listener = listener;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return enabled;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        QueryContext context = QueryContext.current();
+        if (context != null) {
+            response.getHeaders().set(HEADER, context.summary(listener.nPlusOneThreshold()));
+        }
+        return body;
+    }
+}
@@ -0,0 +1,59 @@
+package pharmacy.pharmacy.monitoring;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands slow statements to a background thread so that formatting and appender I/O stay off
+ * the request thread. When the queue is full entries are dropped and counted rather than
+ * blocking the caller.
+ */
+public class SlowQueryLog implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger("pharmacy.slow-query");
+
+    record Entry(long nanos, String request, String repository, String sql) {
+    }
+
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    public SlowQueryLog(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::drain, "slow-query-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void submit(long nanos, String request, String repository, String sql) {
+        if (!queue.offer(new Entry(nanos, request, repository, sql))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Entry entry = queue.take();
+                log.warn("{} ms [{} {}] {}", String.format("%.1f", entry.nanos() / 1e6),
+                        entry.request(), entry.repository(), entry.sql());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        writer.interrupt();
+    }
+}
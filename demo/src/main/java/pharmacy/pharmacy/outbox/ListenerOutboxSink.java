@@ -0,0 +1,24 @@
+package pharmacy.pharmacy.outbox;
+
+import org.springframework.context.ApplicationEventPublisher;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+
+import java.util.List;
+
+/**
+ * Publishes each event to {@code @EventListener}s in this application. Listeners run on the
+ * relay's thread; one that throws has the rest of the batch, and its own event, offered again.
+ */
+public class ListenerOutboxSink implements OutboxSink {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ListenerOutboxSink(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void deliver(List<UserLifecycleEvent> batch) {
+        batch.forEach(eventPublisher::publishEvent);
+    }
+}
@@ -0,0 +1,59 @@
+package pharmacy.pharmacy.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import pharmacy.pharmacy.tenancy.TenantDataSources;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Configuration(proxyBeanMethods = false)
+public class OutboxConfig {
+
+    /**
+     * {@code outbox.sink} picks where user lifecycle events go: {@code listener} publishes them
+     * to listeners in this application, {@code file} appends them to {@code outbox.file.path}
+     * and {@code webhook} POSTs them to {@code outbox.webhook.url}.
+     */
+    @Bean
+    public OutboxSink outboxSink(ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                                 @Value("${outbox.sink:listener}") String type,
+                                 @Value("${outbox.file.path:data/outbox/user-events.jsonl}") Path file,
+                                 @Value("${outbox.webhook.url:}") String url,
+                                 @Value("${outbox.webhook.secret:}") String secret,
+                                 @Value("${outbox.webhook.timeout:PT5S}") Duration timeout) throws IOException {
+        return switch (type.toLowerCase()) {
+            case "listener" -> new ListenerOutboxSink(eventPublisher);
+            case "file" -> new FileOutboxSink(file, objectMapper);
+            case "webhook" -> {
+                if (url.isBlank()) {
+                    throw new IllegalStateException("outbox.sink=webhook needs outbox.webhook.url");
+                }
+                HttpClient httpClient = HttpClient.newBuilder().connectTimeout(timeout).build();
+                yield new WebhookOutboxSink(httpClient, URI.create(url), secret, timeout, objectMapper);
+            }
+            default -> throw new IllegalStateException("Unknown outbox.sink " + type);
+        };
+    }
+
+    @Bean
+    public OutboxRelay outboxRelay(JdbcTemplate jdbcTemplate, ObjectProvider<TenantDataSources> tenantDataSources,
+                                   OutboxSink sink, MeterRegistry meterRegistry,
+                                   @Value("${outbox.batch-size:200}") int batchSize,
+                                   @Value("${outbox.max-run:PT5S}") Duration maxRun,
+                                   @Value("${outbox.lease:PT30S}") Duration lease,
+                                   @Value("${outbox.initial-backoff:PT1S}") Duration initialBackoff,
+                                   @Value("${outbox.max-backoff:PT1M}") Duration maxBackoff) {
+        return new OutboxRelay(jdbcTemplate, tenantDataSources.getIfAvailable(), sink, meterRegistry, batchSize, maxRun,
+                lease, initialBackoff, maxBackoff);
+    }
+}
@@ -0,0 +1,209 @@
+package pharmacy.pharmacy.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+import pharmacy.pharmacy.tenancy.TenantContext;
+import pharmacy.pharmacy.tenancy.TenantDataSources;
+import pharmacy.pharmacy.tenancy.TenantRoutingDataSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains {@code user_outbox} into an {@link OutboxSink}: reads a batch past a keyset cursor on
+ * the id, hands it to the sink, and deletes its rows only once the sink accepted it, so a
+ * crash or a failed delivery means the batch is offered again. The next batch is not read
+ * until the sink has taken the last one; a sink that fails is retried with exponential backoff
+ * while the events wait in the table.
+ * <p>
+ * A user's events are relayed in id order. Appends happen under the user's row lock, so while
+ * an uncommitted id leaves a gap, no later event of the same user can be visible above it;
+ * rows above a gap are relayed, and the gap's row, once committed, on a later run. Only one
+ * node relays at a time: it holds a lease in {@code job_cursors} that it renews between batches.
+ * <p>
+ * Every tenant database has its own outbox and lease, and is relayed on its own with its own
+ * backoff. Other tenants than the default are relayed while their pool is open, without
+ * keeping it open; rows left when a pool closes wait for the tenant's next request.
+ */
+public class OutboxRelay {
+
+    static final String LEASE_NAME = "user-outbox-relay";
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TenantDataSources tenants;
+    private final OutboxSink sink;
+    private final int batchSize;
+    private final Duration maxRun;
+    private final Duration lease;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Counter delivered;
+    private final Counter failed;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * @param tenants the tenant databases to relay besides the default one, or null without
+     *                tenancy
+     */
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TenantDataSources tenants, OutboxSink sink,
+                       MeterRegistry meterRegistry, int batchSize, Duration maxRun, Duration lease,
+                       Duration initialBackoff, Duration maxBackoff) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tenants = tenants;
+        this.sink = sink;
+        this.batchSize = batchSize;
+        this.maxRun = maxRun;
+        this.lease = lease;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.delivered = meterRegistry.counter("outbox.delivered");
+        this.failed = meterRegistry.counter("outbox.failed");
+        TimeGauge.builder("outbox.lag", this, TimeUnit.MILLISECONDS, OutboxRelay::lagMillis)
+                .description("Age of the oldest event not yet relayed")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval:PT1S}")
+    public void relayQuietly() {
+        relay();
+    }
+
+    /**
+     * Relays every tenant's batches until its table is drained or {@code outbox.max-run} is
+     * spent, and returns how many events the sink accepted.
+     */
+    int relay() {
+        List<String> relayed = new ArrayList<>();
+        relayed.add(TenantContext.DEFAULT);
+        if (tenants != null) {
+            relayed.addAll(tenants.openTenants());
+        }
+        int accepted = 0;
+        for (String tenant : relayed) {
+            try {
+                accepted += lanes.computeIfAbsent(tenant, this::lane).relay();
+            } catch (Exception e) {
+                log.warn("Relaying the user outbox of tenant {} failed: {}", tenant, e.getMessage());
+            }
+        }
+        return accepted;
+    }
+
+    private Lane lane(String tenant) {
+        return new Lane(tenant, TenantContext.DEFAULT.equals(tenant) ? jdbcTemplate
+                : new JdbcTemplate(TenantRoutingDataSource.background(tenants, tenant)));
+    }
+
+    private double lagMillis() {
+        long now = System.currentTimeMillis();
+        return lanes.values().stream()
+                .mapToLong(lane -> lane.oldestPendingAt)
+                .filter(oldest -> oldest != 0)
+                .map(oldest -> Math.max(0, now - oldest))
+                .max()
+                .orElse(0);
+    }
+
+    private final class Lane {
+
+        private final String tenant;
+        private final JdbcTemplate jdbcTemplate;
+
+        private long leaseUntil;
+        private long notBeforeNanos = System.nanoTime();
+        private int consecutiveFailures;
+        private volatile long oldestPendingAt;
+
+        private Lane(String tenant, JdbcTemplate jdbcTemplate) {
+            this.tenant = tenant;
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        private int relay() {
+            if (System.nanoTime() - notBeforeNanos < 0 || !holdLease()) {
+                return 0;
+            }
+            long deadline = System.nanoTime() + maxRun.toNanos();
+            long cursor = 0;
+            int relayed = 0;
+            List<UserLifecycleEvent> batch;
+            do {
+                batch = jdbcTemplate.query(
+                        "select id, event_type, user_id, payload, created_at from user_outbox where id > ? order by id limit ?",
+                        (rs, rowNum) -> new UserLifecycleEvent(rs.getLong("id"), tenant,
+                                UserLifecycleEvent.Type.valueOf(rs.getString("event_type")), rs.getInt("user_id"),
+                                rs.getLong("created_at"), rs.getString("payload")),
+                        cursor, batchSize);
+                if (cursor == 0) {
+                    oldestPendingAt = batch.isEmpty() ? 0 : batch.get(0).occurredAt();
+                }
+                if (batch.isEmpty()) {
+                    break;
+                }
+                try {
+                    sink.deliver(batch);
+                } catch (Exception e) {
+                    backOff(e);
+                    return relayed;
+                }
+                consecutiveFailures = 0;
+                jdbcTemplate.batchUpdate("delete from user_outbox where id = ?",
+                        batch.stream().map(event -> new Object[]{event.id()}).toList());
+                delivered.increment(batch.size());
+                relayed += batch.size();
+                cursor = batch.get(batch.size() - 1).id();
+            } while (batch.size() == batchSize && System.nanoTime() - deadline < 0 && holdLease());
+
+            if (relayed > 0 && batch.size() < batchSize) {
+                oldestPendingAt = 0;
+            }
+            return relayed;
+        }
+
+        private void backOff(Exception e) {
+            failed.increment();
+            consecutiveFailures++;
+            long delay = initialBackoff.toMillis() << Math.min(consecutiveFailures - 1, 20);
+            if (e instanceof OutboxSink.RetryLaterException retryLater && retryLater.getRetryAfter() != null) {
+                delay = Math.max(delay, retryLater.getRetryAfter().toMillis());
+            }
+            delay = Math.min(delay, maxBackoff.toMillis());
+            notBeforeNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            log.warn("Outbox delivery for tenant {} failed ({} in a row), retrying in {} ms: {}",
+                    tenant, consecutiveFailures, delay, e.toString());
+        }
+
+        /**
+         * Renews this node's lease, or takes it over once the previous holder's has run out.
+         * The position written is the token: a renewal only succeeds if no other node replaced it.
+         */
+        private boolean holdLease() {
+            long now = System.currentTimeMillis();
+            long until = now + lease.toMillis();
+            if (leaseUntil > now && jdbcTemplate.update("update job_cursors set position = ? where name = ? and position = ?",
+                    until, LEASE_NAME, leaseUntil) == 1) {
+                leaseUntil = until;
+                return true;
+            }
+            if (jdbcTemplate.update("update job_cursors set position = ? where name = ? and position < ?",
+                    until, LEASE_NAME, now) == 1) {
+                leaseUntil = until;
+                return true;
+            }
+            leaseUntil = 0;
+            return false;
+        }
+    }
+}
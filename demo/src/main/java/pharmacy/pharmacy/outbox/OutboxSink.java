@@ -0,0 +1,34 @@
+package pharmacy.pharmacy.outbox;
+
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Where the relay publishes user lifecycle events. {@link #deliver} returns only once the
+ * whole batch is accepted; if it throws, the batch is offered again later, so part of it may
+ * be delivered twice. Delivery runs on the relay's thread and the next batch waits for it,
+ * which is how a slow sink holds the relay back.
+ */
+public interface OutboxSink {
+
+    void deliver(List<UserLifecycleEvent> batch) throws Exception;
+
+    /**
+     * Thrown by a sink that asked to be left alone for a while, such as a webhook answering 429.
+     */
+    class RetryLaterException extends Exception {
+
+        private final Duration retryAfter;
+
+        public RetryLaterException(String message, Duration retryAfter) {
+            super(message);
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
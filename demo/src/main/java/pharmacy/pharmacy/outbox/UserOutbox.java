@@ -0,0 +1,58 @@
+package pharmacy.pharmacy.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records user lifecycle events in {@code user_outbox}, in the caller's transaction, for
+ * {@link OutboxRelay} to publish once it commits. Callers append after writing or locking
+ * the user's row, so one user's events commit in the order of their ids. The row goes to the
+ * current tenant's database, next to the change it records.
+ */
+@Component
+public class UserOutbox {
+
+    private static final String INSERT =
+            "insert into user_outbox (event_type, user_id, payload, created_at) values (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public UserOutbox(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(UserLifecycleEvent.Type type, int userId, Map<String, ?> data) {
+        jdbcTemplate.update(INSERT, type.name(), userId, json(data), System.currentTimeMillis());
+    }
+
+    /**
+     * One row per user, written as a single JDBC batch.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(UserLifecycleEvent.Type type, Map<Integer, ? extends Map<String, ?>> dataByUser) {
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>(dataByUser.size());
+        dataByUser.forEach((userId, data) -> rows.add(new Object[]{type.name(), userId, json(data), now}));
+        jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+
+    private String json(Map<String, ?> data) {
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload is not serializable", e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package pharmacy.pharmacy.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * POSTs each batch as {@code {"events": [...]}} to a webhook. With a secret configured, the
+ * body is signed with HMAC-SHA256 in {@value #SIGNATURE_HEADER} as {@code sha256=<hex>}.
+ * Any 2xx accepts the batch; 429 and 503 put the relay off for the response's Retry-After.
+ */
+public class WebhookOutboxSink implements OutboxSink {
+
+    public static final String SIGNATURE_HEADER = "X-Outbox-Signature";
+
+    private final HttpClient httpClient;
+    private final URI url;
+    private final byte[] secret;
+    private final Duration timeout;
+    private final ObjectMapper objectMapper;
+
+    public WebhookOutboxSink(HttpClient httpClient, URI url, String secret, Duration timeout, ObjectMapper objectMapper) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.secret = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+        this.timeout = timeout;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void deliver(List<UserLifecycleEvent> batch) throws Exception {
+        byte[] body = objectMapper.writeValueAsBytes(Map.of("events", batch));
+        HttpRequest.Builder request = HttpRequest.newBuilder(url)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (secret.length > 0) {
+            request.header(SIGNATURE_HEADER, sign(secret, body));
+        }
+
+        HttpResponse<Void> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.discarding());
+        int status = response.statusCode();
+        if (status >= 200 && status < 300) {
+            return;
+        }
+        if (status == 429 || status == 503) {
+            Duration retryAfter = response.headers().firstValue("Retry-After")
+                    .flatMap(WebhookOutboxSink::seconds)
+                    .orElse(null);
+            throw new RetryLaterException("Webhook " + url + " answered " + status, retryAfter);
+        }
+        throw new IOException("Webhook " + url + " answered " + status);
+    }
+
+    /**
+     * The signature header value for {@code body}; receivers compute the same and compare.
+     */
+    public static String sign(byte[] secret, byte[] body) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        return "sha256=" + HexFormat.of().formatHex(mac.doFinal(body));
+    }
+
+    // Only the delay-seconds form; an HTTP date falls back to the relay's own backoff
+    private static Optional<Duration> seconds(String value) {
+        try {
+            return Optional.of(Duration.ofSeconds(Long.parseLong(value.trim())));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+}
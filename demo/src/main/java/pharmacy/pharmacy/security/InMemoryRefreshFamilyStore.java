@@ -0,0 +1,67 @@
+package pharmacy.pharmacy.security;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Families held in this JVM only, for tests and single-node runs; a restart ends every
+ * session at its next refresh.
+ */
+public class InMemoryRefreshFamilyStore implements RefreshFamilyStore {
+
+    private final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+
+    @Override
+    public void create(Family family) {
+        families.put(family.id(), family);
+    }
+
+    @Override
+    public Optional<Family> find(String id) {
+        return Optional.ofNullable(families.get(id));
+    }
+
+    @Override
+    public boolean rotate(String id, String expectedId, String nextId, long expiresAt) {
+        long now = System.currentTimeMillis();
+        Family rotated = families.computeIfPresent(id, (key, family) ->
+                family.currentId().equals(expectedId) && family.expiresAt() > now
+                        ? new Family(id, family.username(), family.tenant(), nextId, expectedId, now, expiresAt)
+                        : family);
+        return rotated != null && rotated.currentId().equals(nextId);
+    }
+
+    @Override
+    public boolean remove(String id) {
+        return families.remove(id) != null;
+    }
+
+    @Override
+    public List<String> removeUser(String tenant, String username) {
+        List<String> removed = new ArrayList<>();
+        families.values().removeIf(family -> {
+            if (family.tenant().equals(tenant) && family.username().equals(username)) {
+                removed.add(family.id());
+                return true;
+            }
+            return false;
+        });
+        return removed;
+    }
+
+    @Override
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        for (Iterator<Family> it = families.values().iterator(); it.hasNext(); ) {
+            if (it.next().expiresAt() <= now) {
+                it.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+}
@@ -1,5 +1,6 @@
 package pharmacy.pharmacy.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,6 +12,9 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import pharmacy.pharmacy.service.RefreshTokenService;
+import pharmacy.pharmacy.tenancy.TenantContext;
+import pharmacy.pharmacy.tenancy.TenantDataSources;
 
 import java.io.IOException;
 
@@ -22,27 +26,49 @@ public class JWTAuthFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    // Absent unless tenancy is enabled; everything then runs as the default tenant
+    @Autowired(required = false)
+    private TenantDataSources tenantDataSources;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
+        // Expired, forged and revoked tokens leave the request unauthenticated
+        Claims claims = authHeader != null && authHeader.startsWith("Bearer ")
+                ? jwtUtils.parseClaims(authHeader.substring(7))
+                : null;
 
-        if (authHeader != null && authHeader.startsWith("Bearer ")) {
-            String token = authHeader.substring(7);
-            String username = jwtUtils.getUserNameFromJwtToken(token);
+        // A token names its tenant; requests without one, such as login, say it in a header
+        String tenant = TenantContext.DEFAULT;
+        if (tenantDataSources != null) {
+            tenant = claims != null ? JwtUtils.tenantOf(claims)
+                    : request.getHeader(TenantContext.HEADER) != null ? request.getHeader(TenantContext.HEADER)
+                    : TenantContext.DEFAULT;
+            if (!tenantDataSources.isKnown(tenant)) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown tenant");
+                return;
+            }
+        }
 
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        TenantContext.set(tenant);
+        try {
+            if (claims != null && claims.getSubject() != null && refreshTokenService.isAccessTokenUsable(claims)
+                    && SecurityContextHolder.getContext().getAuthentication() == null) {
+                UserDetails userDetails = userDetailsService.loadUserByUsername(claims.getSubject());
 
-                if (jwtUtils.validateJwtToken(token)) {
-                    UsernamePasswordAuthenticationToken authentication =
-                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
-                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
             }
+            filterChain.doFilter(request, response);
+        } finally {
+            TenantContext.clear();
         }
-        filterChain.doFilter(request, response);
     }
 }
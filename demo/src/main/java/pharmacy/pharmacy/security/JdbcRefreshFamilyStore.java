@@ -0,0 +1,72 @@
+package pharmacy.pharmacy.security;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Families in the {@code refresh_families} table, so any node can rotate or end a session
+ * another node issued. The table lives in each tenant's own database; the scheduled purge
+ * reaches the default one, and a login clears the user's own expired families wherever it is.
+ */
+public class JdbcRefreshFamilyStore implements RefreshFamilyStore {
+
+    private static final RowMapper<Family> FAMILY = (rs, rowNum) -> new Family(rs.getString("id"),
+            rs.getString("username"), rs.getString("tenant"), rs.getString("current_id"),
+            rs.getString("previous_id"), rs.getLong("rotated_at"), rs.getLong("expires_at"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcRefreshFamilyStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void create(Family family) {
+        jdbcTemplate.update("delete from refresh_families where tenant = ? and username = ? and expires_at <= ?",
+                family.tenant(), family.username(), System.currentTimeMillis());
+        jdbcTemplate.update(
+                "insert into refresh_families (id, username, tenant, current_id, previous_id, rotated_at, expires_at) values (?, ?, ?, ?, ?, ?, ?)",
+                family.id(), family.username(), family.tenant(), family.currentId(), family.previousId(),
+                family.rotatedAt(), family.expiresAt());
+    }
+
+    @Override
+    public Optional<Family> find(String id) {
+        return jdbcTemplate.query("select * from refresh_families where id = ?", FAMILY, id).stream().findFirst();
+    }
+
+    @Override
+    public boolean rotate(String id, String expectedId, String nextId, long expiresAt) {
+        long now = System.currentTimeMillis();
+        return jdbcTemplate.update(
+                "update refresh_families set previous_id = current_id, current_id = ?, rotated_at = ?, expires_at = ? where id = ? and current_id = ? and expires_at > ?",
+                nextId, now, expiresAt, id, expectedId, now) == 1;
+    }
+
+    @Override
+    public boolean remove(String id) {
+        return jdbcTemplate.update("delete from refresh_families where id = ?", id) == 1;
+    }
+
+    @Override
+    public List<String> removeUser(String tenant, String username) {
+        List<String> ids = jdbcTemplate.queryForList("select id from refresh_families where tenant = ? and username = ?",
+                String.class, tenant, username);
+        if (ids.isEmpty()) {
+            return ids;
+        }
+        // Only the families seen are removed and announced; one logged in meanwhile survives
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.update("delete from refresh_families where id in (" + placeholders + ")", ids.toArray());
+        return ids;
+    }
+
+    @Override
+    public int purgeExpired() {
+        return jdbcTemplate.update("delete from refresh_families where expires_at <= ?", System.currentTimeMillis());
+    }
+}
@@ -1,27 +1,90 @@
 package pharmacy.pharmacy.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
+import pharmacy.pharmacy.tenancy.TenantContext;
 
 import java.util.Date;
+import java.util.UUID;
 
 @Component
 public class JwtUtils {
 
+    public static final String TYPE_CLAIM = "typ";
+    public static final String FAMILY_CLAIM = "fam";
+    public static final String TENANT_CLAIM = "tnt";
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+
     private String jwtSecret = "secretKey";
-    private int jwtExpirationMs = 86400000; // 1 day
+
+    @Value("${jwt.access-expiration-ms:900000}")
+    private long jwtExpirationMs = 900000; // 15 minutes
+
+    @Value("${jwt.refresh-expiration-ms:604800000}")
+    private long refreshExpirationMs = 604800000; // 7 days
 
     public String generateJwtToken(UserDetails userDetails) {
+        return generateAccessToken(userDetails.getUsername(), null, TenantContext.current());
+    }
+
+    /**
+     * Access tokens carry the refresh family they were issued from, so that reusing a rotated
+     * refresh token can cut off the access tokens of that session as well. Both kinds name the
+     * tenant the user belongs to, except for the default tenant.
+     */
+    public String generateAccessToken(String username, String family, String tenant) {
+        return token(UUID.randomUUID().toString(), username, ACCESS, family, tenant, jwtExpirationMs);
+    }
+
+    public String generateRefreshToken(String username, String family, String id, String tenant) {
+        return token(id, username, REFRESH, family, tenant, refreshExpirationMs);
+    }
+
+    private String token(String id, String username, String type, String family, String tenant, long ttlMs) {
+        Date now = new Date();
         return Jwts.builder()
-                .setSubject(userDetails.getUsername())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
+                .setId(id)
+                .setSubject(username)
+                .claim(TYPE_CLAIM, type)
+                .claim(FAMILY_CLAIM, family)
+                .claim(TENANT_CLAIM, TenantContext.DEFAULT.equals(tenant) ? null : tenant)
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + ttlMs))
                 .signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
 
+    public static String tenantOf(Claims claims) {
+        String tenant = claims.get(TENANT_CLAIM, String.class);
+        return tenant == null ? TenantContext.DEFAULT : tenant;
+    }
+
+    /**
+     * Verifies the signature and expiry once and returns the claims, or null for any token
+     * that should not be trusted.
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public long getJwtExpirationMs() {
+        return jwtExpirationMs;
+    }
+
+    public long getRefreshExpirationMs() {
+        return refreshExpirationMs;
+    }
+
     public String getUserNameFromJwtToken(String token) {
         return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
     }
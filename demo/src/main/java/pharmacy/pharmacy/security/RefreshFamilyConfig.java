@@ -0,0 +1,20 @@
+package pharmacy.pharmacy.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration(proxyBeanMethods = false)
+public class RefreshFamilyConfig {
+
+    /**
+     * {@code jwt.family-store=memory} keeps sessions inside this JVM, for tests and single-node
+     * runs; the default shares them through the {@code refresh_families} table.
+     */
+    @Bean
+    public RefreshFamilyStore refreshFamilyStore(JdbcTemplate jdbcTemplate,
+                                                 @Value("${jwt.family-store:jdbc}") String type) {
+        return "memory".equalsIgnoreCase(type) ? new InMemoryRefreshFamilyStore() : new JdbcRefreshFamilyStore(jdbcTemplate);
+    }
+}
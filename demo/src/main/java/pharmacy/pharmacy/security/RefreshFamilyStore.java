@@ -0,0 +1,39 @@
+package pharmacy.pharmacy.security;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The refresh token families that are still live, one per login. Only the id of the token
+ * that may be presented next is kept; rotating it is a compare-and-set, so of two nodes
+ * serving the same token only one succeeds.
+ */
+public interface RefreshFamilyStore {
+
+    record Family(String id, String username, String tenant, String currentId, String previousId,
+                  long rotatedAt, long expiresAt) {
+    }
+
+    void create(Family family);
+
+    Optional<Family> find(String id);
+
+    /**
+     * Moves the family from {@code expectedId} to {@code nextId}; false when it has ended,
+     * expired, or already moved past {@code expectedId}.
+     */
+    boolean rotate(String id, String expectedId, String nextId, long expiresAt);
+
+    boolean remove(String id);
+
+    /**
+     * Removes every family of the user in the tenant and returns their ids. Usernames are only
+     * unique within a tenant.
+     */
+    List<String> removeUser(String tenant, String username);
+
+    /**
+     * Drops expired families and returns how many were removed.
+     */
+    int purgeExpired();
+}
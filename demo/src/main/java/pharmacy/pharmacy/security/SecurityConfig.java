@@ -2,6 +2,7 @@ package pharmacy.pharmacy.security;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
@@ -19,6 +20,8 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
+import pharmacy.pharmacy.concurrency.ConcurrencyLimitFilter;
+import pharmacy.pharmacy.idempotency.IdempotencyFilter;
 
 import java.util.List;
 
@@ -29,10 +32,13 @@ public class SecurityConfig {
 
     private final UserDetailsService userDetailsService;
     private final JWTAuthFilter jwtAuthFilter;
+    private final ConcurrencyLimitFilter concurrencyLimitFilter;
 
-    public SecurityConfig(UserDetailsService userDetailsService, JWTAuthFilter jwtAuthFilter) {
+    public SecurityConfig(UserDetailsService userDetailsService, JWTAuthFilter jwtAuthFilter,
+                          ConcurrencyLimitFilter concurrencyLimitFilter) {
         this.userDetailsService = userDetailsService;
         this.jwtAuthFilter = jwtAuthFilter;
+        this.concurrencyLimitFilter = concurrencyLimitFilter;
     }
 
     @Bean
@@ -48,11 +54,18 @@ public class SecurityConfig {
                                 "/error"
                         ).permitAll()
 
+                        // Local outbox webhook stub, when enabled; it checks the webhook signature itself
+                        .requestMatchers(HttpMethod.POST, "/api/outbox/stub/events").permitAll()
+
+                        // Liveness and readiness probes; health details stay hidden
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+
                         // Swagger documentation endpoints
                         .requestMatchers(
                                 "/swagger-ui.html",
                                 "/swagger-ui/**",
                                 "/v3/api-docs/**",
+                                "/openapi/**",
                                 "/swagger-resources/**",
                                 "/webjars/**"
                         ).permitAll()
@@ -64,7 +77,9 @@ public class SecurityConfig {
                         .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 )
                 .authenticationProvider(authenticationProvider())
-                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+                .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                // Sheds excess requests before their tokens are checked
+                .addFilterBefore(concurrencyLimitFilter, JWTAuthFilter.class);
 
         return http.build();
     }
@@ -82,9 +97,13 @@ public class SecurityConfig {
                 "Content-Type",
                 "Accept",
                 "X-Requested-With",
-                "Cache-Control"
+                "Cache-Control",
+                "X-Tenant-ID",
+                "If-Match",                    // Conditional requests on user resources
+                "If-None-Match",
+                IdempotencyFilter.HEADER
         ));
-        config.setExposedHeaders(List.of("Authorization"));
+        config.setExposedHeaders(List.of("Authorization", "ETag", IdempotencyFilter.REPLAYED_HEADER));
         config.setAllowCredentials(true);
         config.setMaxAge(3600L);
 
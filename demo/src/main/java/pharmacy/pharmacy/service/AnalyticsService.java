@@ -0,0 +1,237 @@
+package pharmacy.pharmacy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pharmacy.pharmacy.dao.JobCursorRepository;
+import pharmacy.pharmacy.dao.SaleLineRepository;
+import pharmacy.pharmacy.dao.SalesRollupRepository;
+import pharmacy.pharmacy.dto.ReportPointDTO;
+import pharmacy.pharmacy.entity.JobCursor;
+import pharmacy.pharmacy.entity.RollupGranularity;
+import pharmacy.pharmacy.entity.SaleLine;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.service.SalesRollupStore.CellKey;
+import pharmacy.pharmacy.service.SalesRollupStore.CellValue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class AnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnalyticsService.class);
+    private static final String CURSOR_NAME = "sales-rollups";
+    private static final int REPLAY_PAGE_SIZE = 1000;
+    private static final int MAX_FLUSH_PAGES = 10;
+
+    private final SalesRollupRepository salesRollupRepository;
+    private final SaleLineRepository saleLineRepository;
+    private final JobCursorRepository jobCursorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SalesRollupStore store;
+    private final Duration gapGrace;
+    // Last sale line added to the in-memory rollups; every node reads them all
+    private long cursor;
+
+    public AnalyticsService(SalesRollupRepository salesRollupRepository,
+                            SaleLineRepository saleLineRepository,
+                            JobCursorRepository jobCursorRepository,
+                            JdbcTemplate jdbcTemplate,
+                            @Value("${analytics.hourly-retention:P2D}") Duration hourlyRetention,
+                            @Value("${analytics.daily-retention:P90D}") Duration dailyRetention,
+                            @Value("${analytics.gap-grace:PT30S}") Duration gapGrace) {
+        this.salesRollupRepository = salesRollupRepository;
+        this.saleLineRepository = saleLineRepository;
+        this.jobCursorRepository = jobCursorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.store = new SalesRollupStore(hourlyRetention.toSeconds(), dailyRetention.toSeconds());
+        this.gapGrace = gapGrace;
+    }
+
+    /**
+     * Restores the persisted rollups and replays only the sale lines past their watermark, so
+     * startup cost does not grow with the sales history.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void restore() {
+        long persistedWatermark = jobCursorRepository.findById(CURSOR_NAME).map(JobCursor::getPosition).orElse(0L);
+        salesRollupRepository.findAll().forEach(rollup -> store.load(
+                new CellKey(rollup.getId().getGranularity(), rollup.getId().getBucketStart(),
+                        rollup.getId().getSku(), rollup.getId().getBranchId()),
+                new CellValue(rollup.getQuantity(), rollup.getRevenueCents())));
+        store.compact(Instant.now().getEpochSecond());
+
+        cursor = persistedWatermark;
+        int replayed = catchUp(Integer.MAX_VALUE);
+        log.info("Sales rollups restored; replayed {} sale lines after watermark {}", replayed, persistedWatermark);
+    }
+
+    /**
+     * Adds the sale lines committed since the last refresh to this node's rollups, whichever
+     * node recorded them.
+     */
+    @Scheduled(fixedDelayString = "${analytics.refresh-ms:5000}")
+    @Transactional(readOnly = true)
+    public synchronized void refresh() {
+        catchUp(MAX_FLUSH_PAGES);
+    }
+
+    /**
+     * Folds ageing buckets down a tier, in memory and in the persisted rollups. Holds the
+     * watermark row so it does not interleave with a flush on any node.
+     */
+    @Scheduled(cron = "${analytics.compaction-cron:0 5 * * * *}")
+    @Transactional
+    public void compact() {
+        store.compact(Instant.now().getEpochSecond());
+        lockWatermark();
+        foldPersisted(RollupGranularity.HOUR, RollupGranularity.DAY);
+        foldPersisted(RollupGranularity.DAY, RollupGranularity.MONTH);
+    }
+
+    /**
+     * Adds the sale lines committed past the persisted watermark to the stored rollups as
+     * deltas, and moves the watermark past them, in one transaction. The lines are read back
+     * from {@code sale_lines} rather than taken from this node's memory, so each sale is counted
+     * once whichever node flushes; the watermark row stays locked until the flush commits.
+     * <p>
+     * Ids are handed out at insert time but become visible at commit, so the watermark only
+     * moves over a gap once the line after it is older than {@code gapGrace}; lines past an
+     * unsettled gap wait for a later flush. A sale whose transaction stays open longer than the
+     * grace period is left out of the stored rollups.
+     */
+    @Scheduled(fixedDelayString = "${analytics.flush-ms:10000}")
+    @Transactional
+    public void flush() {
+        long watermark = lockWatermark();
+        LocalDateTime settled = LocalDateTime.now().minus(gapGrace);
+        Map<CellKey, long[]> deltas = new HashMap<>();
+        boolean blocked = false;
+        List<SaleLine> page;
+        int pages = 0;
+        do {
+            page = saleLineRepository.findByIdGreaterThanOrderByIdAsc(watermark, PageRequest.of(0, REPLAY_PAGE_SIZE));
+            for (SaleLine line : page) {
+                if (line.getId() != watermark + 1 && line.getSoldAt().isAfter(settled)) {
+                    blocked = true;
+                    break;
+                }
+                long soldAt = line.getSoldAt().toEpochSecond(ZoneOffset.UTC);
+                RollupGranularity tier = store.tierFor(soldAt);
+                long[] delta = deltas.computeIfAbsent(
+                        new CellKey(tier, tier.truncate(soldAt), line.getSku(), line.getBranchId()), k -> new long[2]);
+                delta[0] += line.getQuantity();
+                delta[1] += revenueCents(line.getUnitPrice(), line.getQuantity());
+                watermark = line.getId();
+            }
+        } while (!blocked && page.size() == REPLAY_PAGE_SIZE && ++pages < MAX_FLUSH_PAGES);
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+        upsertDeltas(deltas);
+        jdbcTemplate.update("UPDATE job_cursors SET position = ? WHERE name = ?", watermark, CURSOR_NAME);
+    }
+
+    public List<ReportPointDTO> getTopSkus(LocalDateTime from, LocalDateTime to, Integer branchId,
+                                           String metric, int limit) {
+        try {
+            if (!"quantity".equals(metric) && !"revenue".equals(metric)) {
+                throw new GlobalException("Metric must be 'quantity' or 'revenue'", HttpStatus.BAD_REQUEST);
+            }
+            return store.topSkus(from.toEpochSecond(ZoneOffset.UTC), to.toEpochSecond(ZoneOffset.UTC),
+                    branchId, "revenue".equals(metric), limit);
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to compute top SKUs", e);
+        }
+    }
+
+    public List<ReportPointDTO> getTimeSeries(LocalDateTime from, LocalDateTime to, String sku, Integer branchId,
+                                              RollupGranularity granularity) {
+        try {
+            return store.timeSeries(from.toEpochSecond(ZoneOffset.UTC), to.toEpochSecond(ZoneOffset.UTC),
+                    sku, branchId, granularity);
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to compute sales time series", e);
+        }
+    }
+
+    /**
+     * Moves this node's cursor over {@code sale_lines} under the same gap rule as
+     * {@link #flush}, adding every line it passes to the in-memory rollups.
+     */
+    private int catchUp(int maxPages) {
+        LocalDateTime settled = LocalDateTime.now().minus(gapGrace);
+        int read = 0;
+        List<SaleLine> page;
+        int pages = 0;
+        do {
+            page = saleLineRepository.findByIdGreaterThanOrderByIdAsc(cursor, PageRequest.of(0, REPLAY_PAGE_SIZE));
+            for (SaleLine line : page) {
+                if (line.getId() != cursor + 1 && line.getSoldAt().isAfter(settled)) {
+                    return read;
+                }
+                store.add(line.getSku(), line.getBranchId(), line.getQuantity(),
+                        revenueCents(line.getUnitPrice(), line.getQuantity()), line.getSoldAt().toEpochSecond(ZoneOffset.UTC));
+                cursor = line.getId();
+                read++;
+            }
+        } while (page.size() == REPLAY_PAGE_SIZE && ++pages < maxPages);
+        return read;
+    }
+
+    // Serializes flushes and compactions across nodes until the surrounding transaction ends
+    private long lockWatermark() {
+        return jdbcTemplate.queryForObject("SELECT position FROM job_cursors WHERE name = ? FOR UPDATE", Long.class, CURSOR_NAME);
+    }
+
+    // Moves persisted buckets that fell behind the tier's horizon into the next tier
+    private void foldPersisted(RollupGranularity from, RollupGranularity to) {
+        long horizon = store.horizon(from);
+        Map<CellKey, long[]> deltas = new HashMap<>();
+        jdbcTemplate.query("SELECT bucket_start, sku, branch_id, quantity, revenue_cents FROM sales_rollups " +
+                "WHERE granularity = ? AND bucket_start < ?", rs -> {
+            long[] delta = deltas.computeIfAbsent(new CellKey(to, to.truncate(rs.getLong("bucket_start")),
+                    rs.getString("sku"), rs.getInt("branch_id")), k -> new long[2]);
+            delta[0] += rs.getLong("quantity");
+            delta[1] += rs.getLong("revenue_cents");
+        }, from.name(), horizon);
+        if (deltas.isEmpty()) {
+            return;
+        }
+        upsertDeltas(deltas);
+        jdbcTemplate.update("DELETE FROM sales_rollups WHERE granularity = ? AND bucket_start < ?", from.name(), horizon);
+    }
+
+    private void upsertDeltas(Map<CellKey, long[]> deltas) {
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> rows.add(new Object[]{key.granularity().name(), key.bucketStart(), key.sku(),
+                key.branchId(), delta[0], delta[1]}));
+        jdbcTemplate.batchUpdate("INSERT INTO sales_rollups (granularity, bucket_start, sku, branch_id, quantity, revenue_cents) " +
+                "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), " +
+                "revenue_cents = revenue_cents + VALUES(revenue_cents)", rows);
+    }
+
+    private static long revenueCents(BigDecimal unitPrice, int quantity) {
+        return unitPrice.movePointRight(2).longValue() * quantity;
+    }
+}
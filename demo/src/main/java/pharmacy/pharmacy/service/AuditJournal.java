@@ -0,0 +1,414 @@
+package pharmacy.pharmacy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pharmacy.pharmacy.entity.AuditAction;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only binary journal split into fixed-size memory-mapped segment files.
+ * <p>
+ * Producers enqueue onto a lock-free queue and never touch the file; a single writer thread
+ * drains the queue in batches, stamps each record with a monotonic timestamp and copies it into
+ * the active segment. A segment header carries its first and last timestamp and end offset, so a
+ * range read opens only the overlapping segments and a restart reads headers instead of records.
+ * <p>
+ * Segment layout: header {@code [magic:int][firstTs:long][lastTs:long][end:int]}, then records
+ * {@code [length:int][crc:int][ts:long][action:byte][targetUserId:int][actorLen:short][actor]
+ * [detailLen:short][detail]}. A zero length marks the end of written data.
+ */
+public class AuditJournal implements AutoCloseable {
+
+    public enum FsyncPolicy {
+        BATCH,
+        INTERVAL,
+        NONE
+    }
+
+    public record Entry(long timestamp, AuditAction action, int targetUserId, String actor, String detail) {
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AuditJournal.class);
+    private static final int MAGIC = 0x41554431;
+    private static final int HEADER_SIZE = 24;
+    private static final int RECORD_FIXED_SIZE = 4 + 4 + 8 + 1 + 4 + 2 + 2;
+    private static final int MAX_BATCH = 1024;
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    // Several segments can start in the same millisecond, so the sequence breaks ties
+    private final ConcurrentSkipListMap<SegmentKey, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Segment active;
+    private long lastTimestamp;
+    private long lastForceNanos = System.nanoTime();
+    private long segmentSequence;
+
+    public AuditJournal(Path directory, int segmentBytes, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        Files.createDirectories(directory);
+        openExistingSegments();
+        this.writer = new Thread(this::writeLoop, "audit-journal-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void append(AuditAction action, int targetUserId, String actor, String detail) {
+        queue.add(new Entry(System.currentTimeMillis(), action, targetUserId, actor, detail));
+        LockSupport.unpark(writer);
+    }
+
+    /**
+     * Reads records with {@code from <= timestamp < to}, optionally for one user, oldest first.
+     */
+    public List<Entry> read(long from, long to, Integer targetUserId, int limit) {
+        List<Entry> result = new ArrayList<>();
+        // The last segment starting before 'from' may still hold records inside the range
+        SegmentKey start = segments.lowerKey(new SegmentKey(from, Long.MIN_VALUE));
+        for (Segment segment : segments.tailMap(start == null ? new SegmentKey(Long.MIN_VALUE, Long.MIN_VALUE) : start).values()) {
+            if (segment.firstTimestamp >= to || result.size() >= limit) {
+                break;
+            }
+            if (segment.lastTimestamp < from) {
+                continue;
+            }
+            segment.scan(from, to, targetUserId, limit, result);
+        }
+        return result;
+    }
+
+    /**
+     * Gzips sealed segments whose newest record is older than {@code cutoff} into
+     * {@code archiveDirectory} and removes them from the live journal.
+     */
+    public int archiveBefore(long cutoff, Path archiveDirectory) throws IOException {
+        Files.createDirectories(archiveDirectory);
+        int archived = 0;
+        for (Segment segment : segments.values()) {
+            if (!segment.sealed || segment.lastTimestamp >= cutoff) {
+                continue;
+            }
+            Path target = archiveDirectory.resolve(segment.path.getFileName() + ".gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(target))) {
+                Files.copy(segment.path, out);
+            }
+            segments.remove(segment.key, segment);
+            Files.delete(segment.path);
+            archived++;
+        }
+        return archived;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the journal gave up on: too large for a segment, or still unwritten when it closed.
+     * Each is also logged in full.
+     */
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            Entry entry;
+            while (batch.size() < MAX_BATCH && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            boolean failed = false;
+            int written = 0;
+            try {
+                if (!batch.isEmpty()) {
+                    for (Entry e : batch) {
+                        try {
+                            write(e);
+                        } catch (RuntimeException encodingFailure) {
+                            // Retrying a record that cannot be encoded would hold up every record behind it
+                            drop(e, "it could not be encoded (" + encodingFailure + ")");
+                        }
+                        written++;
+                    }
+                    if (fsyncPolicy == FsyncPolicy.BATCH) {
+                        force();
+                    }
+                }
+                if (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastForceNanos >= fsyncIntervalNanos) {
+                    force();
+                }
+            } catch (IOException | RuntimeException e) {
+                // The unwritten tail stays at the head of the batch and is retried after a pause
+                log.error("Audit journal write failed; retrying {} records", batch.size() - written, e);
+                failed = true;
+            } finally {
+                batch.subList(0, written).clear();
+            }
+            if (failed && !running) {
+                batch.forEach(e -> drop(e, "the journal closed before it could be written"));
+                batch.clear();
+            }
+            if (running && (failed || queue.isEmpty())) {
+                LockSupport.parkNanos(this, fsyncPolicy == FsyncPolicy.INTERVAL ? fsyncIntervalNanos : TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    private void drop(Entry entry, String reason) {
+        dropped.incrementAndGet();
+        log.error("Dropped audit record because {}: {}", reason, entry);
+    }
+
+    private void write(Entry entry) throws IOException {
+        byte[] actor = truncate(entry.actor());
+        byte[] detail = truncate(entry.detail());
+        int length = RECORD_FIXED_SIZE + actor.length + detail.length;
+        if (length > segmentBytes - HEADER_SIZE - 4) {
+            drop(entry, "it is larger than a segment");
+            return;
+        }
+        long timestamp = Math.max(entry.timestamp(), lastTimestamp);
+        if (active == null || active.end + length + 4 > segmentBytes) {
+            roll(timestamp);
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(length - 8);
+        body.putLong(timestamp);
+        body.put((byte) entry.action().ordinal());
+        body.putInt(entry.targetUserId());
+        body.putShort((short) actor.length).put(actor);
+        body.putShort((short) detail.length).put(detail);
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.end;
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + 8, body.array());
+        // Length goes last so a reader never sees a record that is still being copied
+        buffer.putInt(position, length);
+
+        lastTimestamp = timestamp;
+        active.lastTimestamp = timestamp;
+        active.end = position + length;
+        buffer.putLong(12, timestamp);
+        buffer.putInt(20, active.end);
+    }
+
+    private void roll(long firstTimestamp) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.sealed = true;
+        }
+        long sequence = segmentSequence++;
+        Path path = directory.resolve(String.format("audit-%019d-%06d%s", firstTimestamp, sequence, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(4, firstTimestamp);
+            buffer.putLong(12, firstTimestamp);
+            buffer.putInt(20, HEADER_SIZE);
+            active = new Segment(new SegmentKey(firstTimestamp, sequence), path, buffer, firstTimestamp, HEADER_SIZE, false);
+        }
+        segments.put(active.key, active);
+    }
+
+    private void force() {
+        if (active != null) {
+            active.buffer.force();
+        }
+        lastForceNanos = System.nanoTime();
+    }
+
+    private void openExistingSegments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "audit-*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::toString));
+        for (Path path : files) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                if (buffer.getInt(0) != MAGIC) {
+                    log.warn("Skipping audit segment with bad header: {}", path);
+                    continue;
+                }
+                long sequence = parseSequence(path);
+                Segment segment = new Segment(new SegmentKey(buffer.getLong(4), sequence), path, buffer,
+                        buffer.getLong(12), buffer.getInt(20), true);
+                segment.recoverTail();
+                segments.put(segment.key, segment);
+                lastTimestamp = Math.max(lastTimestamp, segment.lastTimestamp);
+                segmentSequence = Math.max(segmentSequence, sequence + 1);
+            }
+        }
+        // Always start a fresh segment; earlier ones stay read-only
+    }
+
+    private static long parseSequence(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static byte[] truncate(String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        return bytes.length > 0xFFFF ? Arrays.copyOf(bytes, 0xFFFF) : bytes;
+    }
+
+    private record SegmentKey(long firstTimestamp, long sequence) implements Comparable<SegmentKey> {
+        @Override
+        public int compareTo(SegmentKey other) {
+            int byTimestamp = Long.compare(firstTimestamp, other.firstTimestamp);
+            return byTimestamp != 0 ? byTimestamp : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class Segment {
+        private static final int SPARSE_INDEX_STRIDE = 64;
+
+        private final SegmentKey key;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final long firstTimestamp;
+        private volatile long lastTimestamp;
+        private volatile int end;
+        private volatile boolean sealed;
+        // Sealed segments only: timestamp -> offset of every SPARSE_INDEX_STRIDE-th record
+        private volatile NavigableMap<Long, Integer> sparseIndex;
+
+        private Segment(SegmentKey key, Path path, MappedByteBuffer buffer, long lastTimestamp, int end, boolean sealed) {
+            this.key = key;
+            this.path = path;
+            this.buffer = buffer;
+            this.firstTimestamp = key.firstTimestamp();
+            this.lastTimestamp = lastTimestamp;
+            this.end = end;
+            this.sealed = sealed;
+        }
+
+        // A crash can leave records after the header's end offset; keep the ones whose CRC checks out
+        private void recoverTail() {
+            int position = end;
+            ByteBuffer view = buffer.duplicate();
+            while (position + 4 <= view.capacity()) {
+                int length = view.getInt(position);
+                if (length < RECORD_FIXED_SIZE || position + length > view.capacity() || !crcMatches(view, position, length)) {
+                    break;
+                }
+                lastTimestamp = view.getLong(position + 8);
+                position += length;
+            }
+            end = position;
+        }
+
+        private void scan(long from, long to, Integer targetUserId, int limit, List<Entry> out) {
+            ByteBuffer view = buffer.duplicate();
+            int limitOffset = end;
+            int position = seek(view, from, limitOffset);
+            while (position < limitOffset && out.size() < limit) {
+                int length = view.getInt(position);
+                if (length == 0) {
+                    break;
+                }
+                long timestamp = view.getLong(position + 8);
+                if (timestamp >= to) {
+                    break;
+                }
+                if (timestamp >= from) {
+                    int userId = view.getInt(position + 17);
+                    if (targetUserId == null || targetUserId == userId) {
+                        out.add(decode(view, position, timestamp, userId));
+                    }
+                }
+                position += length;
+            }
+        }
+
+        private int seek(ByteBuffer view, long from, int limitOffset) {
+            if (!sealed) {
+                return HEADER_SIZE;
+            }
+            NavigableMap<Long, Integer> index = sparseIndex;
+            if (index == null) {
+                index = new TreeMap<>();
+                int position = HEADER_SIZE;
+                for (int n = 0; position < limitOffset; n++) {
+                    int length = view.getInt(position);
+                    if (length == 0) {
+                        break;
+                    }
+                    if (n % SPARSE_INDEX_STRIDE == 0) {
+                        index.putIfAbsent(view.getLong(position + 8), position);
+                    }
+                    position += length;
+                }
+                sparseIndex = index;
+            }
+            Map.Entry<Long, Integer> floor = index.lowerEntry(from);
+            return floor == null ? HEADER_SIZE : floor.getValue();
+        }
+
+        private static Entry decode(ByteBuffer view, int position, long timestamp, int userId) {
+            AuditAction action = AuditAction.values()[view.get(position + 16)];
+            int offset = position + 21;
+            int actorLength = Short.toUnsignedInt(view.getShort(offset));
+            byte[] actor = new byte[actorLength];
+            view.get(offset + 2, actor);
+            offset += 2 + actorLength;
+            int detailLength = Short.toUnsignedInt(view.getShort(offset));
+            byte[] detail = new byte[detailLength];
+            view.get(offset + 2, detail);
+            return new Entry(timestamp, action, userId,
+                    new String(actor, StandardCharsets.UTF_8), new String(detail, StandardCharsets.UTF_8));
+        }
+
+        private static boolean crcMatches(ByteBuffer view, int position, int length) {
+            byte[] body = new byte[length - 8];
+            view.get(position + 8, body);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return (int) crc.getValue() == view.getInt(position + 4);
+        }
+    }
+}
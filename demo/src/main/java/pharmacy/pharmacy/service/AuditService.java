@@ -0,0 +1,143 @@
+package pharmacy.pharmacy.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pharmacy.pharmacy.dto.AuditRecordDTO;
+import pharmacy.pharmacy.entity.AuditAction;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the audit trail in one journal per tenant: the default tenant's in
+ * {@code audit.journal.dir}, every other tenant's under {@code tenants/<id>} in it, opened the
+ * first time that tenant records or reads.
+ */
+@Service
+public class AuditService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditService.class);
+    private static final String TENANTS_DIRECTORY = "tenants";
+
+    private final AuditJournal journal;
+    private final Map<String, AuditJournal> tenantJournals = new ConcurrentHashMap<>();
+    private final Path directory;
+    private final Path archiveDirectory;
+    private final int segmentBytes;
+    private final AuditJournal.FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMillis;
+    private final Duration retention;
+
+    public AuditService(MeterRegistry meterRegistry,
+                        @Value("${audit.journal.dir:data/audit}") Path directory,
+                        @Value("${audit.journal.archive-dir:data/audit/archive}") Path archiveDirectory,
+                        @Value("${audit.journal.segment-bytes:67108864}") int segmentBytes,
+                        @Value("${audit.journal.fsync:INTERVAL}") AuditJournal.FsyncPolicy fsyncPolicy,
+                        @Value("${audit.journal.fsync-interval-ms:1000}") long fsyncIntervalMillis,
+                        @Value("${audit.journal.retention:P30D}") Duration retention) throws IOException {
+        this.journal = new AuditJournal(directory, segmentBytes, fsyncPolicy, fsyncIntervalMillis);
+        this.directory = directory;
+        this.archiveDirectory = archiveDirectory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.retention = retention;
+        FunctionCounter.builder("audit.journal.dropped", this, AuditService::droppedCount)
+                .description("Audit records the journal could not write")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records a change made by the current principal. Inside a transaction the record is only
+     * appended once it commits, so rolled-back changes never reach the journal.
+     */
+    public void record(AuditAction action, int targetUserId, String detail) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        String actor = authentication == null ? "anonymous" : authentication.getName();
+        AuditJournal target = journal();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            target.append(action, targetUserId, actor, detail);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                target.append(action, targetUserId, actor, detail);
+            }
+        });
+    }
+
+    public List<AuditRecordDTO> getRecords(Instant from, Instant to, Integer userId, int limit) {
+        try {
+            return journal().read(from.toEpochMilli(), to.toEpochMilli(), userId, limit).stream()
+                    .map(e -> new AuditRecordDTO(e.timestamp(), e.action(), e.targetUserId(), e.actor(), e.detail()))
+                    .toList();
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to read audit records", e);
+        }
+    }
+
+    // Moves sealed segments past retention out of the live journal into gzip archives
+    @Scheduled(cron = "${audit.journal.archive-cron:0 15 3 * * *}")
+    public void archive() {
+        long cutoff = Instant.now().minus(retention).toEpochMilli();
+        archive(journal, cutoff, archiveDirectory);
+        tenantJournals.forEach((tenant, tenantJournal) ->
+                archive(tenantJournal, cutoff, archiveDirectory.resolve(TENANTS_DIRECTORY).resolve(tenant)));
+    }
+
+    private void archive(AuditJournal source, long cutoff, Path destination) {
+        try {
+            int archived = source.archiveBefore(cutoff, destination);
+            if (archived > 0) {
+                log.info("Archived {} audit segments to {}", archived, destination);
+            }
+        } catch (IOException e) {
+            log.error("Audit journal archival failed", e);
+        }
+    }
+
+    // The caller's tenant has been checked to be configured, so its id is a safe directory name
+    private AuditJournal journal() {
+        if (TenantContext.isDefault()) {
+            return journal;
+        }
+        return tenantJournals.computeIfAbsent(TenantContext.current(), tenant -> {
+            try {
+                return new AuditJournal(directory.resolve(TENANTS_DIRECTORY).resolve(tenant), segmentBytes, fsyncPolicy,
+                        fsyncIntervalMillis);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private double droppedCount() {
+        return journal.droppedCount() + tenantJournals.values().stream().mapToLong(AuditJournal::droppedCount).sum();
+    }
+
+    @Override
+    public void destroy() {
+        journal.close();
+        tenantJournals.values().forEach(AuditJournal::close);
+    }
+}
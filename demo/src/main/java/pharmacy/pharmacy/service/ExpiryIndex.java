@@ -0,0 +1,123 @@
+package pharmacy.pharmacy.service;
+
+import pharmacy.pharmacy.dto.ExpiryEventDTO;
+import pharmacy.pharmacy.entity.ExpiryStage;
+import pharmacy.pharmacy.entity.StockBatch;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Date-bucketed index of upcoming batch expiries. Each live batch sits in exactly one
+ * bucket, keyed by the date its next notification is due, so a tick only touches the
+ * buckets that have come due instead of every batch.
+ */
+public class ExpiryIndex {
+
+    private final int nearExpiryDays;
+    private final NavigableMap<LocalDate, Set<Long>> buckets = new TreeMap<>();
+    private final Map<Long, Entry> entries = new HashMap<>();
+
+    public ExpiryIndex(int nearExpiryDays) {
+        this.nearExpiryDays = nearExpiryDays;
+    }
+
+    public synchronized void schedule(StockBatch batch) {
+        cancel(batch.getId());
+        if (batch.getQuantity() <= 0 || batch.getExpiryStage() == ExpiryStage.EXPIRED) {
+            return;
+        }
+        Entry entry = new Entry(batch.getId(), batch.getSku(), batch.getBranchId(),
+                batch.getLotNumber(), batch.getExpiryDate(), batch.getExpiryStage());
+        entries.put(entry.batchId, entry);
+        buckets.computeIfAbsent(entry.dueDate(nearExpiryDays), d -> new HashSet<>()).add(entry.batchId);
+    }
+
+    public synchronized void cancel(Long batchId) {
+        Entry entry = entries.remove(batchId);
+        if (entry == null) {
+            return;
+        }
+        LocalDate due = entry.dueDate(nearExpiryDays);
+        Set<Long> bucket = buckets.get(due);
+        if (bucket != null) {
+            bucket.remove(batchId);
+            if (bucket.isEmpty()) {
+                buckets.remove(due);
+            }
+        }
+    }
+
+    /**
+     * Returns one event per stage transition due on or before {@code today}, leaving the
+     * index untouched until {@link #markFired} confirms them, so a tick whose writes roll
+     * back sees the same events again.
+     */
+    public synchronized List<ExpiryEventDTO> peekDue(LocalDate today) {
+        List<ExpiryEventDTO> events = new ArrayList<>();
+        for (Set<Long> bucket : buckets.headMap(today, true).values()) {
+            for (Long batchId : bucket) {
+                Entry entry = entries.get(batchId);
+                ExpiryStage next = entry.expiryDate.isAfter(today) ? ExpiryStage.NEAR_EXPIRY : ExpiryStage.EXPIRED;
+                events.add(entry.toEvent(next));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Applies transitions returned by {@link #peekDue}. Expired batches leave the index;
+     * batches that only reached NEAR_EXPIRY are re-bucketed at their expiry date. Batches
+     * rescheduled or cancelled since the peek are left as they are.
+     */
+    public synchronized void markFired(List<ExpiryEventDTO> events) {
+        for (ExpiryEventDTO event : events) {
+            Entry entry = entries.get(event.getBatchId());
+            if (entry == null || entry.stage == event.getStage() || !entry.expiryDate.equals(event.getExpiryDate())) {
+                continue;
+            }
+            cancel(entry.batchId);
+            if (event.getStage() == ExpiryStage.NEAR_EXPIRY) {
+                entry.stage = ExpiryStage.NEAR_EXPIRY;
+                entries.put(entry.batchId, entry);
+                buckets.computeIfAbsent(entry.expiryDate, d -> new HashSet<>()).add(entry.batchId);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        buckets.clear();
+        entries.clear();
+    }
+
+    private static final class Entry {
+        private final long batchId;
+        private final String sku;
+        private final int branchId;
+        private final String lotNumber;
+        private final LocalDate expiryDate;
+        private ExpiryStage stage;
+
+        private Entry(long batchId, String sku, int branchId, String lotNumber,
+                      LocalDate expiryDate, ExpiryStage stage) {
+            this.batchId = batchId;
+            this.sku = sku;
+            this.branchId = branchId;
+            this.lotNumber = lotNumber;
+            this.expiryDate = expiryDate;
+            this.stage = stage;
+        }
+
+        private LocalDate dueDate(int nearExpiryDays) {
+            return stage == ExpiryStage.ACTIVE ? expiryDate.minusDays(nearExpiryDays) : expiryDate;
+        }
+
+        private ExpiryEventDTO toEvent(ExpiryStage next) {
+            return new ExpiryEventDTO(batchId, sku, branchId, lotNumber, expiryDate, next);
+        }
+    }
+}
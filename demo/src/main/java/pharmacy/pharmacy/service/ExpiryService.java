@@ -0,0 +1,203 @@
+package pharmacy.pharmacy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import pharmacy.pharmacy.dao.StockBatchRepository;
+import pharmacy.pharmacy.dto.ExpiryEventDTO;
+import pharmacy.pharmacy.entity.ExpiryStage;
+import pharmacy.pharmacy.entity.StockBatch;
+import pharmacy.pharmacy.event.StockChangedEvent;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.exception.ResourceNotFoundException;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+@Service
+public class ExpiryService {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiryService.class);
+
+    private final StockBatchRepository stockBatchRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExpiryIndex expiryIndex;
+    private final long emitterTimeoutMs;
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+
+    public ExpiryService(StockBatchRepository stockBatchRepository,
+                         ApplicationEventPublisher eventPublisher,
+                         @Value("${expiry.near-expiry-days:30}") int nearExpiryDays,
+                         @Value("${expiry.sse-timeout-ms:1800000}") long emitterTimeoutMs) {
+        this.stockBatchRepository = stockBatchRepository;
+        this.eventPublisher = eventPublisher;
+        this.expiryIndex = new ExpiryIndex(nearExpiryDays);
+        this.emitterTimeoutMs = emitterTimeoutMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuildIndex() {
+        expiryIndex.clear();
+        List<StockBatch> live = stockBatchRepository.findByExpiryStageNotAndQuantityGreaterThan(ExpiryStage.EXPIRED, 0);
+        live.forEach(expiryIndex::schedule);
+        log.info("Expiry index rebuilt with {} live batches", expiryIndex.size());
+    }
+
+    @Transactional(readOnly = true)
+    public List<StockBatch> getAllBatches() {
+        try {
+            return stockBatchRepository.findAll();
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to retrieve stock batches", e);
+        }
+    }
+
+    @Transactional
+    public StockBatch receiveBatch(StockBatch batch) {
+        try {
+            validateBatch(batch);
+            batch.setId(null);
+            batch.setExpiryStage(ExpiryStage.ACTIVE);
+            StockBatch saved = stockBatchRepository.save(batch);
+            onBatchChanged(saved);
+            return saved;
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to receive stock batch", e);
+        }
+    }
+
+    @Transactional
+    public StockBatch updateBatch(long id, StockBatch batchDetails) {
+        try {
+            StockBatch batch = stockBatchRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Stock batch not found with id: " + id));
+
+            batch.setQuantity(batchDetails.getQuantity());
+            if (batchDetails.getExpiryDate() != null && !batchDetails.getExpiryDate().equals(batch.getExpiryDate())) {
+                batch.setExpiryDate(batchDetails.getExpiryDate());
+                batch.setExpiryStage(ExpiryStage.ACTIVE);
+            }
+
+            StockBatch saved = stockBatchRepository.save(batch);
+            onBatchChanged(saved);
+            return saved;
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to update stock batch with id: " + id, e);
+        }
+    }
+
+    @Transactional
+    public void deleteBatch(long id) {
+        try {
+            StockBatch batch = stockBatchRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Stock batch not found with id: " + id));
+            eventPublisher.publishEvent(new StockChangedEvent(batch.getSku(), batch.getBranchId()));
+            stockBatchRepository.delete(batch);
+            afterCommit(() -> expiryIndex.cancel(id));
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to delete stock batch with id: " + id, e);
+        }
+    }
+
+    // Re-buckets the batch once the surrounding transaction commits
+    public void onBatchChanged(StockBatch batch) {
+        eventPublisher.publishEvent(new StockChangedEvent(batch.getSku(), batch.getBranchId()));
+        afterCommit(() -> expiryIndex.schedule(batch));
+    }
+
+    /**
+     * Advances the index to today and announces whatever came due. Only the due buckets
+     * are read; the stage of the fired batches is persisted so a restart does not repeat them,
+     * and the index moves on only once that write commits. A batch whose expiry date was
+     * changed elsewhere since it was indexed keeps its stage and is re-indexed from its row.
+     */
+    @Scheduled(fixedDelayString = "${expiry.tick-ms:60000}", initialDelayString = "${expiry.tick-ms:60000}")
+    @Transactional
+    public void tick() {
+        List<ExpiryEventDTO> due = expiryIndex.peekDue(LocalDate.now());
+        if (due.isEmpty()) {
+            return;
+        }
+
+        Map<Boolean, List<ExpiryEventDTO>> applied = due.stream()
+                .collect(Collectors.partitioningBy(event -> stockBatchRepository.updateExpiryStage(
+                        event.getBatchId(), event.getExpiryDate(), event.getStage()) == 1));
+        List<ExpiryEventDTO> events = applied.get(true);
+        List<Long> staleIds = applied.get(false).stream().map(ExpiryEventDTO::getBatchId).toList();
+        List<StockBatch> stale = stockBatchRepository.findAllById(staleIds);
+
+        afterCommit(() -> {
+            expiryIndex.markFired(events);
+            staleIds.forEach(expiryIndex::cancel);
+            stale.forEach(expiryIndex::schedule);
+            events.forEach(this::publish);
+        });
+    }
+
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> emitters.remove(emitter));
+        emitter.onTimeout(() -> emitters.remove(emitter));
+        emitter.onError(e -> emitters.remove(emitter));
+        emitters.add(emitter);
+        return emitter;
+    }
+
+    private void publish(ExpiryEventDTO event) {
+        for (SseEmitter emitter : emitters) {
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(event.getBatchId() + "-" + event.getStage())
+                        .name(event.getStage().name())
+                        .data(event, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                emitters.remove(emitter);
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void validateBatch(StockBatch batch) {
+        if (batch.getSku() == null || batch.getSku().isEmpty()) {
+            throw new GlobalException("SKU cannot be empty", HttpStatus.BAD_REQUEST);
+        }
+        if (batch.getLotNumber() == null || batch.getLotNumber().isEmpty()) {
+            throw new GlobalException("Lot number cannot be empty", HttpStatus.BAD_REQUEST);
+        }
+        if (batch.getExpiryDate() == null) {
+            throw new GlobalException("Expiry date cannot be empty", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
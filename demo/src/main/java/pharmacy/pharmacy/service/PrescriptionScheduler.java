@@ -0,0 +1,216 @@
+package pharmacy.pharmacy.service;
+
+import pharmacy.pharmacy.entity.PrescriptionUrgency;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * In-memory verification queue. Every online pharmacist owns a priority queue ordered by
+ * urgency, then SLA deadline; new work goes to the least loaded pharmacist, and a pharmacist
+ * whose own queue runs dry (or holds only less urgent work) steals from the shared backlog or
+ * the peer holding the most urgent item. Claimed work is leased and returns to the queue if the
+ * lease lapses.
+ */
+public class PrescriptionScheduler {
+
+    public static final Comparator<Item> PRIORITY = Comparator
+            .comparingInt((Item item) -> item.urgency().ordinal())
+            .thenComparing(Item::slaDeadline)
+            .thenComparingLong(Item::id);
+
+    public record Item(long id, PrescriptionUrgency urgency, Instant slaDeadline, Instant submittedAt) {
+    }
+
+    public record Lease(Item item, int pharmacistId, Instant expiresAt) {
+    }
+
+    private final PriorityBlockingQueue<Item> backlog = new PriorityBlockingQueue<>(64, PRIORITY);
+    private final Map<Integer, Worker> workers = new ConcurrentHashMap<>();
+    private final Map<Long, Lease> leases = new ConcurrentHashMap<>();
+    // Queued or leased; the same prescription can be handed in again once reclaimed from the table
+    private final Set<Long> open = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Queues the item unless it is already queued or leased here.
+     */
+    public void submit(Item item) {
+        if (open.add(item.id())) {
+            enqueue(item);
+        }
+    }
+
+    private void enqueue(Item item) {
+        Worker target = null;
+        for (Worker worker : workers.values()) {
+            if (target == null || worker.size() < target.size()) {
+                target = worker;
+            }
+        }
+        if (target == null || !target.offer(item)) {
+            backlog.add(item);
+        }
+    }
+
+    /**
+     * Leases the most urgent item visible to the pharmacist: the head of their own queue, unless
+     * the backlog or a peer holds something more urgent.
+     */
+    public Optional<Lease> claim(int pharmacistId, Instant leaseExpiresAt) {
+        Worker self = workers.computeIfAbsent(pharmacistId, Worker::new);
+        self.touch();
+
+        Item item = null;
+        // Heads can move under us; retry a few times rather than lock every queue at once
+        for (int attempt = 0; attempt < 4 && item == null; attempt++) {
+            Item own = self.peek();
+            Item queued = backlog.peek();
+            Worker victim = mostUrgentPeer(self);
+            Item stolen = victim == null ? null : victim.peek();
+
+            Item best = min(min(own, queued), stolen);
+            if (best == null) {
+                break;
+            }
+            if (best == own) {
+                item = self.pollIfHead(own);
+            } else if (best == queued) {
+                item = backlog.remove(queued) ? queued : null;
+            } else {
+                item = victim.pollIfHead(stolen);
+            }
+        }
+        if (item == null) {
+            return Optional.empty();
+        }
+        Lease lease = new Lease(item, pharmacistId, leaseExpiresAt);
+        leases.put(item.id(), lease);
+        return Optional.of(lease);
+    }
+
+    public Optional<Lease> renew(long itemId, int pharmacistId, Instant leaseExpiresAt) {
+        Lease current = leases.get(itemId);
+        if (current == null || current.pharmacistId() != pharmacistId) {
+            return Optional.empty();
+        }
+        Lease renewed = new Lease(current.item(), pharmacistId, leaseExpiresAt);
+        return leases.replace(itemId, current, renewed) ? Optional.of(renewed) : Optional.empty();
+    }
+
+    public Optional<Lease> complete(long itemId, int pharmacistId) {
+        Lease current = leases.get(itemId);
+        if (current == null || current.pharmacistId() != pharmacistId || !leases.remove(itemId, current)) {
+            return Optional.empty();
+        }
+        open.remove(itemId);
+        return Optional.of(current);
+    }
+
+    /**
+     * Re-queues every item whose lease lapsed before {@code now} and returns them.
+     */
+    public List<Item> expireLeases(Instant now) {
+        List<Item> expired = new ArrayList<>();
+        for (Lease lease : leases.values()) {
+            if (lease.expiresAt().isBefore(now) && leases.remove(lease.item().id(), lease)) {
+                expired.add(lease.item());
+                enqueue(lease.item());
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Takes pharmacists idle since before {@code idleBeforeMillis} offline and hands their queued
+     * items back to the backlog.
+     */
+    public void evictIdleWorkers(long idleBeforeMillis) {
+        for (Worker worker : workers.values()) {
+            if (worker.lastSeen() < idleBeforeMillis && workers.remove(worker.pharmacistId, worker)) {
+                backlog.addAll(worker.drain());
+            }
+        }
+    }
+
+    public int backlogSize() {
+        return backlog.size();
+    }
+
+    public int leasedCount() {
+        return leases.size();
+    }
+
+    public Map<Integer, Integer> queuedPerPharmacist() {
+        Map<Integer, Integer> sizes = new TreeMap<>();
+        workers.values().forEach(worker -> sizes.put(worker.pharmacistId, worker.size()));
+        return sizes;
+    }
+
+    private Worker mostUrgentPeer(Worker self) {
+        Worker victim = null;
+        Item victimHead = null;
+        for (Worker worker : workers.values()) {
+            Item head = worker == self ? null : worker.peek();
+            if (head != null && (victimHead == null || PRIORITY.compare(head, victimHead) < 0)) {
+                victim = worker;
+                victimHead = head;
+            }
+        }
+        return victim;
+    }
+
+    private static Item min(Item a, Item b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return PRIORITY.compare(a, b) <= 0 ? a : b;
+    }
+
+    private static final class Worker {
+        private final int pharmacistId;
+        private final PriorityQueue<Item> queue = new PriorityQueue<>(PRIORITY);
+        private volatile long lastSeen = System.currentTimeMillis();
+        private boolean retired;
+
+        private Worker(int pharmacistId) {
+            this.pharmacistId = pharmacistId;
+        }
+
+        private void touch() {
+            lastSeen = System.currentTimeMillis();
+        }
+
+        private long lastSeen() {
+            return lastSeen;
+        }
+
+        private synchronized boolean offer(Item item) {
+            // A worker evicted concurrently must not swallow new work
+            return !retired && queue.add(item);
+        }
+
+        private synchronized Item peek() {
+            return queue.peek();
+        }
+
+        private synchronized Item pollIfHead(Item expected) {
+            return queue.peek() == expected ? queue.poll() : null;
+        }
+
+        private synchronized int size() {
+            return queue.size();
+        }
+
+        private synchronized List<Item> drain() {
+            retired = true;
+            List<Item> items = new ArrayList<>(queue);
+            queue.clear();
+            return items;
+        }
+    }
+}
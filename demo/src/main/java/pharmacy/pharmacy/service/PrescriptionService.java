@@ -0,0 +1,278 @@
+package pharmacy.pharmacy.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pharmacy.pharmacy.dao.PrescriptionRepository;
+import pharmacy.pharmacy.dao.UserRepository;
+import pharmacy.pharmacy.dto.PrescriptionDTO;
+import pharmacy.pharmacy.dto.PrescriptionRequestDTO;
+import pharmacy.pharmacy.dto.VerificationDTO;
+import pharmacy.pharmacy.dto.VerificationMetricsDTO;
+import pharmacy.pharmacy.entity.*;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.exception.ResourceNotFoundException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class PrescriptionService {
+
+    private static final Logger log = LoggerFactory.getLogger(PrescriptionService.class);
+
+    // Stale items met in a row before a claim gives up for this request
+    private static final int MAX_CLAIM_ATTEMPTS = 8;
+
+    private final PrescriptionRepository prescriptionRepository;
+    private final UserRepository userRepository;
+    private final PrescriptionScheduler scheduler = new PrescriptionScheduler();
+    private final Map<PrescriptionUrgency, Duration> slaByUrgency = new EnumMap<>(PrescriptionUrgency.class);
+    private final Map<PrescriptionUrgency, Timer> timeToVerify = new EnumMap<>(PrescriptionUrgency.class);
+    private final Duration leaseDuration;
+    private final Duration idleTimeout;
+
+    public PrescriptionService(PrescriptionRepository prescriptionRepository,
+                               UserRepository userRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${prescription.sla.stat:PT15M}") Duration statSla,
+                               @Value("${prescription.sla.urgent:PT1H}") Duration urgentSla,
+                               @Value("${prescription.sla.routine:PT4H}") Duration routineSla,
+                               @Value("${prescription.sla.refill:PT24H}") Duration refillSla,
+                               @Value("${prescription.lease:PT10M}") Duration leaseDuration,
+                               @Value("${prescription.idle-timeout:PT15M}") Duration idleTimeout) {
+        this.prescriptionRepository = prescriptionRepository;
+        this.userRepository = userRepository;
+        this.leaseDuration = leaseDuration;
+        this.idleTimeout = idleTimeout;
+        slaByUrgency.put(PrescriptionUrgency.STAT, statSla);
+        slaByUrgency.put(PrescriptionUrgency.URGENT, urgentSla);
+        slaByUrgency.put(PrescriptionUrgency.ROUTINE, routineSla);
+        slaByUrgency.put(PrescriptionUrgency.REFILL, refillSla);
+        for (PrescriptionUrgency urgency : PrescriptionUrgency.values()) {
+            timeToVerify.put(urgency, Timer.builder("prescription.time.to.verify")
+                    .description("Time from submission to a verification decision")
+                    .tag("urgency", urgency.name())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Loads the pending queue once at startup, with the leases that have expired. Leases still
+     * running may be held on another node, and come back through the reaper once they lapse.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildQueue() {
+        List<Prescription> pending = prescriptionRepository.findByStatusIn(List.of(PrescriptionStatus.PENDING));
+        pending.forEach(p -> scheduler.submit(toItem(p)));
+        int reclaimed = reclaimExpiredLeases(Instant.now());
+        log.info("Prescription queue rebuilt with {} open items", pending.size() + reclaimed);
+    }
+
+    @Transactional
+    public PrescriptionDTO submit(PrescriptionRequestDTO request, String username, boolean onBehalf) {
+        try {
+            if (request.getMedication() == null || request.getMedication().isEmpty()) {
+                throw new GlobalException("Medication cannot be empty", HttpStatus.BAD_REQUEST);
+            }
+            User caller = findUser(username);
+            User customer = caller;
+            if (onBehalf && request.getCustomerId() != null) {
+                customer = userRepository.findById(request.getCustomerId())
+                        .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + request.getCustomerId()));
+            }
+            PrescriptionUrgency urgency = request.getUrgency() != null ? request.getUrgency() : PrescriptionUrgency.ROUTINE;
+            Instant now = Instant.now();
+
+            Prescription prescription = new Prescription();
+            prescription.setCustomer(customer);
+            prescription.setMedication(request.getMedication());
+            prescription.setUrgency(urgency);
+            prescription.setSubmittedAt(now);
+            prescription.setSlaDeadline(now.plus(slaByUrgency.get(urgency)));
+            Prescription saved = prescriptionRepository.save(prescription);
+
+            afterCommit(() -> scheduler.submit(toItem(saved)));
+            return new PrescriptionDTO(saved);
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to submit prescription", e);
+        }
+    }
+
+    @Transactional
+    public Optional<PrescriptionDTO> claimNext(String username) {
+        try {
+            int pharmacistId = findUser(username).getId();
+            for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+                Optional<PrescriptionScheduler.Lease> lease = scheduler.claim(pharmacistId, Instant.now().plus(leaseDuration));
+                if (lease.isEmpty()) {
+                    return Optional.empty();
+                }
+                long id = lease.get().item().id();
+                if (prescriptionRepository.claim(id, pharmacistId, lease.get().expiresAt()) == 1) {
+                    onRollback(() -> scheduler.complete(id, pharmacistId).ifPresent(l -> scheduler.submit(l.item())));
+                    return prescriptionRepository.findById(id).map(PrescriptionDTO::new);
+                }
+                // Claimed on another node or already verified: this node's copy is stale
+                scheduler.complete(id, pharmacistId);
+            }
+            return Optional.empty();
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to claim next prescription", e);
+        }
+    }
+
+    @Transactional
+    public PrescriptionDTO renewLease(long id, String username) {
+        try {
+            int pharmacistId = findUser(username).getId();
+            Instant expiresAt = Instant.now().plus(leaseDuration);
+            if (prescriptionRepository.renewLease(id, pharmacistId, expiresAt) == 0) {
+                throw new GlobalException("No active lease on prescription: " + id, HttpStatus.CONFLICT);
+            }
+            afterCommit(() -> scheduler.renew(id, pharmacistId, expiresAt));
+            return prescriptionRepository.findById(id).map(PrescriptionDTO::new)
+                    .orElseThrow(() -> new ResourceNotFoundException("Prescription not found with id: " + id));
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to renew lease on prescription: " + id, e);
+        }
+    }
+
+    @Transactional
+    public PrescriptionDTO verify(long id, String username, VerificationDTO verification) {
+        try {
+            int pharmacistId = findUser(username).getId();
+            Instant now = Instant.now();
+            PrescriptionStatus status = verification.isApproved() ? PrescriptionStatus.VERIFIED : PrescriptionStatus.REJECTED;
+            if (prescriptionRepository.markCompleted(id, status, pharmacistId, now, verification.getNotes()) == 0) {
+                throw new GlobalException("No active lease on prescription: " + id, HttpStatus.CONFLICT);
+            }
+
+            Prescription verified = prescriptionRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Prescription not found with id: " + id));
+            Duration waited = Duration.between(verified.getSubmittedAt(), now);
+            afterCommit(() -> {
+                scheduler.complete(id, pharmacistId);
+                timeToVerify.get(verified.getUrgency()).record(waited);
+            });
+            return new PrescriptionDTO(verified);
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to verify prescription: " + id, e);
+        }
+    }
+
+    /**
+     * Returns lapsed leases to the queue: those taken on this node, then any left in the table
+     * by a node that stopped.
+     */
+    @Scheduled(fixedDelayString = "${prescription.reaper-ms:15000}")
+    @Transactional
+    public void reapExpiredLeases() {
+        Instant now = Instant.now();
+        List<Long> expired = scheduler.expireLeases(now).stream()
+                .map(PrescriptionScheduler.Item::id)
+                .toList();
+        if (!expired.isEmpty()) {
+            prescriptionRepository.releaseExpiredLeases(expired, now);
+        }
+        int reclaimed = expired.size() + reclaimExpiredLeases(now);
+        if (reclaimed > 0) {
+            log.info("Returned {} abandoned prescriptions to the queue", reclaimed);
+        }
+        scheduler.evictIdleWorkers(System.currentTimeMillis() - idleTimeout.toMillis());
+    }
+
+    public Map<String, Object> getQueueState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("backlog", scheduler.backlogSize());
+        state.put("leased", scheduler.leasedCount());
+        state.put("queuedPerPharmacist", scheduler.queuedPerPharmacist());
+        return state;
+    }
+
+    public List<VerificationMetricsDTO> getVerificationMetrics() {
+        List<VerificationMetricsDTO> metrics = new ArrayList<>();
+        timeToVerify.forEach((urgency, timer) -> {
+            HistogramSnapshot snapshot = timer.takeSnapshot();
+            double p50 = 0;
+            double p99 = 0;
+            for (ValueAtPercentile value : snapshot.percentileValues()) {
+                if (value.percentile() == 0.5) {
+                    p50 = value.value(TimeUnit.MILLISECONDS);
+                } else if (value.percentile() == 0.99) {
+                    p99 = value.value(TimeUnit.MILLISECONDS);
+                }
+            }
+            metrics.add(new VerificationMetricsDTO(urgency, snapshot.count(), p50, p99));
+        });
+        return metrics;
+    }
+
+    private int reclaimExpiredLeases(Instant now) {
+        List<Prescription> lapsed = prescriptionRepository.findByStatusAndLeaseExpiresAtBefore(PrescriptionStatus.LEASED, now);
+        if (lapsed.isEmpty()) {
+            return 0;
+        }
+        prescriptionRepository.releaseExpiredLeases(lapsed.stream().map(Prescription::getId).toList(), now);
+        afterCommit(() -> lapsed.forEach(p -> scheduler.submit(toItem(p))));
+        return lapsed.size();
+    }
+
+    private User findUser(String username) {
+        return userRepository.findByUsername(username)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with username: " + username));
+    }
+
+    private PrescriptionScheduler.Item toItem(Prescription prescription) {
+        return new PrescriptionScheduler.Item(prescription.getId(), prescription.getUrgency(),
+                prescription.getSlaDeadline(), prescription.getSubmittedAt());
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Undoes an in-memory queue change when the row update it mirrors does not commit
+    private void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,176 @@
+package pharmacy.pharmacy.service;
+
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import pharmacy.pharmacy.invalidation.InvalidationBus;
+import pharmacy.pharmacy.security.JwtUtils;
+import pharmacy.pharmacy.security.RefreshFamilyStore;
+import pharmacy.pharmacy.security.RefreshFamilyStore.Family;
+import pharmacy.pharmacy.security.RevokedTokenSet;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Issues refresh tokens in families, one per login. Every refresh rotates the token: the
+ * presented one is revoked and only its successor is accepted next. Presenting a token that
+ * has already been rotated means it leaked, so the whole family is revoked, including the
+ * access tokens issued from it, and the user has to log in again.
+ * <p>
+ * Families live in the {@link RefreshFamilyStore}, shared by every node. Ended families are
+ * announced on the invalidation bus so every node rejects their access tokens.
+ */
+@Service
+public class RefreshTokenService {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    private static final String FAMILY_PREFIX = "family:";
+    // user:<tenant>:<username>, for nodes that keep their own families in memory
+    private static final String USER_PREFIX = "user:";
+
+    // A token rotated this recently was most likely sent twice by its own client, not replayed
+    private static final long CONCURRENT_REFRESH_MS = 5_000;
+
+    public record TokenPair(String accessToken, String refreshToken, long expiresInMs) {
+    }
+
+    private final JwtUtils jwtUtils;
+    private final InvalidationBus invalidationBus;
+    private final RefreshFamilyStore families;
+    // Ended sessions, kept only as long as an access token issued from them can live
+    private final RevokedTokenSet revokedFamilies;
+
+    public RefreshTokenService(JwtUtils jwtUtils, InvalidationBus invalidationBus, RefreshFamilyStore families) {
+        this.jwtUtils = jwtUtils;
+        this.invalidationBus = invalidationBus;
+        this.families = families;
+        this.revokedFamilies = new RevokedTokenSet(Math.max(1000, jwtUtils.getJwtExpirationMs() / 4));
+        invalidationBus.subscribe(InvalidationBus.SESSIONS, this::onSessionsInvalidated);
+    }
+
+    public TokenPair login(String username) {
+        String family = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        String tenant = TenantContext.current();
+        families.create(new Family(family, username, tenant, id, null, System.currentTimeMillis(), refreshExpiry()));
+        return pair(username, tenant, family, id);
+    }
+
+    /**
+     * Exchanges a refresh token for a new pair; empty when the token is invalid, expired,
+     * revoked or a replay of one that was already rotated.
+     */
+    public Optional<TokenPair> refresh(String refreshToken) {
+        Claims claims = jwtUtils.parseClaims(refreshToken);
+        if (claims == null || !JwtUtils.REFRESH.equals(claims.get(JwtUtils.TYPE_CLAIM))
+                || claims.get(JwtUtils.FAMILY_CLAIM) == null || claims.getId() == null) {
+            return Optional.empty();
+        }
+        String family = claims.get(JwtUtils.FAMILY_CLAIM, String.class);
+        String next = UUID.randomUUID().toString();
+        return inTenantOf(claims, () -> {
+            if (families.rotate(family, claims.getId(), next, refreshExpiry())) {
+                return Optional.of(pair(claims.getSubject(), JwtUtils.tenantOf(claims), family, next));
+            }
+            families.find(family).ifPresent(state -> {
+                boolean concurrent = claims.getId().equals(state.previousId())
+                        && System.currentTimeMillis() - state.rotatedAt() < CONCURRENT_REFRESH_MS;
+                if (!concurrent && !claims.getId().equals(state.currentId())) {
+                    log.warn("Rotated refresh token presented again for user {}; ending the session", state.username());
+                    revokeFamily(family);
+                }
+            });
+            // Unknown family (ended or expired), a replay, or a concurrent refresh with the same token
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Ends the session the refresh token belongs to. Tokens that do not verify are ignored.
+     */
+    public void logout(String refreshToken) {
+        Claims claims = jwtUtils.parseClaims(refreshToken);
+        if (claims != null && claims.get(JwtUtils.FAMILY_CLAIM) != null) {
+            inTenantOf(claims, () -> {
+                revokeFamily(claims.get(JwtUtils.FAMILY_CLAIM, String.class));
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Ends every session of the user on every node, e.g. after a password change or deletion.
+     */
+    public void revokeUser(String username) {
+        String tenant = TenantContext.current();
+        families.removeUser(tenant, username).forEach(this::announceEnded);
+        invalidationBus.publish(InvalidationBus.SESSIONS, USER_PREFIX + tenant + ":" + username);
+    }
+
+    /**
+     * Whether an access token may still be used: it must not be a refresh token and its
+     * session must not have ended.
+     */
+    public boolean isAccessTokenUsable(Claims claims) {
+        if (JwtUtils.REFRESH.equals(claims.get(JwtUtils.TYPE_CLAIM))) {
+            return false;
+        }
+        String family = claims.get(JwtUtils.FAMILY_CLAIM, String.class);
+        return family == null || !revokedFamilies.isRevoked(family);
+    }
+
+    private void revokeFamily(String family) {
+        families.remove(family);
+        announceEnded(family);
+    }
+
+    private void announceEnded(String family) {
+        forgetFamily(family);
+        invalidationBus.publish(InvalidationBus.SESSIONS, FAMILY_PREFIX + family);
+    }
+
+    private void forgetFamily(String family) {
+        // Refresh tokens of a family that is gone are rejected; only its access tokens need listing
+        revokedFamilies.revoke(family, System.currentTimeMillis() + jwtUtils.getJwtExpirationMs());
+    }
+
+    private void onSessionsInvalidated(String key) {
+        if (key.startsWith(FAMILY_PREFIX)) {
+            forgetFamily(key.substring(FAMILY_PREFIX.length()));
+        }
+    }
+
+    // Refresh and logout carry no access token, so the family is looked up in the refresh token's tenant
+    private <T> T inTenantOf(Claims claims, Supplier<T> action) {
+        String previous = TenantContext.current();
+        TenantContext.set(JwtUtils.tenantOf(claims));
+        try {
+            return action.get();
+        } finally {
+            TenantContext.set(previous);
+        }
+    }
+
+    private TokenPair pair(String username, String tenant, String family, String refreshId) {
+        return new TokenPair(jwtUtils.generateAccessToken(username, family, tenant),
+                jwtUtils.generateRefreshToken(username, family, refreshId, tenant), jwtUtils.getJwtExpirationMs());
+    }
+
+    private long refreshExpiry() {
+        return System.currentTimeMillis() + jwtUtils.getRefreshExpirationMs();
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation-sweep-ms:60000}")
+    public void discardExpired() {
+        int removed = families.purgeExpired() + revokedFamilies.discardExpired();
+        if (removed > 0) {
+            log.debug("Discarded {} expired families and revocations", removed);
+        }
+    }
+}
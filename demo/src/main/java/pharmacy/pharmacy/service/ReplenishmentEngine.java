@@ -0,0 +1,220 @@
+package pharmacy.pharmacy.service;
+
+import pharmacy.pharmacy.dto.ReorderSuggestionDTO;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Reorder-point calculator over flat primitive arrays. Each (sku, branch) pair owns a slot;
+ * daily demand for the slot lives in a ring of {@code windowDays} ints inside one shared array.
+ * <p>
+ * All mutation happens on the thread calling {@link #run}; {@link #recordSale} and
+ * {@link #setOnHand} from other threads only queue work. Recomputation is fanned out with
+ * fork/join and, except after a day rollover, touches only the slots marked dirty since the
+ * previous run.
+ */
+public class ReplenishmentEngine {
+
+    private static final int SPLIT_THRESHOLD = 2048;
+
+    private final int windowDays;
+    private final double leadTimeDays;
+    private final double reviewPeriodDays;
+    private final double serviceLevelZ;
+    private final ForkJoinPool pool;
+
+    private final Map<String, Integer> slotsByKey = new HashMap<>();
+    private final Queue<PendingSale> pendingSales = new ConcurrentLinkedQueue<>();
+    private final Queue<PendingStock> pendingStock = new ConcurrentLinkedQueue<>();
+
+    private String[] skus = new String[0];
+    private int[] branches = new int[0];
+    private int[] demand = new int[0];
+    private long[] lastDay = new long[0];
+    private long[] onHand = new long[0];
+    private double[] dailyMean = new double[0];
+    private double[] reorderPoint = new double[0];
+    private long[] suggestedQuantity = new long[0];
+    private int slotCount;
+
+    private final BitSet dirty = new BitSet();
+    private long lastRunDay = Long.MIN_VALUE;
+    private volatile List<ReorderSuggestionDTO> suggestions = List.of();
+
+    public ReplenishmentEngine(int windowDays, double leadTimeDays, double reviewPeriodDays,
+                               double serviceLevelZ, ForkJoinPool pool) {
+        this.windowDays = windowDays;
+        this.leadTimeDays = leadTimeDays;
+        this.reviewPeriodDays = reviewPeriodDays;
+        this.serviceLevelZ = serviceLevelZ;
+        this.pool = pool;
+    }
+
+    public void recordSale(String sku, int branchId, long epochDay, int quantity) {
+        pendingSales.add(new PendingSale(sku, branchId, epochDay, quantity));
+    }
+
+    public void setOnHand(String sku, int branchId, long quantity) {
+        pendingStock.add(new PendingStock(sku, branchId, quantity));
+    }
+
+    /**
+     * Applies queued updates and recomputes the dirty slots, or all of them when the day has
+     * rolled over since the last run. Returns the number of slots recomputed.
+     */
+    public synchronized int run(long today) {
+        drainPending();
+
+        int[] work;
+        if (today != lastRunDay) {
+            work = new int[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                work[i] = i;
+            }
+            lastRunDay = today;
+        } else {
+            work = dirty.stream().toArray();
+        }
+        dirty.clear();
+
+        if (work.length > 0) {
+            pool.invoke(new ComputeTask(work, 0, work.length, today));
+            suggestions = collectSuggestions();
+        }
+        return work.length;
+    }
+
+    public List<ReorderSuggestionDTO> getSuggestions() {
+        return suggestions;
+    }
+
+    public synchronized int slotCount() {
+        return slotCount;
+    }
+
+    private void drainPending() {
+        PendingSale sale;
+        while ((sale = pendingSales.poll()) != null) {
+            applySale(slot(sale.sku(), sale.branchId()), sale.epochDay(), sale.quantity());
+        }
+        PendingStock stock;
+        while ((stock = pendingStock.poll()) != null) {
+            int slot = slot(stock.sku(), stock.branchId());
+            onHand[slot] = stock.quantity();
+            dirty.set(slot);
+        }
+    }
+
+    private void applySale(int slot, long day, int quantity) {
+        long last = lastDay[slot];
+        if (day <= last - windowDays) {
+            return;
+        }
+        if (day > last) {
+            long clearFrom = Math.max(last + 1, day - windowDays + 1);
+            for (long d = clearFrom; d <= day; d++) {
+                demand[ringIndex(slot, d)] = 0;
+            }
+            lastDay[slot] = day;
+        }
+        demand[ringIndex(slot, day)] += quantity;
+        dirty.set(slot);
+    }
+
+    private int slot(String sku, int branchId) {
+        return slotsByKey.computeIfAbsent(sku + '\u0000' + branchId, k -> {
+            ensureCapacity(slotCount + 1);
+            int slot = slotCount++;
+            skus[slot] = sku;
+            branches[slot] = branchId;
+            lastDay[slot] = Long.MIN_VALUE / 2;
+            return slot;
+        });
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= skus.length) {
+            return;
+        }
+        int capacity = Math.max(required, Math.max(16, skus.length * 2));
+        skus = Arrays.copyOf(skus, capacity);
+        branches = Arrays.copyOf(branches, capacity);
+        demand = Arrays.copyOf(demand, capacity * windowDays);
+        lastDay = Arrays.copyOf(lastDay, capacity);
+        onHand = Arrays.copyOf(onHand, capacity);
+        dailyMean = Arrays.copyOf(dailyMean, capacity);
+        reorderPoint = Arrays.copyOf(reorderPoint, capacity);
+        suggestedQuantity = Arrays.copyOf(suggestedQuantity, capacity);
+    }
+
+    private int ringIndex(int slot, long day) {
+        return slot * windowDays + (int) Math.floorMod(day, (long) windowDays);
+    }
+
+    private void compute(int slot, long today) {
+        long last = lastDay[slot];
+        double sum = 0;
+        double sumSquares = 0;
+        for (long day = today - windowDays + 1; day <= today; day++) {
+            int quantity = (day <= last && day > last - windowDays) ? demand[ringIndex(slot, day)] : 0;
+            sum += quantity;
+            sumSquares += (double) quantity * quantity;
+        }
+        double mean = sum / windowDays;
+        double sigma = Math.sqrt(Math.max(0, sumSquares / windowDays - mean * mean));
+        double rop = mean * leadTimeDays + serviceLevelZ * sigma * Math.sqrt(leadTimeDays);
+        double target = rop + mean * reviewPeriodDays;
+
+        dailyMean[slot] = mean;
+        reorderPoint[slot] = rop;
+        suggestedQuantity[slot] = (mean > 0 && onHand[slot] <= rop) ? (long) Math.ceil(target - onHand[slot]) : 0;
+    }
+
+    private List<ReorderSuggestionDTO> collectSuggestions() {
+        List<ReorderSuggestionDTO> result = new ArrayList<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (suggestedQuantity[slot] > 0) {
+                result.add(new ReorderSuggestionDTO(skus[slot], branches[slot], onHand[slot],
+                        dailyMean[slot], reorderPoint[slot], suggestedQuantity[slot]));
+            }
+        }
+        // Most urgent first: lowest cover relative to the reorder point
+        result.sort(Comparator.comparingDouble(s -> s.getOnHand() / Math.max(s.getReorderPoint(), 1e-9)));
+        return Collections.unmodifiableList(result);
+    }
+
+    private record PendingSale(String sku, int branchId, long epochDay, int quantity) {
+    }
+
+    private record PendingStock(String sku, int branchId, long quantity) {
+    }
+
+    private final class ComputeTask extends RecursiveAction {
+        private final int[] slots;
+        private final int from;
+        private final int to;
+        private final long today;
+
+        private ComputeTask(int[] slots, int from, int to, long today) {
+            this.slots = slots;
+            this.from = from;
+            this.to = to;
+            this.today = today;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    ReplenishmentEngine.this.compute(slots[i], today);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ComputeTask(slots, from, mid, today), new ComputeTask(slots, mid, to, today));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package pharmacy.pharmacy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import pharmacy.pharmacy.dao.SaleLineRepository;
+import pharmacy.pharmacy.dao.StockBatchRepository;
+import pharmacy.pharmacy.dto.ReorderSuggestionDTO;
+import pharmacy.pharmacy.entity.SaleLine;
+import pharmacy.pharmacy.event.StockChangedEvent;
+import pharmacy.pharmacy.exception.GlobalException;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+@Service
+public class ReplenishmentService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplenishmentService.class);
+    private static final int SKU_QUERY_CHUNK = 500;
+    private static final int SALE_PAGE_SIZE = 1000;
+    private static final int MAX_SALE_PAGES = 10;
+
+    private final SaleLineRepository saleLineRepository;
+    private final StockBatchRepository stockBatchRepository;
+    private final ForkJoinPool pool;
+    private final ReplenishmentEngine engine;
+    private final int windowDays;
+    private final Duration gapGrace;
+    private final Set<StockChangedEvent> staleStock = ConcurrentHashMap.newKeySet();
+    // Last sale line counted into the engine
+    private long saleCursor;
+
+    public ReplenishmentService(SaleLineRepository saleLineRepository,
+                                StockBatchRepository stockBatchRepository,
+                                @Value("${replenishment.window-days:28}") int windowDays,
+                                @Value("${replenishment.lead-time-days:3}") double leadTimeDays,
+                                @Value("${replenishment.review-period-days:7}") double reviewPeriodDays,
+                                @Value("${replenishment.service-level-z:1.65}") double serviceLevelZ,
+                                @Value("${replenishment.parallelism:0}") int parallelism,
+                                @Value("${replenishment.gap-grace:PT30S}") Duration gapGrace) {
+        this.saleLineRepository = saleLineRepository;
+        this.stockBatchRepository = stockBatchRepository;
+        this.windowDays = windowDays;
+        this.gapGrace = gapGrace;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.engine = new ReplenishmentEngine(windowDays, leadTimeDays, reviewPeriodDays, serviceLevelZ, pool);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void seed() {
+        LocalDate since = LocalDate.now().minusDays(windowDays - 1L);
+        saleCursor = saleLineRepository.findMaxId();
+        saleLineRepository.sumDailySalesSince(since.atStartOfDay(), saleCursor).forEach(day ->
+                engine.recordSale(day.getSku(), day.getBranchId(), day.getDay().toEpochDay(), (int) day.getQuantity()));
+        stockBatchRepository.sumStockLevels().forEach(level ->
+                engine.setOnHand(level.getSku(), level.getBranchId(), level.getQuantity()));
+        int computed = engine.run(LocalDate.now().toEpochDay());
+        log.info("Replenishment engine seeded with {} sku/branch slots", computed);
+    }
+
+    @TransactionalEventListener
+    public void onStockChanged(StockChangedEvent event) {
+        staleStock.add(event);
+    }
+
+    /**
+     * Reads the sales committed since the last run, on any node, refreshes on-hand levels only
+     * for the sku/branch pairs touched since the last run, then lets the engine recompute the
+     * affected slots.
+     */
+    @Scheduled(fixedDelayString = "${replenishment.run-ms:60000}", initialDelayString = "${replenishment.run-ms:60000}")
+    @Transactional(readOnly = true)
+    public synchronized void recompute() {
+        readNewSales();
+        refreshStaleStock();
+        long started = System.nanoTime();
+        int computed = engine.run(LocalDate.now().toEpochDay());
+        if (computed > 0) {
+            log.debug("Recomputed {} reorder points in {} ms", computed, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public Page<ReorderSuggestionDTO> getSuggestions(Integer branchId, Pageable pageable) {
+        try {
+            List<ReorderSuggestionDTO> all = engine.getSuggestions();
+            if (branchId != null) {
+                all = all.stream().filter(s -> s.getBranchId() == branchId).toList();
+            }
+            int from = (int) Math.min(pageable.getOffset(), all.size());
+            int to = Math.min(from + pageable.getPageSize(), all.size());
+            return new PageImpl<>(all.subList(from, to), pageable, all.size());
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to retrieve reorder suggestions", e);
+        }
+    }
+
+    /**
+     * Moves this node's cursor over {@code sale_lines} the way {@link AnalyticsService#flush}
+     * moves its watermark: past a gap in the ids only once the line after it is older than
+     * {@code replenishment.gap-grace}, since the gap may be a sale not yet committed.
+     */
+    private void readNewSales() {
+        LocalDateTime settled = LocalDateTime.now().minus(gapGrace);
+        List<SaleLine> page;
+        int pages = 0;
+        do {
+            page = saleLineRepository.findByIdGreaterThanOrderByIdAsc(saleCursor, PageRequest.of(0, SALE_PAGE_SIZE));
+            for (SaleLine line : page) {
+                if (line.getId() != saleCursor + 1 && line.getSoldAt().isAfter(settled)) {
+                    return;
+                }
+                engine.recordSale(line.getSku(), line.getBranchId(), line.getSoldAt().toLocalDate().toEpochDay(),
+                        line.getQuantity());
+                saleCursor = line.getId();
+            }
+        } while (page.size() == SALE_PAGE_SIZE && ++pages < MAX_SALE_PAGES);
+    }
+
+    private void refreshStaleStock() {
+        if (staleStock.isEmpty()) {
+            return;
+        }
+        List<StockChangedEvent> stale = new ArrayList<>(staleStock);
+        staleStock.removeAll(stale);
+
+        List<String> skus = stale.stream().map(StockChangedEvent::sku).distinct().toList();
+        Map<StockChangedEvent, Long> levels = new HashMap<>();
+        for (int i = 0; i < skus.size(); i += SKU_QUERY_CHUNK) {
+            stockBatchRepository.sumStockLevelsForSkus(skus.subList(i, Math.min(i + SKU_QUERY_CHUNK, skus.size())))
+                    .forEach(level -> levels.put(new StockChangedEvent(level.getSku(), level.getBranchId()), level.getQuantity()));
+        }
+        // Pairs with no remaining batches come back without a row and drop to zero
+        stale.forEach(key -> engine.setOnHand(key.sku(), key.branchId(), levels.getOrDefault(key, 0L)));
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,124 @@
+package pharmacy.pharmacy.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pharmacy.pharmacy.dao.UserRepository;
+import pharmacy.pharmacy.dto.BulkRoleResultDTO;
+import pharmacy.pharmacy.entity.AuditAction;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+import pharmacy.pharmacy.exception.GlobalException;
+import pharmacy.pharmacy.invalidation.InvalidationBus;
+import pharmacy.pharmacy.outbox.UserOutbox;
+
+import java.util.*;
+
+/**
+ * Grants and revokes roles for many users at once. Each batch of users is one transaction:
+ * the users are locked, one {@code INSERT ... SELECT} or {@code DELETE} changes only the
+ * memberships that differ, the changed users' versions are bumped as an entity save would,
+ * their outbox events are written as one batch, and their invalidations go out together when
+ * it commits.
+ */
+@Service
+public class RoleAssignmentService {
+
+    static final int BATCH_SIZE = 500;
+
+    private final UserRepository userRepository;
+    private final AuditService auditService;
+    private final InvalidationBus invalidationBus;
+    private final UserOutbox userOutbox;
+    private final TransactionTemplate transactionTemplate;
+
+    public RoleAssignmentService(UserRepository userRepository, AuditService auditService,
+                                 InvalidationBus invalidationBus, UserOutbox userOutbox,
+                                 PlatformTransactionManager transactionManager) {
+        this.userRepository = userRepository;
+        this.auditService = auditService;
+        this.invalidationBus = invalidationBus;
+        this.userOutbox = userOutbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public List<BulkRoleResultDTO> grantRoles(Collection<Integer> userIds, Set<ERole> roles) {
+        return change(userIds, roles, true);
+    }
+
+    public List<BulkRoleResultDTO> revokeRoles(Collection<Integer> userIds, Set<ERole> roles) {
+        return change(userIds, roles, false);
+    }
+
+    /**
+     * One result per distinct user, in id order. Batches that committed stay committed if a
+     * later one fails.
+     */
+    private List<BulkRoleResultDTO> change(Collection<Integer> userIds, Set<ERole> roles, boolean grant) {
+        // Sorted, so concurrent bulk changes lock the rows they share in the same order
+        List<Integer> ids = new ArrayList<>(new TreeSet<>(userIds));
+        List<BulkRoleResultDTO> results = new ArrayList<>(ids.size());
+        if (roles.isEmpty()) {
+            return results;
+        }
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Integer> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            try {
+                results.addAll(transactionTemplate.execute(status -> changeBatch(batch, roles, grant)));
+            } catch (Exception e) {
+                throw new GlobalException("Failed to " + (grant ? "grant" : "revoke") + " roles for users "
+                        + batch.get(0) + " to " + batch.get(batch.size() - 1), e);
+            }
+        }
+        return results;
+    }
+
+    private List<BulkRoleResultDTO> changeBatch(List<Integer> batch, Set<ERole> roles, boolean grant) {
+        Set<Integer> existing = new HashSet<>(userRepository.lockExistingIds(batch));
+        Map<Integer, Set<ERole>> held = new HashMap<>();
+        if (!existing.isEmpty()) {
+            for (UserRepository.RoleRow row : userRepository.findRoleRowsByIds(existing)) {
+                held.computeIfAbsent(row.getUserId(), id -> EnumSet.noneOf(ERole.class)).add(row.getRole());
+            }
+        }
+
+        List<BulkRoleResultDTO> results = new ArrayList<>(batch.size());
+        List<Integer> changed = new ArrayList<>();
+        Map<Integer, Map<String, Set<ERole>>> events = new LinkedHashMap<>();
+        for (int id : batch) {
+            if (!existing.contains(id)) {
+                results.add(new BulkRoleResultDTO(id, BulkRoleResultDTO.Status.NOT_FOUND, Set.of()));
+                continue;
+            }
+            Set<ERole> difference = EnumSet.copyOf(roles);
+            Set<ERole> current = held.getOrDefault(id, Set.of());
+            if (grant) {
+                difference.removeAll(current);
+            } else {
+                difference.retainAll(current);
+            }
+            if (difference.isEmpty()) {
+                results.add(new BulkRoleResultDTO(id, BulkRoleResultDTO.Status.UNCHANGED, Set.of()));
+                continue;
+            }
+            changed.add(id);
+            events.put(id, Map.of("roles", difference));
+            results.add(new BulkRoleResultDTO(id, BulkRoleResultDTO.Status.CHANGED, difference));
+            auditService.record(grant ? AuditAction.ROLE_ASSIGNED : AuditAction.ROLE_REVOKED, id, "roles=" + difference);
+        }
+
+        if (!changed.isEmpty()) {
+            List<String> names = roles.stream().map(ERole::name).toList();
+            if (grant) {
+                userRepository.insertMemberships(changed, names);
+            } else {
+                userRepository.deleteMemberships(changed, names);
+            }
+            userRepository.incrementVersions(changed);
+            userOutbox.appendAll(grant ? UserLifecycleEvent.Type.ROLE_ASSIGNED : UserLifecycleEvent.Type.ROLE_REVOKED,
+                    events);
+            invalidationBus.publishAll(InvalidationBus.USERS, changed);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,114 @@
+package pharmacy.pharmacy.service;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import pharmacy.pharmacy.entity.ERole;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One compressed bitmap of user ids per role. Membership counts are read off the bitmaps,
+ * and users holding all (or any) of several roles come from intersecting (or joining) them,
+ * without touching the database. Pages are taken by rank in id order, so only the ids of the
+ * requested page are handed out.
+ */
+public class RoleMembershipIndex {
+
+    public record Slice(long total, int[] ids) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final EnumMap<ERole, RoaringBitmap> members = new EnumMap<>(ERole.class);
+
+    public RoleMembershipIndex() {
+        for (ERole role : ERole.values()) {
+            members.put(role, new RoaringBitmap());
+        }
+    }
+
+    /**
+     * Makes {@code roles} the user's memberships, dropping any they no longer hold.
+     */
+    public void set(int userId, Collection<ERole> roles) {
+        lock.writeLock().lock();
+        try {
+            members.forEach((role, bitmap) -> {
+                if (roles.contains(role)) {
+                    bitmap.add(userId);
+                } else {
+                    bitmap.remove(userId);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int userId) {
+        set(userId, List.of());
+    }
+
+    public void replaceAll(Map<ERole, RoaringBitmap> loaded) {
+        lock.writeLock().lock();
+        try {
+            for (ERole role : ERole.values()) {
+                RoaringBitmap bitmap = loaded.getOrDefault(role, new RoaringBitmap()).clone();
+                // Consecutive ids, as bulk imports and seeded roles produce, collapse to runs
+                bitmap.runOptimize();
+                members.put(role, bitmap);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<ERole, Long> counts() {
+        lock.readLock().lock();
+        try {
+            Map<ERole, Long> counts = new EnumMap<>(ERole.class);
+            members.forEach((role, bitmap) -> counts.put(role, bitmap.getLongCardinality()));
+            return counts;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The ids at ranks {@code offset} to {@code offset + limit} among users holding all of
+     * {@code roles} (or any of them when {@code all} is false), with the size of the whole set.
+     */
+    public Slice members(Set<ERole> roles, boolean all, int offset, int limit) {
+        if (roles.isEmpty()) {
+            return new Slice(0, new int[0]);
+        }
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matching = combine(roles, all);
+            long total = matching.getLongCardinality();
+            if (offset >= total || limit <= 0) {
+                return new Slice(total, new int[0]);
+            }
+            int[] ids = new int[(int) Math.min(limit, total - offset)];
+            PeekableIntIterator iterator = matching.getIntIterator();
+            // select() walks the container cardinalities instead of the ids before the page
+            iterator.advanceIfNeeded(matching.select(offset));
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = iterator.next();
+            }
+            return new Slice(total, ids);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap combine(Set<ERole> roles, boolean all) {
+        RoaringBitmap[] bitmaps = roles.stream().map(members::get).toArray(RoaringBitmap[]::new);
+        if (bitmaps.length == 1) {
+            return bitmaps[0];
+        }
+        return all ? FastAggregation.and(bitmaps) : FastAggregation.or(bitmaps);
+    }
+}
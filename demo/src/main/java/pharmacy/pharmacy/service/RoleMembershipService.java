@@ -0,0 +1,166 @@
+package pharmacy.pharmacy.service;
+
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import pharmacy.pharmacy.dao.UserRepository;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.entity.User;
+import pharmacy.pharmacy.invalidation.InvalidationBus;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.util.*;
+
+/**
+ * Role membership answered from {@link RoleMembershipIndex}: who holds a role, or several at
+ * once, and how many do, with only the users on the requested page read from the database.
+ * Like the user search, the index is loaded once the application is ready and then follows
+ * the {@code users} invalidations, re-reading the roles of the users named in one query.
+ */
+@Service
+public class RoleMembershipService {
+
+    private static final Logger log = LoggerFactory.getLogger(RoleMembershipService.class);
+
+    // Ids per round trip when loading; the join rows are only ids and role names
+    private static final int LOAD_ID_RANGE = 50_000;
+
+    public record MembersPage(long total, List<User> users) {
+    }
+
+    private final UserRepository userRepository;
+    private final RoleMembershipIndex index = new RoleMembershipIndex();
+    private final Object loadLock = new Object();
+    // Users changed while a load was reading, re-read once it is in place
+    private final Set<Integer> changedDuringLoad = new HashSet<>();
+    private boolean loading;
+    private volatile boolean ready;
+
+    public RoleMembershipService(UserRepository userRepository, InvalidationBus invalidationBus) {
+        this.userRepository = userRepository;
+        invalidationBus.subscribeAll(InvalidationBus.USERS, this::onUsersInvalidated);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        synchronized (loadLock) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+            changedDuringLoad.clear();
+        }
+        long started = System.nanoTime();
+        Set<Integer> changed;
+        try {
+            index.replaceAll(readAll());
+        } finally {
+            synchronized (loadLock) {
+                loading = false;
+                changed = new HashSet<>(changedDuringLoad);
+                changedDuringLoad.clear();
+            }
+        }
+        refresh(changed);
+        ready = true;
+        log.info("Role membership index loaded in {} ms: {}", (System.nanoTime() - started) / 1_000_000,
+                index.counts());
+    }
+
+    /**
+     * Whether the index has been loaded; until then every role would look empty. The index
+     * holds the default tenant's users only, so it is never ready for another tenant.
+     */
+    public boolean isReady() {
+        return ready && TenantContext.isDefault();
+    }
+
+    public Map<ERole, Long> countByRole() {
+        return index.counts();
+    }
+
+    /**
+     * One page, in id order, of the users holding all of {@code roles}, or any of them when
+     * {@code all} is false.
+     */
+    public MembersPage members(Set<ERole> roles, boolean all, int page, int size) {
+        RoleMembershipIndex.Slice slice = index.members(roles, all, Math.multiplyExact(page, size), size);
+        return new MembersPage(slice.total(), hydrate(slice.ids()));
+    }
+
+    /**
+     * Ids of every user holding all (or any) of {@code roles}, in id order.
+     */
+    public int[] memberIds(Set<ERole> roles, boolean all) {
+        return index.members(roles, all, 0, Integer.MAX_VALUE).ids();
+    }
+
+    public List<User> allMembers(ERole role) {
+        return hydrate(index.members(Set.of(role), true, 0, Integer.MAX_VALUE).ids());
+    }
+
+    // Users removed since the ids were taken are left out rather than failing the page
+    private List<User> hydrate(int[] ids) {
+        if (ids.length == 0) {
+            return List.of();
+        }
+        List<Integer> wanted = Arrays.stream(ids).boxed().toList();
+        List<User> users = new ArrayList<>(userRepository.findAllById(wanted));
+        users.sort(Comparator.comparingInt(User::getId));
+        return users;
+    }
+
+    private Map<ERole, RoaringBitmap> readAll() {
+        Map<ERole, RoaringBitmap> members = new EnumMap<>(ERole.class);
+        int maxId = userRepository.findCollectionVersion().getMaxId();
+        for (int after = 0; after < maxId; after += LOAD_ID_RANGE) {
+            for (UserRepository.RoleRow row : userRepository.findRoleRowsBetween(after, after + LOAD_ID_RANGE)) {
+                members.computeIfAbsent(row.getRole(), role -> new RoaringBitmap()).add(row.getUserId());
+            }
+        }
+        return members;
+    }
+
+    private void onUsersInvalidated(List<String> keys) {
+        if (!TenantContext.isDefault()) {
+            // Another tenant's users, applied on its connection; the index never held them
+            return;
+        }
+        if (keys.contains(null)) {
+            rebuildIndex();
+            return;
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (String key : keys) {
+            try {
+                ids.add(Integer.parseInt(key));
+            } catch (NumberFormatException e) {
+                // Not a user id; nothing indexed under it
+            }
+        }
+        synchronized (loadLock) {
+            if (loading) {
+                changedDuringLoad.addAll(ids);
+                return;
+            }
+        }
+        refresh(ids);
+    }
+
+    // A deleted user has no role rows left, which clears them from every bitmap
+    private void refresh(Set<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<ERole>> roles = new HashMap<>();
+        for (UserRepository.RoleRow row : userRepository.findRoleRowsByIds(ids)) {
+            roles.computeIfAbsent(row.getUserId(), id -> new ArrayList<>()).add(row.getRole());
+        }
+        for (int id : ids) {
+            index.set(id, roles.getOrDefault(id, List.of()));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package pharmacy.pharmacy.service;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import pharmacy.pharmacy.dao.SaleLineRepository;
+import pharmacy.pharmacy.dao.StockBatchRepository;
+import pharmacy.pharmacy.dto.SaleDTO;
+import pharmacy.pharmacy.entity.SaleLine;
+import pharmacy.pharmacy.entity.StockBatch;
+import pharmacy.pharmacy.event.SaleRecordedEvent;
+import pharmacy.pharmacy.event.StockChangedEvent;
+import pharmacy.pharmacy.exception.GlobalException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+public class SaleService {
+
+    private final SaleLineRepository saleLineRepository;
+    private final StockBatchRepository stockBatchRepository;
+    private final ExpiryService expiryService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SaleService(SaleLineRepository saleLineRepository,
+                       StockBatchRepository stockBatchRepository,
+                       ExpiryService expiryService,
+                       ApplicationEventPublisher eventPublisher) {
+        this.saleLineRepository = saleLineRepository;
+        this.stockBatchRepository = stockBatchRepository;
+        this.expiryService = expiryService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Transactional
+    public SaleLine recordSale(SaleDTO sale) {
+        try {
+            validateSale(sale);
+
+            // Pick stock first-expiry-first-out across the branch's unexpired batches
+            List<StockBatch> batches = stockBatchRepository
+                    .lockSellableBatches(sale.getSku(), sale.getBranchId(), LocalDate.now());
+            int remaining = sale.getQuantity();
+            for (StockBatch batch : batches) {
+                if (remaining == 0) {
+                    break;
+                }
+                int taken = Math.min(remaining, batch.getQuantity());
+                batch.setQuantity(batch.getQuantity() - taken);
+                remaining -= taken;
+                if (batch.getQuantity() == 0) {
+                    expiryService.onBatchChanged(batch);
+                }
+            }
+            if (remaining > 0) {
+                throw new GlobalException("Insufficient stock for SKU: " + sale.getSku(), HttpStatus.BAD_REQUEST);
+            }
+
+            SaleLine line = new SaleLine();
+            line.setSku(sale.getSku());
+            line.setBranchId(sale.getBranchId());
+            line.setQuantity(sale.getQuantity());
+            line.setUnitPrice(sale.getUnitPrice());
+            line.setSoldAt(LocalDateTime.now());
+            SaleLine saved = saleLineRepository.save(line);
+
+            eventPublisher.publishEvent(new SaleRecordedEvent(saved.getId(), saved.getSku(), saved.getBranchId(),
+                    saved.getQuantity(), saved.getUnitPrice(), saved.getSoldAt()));
+            eventPublisher.publishEvent(new StockChangedEvent(saved.getSku(), saved.getBranchId()));
+            return saved;
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to record sale", e);
+        }
+    }
+
+    private void validateSale(SaleDTO sale) {
+        if (sale.getSku() == null || sale.getSku().isEmpty()) {
+            throw new GlobalException("SKU cannot be empty", HttpStatus.BAD_REQUEST);
+        }
+        if (sale.getQuantity() <= 0) {
+            throw new GlobalException("Quantity must be positive", HttpStatus.BAD_REQUEST);
+        }
+        if (sale.getUnitPrice() == null || sale.getUnitPrice().signum() < 0) {
+            throw new GlobalException("Unit price must not be negative", HttpStatus.BAD_REQUEST);
+        }
+    }
+}
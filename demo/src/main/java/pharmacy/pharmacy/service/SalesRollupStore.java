@@ -0,0 +1,197 @@
+package pharmacy.pharmacy.service;
+
+import pharmacy.pharmacy.dto.ReportPointDTO;
+import pharmacy.pharmacy.entity.RollupGranularity;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Pre-aggregated sales totals per (sku, branch) in three tiers: hourly buckets for the recent
+ * past, daily buckets behind them and monthly buckets for everything older. Sales land in the
+ * finest tier still covering their timestamp and {@link #compact} folds ageing buckets down a tier,
+ * so report cost depends on the number of buckets in range, not on the number of sale lines.
+ */
+public class SalesRollupStore {
+
+    public record CellKey(RollupGranularity granularity, long bucketStart, String sku, int branchId) {
+    }
+
+    public record CellValue(long quantity, long revenueCents) {
+    }
+
+    private record SkuBranch(String sku, int branchId) {
+    }
+
+    private static final class Cell {
+        private long quantity;
+        private long revenueCents;
+    }
+
+    private final long hourRetentionSeconds;
+    private final long dayRetentionSeconds;
+    private final Map<RollupGranularity, NavigableMap<Long, Map<SkuBranch, Cell>>> tiers =
+            new EnumMap<>(RollupGranularity.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long hourHorizon = Long.MIN_VALUE;
+    private long dayHorizon = Long.MIN_VALUE;
+
+    public SalesRollupStore(long hourRetentionSeconds, long dayRetentionSeconds) {
+        this.hourRetentionSeconds = hourRetentionSeconds;
+        this.dayRetentionSeconds = dayRetentionSeconds;
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            tiers.put(granularity, new TreeMap<>());
+        }
+    }
+
+    // Adds one committed sale to the finest tier still covering its timestamp
+    public void add(String sku, int branchId, long quantity, long revenueCents, long epochSecond) {
+        lock.writeLock().lock();
+        try {
+            RollupGranularity tier = tierFor(epochSecond);
+            addTo(tier, tier.truncate(epochSecond), new SkuBranch(sku, branchId), quantity, revenueCents);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Restores a persisted cell at startup
+    public void load(CellKey key, CellValue value) {
+        lock.writeLock().lock();
+        try {
+            addTo(key.granularity(), key.bucketStart(), new SkuBranch(key.sku(), key.branchId()),
+                    value.quantity(), value.revenueCents());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The tier a sale at {@code epochSecond} belongs in as of the last {@link #compact}, so the
+     * persisted rollups can be bucketed the same way.
+     */
+    public RollupGranularity tierFor(long epochSecond) {
+        lock.readLock().lock();
+        try {
+            return epochSecond >= hourHorizon ? RollupGranularity.HOUR
+                    : epochSecond >= dayHorizon ? RollupGranularity.DAY : RollupGranularity.MONTH;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Buckets of this tier starting before the horizon have been folded into the next tier
+    public long horizon(RollupGranularity tier) {
+        lock.readLock().lock();
+        try {
+            return tier == RollupGranularity.HOUR ? hourHorizon
+                    : tier == RollupGranularity.DAY ? dayHorizon : Long.MIN_VALUE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Folds hourly buckets older than the hour retention into days, and daily buckets older
+     * than the day retention into months.
+     */
+    public void compact(long nowEpochSecond) {
+        lock.writeLock().lock();
+        try {
+            hourHorizon = RollupGranularity.DAY.truncate(nowEpochSecond - hourRetentionSeconds);
+            dayHorizon = RollupGranularity.MONTH.truncate(nowEpochSecond - dayRetentionSeconds);
+            fold(RollupGranularity.HOUR, RollupGranularity.DAY, hourHorizon);
+            fold(RollupGranularity.DAY, RollupGranularity.MONTH, dayHorizon);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top {@code limit} SKUs by quantity or revenue over [from, to), optionally for one branch.
+     */
+    public List<ReportPointDTO> topSkus(long from, long to, Integer branchId, boolean byRevenue, int limit) {
+        Map<String, long[]> totals = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (NavigableMap<Long, Map<SkuBranch, Cell>> tier : tiers.values()) {
+                for (Map<SkuBranch, Cell> bucket : tier.subMap(from, true, to, false).values()) {
+                    bucket.forEach((key, cell) -> {
+                        if (branchId == null || key.branchId() == branchId) {
+                            long[] total = totals.computeIfAbsent(key.sku(), k -> new long[2]);
+                            total[0] += cell.quantity;
+                            total[1] += cell.revenueCents;
+                        }
+                    });
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int metric = byRevenue ? 1 : 0;
+        PriorityQueue<Map.Entry<String, long[]>> top = new PriorityQueue<>(
+                Comparator.comparingLong((Map.Entry<String, long[]> e) -> e.getValue()[metric]));
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            top.add(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<ReportPointDTO> result = new ArrayList<>();
+        while (!top.isEmpty()) {
+            Map.Entry<String, long[]> entry = top.poll();
+            result.add(new ReportPointDTO(entry.getKey(), from, entry.getValue()[0], entry.getValue()[1]));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Totals per bucket of {@code granularity} over [from, to), optionally narrowed to a SKU
+     * and/or branch. Data already compacted to a coarser tier is reported at that coarser bucket.
+     */
+    public List<ReportPointDTO> timeSeries(long from, long to, String sku, Integer branchId,
+                                           RollupGranularity granularity) {
+        TreeMap<Long, long[]> series = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            tiers.forEach((tier, buckets) -> {
+                RollupGranularity reportAt = tier.compareTo(granularity) > 0 ? tier : granularity;
+                buckets.subMap(from, true, to, false).forEach((bucketStart, bucket) ->
+                        bucket.forEach((key, cell) -> {
+                            if ((sku == null || key.sku().equals(sku)) && (branchId == null || key.branchId() == branchId)) {
+                                long[] total = series.computeIfAbsent(reportAt.truncate(bucketStart), k -> new long[2]);
+                                total[0] += cell.quantity;
+                                total[1] += cell.revenueCents;
+                            }
+                        }));
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<ReportPointDTO> result = new ArrayList<>(series.size());
+        series.forEach((bucketStart, total) -> result.add(new ReportPointDTO(sku, bucketStart, total[0], total[1])));
+        return result;
+    }
+
+    private void fold(RollupGranularity from, RollupGranularity to, long horizon) {
+        SortedMap<Long, Map<SkuBranch, Cell>> expired = tiers.get(from).headMap(horizon);
+        for (Map.Entry<Long, Map<SkuBranch, Cell>> bucket : expired.entrySet()) {
+            long target = to.truncate(bucket.getKey());
+            bucket.getValue().forEach((key, cell) -> {
+                addTo(to, target, key, cell.quantity, cell.revenueCents);
+            });
+        }
+        expired.clear();
+    }
+
+    private void addTo(RollupGranularity tier, long bucketStart, SkuBranch key, long quantity, long revenueCents) {
+        Cell cell = tiers.get(tier)
+                .computeIfAbsent(bucketStart, b -> new HashMap<>())
+                .computeIfAbsent(key, k -> new Cell());
+        cell.quantity += quantity;
+        cell.revenueCents += revenueCents;
+    }
+}
@@ -0,0 +1,143 @@
+package pharmacy.pharmacy.service;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pharmacy.pharmacy.dao.UserRepository;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hard-deletes soft-deleted users in small batches taken in id order, each batch its own
+ * short transaction. The job pauses between batches and backs off while the connection
+ * pool is busy, so a backlog of deletions drains without holding locks or connections that
+ * request traffic needs. A run stops at its time budget and the next one carries on.
+ */
+@Service
+public class UserPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserPurgeService.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final HikariDataSource pool;
+    private final Counter purged;
+    private final Counter throttled;
+    private final Duration retention;
+    private final int batchSize;
+    private final Duration pause;
+    private final double maxPoolUtilization;
+    private final Duration maxBackoff;
+    private final Duration maxRun;
+
+    public UserPurgeService(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                            DataSource dataSource, MeterRegistry meterRegistry,
+                            @Value("${users.purge.retention:PT5M}") Duration retention,
+                            @Value("${users.purge.batch-size:100}") int batchSize,
+                            @Value("${users.purge.pause:PT0.2S}") Duration pause,
+                            @Value("${users.purge.max-pool-utilization:0.5}") double maxPoolUtilization,
+                            @Value("${users.purge.max-backoff:PT10S}") Duration maxBackoff,
+                            @Value("${users.purge.max-run:PT10S}") Duration maxRun) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Behind the query metrics proxy; without a Hikari pool the job is never throttled
+        this.pool = DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class);
+        this.purged = Counter.builder("users.purge.deleted")
+                .description("Soft-deleted users removed by the purge job")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("users.purge.throttled")
+                .description("Times the purge job backed off because the connection pool was busy")
+                .register(meterRegistry);
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.pause = pause;
+        this.maxPoolUtilization = maxPoolUtilization;
+        this.maxBackoff = maxBackoff;
+        this.maxRun = maxRun;
+    }
+
+    @Scheduled(fixedDelayString = "${users.purge.interval:PT1M}", initialDelayString = "${users.purge.interval:PT1M}")
+    public void scheduledPurge() {
+        int count = purge();
+        if (count > 0) {
+            log.info("Purged {} soft-deleted users", count);
+        }
+    }
+
+    /**
+     * One run of the job; returns the number of users removed.
+     */
+    public int purge() {
+        Instant cutoff = Instant.now().minus(retention);
+        long deadline = System.nanoTime() + maxRun.toNanos();
+        long backoffMillis = pause.toMillis();
+        int after = 0;
+        int total = 0;
+        while (System.nanoTime() < deadline) {
+            if (poolBusy()) {
+                throttled.increment();
+                backoffMillis = Math.min(Math.max(2 * backoffMillis, 1), maxBackoff.toMillis());
+                if (!sleep(backoffMillis)) {
+                    break;
+                }
+                continue;
+            }
+            backoffMillis = pause.toMillis();
+
+            List<Integer> ids = userRepository.findPurgeableIdsAfter(after, cutoff, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            try {
+                Integer removed = transactionTemplate.execute(status -> {
+                    userRepository.deleteAllMemberships(ids);
+                    return userRepository.purgeDeleted(ids);
+                });
+                total += removed;
+                purged.increment(removed);
+            } catch (RuntimeException e) {
+                // Skipped for this run, e.g. a prescription written for the user since it was read
+                log.warn("Could not purge users {} to {}", ids.get(0), ids.get(ids.size() - 1), e);
+            }
+            after = ids.get(ids.size() - 1);
+            if (ids.size() < batchSize || !sleep(pause.toMillis())) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    private boolean poolBusy() {
+        HikariPoolMXBean bean = pool == null ? null : pool.getHikariPoolMXBean();
+        if (bean == null) {
+            return false;
+        }
+        return bean.getThreadsAwaitingConnection() > 0
+                || bean.getActiveConnections() > maxPoolUtilization * pool.getMaximumPoolSize();
+    }
+
+    // False once the thread is interrupted, i.e. the application is shutting down
+    private static boolean sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package pharmacy.pharmacy.service;
+
+import pharmacy.pharmacy.entity.ERole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory prefix index over usernames and emails for autocomplete. A query matches a user
+ * when their username, their email, or the part of either that starts after a separator
+ * ({@code .}, {@code _}, {@code @} and so on) begins with it, ignoring case. Results come
+ * username matches first, then email matches, then the rest, each in alphabetical order, so
+ * an exact username is always the first hit.
+ * <p>
+ * Terms live in one packed, sorted run per field, searched by binary search. Changes go into
+ * a small sorted delta next to it, and the terms they replace are left in place: every user
+ * carries the sequence number of their last change of terms, and a term written before that
+ * is skipped when read. Once enough have piled up the run and delta are merged into a new
+ * run. Readers never lock; they work on whichever run, delta and user table were current when
+ * they started.
+ */
+public class UserSearchIndex {
+
+    public enum Field {USERNAME, EMAIL, WORD}
+
+    public record Hit(int id, String username, String email, Set<ERole> roles, Field matchedOn) {
+    }
+
+    public record Entry(int id, String username, String email, Collection<ERole> roles) {
+    }
+
+    private static final Field[] FIELDS = Field.values();
+    private static final ERole[] ROLES = ERole.values();
+
+    private final int minCompaction;
+    private volatile State state;
+    // Indexed by user id; read without locking, which is safe because Doc is immutable
+    private volatile Doc[] docs = new Doc[1024];
+    private volatile int size;
+    private long sequence;
+    // Terms waiting in the delta, and terms in the runs or delta that no longer belong to anyone
+    private int pending;
+    private int stale;
+
+    public UserSearchIndex() {
+        this(4096);
+    }
+
+    UserSearchIndex(int minCompaction) {
+        this.minCompaction = minCompaction;
+        this.state = new State(new Run[]{Run.EMPTY, Run.EMPTY, Run.EMPTY});
+    }
+
+    /**
+     * Adds the user or replaces what was indexed for them.
+     */
+    public synchronized void put(int id, String username, String email, Collection<ERole> roles) {
+        Doc previous = doc(id);
+        if (previous != null && previous.sameTerms(username, email)) {
+            // A change of roles only: the indexed terms stay valid
+            store(new Doc(id, username, email, roleMask(roles), previous.termsSequence));
+            return;
+        }
+        if (previous != null) {
+            stale += previous.termCount();
+        } else {
+            size++;
+        }
+        long termsSequence = ++sequence;
+        Doc doc = new Doc(id, username, email, roleMask(roles), termsSequence);
+        State current = state;
+        doc.forEachTerm((field, term) -> {
+            current.delta[field.ordinal()].add(new Posting(term, id, termsSequence));
+            pending++;
+        });
+        store(doc);
+        compactIfDue();
+    }
+
+    public synchronized void remove(int id) {
+        Doc previous = doc(id);
+        if (previous == null) {
+            return;
+        }
+        docs[id] = null;
+        size--;
+        stale += previous.termCount();
+        compactIfDue();
+    }
+
+    /**
+     * Replaces the whole index with the given users, building the runs in one pass.
+     */
+    public synchronized void replaceAll(Collection<Entry> entries) {
+        long built = ++sequence;
+        int maxId = 0;
+        for (Entry entry : entries) {
+            maxId = Math.max(maxId, entry.id());
+        }
+        Doc[] table = new Doc[Math.max(1024, maxId + 1)];
+        int count = 0;
+        for (Entry entry : entries) {
+            if (table[entry.id()] == null) {
+                count++;
+            }
+            table[entry.id()] = new Doc(entry.id(), entry.username(), entry.email(), roleMask(entry.roles()), built);
+        }
+        List<List<Posting>> postings = new ArrayList<>();
+        for (Field field : FIELDS) {
+            postings.add(new ArrayList<>(field == Field.WORD ? 3 * count : count));
+        }
+        for (Doc doc : table) {
+            if (doc != null) {
+                doc.forEachTerm((field, term) -> postings.get(field.ordinal()).add(new Posting(term, doc.id, built)));
+            }
+        }
+        Run[] runs = new Run[FIELDS.length];
+        for (Field field : FIELDS) {
+            Posting[] sorted = postings.get(field.ordinal()).toArray(new Posting[0]);
+            postings.set(field.ordinal(), null);
+            Arrays.sort(sorted);
+            int length = 0;
+            for (Posting posting : sorted) {
+                length += posting.term.length;
+            }
+            RunBuilder builder = new RunBuilder(sorted.length, length);
+            for (Posting posting : sorted) {
+                builder.add(posting.term, 0, posting.term.length, posting.id);
+            }
+            runs[field.ordinal()] = builder.build(built);
+        }
+        docs = table;
+        size = count;
+        pending = 0;
+        stale = 0;
+        state = new State(runs);
+    }
+
+    /**
+     * Up to {@code limit} users matching {@code query}, restricted to those holding any of
+     * {@code roles} when that is not empty.
+     */
+    public List<Hit> search(String query, Set<ERole> roles, int limit) {
+        String normalized = normalize(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        byte[] prefix = normalized.getBytes(StandardCharsets.UTF_8);
+        int mask = roles == null || roles.isEmpty() ? -1 : roleMask(roles);
+        State current = state;
+        Doc[] table = docs;
+        List<Hit> hits = new ArrayList<>(Math.min(limit, 64));
+        Set<Integer> seen = new HashSet<>();
+
+        for (Field field : FIELDS) {
+            Iterator<Posting> delta = current.delta[field.ordinal()]
+                    .tailSet(new Posting(prefix, Integer.MIN_VALUE, 0)).iterator();
+            Run run = current.runs[field.ordinal()];
+            int position = run.lowerBound(prefix);
+            Posting fromDelta = next(delta, prefix);
+            boolean inRun = run.startsWith(position, prefix);
+
+            // Both sides are in term order, so merging them keeps the results alphabetical
+            while ((fromDelta != null || inRun) && hits.size() < limit) {
+                Doc doc;
+                if (!inRun || (fromDelta != null && run.compareTo(position, fromDelta) > 0)) {
+                    doc = fromDelta.id < table.length ? table[fromDelta.id] : null;
+                    if (doc != null && doc.termsSequence != fromDelta.sequence) {
+                        doc = null;
+                    }
+                    fromDelta = next(delta, prefix);
+                } else {
+                    int id = run.ids[position];
+                    doc = id < table.length ? table[id] : null;
+                    if (doc != null && doc.termsSequence > run.sequence) {
+                        doc = null;
+                    }
+                    inRun = run.startsWith(++position, prefix);
+                }
+                if (doc == null || (doc.roleMask & mask) == 0 || !seen.add(doc.id)) {
+                    continue;
+                }
+                hits.add(new Hit(doc.id, doc.username, doc.email, roles(doc.roleMask), field));
+            }
+            if (hits.size() >= limit) {
+                break;
+            }
+        }
+        return hits;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static Posting next(Iterator<Posting> delta, byte[] prefix) {
+        if (!delta.hasNext()) {
+            return null;
+        }
+        Posting posting = delta.next();
+        return posting.term.length >= prefix.length
+                && Arrays.equals(posting.term, 0, prefix.length, prefix, 0, prefix.length) ? posting : null;
+    }
+
+    private Doc doc(int id) {
+        return id < docs.length ? docs[id] : null;
+    }
+
+    private void store(Doc doc) {
+        if (doc.id >= docs.length) {
+            docs = Arrays.copyOf(docs, Math.max(doc.id + 1, docs.length * 2));
+        }
+        docs[doc.id] = doc;
+    }
+
+    // Merging is linear in the index, so it waits until the dead and pending terms are a sixteenth of it
+    private void compactIfDue() {
+        State current = state;
+        int indexed = 0;
+        for (Run run : current.runs) {
+            indexed += run.ids.length;
+        }
+        if (pending + stale < Math.max(minCompaction, indexed / 16)) {
+            return;
+        }
+        Doc[] table = docs;
+        Run[] runs = new Run[FIELDS.length];
+        for (Field field : FIELDS) {
+            Run run = current.runs[field.ordinal()];
+            List<Posting> delta = new ArrayList<>(current.delta[field.ordinal()]);
+            int length = run.bytes.length;
+            for (Posting posting : delta) {
+                length += posting.term.length;
+            }
+            RunBuilder builder = new RunBuilder(run.ids.length + delta.size(), length);
+            int next = 0;
+            int position = 0;
+            while (next < delta.size() || position < run.ids.length) {
+                if (position >= run.ids.length || (next < delta.size() && run.compareTo(position, delta.get(next)) > 0)) {
+                    Posting posting = delta.get(next++);
+                    Doc doc = posting.id < table.length ? table[posting.id] : null;
+                    if (doc != null && doc.termsSequence == posting.sequence) {
+                        builder.add(posting.term, 0, posting.term.length, posting.id);
+                    }
+                } else {
+                    int id = run.ids[position];
+                    Doc doc = id < table.length ? table[id] : null;
+                    if (doc != null && doc.termsSequence <= run.sequence) {
+                        builder.add(run.bytes, run.offsets[position], run.offsets[position + 1], id);
+                    }
+                    position++;
+                }
+            }
+            runs[field.ordinal()] = builder.build(sequence);
+        }
+        pending = 0;
+        stale = 0;
+        state = new State(runs);
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.strip().toLowerCase(Locale.ROOT);
+    }
+
+    private static int roleMask(Collection<ERole> roles) {
+        int mask = 0;
+        if (roles != null) {
+            for (ERole role : roles) {
+                mask |= 1 << role.ordinal();
+            }
+        }
+        return mask;
+    }
+
+    private static Set<ERole> roles(int mask) {
+        Set<ERole> roles = EnumSet.noneOf(ERole.class);
+        for (ERole role : ROLES) {
+            if ((mask & (1 << role.ordinal())) != 0) {
+                roles.add(role);
+            }
+        }
+        return roles;
+    }
+
+    /**
+     * A term on its way into a run. The first eight bytes are kept as a number as well, which
+     * settles most comparisons without following the array.
+     */
+    private static final class Posting implements Comparable<Posting> {
+        private final byte[] term;
+        private final int id;
+        private final long sequence;
+        private final long head;
+
+        private Posting(byte[] term, int id, long sequence) {
+            this.term = term;
+            this.id = id;
+            this.sequence = sequence;
+            long packed = 0;
+            for (int i = 0; i < 8; i++) {
+                packed = packed << 8 | (i < term.length ? term[i] & 0xff : 0);
+            }
+            this.head = packed;
+        }
+
+        @Override
+        public int compareTo(Posting other) {
+            int order = Long.compareUnsigned(head, other.head);
+            if (order == 0) {
+                order = Arrays.compareUnsigned(term, other.term);
+            }
+            return order != 0 ? order : Integer.compare(id, other.id);
+        }
+    }
+
+    private record State(Run[] runs, ConcurrentSkipListSet<Posting>[] delta) {
+
+        @SuppressWarnings("unchecked")
+        State(Run[] runs) {
+            this(runs, new ConcurrentSkipListSet[runs.length]);
+            for (int i = 0; i < runs.length; i++) {
+                delta[i] = new ConcurrentSkipListSet<>();
+            }
+        }
+    }
+
+    /**
+     * Sorted terms packed end to end in one byte array, with the user id of each alongside:
+     * a few bytes of overhead per term instead of a String and an entry object. Everything in
+     * it was written at or before {@code sequence}.
+     */
+    private static final class Run {
+        private static final Run EMPTY = new Run(new byte[0], new int[]{0}, new int[0], 0);
+
+        private final byte[] bytes;
+        private final int[] offsets;
+        private final int[] ids;
+        private final long sequence;
+
+        private Run(byte[] bytes, int[] offsets, int[] ids, long sequence) {
+            this.bytes = bytes;
+            this.offsets = offsets;
+            this.ids = ids;
+            this.sequence = sequence;
+        }
+
+        // First position whose term is not below the prefix
+        int lowerBound(byte[] prefix) {
+            int low = 0;
+            int high = ids.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (Arrays.compareUnsigned(bytes, offsets[middle], offsets[middle + 1], prefix, 0, prefix.length) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        boolean startsWith(int position, byte[] prefix) {
+            return position < ids.length && offsets[position + 1] - offsets[position] >= prefix.length
+                    && Arrays.equals(bytes, offsets[position], offsets[position] + prefix.length, prefix, 0, prefix.length);
+        }
+
+        int compareTo(int position, Posting posting) {
+            int order = Arrays.compareUnsigned(bytes, offsets[position], offsets[position + 1],
+                    posting.term, 0, posting.term.length);
+            return order != 0 ? order : Integer.compare(ids[position], posting.id);
+        }
+    }
+
+    private static final class RunBuilder {
+        private final byte[] bytes;
+        private final int[] offsets;
+        private final int[] ids;
+        private int count;
+        private int length;
+
+        private RunBuilder(int capacity, int byteCapacity) {
+            this.bytes = new byte[byteCapacity];
+            this.offsets = new int[capacity + 1];
+            this.ids = new int[capacity];
+        }
+
+        void add(byte[] source, int from, int to, int id) {
+            System.arraycopy(source, from, bytes, length, to - from);
+            offsets[count] = length;
+            ids[count++] = id;
+            length += to - from;
+        }
+
+        Run build(long sequence) {
+            offsets[count] = length;
+            return new Run(Arrays.copyOf(bytes, length), Arrays.copyOf(offsets, count + 1),
+                    Arrays.copyOf(ids, count), sequence);
+        }
+    }
+
+    private interface TermConsumer {
+        void accept(Field field, byte[] term);
+    }
+
+    private static final class Doc {
+        private final int id;
+        private final String username;
+        private final String email;
+        private final int roleMask;
+        private final long termsSequence;
+
+        private Doc(int id, String username, String email, int roleMask, long termsSequence) {
+            this.id = id;
+            this.username = username;
+            this.email = email;
+            this.roleMask = roleMask;
+            this.termsSequence = termsSequence;
+        }
+
+        boolean sameTerms(String otherUsername, String otherEmail) {
+            return normalize(username).equals(normalize(otherUsername))
+                    && normalize(email).equals(normalize(otherEmail));
+        }
+
+        int termCount() {
+            int[] count = {0};
+            forEachTerm((field, term) -> count[0]++);
+            return count[0];
+        }
+
+        // The whole username and email, and what follows each separator inside either
+        void forEachTerm(TermConsumer consumer) {
+            String name = normalize(username);
+            String mail = normalize(email);
+            List<String> words = new ArrayList<>(4);
+            if (!name.isEmpty()) {
+                consumer.accept(Field.USERNAME, name.getBytes(StandardCharsets.UTF_8));
+                addWords(name, words);
+            }
+            if (!mail.isEmpty()) {
+                consumer.accept(Field.EMAIL, mail.getBytes(StandardCharsets.UTF_8));
+                addWords(mail, words);
+            }
+            words.remove(name);
+            words.remove(mail);
+            for (String word : words) {
+                consumer.accept(Field.WORD, word.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private static void addWords(String text, List<String> words) {
+            for (int i = 1; i < text.length(); i++) {
+                if (!Character.isLetterOrDigit(text.charAt(i - 1)) && Character.isLetterOrDigit(text.charAt(i))) {
+                    String word = text.substring(i);
+                    if (!words.contains(word)) {
+                        words.add(word);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package pharmacy.pharmacy.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import pharmacy.pharmacy.dao.UserRepository;
+import pharmacy.pharmacy.dto.UserSearchResultDTO;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.invalidation.InvalidationBus;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Autocomplete over users, answered from {@link UserSearchIndex} without touching the
+ * database. The index is loaded once the application is ready and then follows the
+ * {@code users} invalidations: the users named are read back by id and re-indexed, or
+ * dropped if they are gone, whether the change was made here or on another node.
+ */
+@Service
+public class UserSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchService.class);
+
+    private static final int LOAD_BATCH = 5000;
+
+    private final UserRepository userRepository;
+    private final UserSearchIndex index = new UserSearchIndex();
+    private final Object loadLock = new Object();
+    // Users changed while a load was reading, re-read once it is in place
+    private final Set<Integer> changedDuringLoad = new HashSet<>();
+    private boolean loading;
+    private volatile boolean ready;
+
+    public UserSearchService(UserRepository userRepository, InvalidationBus invalidationBus) {
+        this.userRepository = userRepository;
+        invalidationBus.subscribeAll(InvalidationBus.USERS, this::onUsersInvalidated);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        synchronized (loadLock) {
+            if (loading) {
+                return;
+            }
+            loading = true;
+            changedDuringLoad.clear();
+        }
+        long started = System.nanoTime();
+        Set<Integer> changed;
+        try {
+            index.replaceAll(readAll());
+        } finally {
+            synchronized (loadLock) {
+                loading = false;
+                changed = new HashSet<>(changedDuringLoad);
+                changedDuringLoad.clear();
+            }
+        }
+        refresh(changed);
+        ready = true;
+        log.info("User search index loaded with {} users in {} ms", index.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Whether the index has been loaded; until then searches would miss every user. The index
+     * holds the default tenant's users only, so it is never ready for another tenant.
+     */
+    public boolean isReady() {
+        return ready && TenantContext.isDefault();
+    }
+
+    public List<UserSearchResultDTO> search(String query, Set<ERole> roles, int limit) {
+        return index.search(query, roles, limit).stream()
+                .map(hit -> new UserSearchResultDTO(hit.id(), hit.username(), hit.email(), hit.roles(),
+                        hit.matchedOn().name().toLowerCase(Locale.ROOT)))
+                .toList();
+    }
+
+    private List<UserSearchIndex.Entry> readAll() {
+        List<UserSearchIndex.Entry> entries = new ArrayList<>();
+        int after = 0;
+        while (true) {
+            List<UserRepository.SearchRow> rows = userRepository.findSearchRowsAfter(after, Limit.of(LOAD_BATCH));
+            if (rows.isEmpty()) {
+                return entries;
+            }
+            int upTo = rows.get(rows.size() - 1).getId();
+            Map<Integer, List<ERole>> roles = userRepository.findRoleRowsBetween(after, upTo).stream()
+                    .collect(Collectors.groupingBy(UserRepository.RoleRow::getUserId,
+                            Collectors.mapping(UserRepository.RoleRow::getRole, Collectors.toList())));
+            for (UserRepository.SearchRow row : rows) {
+                entries.add(new UserSearchIndex.Entry(row.getId(), row.getUsername(), row.getEmail(),
+                        roles.getOrDefault(row.getId(), List.of())));
+            }
+            after = upTo;
+        }
+    }
+
+    private void onUsersInvalidated(List<String> keys) {
+        if (!TenantContext.isDefault()) {
+            // Another tenant's users, applied on its connection; the index never held them
+            return;
+        }
+        if (keys.contains(null)) {
+            rebuildIndex();
+            return;
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (String key : keys) {
+            try {
+                ids.add(Integer.parseInt(key));
+            } catch (NumberFormatException e) {
+                // Not a user id; nothing indexed under it
+            }
+        }
+        synchronized (loadLock) {
+            if (loading) {
+                changedDuringLoad.addAll(ids);
+                return;
+            }
+        }
+        refresh(ids);
+    }
+
+    // One read for the users and one for their roles, however many were named
+    private void refresh(Set<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<ERole>> roles = userRepository.findRoleRowsByIds(ids).stream()
+                .collect(Collectors.groupingBy(UserRepository.RoleRow::getUserId,
+                        Collectors.mapping(UserRepository.RoleRow::getRole, Collectors.toList())));
+        Set<Integer> missing = new HashSet<>(ids);
+        for (UserRepository.SearchRow row : userRepository.findSearchRowsByIds(ids)) {
+            missing.remove(row.getId());
+            index.put(row.getId(), row.getUsername(), row.getEmail(), roles.getOrDefault(row.getId(), List.of()));
+        }
+        missing.forEach(index::remove);
+    }
+}
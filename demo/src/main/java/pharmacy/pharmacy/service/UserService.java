@@ -1,17 +1,28 @@
 package pharmacy.pharmacy.service;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import pharmacy.pharmacy.entity.AuditAction;
+import pharmacy.pharmacy.entity.ERole;
 import pharmacy.pharmacy.entity.User;
 import pharmacy.pharmacy.entity.UserRole;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+import pharmacy.pharmacy.invalidation.InvalidationBus;
 import pharmacy.pharmacy.exception.GlobalException;
 import pharmacy.pharmacy.exception.ResourceNotFoundException;
 import pharmacy.pharmacy.dao.UserRepository;
 import pharmacy.pharmacy.dao.UserRoleRepository;
+import pharmacy.pharmacy.outbox.UserOutbox;
 
 
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 
 @Service
@@ -20,13 +31,28 @@ public class UserService {
     private final UserRepository userRepository;
     private final UserRoleRepository userRoleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AuditService auditService;
+    private final RefreshTokenService refreshTokenService;
+    private final InvalidationBus invalidationBus;
+    private final RoleMembershipService roleMembershipService;
+    private final UserOutbox userOutbox;
 
     public UserService(UserRepository userRepository,
                        UserRoleRepository userRoleRepository,
-                       PasswordEncoder passwordEncoder) {
+                       PasswordEncoder passwordEncoder,
+                       AuditService auditService,
+                       RefreshTokenService refreshTokenService,
+                       InvalidationBus invalidationBus,
+                       RoleMembershipService roleMembershipService,
+                       UserOutbox userOutbox) {
         this.userRepository = userRepository;
         this.userRoleRepository = userRoleRepository;
         this.passwordEncoder = passwordEncoder;
+        this.auditService = auditService;
+        this.refreshTokenService = refreshTokenService;
+        this.invalidationBus = invalidationBus;
+        this.roleMembershipService = roleMembershipService;
+        this.userOutbox = userOutbox;
     }
 
     @Transactional(readOnly = true)
@@ -77,24 +103,85 @@ public class UserService {
             // Encrypt password
             user.setPassword(passwordEncoder.encode(user.getPassword()));
 
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            auditService.record(AuditAction.USER_CREATED, saved.getId(), "username=" + saved.getUsername());
+            invalidationBus.publish(InvalidationBus.USERS, saved.getId());
+            userOutbox.append(UserLifecycleEvent.Type.USER_CREATED, saved.getId(), eventData(saved));
+            return saved;
         } catch (Exception e) {
 
             throw new GlobalException("Failed to create user", e);
         }
     }
 
+    /**
+     * Saves a user who signed up themselves; the caller has checked that the username and
+     * email are free and encoded the password.
+     */
+    @Transactional
+    public User registerUser(User user) {
+        try {
+            User saved = userRepository.save(user);
+            auditService.record(AuditAction.USER_CREATED, saved.getId(), "username=" + saved.getUsername() + " self-registered");
+            invalidationBus.publish(InvalidationBus.USERS, saved.getId());
+            userOutbox.append(UserLifecycleEvent.Type.USER_CREATED, saved.getId(), eventData(saved));
+            return saved;
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to register user", e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Long> findUserVersion(int id) {
+        try {
+            return userRepository.findVersionById(id);
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to retrieve version of user with id: " + id, e);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public String getUsersVersionTag() {
+        try {
+            UserRepository.CollectionVersion version = userRepository.findCollectionVersion();
+            return version.getCount() + "-" + version.getVersionSum() + "-" + version.getMaxId();
+        } catch (Exception e) {
+
+            throw new GlobalException("Failed to compute users version", e);
+        }
+    }
+
     @Transactional
     public User updateUser(int id, User userDetails) {
+        return updateUser(id, userDetails, null);
+    }
+
+    /**
+     * Updates the user only if it is still at {@code expectedVersion} (when given). A concurrent
+     * commit between this check and the flush is caught by the {@code @Version} column instead.
+     */
+    @Transactional
+    public User updateUser(int id, User userDetails, Long expectedVersion) {
         try {
             User user = userRepository.findById(id)
                     .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
 
+            if (expectedVersion != null && user.getVersion() != expectedVersion) {
+                throw new ObjectOptimisticLockingFailureException(User.class, id);
+            }
+
+            // Sessions are issued to the old username and signed in with the old password
+            String previousUsername = user.getUsername();
+            boolean endSessions = false;
+
             if (userDetails.getUsername() != null && !user.getUsername().equals(userDetails.getUsername())) {
                 if (userRepository.existsByUsername(userDetails.getUsername())) {
                     throw new GlobalException("Username already taken", HttpStatus.BAD_REQUEST);
                 }
                 user.setUsername(userDetails.getUsername());
+                endSessions = true;
             }
 
             if (userDetails.getEmail() != null && !user.getEmail().equals(userDetails.getEmail())) {
@@ -106,22 +193,43 @@ public class UserService {
 
             if (userDetails.getPassword() != null) {
                 user.setPassword(passwordEncoder.encode(userDetails.getPassword()));
+                endSessions = true;
             }
 
-            return userRepository.save(user);
+            auditService.record(AuditAction.USER_UPDATED, id, changedFields(userDetails));
+            invalidationBus.publish(InvalidationBus.USERS, id);
+            User saved = userRepository.saveAndFlush(user);
+            // After the flush, which locked the row when anything changed
+            userOutbox.append(UserLifecycleEvent.Type.USER_UPDATED, id, eventData(saved));
+            if (endSessions) {
+                refreshTokenService.revokeUser(previousUsername);
+            }
+            return saved;
+        } catch (OptimisticLockingFailureException e) {
+            throw e;
         } catch (Exception e) {
 
             throw new GlobalException("Failed to update user with id: " + id, e);
         }
     }
 
+    /**
+     * Soft-deletes the user: one row update, after which no entity query returns them and
+     * their sessions end. The row and its role memberships are removed later by
+     * {@link UserPurgeService}, off the request path.
+     */
     @Transactional
     public void deleteUser(int id) {
         try {
-            if (!userRepository.existsById(id)) {
+            String username = userRepository.findUsernameById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
+            if (userRepository.markDeleted(id, Instant.now()) == 0) {
                 throw new ResourceNotFoundException("User not found with id: " + id);
             }
-            userRepository.deleteById(id);
+            auditService.record(AuditAction.USER_DELETED, id, "");
+            invalidationBus.publish(InvalidationBus.USERS, id);
+            userOutbox.append(UserLifecycleEvent.Type.USER_DELETED, id, Map.of("username", username));
+            refreshTokenService.revokeUser(username);
         } catch (Exception e) {
 
             throw new GlobalException("Failed to delete user with id: " + id, e);
@@ -138,7 +246,11 @@ public class UserService {
                     .orElseThrow(() -> new ResourceNotFoundException("Role not found with id: " + roleId));
 
             user.addRole(role);
-            return userRepository.save(user);
+            auditService.record(AuditAction.ROLE_ASSIGNED, userId, "role=" + role.getName());
+            invalidationBus.publish(InvalidationBus.USERS, userId);
+            User saved = userRepository.saveAndFlush(user);
+            userOutbox.append(UserLifecycleEvent.Type.ROLE_ASSIGNED, userId, Map.of("roles", List.of(role.getName())));
+            return saved;
         } catch (Exception e) {
 
             throw new GlobalException("Failed to assign role to user with id: " + userId, e);
@@ -155,10 +267,17 @@ public class UserService {
         }
     }
 
+    /**
+     * Users holding the role, named with or without the {@code ROLE_} prefix. Membership comes
+     * from the role index once it is loaded; only the matching users are read.
+     */
     @Transactional(readOnly = true)
     public List<User> getUsersByRole(String roleName) {
         try {
-            return userRepository.findByRoles_Name(roleName);
+            ERole role = ERole.valueOf(roleName.startsWith("ROLE_") ? roleName : "ROLE_" + roleName);
+            return roleMembershipService.isReady()
+                    ? roleMembershipService.allMembers(role)
+                    : userRepository.findByRoles_Name(role);
         } catch (Exception e) {
 
             throw new GlobalException("Failed to retrieve users with role: " + roleName, e);
@@ -192,6 +311,23 @@ public class UserService {
         }
     }
 
+    // What downstream systems keep of a user; never the password hash
+    private Map<String, Object> eventData(User user) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("username", user.getUsername());
+        data.put("email", user.getEmail());
+        return data;
+    }
+
+    // Names the fields a request changed; values are left out so no password material reaches the journal
+    private String changedFields(User userDetails) {
+        StringBuilder fields = new StringBuilder();
+        if (userDetails.getUsername() != null) fields.append("username=").append(userDetails.getUsername()).append(' ');
+        if (userDetails.getEmail() != null) fields.append("email ");
+        if (userDetails.getPassword() != null) fields.append("password ");
+        return fields.toString().trim();
+    }
+
     private boolean isValidEmail(String email) {
         return email != null && email.matches("^[\\w-.]+@([\\w-]+\\.)+[\\w-]{2,4}$");
     }
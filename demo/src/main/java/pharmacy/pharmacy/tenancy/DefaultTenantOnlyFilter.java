@@ -0,0 +1,54 @@
+package pharmacy.pharmacy.tenancy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import pharmacy.pharmacy.exception.GlobalExceptionHandler;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Refuses other tenants than the default one, with 503, on paths served by state kept for
+ * the default tenant only: the prescription queue, the expiry index and its event stream,
+ * the replenishment engine and the sales rollups. Those are loaded from and written back to
+ * the default database by jobs that run without a tenant, so a tenant request would mix its
+ * rows into them or read the default tenant's.
+ */
+public class DefaultTenantOnlyFilter extends OncePerRequestFilter {
+
+    private final ObjectMapper objectMapper;
+    private final List<String> paths;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    public DefaultTenantOnlyFilter(ObjectMapper objectMapper, List<String> paths) {
+        this.objectMapper = objectMapper;
+        this.paths = paths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (TenantContext.isDefault()) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new GlobalExceptionHandler.ErrorResponse(
+                LocalDateTime.now(), "Not available for tenant " + TenantContext.current(),
+                "uri=" + request.getRequestURI(), HttpStatus.SERVICE_UNAVAILABLE.value()));
+    }
+}
@@ -0,0 +1,71 @@
+package pharmacy.pharmacy.tenancy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * {@code tenancy.enabled=true} replaces the single pool with one per tenant. The
+ * {@code spring.datasource} pool becomes the default tenant's, and repositories, Hibernate and
+ * JDBC templates get whichever pool the request's tenant selects.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "tenancy.enabled", havingValue = "true")
+public class TenancyConfig {
+
+    @Bean(destroyMethod = "close")
+    public TenantDataSources tenantDataSources(DataSourceProperties properties, Environment environment,
+                                               ObjectProvider<Flyway> flyway, MeterRegistry meterRegistry,
+                                               @Value("${tenancy.max-connections:20}") int maxConnections,
+                                               @Value("${tenancy.pool-size:5}") int poolSize,
+                                               @Value("${tenancy.admission-timeout:PT5S}") Duration admissionTimeout,
+                                               @Value("${tenancy.idle-eviction:PT10M}") Duration idleEviction) {
+        HikariDataSource defaultPool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(defaultPool));
+        // Tenant databases get the same migrations as the default one, run when their pool opens
+        return new TenantDataSources(defaultPool, environment, new TenantAdmission(maxConnections),
+                dataSource -> flyway.ifAvailable(configured -> Flyway.configure()
+                        .configuration(configured.getConfiguration())
+                        .dataSource(dataSource)
+                        .load()
+                        .migrate()),
+                meterRegistry, poolSize, admissionTimeout, idleEviction);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(TenantDataSources tenants) {
+        return new TenantRoutingDataSource(tenants);
+    }
+
+    /**
+     * Tenancy covers users, roles, sessions and the audit trail; the pharmacy subsystems under
+     * {@code tenancy.default-only-paths} serve the default tenant only.
+     */
+    @Bean
+    public FilterRegistrationBean<DefaultTenantOnlyFilter> defaultTenantOnlyFilter(
+            ObjectMapper objectMapper,
+            @Value("${tenancy.default-only-paths:/api/prescriptions/**,/api/batches/**,/api/sales/**,/api/replenishment/**,/api/reports/**}") List<String> paths) {
+        FilterRegistrationBean<DefaultTenantOnlyFilter> registration = new FilterRegistrationBean<>(
+                new DefaultTenantOnlyFilter(objectMapper, paths));
+        // After the security chain (-100), which sets the tenant from the token
+        registration.setOrder(0);
+        return registration;
+    }
+}
@@ -0,0 +1,114 @@
+package pharmacy.pharmacy.tenancy;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares a fixed number of connections between tenants. A tenant alone may use all of them;
+ * once others are holding or waiting for connections, each is admitted up to an equal share,
+ * so a busy tenant is held back to its share instead of starving the rest. Connections a
+ * tenant already holds above its share are not taken away; it is only refused more until it
+ * drops below.
+ */
+public class TenantAdmission {
+
+    private static final class Usage {
+        int inUse;
+        int waiting;
+    }
+
+    private final int limit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    // Only tenants holding or waiting for a connection count towards the shares
+    private final Map<String, Usage> active = new HashMap<>();
+    private int inUse;
+
+    public TenantAdmission(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("The connection limit must be at least 1");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Takes a connection slot for {@code tenant}, waiting up to {@code timeout}; false if none
+     * came free in time.
+     */
+    public boolean acquire(String tenant, long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            Usage usage = active.computeIfAbsent(tenant, t -> new Usage());
+            usage.waiting++;
+            try {
+                // A new tenant shrinks everyone's share
+                released.signalAll();
+                while (usage.inUse >= share() || inUse >= limit) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                usage.inUse++;
+                inUse++;
+                return true;
+            } finally {
+                usage.waiting--;
+                forgetIfIdle(tenant, usage);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(String tenant) {
+        lock.lock();
+        try {
+            Usage usage = active.get(tenant);
+            if (usage == null || usage.inUse == 0) {
+                throw new IllegalStateException("Tenant " + tenant + " holds no connection");
+            }
+            usage.inUse--;
+            inUse--;
+            forgetIfIdle(tenant, usage);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inUse(String tenant) {
+        lock.lock();
+        try {
+            Usage usage = active.get(tenant);
+            return usage == null ? 0 : usage.inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The most connections one tenant is admitted to while the current tenants compete.
+     */
+    public int share() {
+        lock.lock();
+        try {
+            int tenants = Math.max(1, active.size());
+            // Rounded up; the overall limit still holds, so no slot stays idle for want of a share
+            return (limit + tenants - 1) / tenants;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forgetIfIdle(String tenant, Usage usage) {
+        if (usage.inUse == 0 && usage.waiting == 0 && active.remove(tenant) != null) {
+            // The others' shares grow
+            released.signalAll();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package pharmacy.pharmacy.tenancy;
+
+/**
+ * The tenant whose database the current thread works against. Requests set it from the
+ * token or the {@code X-Tenant-ID} header; every other thread, such as the scheduled jobs and
+ * the startup loads, runs as the default tenant.
+ */
+public final class TenantContext {
+
+    public static final String DEFAULT = "default";
+    public static final String HEADER = "X-Tenant-ID";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    public static String current() {
+        String tenant = CURRENT.get();
+        return tenant == null ? DEFAULT : tenant;
+    }
+
+    public static boolean isDefault() {
+        return CURRENT.get() == null;
+    }
+
+    public static void set(String tenant) {
+        if (tenant == null || DEFAULT.equals(tenant)) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(tenant);
+        }
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+}
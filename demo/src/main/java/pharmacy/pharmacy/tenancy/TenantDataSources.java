@@ -0,0 +1,221 @@
+package pharmacy.pharmacy.tenancy;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * One bounded Hikari pool per tenant database, created on the tenant's first connection and
+ * closed again once the tenant has been idle for a while. A tenant exists when
+ * {@code tenancy.tenant.<id>.url} is configured; its schema is migrated when its pool is
+ * created. Every connection, the default tenant's included, is admitted through the shared
+ * {@link TenantAdmission} and gives its slot back on close.
+ */
+public class TenantDataSources implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantDataSources.class);
+    private static final Pattern TENANT_ID = Pattern.compile("[a-z0-9][a-z0-9-]{0,62}");
+
+    private static final class Pool {
+        final HikariDataSource dataSource;
+        volatile long lastUsedNanos = System.nanoTime();
+
+        Pool(HikariDataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+
+    private final HikariDataSource defaultPool;
+    private final Environment environment;
+    private final TenantAdmission admission;
+    private final Consumer<DataSource> migration;
+    private final MeterRegistry meterRegistry;
+    private final int poolSize;
+    private final Duration admissionTimeout;
+    private final Duration idleEviction;
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+
+    public TenantDataSources(HikariDataSource defaultPool, Environment environment, TenantAdmission admission,
+                             Consumer<DataSource> migration, MeterRegistry meterRegistry, int poolSize,
+                             Duration admissionTimeout, Duration idleEviction) {
+        this.defaultPool = defaultPool;
+        this.environment = environment;
+        this.admission = admission;
+        this.migration = migration;
+        this.meterRegistry = meterRegistry;
+        this.poolSize = poolSize;
+        this.admissionTimeout = admissionTimeout;
+        this.idleEviction = idleEviction;
+    }
+
+    public boolean isKnown(String tenant) {
+        return TenantContext.DEFAULT.equals(tenant)
+                || (tenant != null && TENANT_ID.matcher(tenant).matches()
+                && environment.containsProperty("tenancy.tenant." + tenant + ".url"));
+    }
+
+    public HikariDataSource defaultPool() {
+        return defaultPool;
+    }
+
+    /**
+     * A connection to the tenant's database, once the tenant is admitted. Closing it returns
+     * both the connection and the admission slot.
+     */
+    public Connection getConnection(String tenant) throws SQLException {
+        return getConnection(tenant, false);
+    }
+
+    /**
+     * A connection for background work, such as the outbox relay, that should only follow the
+     * tenant's own traffic: it is refused while the tenant's pool is closed and does not count
+     * as use, so it neither opens a pool nor keeps an idle one from being closed.
+     */
+    public Connection getBackgroundConnection(String tenant) throws SQLException {
+        return getConnection(tenant, true);
+    }
+
+    private Connection getConnection(String tenant, boolean background) throws SQLException {
+        if (!isKnown(tenant)) {
+            throw new SQLException("Unknown tenant " + tenant);
+        }
+        try {
+            if (!admission.acquire(tenant, admissionTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                meterRegistry.counter("tenancy.admission.rejected", "tenant", tenant).increment();
+                throw new SQLTransientConnectionException("Tenant " + tenant + " is at its share of "
+                        + admission.share() + " connections");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            return releasing(tenant, background ? connectIfOpen(tenant) : connect(tenant));
+        } catch (SQLException | RuntimeException e) {
+            admission.release(tenant);
+            throw e;
+        }
+    }
+
+    private Connection connect(String tenant) throws SQLException {
+        if (TenantContext.DEFAULT.equals(tenant)) {
+            return defaultPool.getConnection();
+        }
+        Pool pool = pools.computeIfAbsent(tenant, this::open);
+        pool.lastUsedNanos = System.nanoTime();
+        try {
+            return pool.dataSource.getConnection();
+        } catch (SQLException e) {
+            if (!pool.dataSource.isClosed()) {
+                throw e;
+            }
+            // Evicted between the lookup and the checkout
+            return connect(tenant);
+        }
+    }
+
+    private Connection connectIfOpen(String tenant) throws SQLException {
+        if (TenantContext.DEFAULT.equals(tenant)) {
+            return defaultPool.getConnection();
+        }
+        Pool pool = pools.get(tenant);
+        if (pool == null) {
+            throw new SQLTransientConnectionException("The pool of tenant " + tenant + " is closed");
+        }
+        return pool.dataSource.getConnection();
+    }
+
+    private Pool open(String tenant) {
+        String prefix = "tenancy.tenant." + tenant + ".";
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("tenant-" + tenant);
+        config.setJdbcUrl(environment.getRequiredProperty(prefix + "url"));
+        config.setUsername(environment.getProperty(prefix + "username"));
+        config.setPassword(environment.getProperty(prefix + "password"));
+        config.setMaximumPoolSize(environment.getProperty(prefix + "pool-size", Integer.class, poolSize));
+        config.setMinimumIdle(0);
+        config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        HikariDataSource dataSource = new HikariDataSource(config);
+        try {
+            migration.accept(dataSource);
+        } catch (RuntimeException e) {
+            dataSource.close();
+            throw e;
+        }
+        log.info("Opened connection pool for tenant {}", tenant);
+        return new Pool(dataSource);
+    }
+
+    /**
+     * Closes the pools of tenants that have held no connection for {@code tenancy.idle-eviction}.
+     */
+    @Scheduled(fixedDelayString = "${tenancy.eviction-interval:PT1M}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        pools.forEach((tenant, pool) -> {
+            if (now - pool.lastUsedNanos >= idleEviction.toNanos() && admission.inUse(tenant) == 0
+                    && pools.remove(tenant, pool)) {
+                pool.dataSource.close();
+                log.info("Closed idle connection pool for tenant {}", tenant);
+            }
+        });
+    }
+
+    public int openPools() {
+        return pools.size();
+    }
+
+    /**
+     * The tenants whose pool is open, the default tenant not included.
+     */
+    public Set<String> openTenants() {
+        return Set.copyOf(pools.keySet());
+    }
+
+    @Override
+    public void close() {
+        pools.values().forEach(pool -> pool.dataSource.close());
+        pools.clear();
+        defaultPool.close();
+    }
+
+    private Connection releasing(String tenant, Connection connection) {
+        AtomicBoolean released = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close") && released.compareAndSet(false, true)) {
+                        try {
+                            connection.close();
+                        } finally {
+                            admission.release(tenant);
+                        }
+                        return null;
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,94 @@
+package pharmacy.pharmacy.tenancy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pharmacy.pharmacy.invalidation.InvalidationEvent;
+import pharmacy.pharmacy.invalidation.InvalidationTransport;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the change log on the default tenant, the only one the nodes poll. Default-tenant
+ * work writes to it inside its own transaction as before. Other tenants' transactions are on
+ * another database, so their events are handed to a writer thread once the tenant commits:
+ * a rolled-back change never goes out, and no thread waits for a default connection while
+ * holding a tenant one, which under the shared admission limit could wait forever. Events
+ * still queued when the node stops are lost, as with any after-commit hook.
+ */
+public class TenantInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantInvalidationTransport.class);
+
+    private final InvalidationTransport delegate;
+    private final InvalidationTransport defaultTenantLog;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invalidation-tenant-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TenantInvalidationTransport(InvalidationTransport delegate, InvalidationTransport defaultTenantLog) {
+        this.delegate = delegate;
+        this.defaultTenantLog = defaultTenantLog;
+    }
+
+    @Override
+    public void publish(InvalidationEvent event) {
+        publishAll(List.of(event));
+    }
+
+    @Override
+    public void publishAll(List<InvalidationEvent> events) {
+        if (TenantContext.isDefault()) {
+            delegate.publishAll(events);
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Nothing to wait for, and no tenant connection is held between statements
+            defaultTenantLog.publishAll(events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    writer.execute(() -> write(events));
+                } catch (RejectedExecutionException e) {
+                    log.warn("Dropped {} invalidation events published while stopping", events.size());
+                }
+            }
+        });
+    }
+
+    private void write(List<InvalidationEvent> events) {
+        try {
+            defaultTenantLog.publishAll(events);
+        } catch (RuntimeException e) {
+            log.warn("Could not write {} tenant invalidation events to the change log: {}", events.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void start(Consumer<InvalidationEvent> consumer) {
+        delegate.start(consumer);
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+        defaultTenantLog.close();
+    }
+}
@@ -0,0 +1,63 @@
+package pharmacy.pharmacy.tenancy;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * Hands out connections to the current thread's tenant, or always to one tenant when pinned.
+ * A pinned background source takes {@link TenantDataSources#getBackgroundConnection} ones,
+ * which only exist while the tenant's pool is open. Unwrapping reaches the default tenant's pool, which is what pool metrics and the jobs that
+ * watch pool load see.
+ */
+public class TenantRoutingDataSource extends AbstractDataSource {
+
+    private final TenantDataSources tenants;
+    private final String pinnedTenant;
+    private final boolean background;
+
+    public TenantRoutingDataSource(TenantDataSources tenants) {
+        this(tenants, null);
+    }
+
+    public TenantRoutingDataSource(TenantDataSources tenants, String pinnedTenant) {
+        this(tenants, pinnedTenant, false);
+    }
+
+    private TenantRoutingDataSource(TenantDataSources tenants, String pinnedTenant, boolean background) {
+        this.tenants = tenants;
+        this.pinnedTenant = pinnedTenant;
+        this.background = background;
+    }
+
+    public static TenantRoutingDataSource background(TenantDataSources tenants, String tenant) {
+        return new TenantRoutingDataSource(tenants, tenant, true);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        String tenant = pinnedTenant != null ? pinnedTenant : TenantContext.current();
+        return background ? tenants.getBackgroundConnection(tenant) : tenants.getConnection(tenant);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Tenant connections use the credentials of their tenant");
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return tenants.defaultPool().unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || tenants.defaultPool().isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,61 @@
+package pharmacy.pharmacy.warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Per-iteration latencies in the order they were taken, summarised as percentiles over
+ * consecutive windows so the drop from interpreted to compiled code shows up as a curve.
+ */
+public class LatencyCurve {
+
+    public record Window(int firstIteration, int lastIteration, long p50Nanos, long p99Nanos, long maxNanos) {
+
+        @Override
+        public String toString() {
+            return String.format("iterations %d-%d: p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                    firstIteration, lastIteration, p50Nanos / 1e6, p99Nanos / 1e6, maxNanos / 1e6);
+        }
+    }
+
+    private long[] samples;
+    private int size;
+
+    public LatencyCurve(int expectedSamples) {
+        this.samples = new long[Math.max(16, expectedSamples)];
+    }
+
+    public void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Splits the samples into {@code count} windows of nearly equal length; fewer when there
+     * are not enough samples to go round.
+     */
+    public List<Window> windows(int count) {
+        int windows = Math.min(count, size);
+        List<Window> curve = new ArrayList<>(windows);
+        for (int i = 0; i < windows; i++) {
+            int from = (int) ((long) size * i / windows);
+            int to = (int) ((long) size * (i + 1) / windows);
+            long[] window = Arrays.copyOfRange(samples, from, to);
+            Arrays.sort(window);
+            curve.add(new Window(from + 1, to, percentile(window, 0.50), percentile(window, 0.99),
+                    window[window.length - 1]));
+        }
+        return curve;
+    }
+
+    private static long percentile(long[] sorted, double quantile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
@@ -0,0 +1,165 @@
+package pharmacy.pharmacy.warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pharmacy.pharmacy.dao.UserRepository;
+import pharmacy.pharmacy.dao.UserRoleRepository;
+import pharmacy.pharmacy.dto.AuthRegisterResponseDTO;
+import pharmacy.pharmacy.dto.AuthResponseDTO;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.entity.User;
+import pharmacy.pharmacy.security.CustomUserDetailsService;
+import pharmacy.pharmacy.security.JwtUtils;
+import pharmacy.pharmacy.service.RefreshTokenService;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the request hot paths in-process before the node reports ready: issuing and checking
+ * tokens, loading the caller as the JWT filter does, the user repository lookups and JSON
+ * encoding of the user DTOs. Boot only moves readiness to accepting traffic once the
+ * application runners have returned, so the first real requests meet compiled code.
+ * <p>
+ * Every iteration runs in a transaction that is rolled back, so nothing persists and no audit
+ * or invalidation events are raised. Only the first {@code warmup.insert-iterations} insert a
+ * synthetic user: a rolled-back insert still uses up an AUTO_INCREMENT id. The rest look up an
+ * existing user instead, or miss on a synthetic one when there is none. The run stops after
+ * {@code warmup.iterations} or once {@code warmup.time-budget} is spent, whichever comes first.
+ */
+@Component
+@ConditionalOnProperty(name = "warmup.enabled", havingValue = "true", matchIfMissing = true)
+public class WarmupRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupRunner.class);
+
+    private final JwtUtils jwtUtils;
+    private final RefreshTokenService refreshTokenService;
+    private final CustomUserDetailsService userDetailsService;
+    private final UserRepository userRepository;
+    private final UserRoleRepository roleRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate rollbackOnly;
+    private final Timer iterationTimer;
+    private final int iterations;
+    private final int insertIterations;
+    private final Duration timeBudget;
+    private final int curveWindows;
+
+    public WarmupRunner(JwtUtils jwtUtils, RefreshTokenService refreshTokenService,
+                        CustomUserDetailsService userDetailsService, UserRepository userRepository,
+                        UserRoleRepository roleRepository, ObjectMapper objectMapper,
+                        PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                        @Value("${warmup.iterations:2000}") int iterations,
+                        @Value("${warmup.insert-iterations:20}") int insertIterations,
+                        @Value("${warmup.time-budget:PT20S}") Duration timeBudget,
+                        @Value("${warmup.curve-windows:10}") int curveWindows) {
+        this.jwtUtils = jwtUtils;
+        this.refreshTokenService = refreshTokenService;
+        this.userDetailsService = userDetailsService;
+        this.userRepository = userRepository;
+        this.roleRepository = roleRepository;
+        this.objectMapper = objectMapper;
+        this.rollbackOnly = new TransactionTemplate(transactionManager);
+        this.iterationTimer = Timer.builder("warmup.iteration")
+                .description("Latency of one pass over the request hot paths during warm-up")
+                .register(meterRegistry);
+        this.iterations = iterations;
+        this.insertIterations = insertIterations;
+        this.timeBudget = timeBudget;
+        this.curveWindows = curveWindows;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        LatencyCurve curve = new LatencyCurve(iterations);
+        long started = System.nanoTime();
+        long deadline = started + timeBudget.toNanos();
+        String stoppedBy = "iteration limit";
+        Optional<UserRepository.SearchRow> existing = Optional.empty();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                if (System.nanoTime() >= deadline) {
+                    stoppedBy = "time budget";
+                    break;
+                }
+                if (i == insertIterations) {
+                    existing = userRepository.findSearchRowsAfter(0, Limit.of(1)).stream().findFirst();
+                }
+                long iterationStart = System.nanoTime();
+                iteration(i, i < insertIterations, existing);
+                long nanos = System.nanoTime() - iterationStart;
+                curve.record(nanos);
+                iterationTimer.record(nanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (RuntimeException e) {
+            // A node that cannot warm up still serves; it is only slower at first
+            stoppedBy = "failure: " + e.getMessage();
+            log.warn("Warm-up stopped early", e);
+        }
+
+        log.info("Warm-up ran {} iterations in {} ms, stopped by {}", curve.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), stoppedBy);
+        for (LatencyCurve.Window window : curve.windows(curveWindows)) {
+            log.info("Warm-up {}", window);
+        }
+    }
+
+    private void iteration(int i, boolean insert, Optional<UserRepository.SearchRow> existing) {
+        String username = insert || existing.isEmpty() ? "warmup-" + UUID.randomUUID() : existing.get().getUsername();
+
+        String accessToken = jwtUtils.generateAccessToken(username, UUID.randomUUID().toString(), TenantContext.DEFAULT);
+        Claims claims = jwtUtils.parseClaims(accessToken);
+        if (claims == null || !refreshTokenService.isAccessTokenUsable(claims)) {
+            throw new IllegalStateException("Warm-up token did not verify");
+        }
+
+        rollbackOnly.executeWithoutResult(status -> {
+            User user = userRepository.findByUsername(username).orElseGet(() -> {
+                User synthetic = new User();
+                synthetic.setUsername(username);
+                synthetic.setEmail(username + "@warmup.invalid");
+                synthetic.setPassword("{noop}warmup");
+                roleRepository.findByName(ERole.ROLE_CUSTOMER).ifPresent(synthetic::addRole);
+                return synthetic;
+            });
+            if (insert) {
+                userRepository.saveAndFlush(user);
+            }
+
+            if (insert || existing.isPresent()) {
+                userDetailsService.loadUserByUsername(claims.getSubject());
+            }
+            userRepository.existsByUsername(username);
+            userRepository.existsByEmail(user.getEmail());
+            userRepository.findByEmail(user.getEmail());
+            userRepository.findVersionById(user.getId());
+
+            try {
+                objectMapper.writeValueAsBytes(user);
+                objectMapper.writeValueAsBytes(List.of(user, user));
+                objectMapper.writeValueAsBytes(new AuthRegisterResponseDTO(user));
+                objectMapper.writeValueAsBytes(new AuthResponseDTO(accessToken, accessToken, i));
+            } catch (Exception e) {
+                throw new IllegalStateException("Warm-up serialization failed", e);
+            }
+            status.setRollbackOnly();
+        });
+    }
+}
@@ -0,0 +1,6 @@
+-- Replayed response headers beyond the content type, one "Name: value" per line; Location moves in with them
+alter table idempotency_keys add column headers varchar(2048);
+
+update idempotency_keys set headers = concat('Location: ', location) where location is not null;
+
+alter table idempotency_keys drop column location;
@@ -0,0 +1,83 @@
+-- Schema as previously created by Hibernate's ddl-auto=update. Databases that already have
+-- some of it are baselined at version 0 and run this too, so it only creates the tables that
+-- are missing; V1.1 adds the columns older tables lack. Foreign keys are declared inline so an
+-- existing table keeps the ones it has. Enum columns list the values in the order Hibernate
+-- generates them; adding an enum constant needs a migration.
+
+create table if not exists users (
+    id       integer      not null auto_increment,
+    version  bigint       not null,
+    email    varchar(255),
+    password varchar(255),
+    username varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists roles (
+    id      integer not null auto_increment,
+    version bigint  not null,
+    name    enum ('ROLE_ADMIN','ROLE_CASHIER','ROLE_CUSTOMER','ROLE_PHARMACIST','ROLE_SUPPLIER'),
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists user_roles (
+    role_id integer not null,
+    user_id integer not null,
+    primary key (role_id, user_id),
+    constraint FKh8ciramu9cc9q3qcqiv4ue8a6 foreign key (role_id) references roles (id),
+    constraint FKhfh9dx7w3ubf1co1vdev94g3f foreign key (user_id) references users (id)
+) engine=InnoDB;
+
+create table if not exists stock_batches (
+    id           bigint      not null auto_increment,
+    sku          varchar(64) not null,
+    branch_id    integer     not null,
+    lot_number   varchar(64) not null,
+    quantity     integer     not null,
+    expiry_date  date        not null,
+    expiry_stage enum ('ACTIVE','EXPIRED','NEAR_EXPIRY') not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists sale_lines (
+    id         bigint         not null auto_increment,
+    sku        varchar(64)    not null,
+    branch_id  integer        not null,
+    quantity   integer        not null,
+    unit_price decimal(12,2)  not null,
+    sold_at    datetime(6)    not null,
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists prescriptions (
+    id               bigint       not null auto_increment,
+    customer_id      integer      not null,
+    medication       varchar(255) not null,
+    urgency          enum ('REFILL','ROUTINE','STAT','URGENT') not null,
+    status           enum ('LEASED','PENDING','REJECTED','VERIFIED') not null,
+    submitted_at     datetime(6)  not null,
+    sla_deadline     datetime(6)  not null,
+    leased_to        integer,
+    lease_expires_at datetime(6),
+    verified_by      integer,
+    completed_at     datetime(6),
+    notes            varchar(255),
+    primary key (id),
+    constraint FKfji8omtutf6y7j35bgeeuqk31 foreign key (customer_id) references users (id)
+) engine=InnoDB;
+
+create table if not exists sales_rollups (
+    granularity   enum ('DAY','HOUR','MONTH') not null,
+    bucket_start  bigint      not null,
+    sku           varchar(64) not null,
+    branch_id     integer     not null,
+    quantity      bigint      not null,
+    revenue_cents bigint,
+    primary key (branch_id, bucket_start, sku, granularity)
+) engine=InnoDB;
+
+create table if not exists job_cursors (
+    name     varchar(64) not null,
+    position bigint      not null,
+    primary key (name)
+) engine=InnoDB;
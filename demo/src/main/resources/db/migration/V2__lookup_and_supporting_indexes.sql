@@ -0,0 +1,14 @@
+-- Login, registration and the user endpoints look users up by username and email
+create unique index uk_users_username on users (username);
+create unique index uk_users_email on users (email);
+create unique index uk_roles_name on roles (name);
+
+-- FEFO stock draw and per-branch stock levels
+create index idx_stock_batches_sku_branch_expiry on stock_batches (sku, branch_id, expiry_date);
+create index idx_stock_batches_expiry_stage on stock_batches (expiry_stage);
+
+-- Daily sales window for reorder points
+create index idx_sale_lines_sold_at on sale_lines (sold_at);
+
+-- Verification queue rebuild
+create index idx_prescriptions_status on prescriptions (status);
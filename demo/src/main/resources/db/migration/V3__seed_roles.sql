@@ -0,0 +1,5 @@
+insert into roles (name, version) select 'ROLE_ADMIN', 0 from dual where not exists (select 1 from roles where name = 'ROLE_ADMIN');
+insert into roles (name, version) select 'ROLE_PHARMACIST', 0 from dual where not exists (select 1 from roles where name = 'ROLE_PHARMACIST');
+insert into roles (name, version) select 'ROLE_CASHIER', 0 from dual where not exists (select 1 from roles where name = 'ROLE_CASHIER');
+insert into roles (name, version) select 'ROLE_CUSTOMER', 0 from dual where not exists (select 1 from roles where name = 'ROLE_CUSTOMER');
+insert into roles (name, version) select 'ROLE_SUPPLIER', 0 from dual where not exists (select 1 from roles where name = 'ROLE_SUPPLIER');
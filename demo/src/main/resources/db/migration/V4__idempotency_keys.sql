@@ -0,0 +1,13 @@
+-- Responses replayed for retried requests when idempotency.store=jdbc; id is a hash of caller and key
+create table idempotency_keys (
+    id char(64) not null,
+    fingerprint char(64) not null,
+    status integer not null,
+    content_type varchar(255),
+    location varchar(1024),
+    body mediumblob not null,
+    expires_at bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_idempotency_keys_expires_at on idempotency_keys (expires_at);
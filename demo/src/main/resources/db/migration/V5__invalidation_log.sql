@@ -0,0 +1,11 @@
+-- Change log for cross-node cache invalidation; every node polls it past its own cursor on id
+create table invalidation_log (
+    id bigint not null auto_increment,
+    region varchar(64) not null,
+    item_key varchar(255),
+    origin varchar(64) not null,
+    created_at bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_invalidation_log_created_at on invalidation_log (created_at);
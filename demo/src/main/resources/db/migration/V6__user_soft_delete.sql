@@ -0,0 +1,4 @@
+-- Deleting a user only stamps deleted_at; the purge job removes the row and its memberships later
+alter table users add column deleted_at datetime(6);
+
+create index idx_users_deleted_at on users (deleted_at);
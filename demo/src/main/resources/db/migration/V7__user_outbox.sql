@@ -0,0 +1,12 @@
+-- User lifecycle events, written in the transaction of the change and deleted once relayed
+create table user_outbox (
+    id bigint not null auto_increment,
+    event_type varchar(32) not null,
+    user_id integer not null,
+    payload varchar(4000) not null,
+    created_at bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+-- Lease of the relay that drains it; position is when the current holder's lease runs out
+insert into job_cursors (name, position) values ('user-outbox-relay', 0);
@@ -0,0 +1,5 @@
+-- Watermark of the sale lines already added to sales_rollups; flushes lock this row, so it
+-- must exist before the first one
+insert into job_cursors (name, position)
+select 'sales-rollups', 0 from dual
+where not exists (select 1 from job_cursors where name = 'sales-rollups');
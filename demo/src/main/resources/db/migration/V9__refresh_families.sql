@@ -0,0 +1,14 @@
+-- One row per login session; refresh rotates current_id with a compare-and-set so any node can serve it
+create table refresh_families (
+    id char(36) not null,
+    username varchar(255) not null,
+    tenant varchar(64) not null,
+    current_id char(36) not null,
+    previous_id char(36),
+    rotated_at bigint not null,
+    expires_at bigint not null,
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_refresh_families_username on refresh_families (tenant, username);
+create index idx_refresh_families_expires_at on refresh_families (expires_at);
@@ -0,0 +1,17 @@
+// Replaces the webjar's initializer when springdoc is not on the classpath: points Swagger UI at
+// the spec generated at build time instead of the petstore example
+window.onload = function() {
+  window.ui = SwaggerUIBundle({
+    url: "/openapi/openapi.json",
+    dom_id: '#swagger-ui',
+    deepLinking: true,
+    presets: [
+      SwaggerUIBundle.presets.apis,
+      SwaggerUIStandalonePreset
+    ],
+    plugins: [
+      SwaggerUIBundle.plugins.DownloadUrl
+    ],
+    layout: "StandaloneLayout"
+  });
+};
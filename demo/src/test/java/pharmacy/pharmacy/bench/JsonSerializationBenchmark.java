@@ -0,0 +1,95 @@
+package pharmacy.pharmacy.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import pharmacy.pharmacy.config.JacksonConfig;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.entity.User;
+import pharmacy.pharmacy.entity.UserRole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes a large user list the way {@code GET /api/users} does, with a plain reflective
+ * mapper and with the application's tuned JSON and Smile setups.
+ * Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pharmacy.pharmacy.bench.JsonSerializationBenchmark -Dexec.args=50000}.
+ */
+public class JsonSerializationBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+		List<User> users = users(count);
+		TypeReference<List<User>> type = new TypeReference<>() {
+		};
+		System.out.printf("payload: %,d users%n", count);
+
+		ObjectMapper baseline = new ObjectMapper();
+
+		ObjectMapper tuned = new ObjectMapper(JacksonConfig.pooledJsonFactory());
+		tuned.registerModule(new BlackbirdModule());
+		JacksonConfig.prefetchSerializers(tuned);
+
+		ObjectMapper smile = new ObjectMapper(new SmileFactory());
+		smile.registerModule(new BlackbirdModule());
+
+		long reference = run("reflective JSON", baseline.writerFor(type), users, 0);
+		run("blackbird JSON, pooled", tuned.writerFor(type), users, reference);
+		run("blackbird Smile", smile.writerFor(type), users, reference);
+	}
+
+	private static long run(String label, ObjectWriter writer, List<User> users, long reference) throws IOException {
+		for (int i = 0; i < 20; i++) {
+			writer.writeValue(OutputStream.nullOutputStream(), users);
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < 20; i++) {
+			long started = System.nanoTime();
+			writer.writeValue(OutputStream.nullOutputStream(), users);
+			best = Math.min(best, System.nanoTime() - started);
+		}
+		byte[] body = writer.writeValueAsBytes(users);
+		System.out.printf("%-24s %8.2f ms  %s  %,10d bytes  %,9d gzipped%n", label, best / 1e6,
+				reference == 0 ? "      " : String.format("%.2fx", (double) reference / best),
+				body.length, gzippedSize(body));
+		return best;
+	}
+
+	private static int gzippedSize(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(body);
+		}
+		return out.size();
+	}
+
+	private static List<User> users(int count) {
+		UserRole customer = new UserRole(ERole.ROLE_CUSTOMER);
+		customer.setId(4);
+		UserRole pharmacist = new UserRole(ERole.ROLE_PHARMACIST);
+		pharmacist.setId(2);
+		List<User> users = new ArrayList<>(count);
+		for (int i = 1; i <= count; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setUsername("user" + i);
+			user.setEmail("user" + i + "@pharmacy.example");
+			user.setPassword("$2a$10$abcdefghijklmnopqrstuv" + i);
+			user.setVersion(i % 7);
+			user.addRole(customer);
+			if (i % 10 == 0) {
+				user.addRole(pharmacist);
+			}
+			users.add(user);
+		}
+		return users;
+	}
+}
@@ -0,0 +1,56 @@
+package pharmacy.pharmacy.bench;
+
+import pharmacy.pharmacy.service.ReplenishmentEngine;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Full reorder-point recomputation over a large synthetic catalog at increasing parallelism.
+ * Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pharmacy.pharmacy.bench.ReplenishmentBenchmark -Dexec.args=500000}.
+ */
+public class ReplenishmentBenchmark {
+
+	public static void main(String[] args) {
+		int slots = args.length > 0 ? Integer.parseInt(args[0]) : 250_000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		System.out.printf("catalog: %,d sku/branch slots, %d cores%n", slots, cores);
+
+		long baseline = 0;
+		for (int parallelism = 1; parallelism <= cores; parallelism *= 2) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			ReplenishmentEngine engine = populate(slots, pool);
+			long today = 20_000;
+			engine.run(today);
+
+			long best = Long.MAX_VALUE;
+			for (int i = 1; i <= 10; i++) {
+				long started = System.nanoTime();
+				// A new day forces a full recomputation of every slot
+				engine.run(today + i);
+				best = Math.min(best, System.nanoTime() - started);
+			}
+			if (parallelism == 1) {
+				baseline = best;
+			}
+			System.out.printf("parallelism %2d: %8.2f ms  speedup %.2fx%n",
+					parallelism, best / 1e6, (double) baseline / best);
+			pool.shutdown();
+		}
+	}
+
+	private static ReplenishmentEngine populate(int slots, ForkJoinPool pool) {
+		ReplenishmentEngine engine = new ReplenishmentEngine(28, 3, 7, 1.65, pool);
+		SplittableRandom random = new SplittableRandom(42);
+		for (int slot = 0; slot < slots; slot++) {
+			String sku = "SKU-" + (slot / 8);
+			int branch = slot % 8;
+			for (int sale = 0; sale < 7; sale++) {
+				engine.recordSale(sku, branch, 20_000 - random.nextInt(28), 1 + random.nextInt(20));
+			}
+			engine.setOnHand(sku, branch, random.nextInt(200));
+		}
+		return engine;
+	}
+}
@@ -0,0 +1,94 @@
+package pharmacy.pharmacy.bench;
+
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.service.UserSearchIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Search latency over a large synthetic user base, with and without a role filter, and the
+ * cost of incremental changes on top of it. Run from the IDE or with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=pharmacy.pharmacy.bench.UserSearchBenchmark -Dexec.args=1000000}.
+ */
+public class UserSearchBenchmark {
+
+	private static final String[] FIRST = {"james", "mary", "john", "patricia", "robert", "jennifer", "michael",
+			"linda", "kamal", "nimal", "sunil", "anjali", "dilini", "kasun", "chamari", "ruwan"};
+	private static final String[] LAST = {"smith", "perera", "silva", "fernando", "jones", "brown", "de.silva",
+			"jayasinghe", "wickramasinghe", "bandara", "taylor", "wilson"};
+	private static final String[] DOMAINS = {"gmail.com", "yahoo.com", "pharmacy.lk", "outlook.com"};
+	private static final ERole[] ROLES = ERole.values();
+
+	public static void main(String[] args) {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		SplittableRandom random = new SplittableRandom(42);
+
+		List<UserSearchIndex.Entry> entries = new ArrayList<>(users);
+		for (int id = 1; id <= users; id++) {
+			entries.add(entry(id, random));
+		}
+		UserSearchIndex index = new UserSearchIndex();
+		long started = System.nanoTime();
+		index.replaceAll(entries);
+		System.out.printf("loaded %,d users in %.0f ms, heap in use %,d MB%n", index.size(),
+				(System.nanoTime() - started) / 1e6, usedMegabytes());
+
+		String[] queries = {"j", "ma", "kas", "nimal.s", "smith", "pharmacy", "jennifer.wilson12", "zzz"};
+		for (int round = 0; round < 2; round++) {
+			// The first round only warms up
+			for (String query : queries) {
+				measure(index, query, Set.of(), round == 1);
+				measure(index, query, Set.of(ERole.ROLE_ADMIN), round == 1);
+			}
+		}
+
+		started = System.nanoTime();
+		int changes = 100_000;
+		for (int i = 0; i < changes; i++) {
+			int id = 1 + random.nextInt(users);
+			UserSearchIndex.Entry renamed = entry(id, random);
+			index.put(id, renamed.username(), renamed.email(), renamed.roles());
+		}
+		System.out.printf("%,d renames in %.0f ms, %.1f us each including merges%n", changes,
+				(System.nanoTime() - started) / 1e6, (System.nanoTime() - started) / 1e3 / changes);
+		for (String query : queries) {
+			measure(index, query, Set.of(), true);
+		}
+	}
+
+	private static void measure(UserSearchIndex index, String query, Set<ERole> roles, boolean print) {
+		int repetitions = 20_000;
+		long[] latencies = new long[repetitions];
+		int found = 0;
+		for (int i = 0; i < repetitions; i++) {
+			long started = System.nanoTime();
+			found = index.search(query, roles, 10).size();
+			latencies[i] = System.nanoTime() - started;
+		}
+		Arrays.sort(latencies);
+		if (print) {
+			System.out.printf("%-18s %-12s %2d hits  p50 %7.1f us  p99 %7.1f us%n", query,
+					roles.isEmpty() ? "any role" : "admins", found,
+					latencies[repetitions / 2] / 1e3, latencies[repetitions * 99 / 100] / 1e3);
+		}
+	}
+
+	private static UserSearchIndex.Entry entry(int id, SplittableRandom random) {
+		String first = FIRST[random.nextInt(FIRST.length)];
+		String last = LAST[random.nextInt(LAST.length)];
+		// About one in fifty is an admin, so the filtered searches have to skip most candidates
+		ERole role = random.nextInt(50) == 0 ? ERole.ROLE_ADMIN : ROLES[1 + random.nextInt(ROLES.length - 1)];
+		return new UserSearchIndex.Entry(id, first + "_" + last + id, first + "." + last + id + "@"
+				+ DOMAINS[random.nextInt(DOMAINS.length)], List.of(role));
+	}
+
+	private static long usedMegabytes() {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		return (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+	}
+}
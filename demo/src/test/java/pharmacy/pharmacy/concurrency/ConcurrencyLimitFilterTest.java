@@ -0,0 +1,90 @@
+package pharmacy.pharmacy.concurrency;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Requests are held in flight by running the next one from inside the previous one's chain.
+ * The limit starts at 4: LOW may use 2 slots, NORMAL 3 and HIGH all 4.
+ */
+class ConcurrencyLimitFilterTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(meterRegistry, true, 4, 1, 100, 1.5, 0.2,
+			20, 60, List.of("/actuator/health", "/actuator/health/**"), List.of("/api/auth/register", "/api/users/roles/**"));
+
+	@Test
+	void routesAreClassedByPathMethodAndToken() {
+		assertEquals(Priority.CRITICAL, filter.classify(request("GET", "/actuator/health/readiness", false)));
+		assertEquals(Priority.LOW, filter.classify(request("POST", "/api/auth/register", false)));
+		assertEquals(Priority.LOW, filter.classify(request("POST", "/api/users/roles/grant", true)));
+		assertEquals(Priority.HIGH, filter.classify(request("GET", "/api/users", true)));
+		assertEquals(Priority.NORMAL, filter.classify(request("PUT", "/api/users/1", true)));
+		assertEquals(Priority.NORMAL, filter.classify(request("POST", "/api/auth/login", false)));
+		assertEquals(Priority.NORMAL, filter.classify(request("GET", "/api/users", false)));
+	}
+
+	@Test
+	void lowerClassesAreShedFirst() throws Exception {
+		assertEquals(200, statusWhileHolding(0, request("POST", "/api/auth/register", false)));
+		assertEquals(503, statusWhileHolding(2, request("POST", "/api/auth/register", false)));
+		assertEquals(200, statusWhileHolding(2, request("POST", "/api/auth/login", false)));
+		assertEquals(503, statusWhileHolding(3, request("POST", "/api/auth/login", false)));
+		assertEquals(200, statusWhileHolding(3, request("GET", "/api/users", true)));
+		assertEquals(503, statusWhileHolding(4, request("GET", "/api/users", true)));
+		assertEquals(200, statusWhileHolding(4, request("GET", "/actuator/health", false)));
+
+		assertEquals(1, meterRegistry.get("concurrency.rejected").tag("priority", "low").counter().count());
+		assertEquals(4, meterRegistry.get("concurrency.limit").gauge().value());
+		assertEquals(0, meterRegistry.get("concurrency.in-flight").gauge().value());
+	}
+
+	@Test
+	void shedRequestsAreToldWhenToRetryAndNeverReachTheChain() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		holding(4, () -> filter.doFilter(request("GET", "/api/users", true), response,
+				(req, res) -> fail("A shed request reached the chain")));
+		assertEquals(503, response.getStatus());
+		assertEquals("1", response.getHeader("Retry-After"));
+	}
+
+	private int statusWhileHolding(int held, MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		holding(held, () -> filter.doFilter(request, response, (req, res) -> { }));
+		return response.getStatus();
+	}
+
+	private interface Action {
+		void run() throws Exception;
+	}
+
+	// Runs the action while 'count' authenticated reads are in flight
+	private void holding(int count, Action action) throws Exception {
+		if (count == 0) {
+			action.run();
+			return;
+		}
+		filter.doFilter(request("GET", "/api/users", true), new MockHttpServletResponse(),
+				(req, res) -> {
+					try {
+						holding(count - 1, action);
+					} catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				});
+	}
+
+	private static MockHttpServletRequest request(String method, String path, boolean bearer) {
+		MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+		if (bearer) {
+			request.addHeader("Authorization", "Bearer token");
+		}
+		return request;
+	}
+}
@@ -0,0 +1,63 @@
+package pharmacy.pharmacy.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GradientLimitTest {
+
+	private static final int WINDOW = 10;
+
+	@Test
+	void theLimitGrowsWhileLatencyHoldsUnderLoad() {
+		GradientLimit limit = new GradientLimit(20, 5, 200, 1.5, 0.2, WINDOW, 60);
+		window(limit, 10, 20);
+		assertEquals(20, limit.getLimit());
+
+		for (int i = 0; i < 40; i++) {
+			window(limit, 10, limit.getLimit());
+		}
+		assertTrue(limit.getLimit() > 40, "limit " + limit.getLimit());
+	}
+
+	@Test
+	void theLimitFallsOnceRequestsQueue() {
+		GradientLimit limit = new GradientLimit(40, 5, 200, 1.5, 0.2, WINDOW, 60);
+		window(limit, 10, 40);
+
+		window(limit, 40, 40);
+		assertTrue(limit.getLimit() < 40, "limit " + limit.getLimit());
+		for (int i = 0; i < 10; i++) {
+			window(limit, 40, limit.getLimit());
+		}
+		// Roughly halved; kept up, the slower latency would become the baseline and the limit recover
+		assertTrue(limit.getLimit() <= 20, "limit " + limit.getLimit());
+	}
+
+	@Test
+	void windowsWellBelowTheLimitLeaveItAlone() {
+		GradientLimit limit = new GradientLimit(20, 5, 200, 1.5, 0.2, WINDOW, 60);
+		for (int i = 0; i < 20; i++) {
+			window(limit, 10, 3);
+		}
+		assertEquals(20, limit.getLimit());
+
+		// Slow, but hardly anything was running, so the limit was not the cause
+		window(limit, 200, 3);
+		assertEquals(20, limit.getLimit());
+	}
+
+	@Test
+	void limitsMustBeOrdered() {
+		assertThrows(IllegalArgumentException.class, () -> new GradientLimit(4, 5, 200, 1.5, 0.2, WINDOW, 60));
+		assertThrows(IllegalArgumentException.class, () -> new GradientLimit(20, 0, 200, 1.5, 0.2, WINDOW, 60));
+	}
+
+	private static void window(GradientLimit limit, long rttMillis, int inFlight) {
+		for (int i = 0; i < WINDOW; i++) {
+			limit.onSample(TimeUnit.MILLISECONDS.toNanos(rttMillis), inFlight);
+		}
+	}
+}
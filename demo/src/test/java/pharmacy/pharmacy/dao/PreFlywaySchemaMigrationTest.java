@@ -0,0 +1,50 @@
+package pharmacy.pharmacy.dao;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.entity.User;
+import pharmacy.pharmacy.entity.UserRole;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Upgrades a database that ddl-auto=update created before the schema was migrated: Flyway
+ * baselines it at V0 and runs every migration, and Hibernate then validates the result.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:legacy;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+				+ "INIT=RUNSCRIPT FROM 'classpath:legacy/pre-flyway-schema.sql'",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+class PreFlywaySchemaMigrationTest {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void existingUsersSurviveTheUpgrade() {
+		User alice = userRepository.findByUsername("alice").orElseThrow();
+		assertEquals(0, alice.getVersion());
+		assertEquals(List.of(ERole.ROLE_ADMIN), alice.getRoles().stream().map(UserRole::getName).toList());
+
+		assertEquals(List.of("0", "1", "1.1"), jdbcTemplate.queryForList(
+				"select version from flyway_schema_history where version in ('0', '1', '1.1') order by installed_rank",
+				String.class));
+		assertEquals(5, jdbcTemplate.queryForObject("select count(*) from roles", Integer.class));
+		assertEquals(0, jdbcTemplate.queryForObject("select count(*) from stock_batches", Integer.class));
+	}
+}
@@ -0,0 +1,86 @@
+package pharmacy.pharmacy.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import pharmacy.pharmacy.entity.Prescription;
+import pharmacy.pharmacy.entity.PrescriptionStatus;
+import pharmacy.pharmacy.entity.PrescriptionUrgency;
+import pharmacy.pharmacy.entity.User;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:prescriptions;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+class PrescriptionRepositoryTest {
+
+	private static final Instant NOW = Instant.parse("2025-03-01T10:00:00Z");
+
+	@Autowired
+	private PrescriptionRepository prescriptionRepository;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	private User customer;
+
+	@BeforeEach
+	void seed() {
+		customer = new User();
+		customer.setUsername("customer");
+		customer.setEmail("customer@pharmacy.example");
+		customer.setPassword("secret");
+		userRepository.save(customer);
+	}
+
+	@Test
+	void onlyOneClaimTakesAPendingPrescription() {
+		long id = save();
+
+		assertEquals(1, prescriptionRepository.claim(id, 1, NOW.plusSeconds(600)));
+		assertEquals(0, prescriptionRepository.claim(id, 2, NOW.plusSeconds(600)));
+		assertEquals(0, prescriptionRepository.markCompleted(id, PrescriptionStatus.VERIFIED, 2, NOW, null));
+		assertEquals(1, prescriptionRepository.markCompleted(id, PrescriptionStatus.VERIFIED, 1, NOW, null));
+	}
+
+	@Test
+	void onlyLapsedLeasesAreReleased() {
+		long lapsed = save();
+		long running = save();
+		prescriptionRepository.claim(lapsed, 1, NOW.minusSeconds(1));
+		prescriptionRepository.claim(running, 2, NOW.plusSeconds(600));
+
+		List<Prescription> found = prescriptionRepository.findByStatusAndLeaseExpiresAtBefore(PrescriptionStatus.LEASED, NOW);
+		assertEquals(List.of(lapsed), found.stream().map(Prescription::getId).toList());
+		assertEquals(1, prescriptionRepository.releaseExpiredLeases(List.of(lapsed, running), NOW));
+		entityManager.clear();
+		assertEquals(PrescriptionStatus.PENDING, prescriptionRepository.findById(lapsed).orElseThrow().getStatus());
+		assertEquals(PrescriptionStatus.LEASED, prescriptionRepository.findById(running).orElseThrow().getStatus());
+	}
+
+	private long save() {
+		Prescription prescription = new Prescription();
+		prescription.setCustomer(customer);
+		prescription.setMedication("amoxicillin");
+		prescription.setUrgency(PrescriptionUrgency.ROUTINE);
+		prescription.setSubmittedAt(NOW);
+		prescription.setSlaDeadline(NOW.plusSeconds(3600));
+		return prescriptionRepository.saveAndFlush(prescription).getId();
+	}
+}
@@ -0,0 +1,71 @@
+package pharmacy.pharmacy.dao;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.TestPropertySource;
+import pharmacy.pharmacy.entity.ExpiryStage;
+import pharmacy.pharmacy.entity.StockBatch;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:stock;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+class StockBatchRepositoryTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2025, 3, 1);
+
+	@Autowired
+	private StockBatchRepository stockBatchRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Test
+	void salesDrawOnlyOnUnexpiredLotsEarliestFirst() {
+		save("PAST-DATE", TODAY.minusDays(1), ExpiryStage.NEAR_EXPIRY, 10);
+		save("MARKED-EXPIRED", TODAY.plusDays(1), ExpiryStage.EXPIRED, 10);
+		save("EMPTY", TODAY.plusDays(2), ExpiryStage.ACTIVE, 0);
+		save("LATER", TODAY.plusDays(90), ExpiryStage.ACTIVE, 10);
+		save("SOONER", TODAY, ExpiryStage.NEAR_EXPIRY, 10);
+
+		List<String> lots = stockBatchRepository.lockSellableBatches("SKU-1", 1, TODAY).stream()
+				.map(StockBatch::getLotNumber)
+				.toList();
+		assertEquals(List.of("SOONER", "LATER"), lots);
+	}
+
+	@Test
+	void aStageComputedFromACorrectedExpiryDateIsNotWritten() {
+		StockBatch batch = save("CORRECTED", TODAY.plusDays(10), ExpiryStage.ACTIVE, 10);
+		batch.setExpiryDate(TODAY.plusDays(200));
+		stockBatchRepository.saveAndFlush(batch);
+
+		assertEquals(0, stockBatchRepository.updateExpiryStage(batch.getId(), TODAY.plusDays(10), ExpiryStage.NEAR_EXPIRY));
+		assertEquals(1, stockBatchRepository.updateExpiryStage(batch.getId(), TODAY.plusDays(200), ExpiryStage.NEAR_EXPIRY));
+		entityManager.clear();
+		assertEquals(ExpiryStage.NEAR_EXPIRY, stockBatchRepository.findById(batch.getId()).orElseThrow().getExpiryStage());
+	}
+
+	private StockBatch save(String lot, LocalDate expiry, ExpiryStage stage, int quantity) {
+		StockBatch batch = new StockBatch();
+		batch.setSku("SKU-1");
+		batch.setBranchId(1);
+		batch.setLotNumber(lot);
+		batch.setExpiryDate(expiry);
+		batch.setExpiryStage(stage);
+		batch.setQuantity(quantity);
+		return stockBatchRepository.save(batch);
+	}
+}
@@ -0,0 +1,99 @@
+package pharmacy.pharmacy.dao;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import pharmacy.pharmacy.entity.User;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the real migrations on H2 in MySQL mode, captures the SQL Hibernate generates for the
+ * user lookups and checks that H2's plan for it goes through the unique indexes.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:plans;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password=",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=pharmacy.pharmacy.dao.UserRepositoryIndexTest$CapturingInspector"
+})
+class UserRepositoryIndexTest {
+
+	public static class CapturingInspector implements StatementInspector {
+		static final List<String> statements = new CopyOnWriteArrayList<>();
+
+		@Override
+		public String inspect(String sql) {
+			statements.add(sql);
+			return sql;
+		}
+	}
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@BeforeEach
+	void seed() {
+		for (int i = 0; i < 50; i++) {
+			User user = new User();
+			user.setUsername("user" + i);
+			user.setEmail("user" + i + "@pharmacy.example");
+			user.setPassword("secret");
+			userRepository.save(user);
+		}
+		userRepository.flush();
+		CapturingInspector.statements.clear();
+	}
+
+	@Test
+	void usernameLookupsUseUniqueIndex() {
+		userRepository.findByUsername("user7");
+		assertPlanUsesIndex("username", "user7", "uk_users_username");
+
+		userRepository.existsByUsername("user7");
+		assertPlanUsesIndex("username", "user7", "uk_users_username");
+	}
+
+	@Test
+	void emailLookupsUseUniqueIndex() {
+		userRepository.findByEmail("user7@pharmacy.example");
+		assertPlanUsesIndex("email", "user7@pharmacy.example", "uk_users_email");
+
+		userRepository.existsByEmail("user7@pharmacy.example");
+		assertPlanUsesIndex("email", "user7@pharmacy.example", "uk_users_email");
+	}
+
+	private void assertPlanUsesIndex(String column, String value, String index) {
+		String sql = CapturingInspector.statements.stream()
+				// Hibernate writes "u1_0.username=?", the native existence checks "u.username = ?"
+				.filter(s -> s.contains(" from users ") && s.replace(" = ", "=").contains("." + column + "=?"))
+				.reduce((first, second) -> second)
+				.orElseThrow(() -> new AssertionError("No users query on " + column + " in " + CapturingInspector.statements));
+		CapturingInspector.statements.clear();
+
+		// The looked-up value binds to the first placeholder; any others are row limits
+		Object[] args = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+		args[0] = value;
+		for (int i = 1; i < args.length; i++) {
+			args[i] = 1;
+		}
+		String plan = new JdbcTemplate(dataSource).queryForObject("EXPLAIN " + sql, String.class, args);
+		assertTrue(plan.toLowerCase().contains(index), () -> "Expected " + index + " in plan:\n" + plan);
+		assertFalse(plan.toLowerCase().contains("tablescan"), () -> "Unexpected table scan:\n" + plan);
+	}
+}
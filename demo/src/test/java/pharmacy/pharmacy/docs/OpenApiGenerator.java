@@ -0,0 +1,66 @@
+package pharmacy.pharmacy.docs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import pharmacy.pharmacy.LearningSpringApplication;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the OpenAPI spec springdoc would serve to {@code <dir>/openapi.json} and a gzipped
+ * copy next to it. The production build runs it before packaging; run it by hand with
+ * {@code mvn -Dprod test-compile exec:exec@generate-openapi}.
+ * <p>
+ * The application boots on an in-memory H2 with warm-up off and a local invalidation bus, so
+ * nothing outside the JVM is needed.
+ */
+public class OpenApiGenerator {
+
+	public static void main(String[] args) throws Exception {
+		Path dir = Path.of(args.length > 0 ? args[0] : "target/classes/openapi");
+		Path scratch = Files.createTempDirectory("openapi-generator");
+
+		SpringApplication application = new SpringApplication(LearningSpringApplication.class);
+		try (ConfigurableApplicationContext context = application.run(
+				"--spring.datasource.url=jdbc:h2:mem:openapi;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+				"--spring.datasource.driver-class-name=org.h2.Driver",
+				"--spring.datasource.username=sa",
+				"--spring.datasource.password=",
+				"--server.port=0",
+				"--warmup.enabled=false",
+				"--invalidation.transport=local",
+				"--idempotency.store=memory",
+				"--audit.journal.dir=" + scratch.resolve("audit"),
+				"--audit.journal.archive-dir=" + scratch.resolve("audit/archive"))) {
+			String port = context.getEnvironment().getRequiredProperty("local.server.port");
+			HttpResponse<String> response = HttpClient.newHttpClient().send(
+					HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v3/api-docs")).build(),
+					HttpResponse.BodyHandlers.ofString());
+			if (response.statusCode() != 200) {
+				throw new IllegalStateException("springdoc answered " + response.statusCode() + ": " + response.body());
+			}
+
+			// The generated server would be this throwaway instance; point at whoever serves the file
+			ObjectMapper mapper = new ObjectMapper();
+			ObjectNode spec = (ObjectNode) mapper.readTree(response.body());
+			spec.putArray("servers").addObject().put("url", "/");
+			byte[] json = mapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(spec);
+
+			Files.createDirectories(dir);
+			Files.write(dir.resolve("openapi.json"), json);
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve("openapi.json.gz")))) {
+				out.write(json);
+			}
+			System.out.printf("Wrote %s (%,d bytes)%n", dir.resolve("openapi.json"), json.length);
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package pharmacy.pharmacy.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyFilterTest {
+
+	private final AtomicInteger executions = new AtomicInteger();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100);
+	private final IdempotencyFilter filter = new IdempotencyFilter(store,
+			new ObjectMapper().registerModule(new JavaTimeModule()), meterRegistry,
+			List.of("/api/auth/register", "/api/users/**"), Duration.ofMinutes(1), Duration.ofSeconds(5), 65536, 64);
+
+	@Test
+	void retryIsReplayedWithoutRunningTheHandler() throws Exception {
+		MockHttpServletResponse first = send("key-1", "{\"username\":\"alice\"}", created());
+		MockHttpServletResponse retry = send("key-1", "{\"username\":\"alice\"}", created());
+
+		assertEquals(1, executions.get());
+		assertEquals(201, retry.getStatus());
+		assertEquals(first.getContentAsString(), retry.getContentAsString());
+		assertEquals("true", retry.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+		assertNull(first.getHeader(IdempotencyFilter.REPLAYED_HEADER));
+	}
+
+	@Test
+	void replaysCarryTheHeadersAClientActsOn() throws Exception {
+		FilterChain tagged = (request, response) -> {
+			created().doFilter(request, response);
+			((HttpServletResponse) response).setHeader("ETag", "\"3\"");
+			((HttpServletResponse) response).setHeader("Location", "/api/users/1");
+			((HttpServletResponse) response).setHeader("X-Internal", "not replayed");
+		};
+		send("key-1", "{}", tagged);
+		MockHttpServletResponse retry = send("key-1", "{}", tagged);
+
+		assertEquals("\"3\"", retry.getHeader("ETag"));
+		assertEquals("/api/users/1", retry.getHeader("Location"));
+		assertNull(retry.getHeader("X-Internal"));
+	}
+
+	@Test
+	void keyReusedForAnotherBodyIsRejected() throws Exception {
+		send("key-1", "{\"username\":\"alice\"}", created());
+		MockHttpServletResponse other = send("key-1", "{\"username\":\"bob\"}", created());
+
+		assertEquals(422, other.getStatus());
+		assertEquals(1, executions.get());
+	}
+
+	@Test
+	void serverErrorsAreNotStored() throws Exception {
+		send("key-1", "{}", (request, response) -> {
+			executions.incrementAndGet();
+			((HttpServletResponse) response).setStatus(503);
+		});
+		MockHttpServletResponse retry = send("key-1", "{}", created());
+
+		assertEquals(2, executions.get());
+		assertEquals(201, retry.getStatus());
+	}
+
+	@Test
+	void concurrentDuplicatesWaitForTheFirstRequest() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		FilterChain slow = (request, response) -> {
+			entered.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			created().doFilter(request, response);
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			Future<MockHttpServletResponse> leader = executor.submit(() -> send("key-1", "{}", slow));
+			assertTrue(entered.await(5, TimeUnit.SECONDS));
+			List<Future<MockHttpServletResponse>> followers = List.of(
+					executor.submit(() -> send("key-1", "{}", slow)),
+					executor.submit(() -> send("key-1", "{}", slow)));
+			Thread.sleep(100);
+			release.countDown();
+
+			assertEquals(201, leader.get(5, TimeUnit.SECONDS).getStatus());
+			for (Future<MockHttpServletResponse> follower : followers) {
+				assertEquals(201, follower.get(5, TimeUnit.SECONDS).getStatus());
+			}
+			assertEquals(1, executions.get());
+			assertEquals(2, meterRegistry.counter("http.idempotency", "outcome", "coalesced").count());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void oversizedBodiesAreRefusedBeforeTheHandler() throws Exception {
+		String large = "{\"username\":\"" + "a".repeat(100) + "\"}";
+		assertEquals(413, send("key-1", large, created()).getStatus());
+
+		// Without Content-Length only the bytes read give the size away
+		MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/api/users") {
+			@Override
+			public long getContentLengthLong() {
+				return -1;
+			}
+		};
+		chunked.addHeader(IdempotencyFilter.HEADER, "key-2");
+		chunked.setContent(large.getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(chunked, response, created());
+		assertEquals(413, response.getStatus());
+		assertEquals(0, executions.get());
+	}
+
+	@Test
+	void requestsWithoutKeyOrOnOtherPathsPassThrough() throws Exception {
+		send(null, "{}", created());
+		send(null, "{}", created());
+		assertEquals(2, executions.get());
+
+		MockHttpServletRequest login = new MockHttpServletRequest("POST", "/api/auth/login");
+		login.addHeader(IdempotencyFilter.HEADER, "key-1");
+		filter.doFilter(login, new MockHttpServletResponse(), created());
+		filter.doFilter(login, new MockHttpServletResponse(), created());
+		assertEquals(4, executions.get());
+	}
+
+	private FilterChain created() {
+		return (request, response) -> {
+			int id = executions.incrementAndGet();
+			request.getInputStream().readAllBytes();
+			((HttpServletResponse) response).setStatus(201);
+			response.setContentType("application/json");
+			response.getWriter().write("{\"id\":" + id + "}");
+			response.getWriter().flush();
+		};
+	}
+
+	private MockHttpServletResponse send(String key, String body, FilterChain chain) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users");
+		if (key != null) {
+			request.addHeader(IdempotencyFilter.HEADER, key);
+		}
+		request.setContentType("application/json");
+		request.setContent(body.getBytes(StandardCharsets.UTF_8));
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+}
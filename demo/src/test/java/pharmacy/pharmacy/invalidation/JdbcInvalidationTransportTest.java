@@ -0,0 +1,147 @@
+package pharmacy.pharmacy.invalidation;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the change log on H2 in MySQL mode. The transports are polled by hand; their own
+ * schedule is an hour away.
+ */
+class JdbcInvalidationTransportTest {
+
+	private final List<JdbcInvalidationTransport> transports = new ArrayList<>();
+	private JdbcTemplate jdbcTemplate;
+
+	@BeforeEach
+	void createLog() throws Exception {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+		try (Connection connection = dataSource.getConnection()) {
+			ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V5__invalidation_log.sql"));
+		}
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@AfterEach
+	void closeTransports() {
+		transports.forEach(JdbcInvalidationTransport::close);
+	}
+
+	@Test
+	void otherNodesApplyEventsAndThePublisherSkipsItsOwn() {
+		JdbcInvalidationTransport transportA = transport(Duration.ofSeconds(30));
+		JdbcInvalidationTransport transportB = transport(Duration.ofSeconds(30));
+		InvalidationBus nodeA = new InvalidationBus(transportA, new SimpleMeterRegistry());
+		InvalidationBus nodeB = new InvalidationBus(transportB, new SimpleMeterRegistry());
+		List<String> appliedOnA = new ArrayList<>();
+		List<String> appliedOnB = new ArrayList<>();
+		nodeA.subscribe(InvalidationBus.USERS, appliedOnA::add);
+		nodeB.subscribe(InvalidationBus.USERS, appliedOnB::add);
+		nodeA.start();
+		nodeB.start();
+
+		nodeA.publish(InvalidationBus.USERS, 7);
+		nodeA.publish(InvalidationBus.USERS, 8);
+		assertEquals(List.of("7", "8"), appliedOnA);
+		assertEquals(List.of(), appliedOnB);
+
+		assertEquals(2, transportB.poll());
+		assertEquals(List.of("7", "8"), appliedOnB);
+		assertEquals(0, transportB.poll());
+
+		assertEquals(2, transportA.poll());
+		assertEquals(List.of("7", "8"), appliedOnA);
+	}
+
+	@Test
+	void batchesAreOneCallLocallyAndOneRowPerKeyRemotely() {
+		JdbcInvalidationTransport transportA = transport(Duration.ofSeconds(30));
+		JdbcInvalidationTransport transportB = transport(Duration.ofSeconds(30));
+		InvalidationBus nodeA = new InvalidationBus(transportA, new SimpleMeterRegistry());
+		InvalidationBus nodeB = new InvalidationBus(transportB, new SimpleMeterRegistry());
+		List<List<String>> batchesOnA = new ArrayList<>();
+		List<String> keysOnA = new ArrayList<>();
+		List<String> keysOnB = new ArrayList<>();
+		nodeA.subscribeAll(InvalidationBus.USERS, batchesOnA::add);
+		nodeA.subscribe(InvalidationBus.USERS, keysOnA::add);
+		nodeB.subscribe(InvalidationBus.USERS, keysOnB::add);
+		nodeA.start();
+		nodeB.start();
+
+		nodeA.publishAll(InvalidationBus.USERS, List.of(1, 2, 3));
+		assertEquals(List.of(List.of("1", "2", "3")), batchesOnA);
+		assertEquals(List.of("1", "2", "3"), keysOnA);
+
+		assertEquals(3, transportB.poll());
+		assertEquals(List.of("1", "2", "3"), keysOnB);
+		assertEquals(3, jdbcTemplate.queryForObject("select count(*) from invalidation_log", Integer.class));
+	}
+
+	@Test
+	void rowsCommittedBehindTheCursorAreStillDelivered() {
+		List<String> delivered = new ArrayList<>();
+		JdbcInvalidationTransport transport = transport(Duration.ofSeconds(30));
+		transport.start(event -> delivered.add(event.key()));
+
+		// Id 2 belongs to a transaction that commits after 3 is already visible
+		insert(1, "a");
+		insert(3, "c");
+		assertEquals(2, transport.poll());
+		insert(2, "b");
+		assertEquals(1, transport.poll());
+		assertEquals(0, transport.poll());
+		assertEquals(List.of("a", "c", "b"), delivered);
+	}
+
+	@Test
+	void gapsOlderThanTheGraceAreSkipped() {
+		List<String> delivered = new ArrayList<>();
+		JdbcInvalidationTransport transport = transport(Duration.ZERO);
+		transport.start(event -> delivered.add(event.key()));
+
+		insert(1, "a");
+		insert(3, "c");
+		assertEquals(2, transport.poll());
+		insert(4, "d");
+		assertEquals(1, transport.poll());
+		assertEquals(List.of("a", "c", "d"), delivered);
+	}
+
+	@Test
+	void newNodesStartAtTheHeadOfTheLog() {
+		insert(1, "old");
+		List<String> delivered = new ArrayList<>();
+		JdbcInvalidationTransport transport = transport(Duration.ofSeconds(30));
+		transport.start(event -> delivered.add(event.key()));
+
+		insert(2, "new");
+		assertEquals(1, transport.poll());
+		assertEquals(List.of("new"), delivered);
+	}
+
+	private JdbcInvalidationTransport transport(Duration gapGrace) {
+		JdbcInvalidationTransport transport = new JdbcInvalidationTransport(jdbcTemplate, Duration.ofHours(1), gapGrace,
+				Duration.ofHours(1), 100);
+		transports.add(transport);
+		return transport;
+	}
+
+	private void insert(long id, String key) {
+		jdbcTemplate.update("insert into invalidation_log (id, region, item_key, origin, created_at) values (?, ?, ?, ?, ?)",
+				id, InvalidationBus.USERS, key, "other", System.currentTimeMillis());
+	}
+}
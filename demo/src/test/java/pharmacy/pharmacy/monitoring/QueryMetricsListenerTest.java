@@ -0,0 +1,75 @@
+package pharmacy.pharmacy.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryMetricsListenerTest {
+
+	private SimpleMeterRegistry registry;
+	private JdbcTemplate jdbc;
+	private QueryMetricsListener listener;
+
+	@BeforeEach
+	void setUp() {
+		registry = new SimpleMeterRegistry();
+		listener = new QueryMetricsListener(registry, new SlowQueryLog(16), 10_000, 5);
+		JdbcDataSource h2 = new JdbcDataSource();
+		h2.setURL("jdbc:h2:mem:metrics" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+		DataSource proxied = ProxyDataSourceBuilder.create(h2).listener(listener).methodListener(listener).proxyResultSet().build();
+		jdbc = new JdbcTemplate(proxied);
+		jdbc.execute("create table items (id int primary key, name varchar(20))");
+	}
+
+	@Test
+	void rowsAndBatchSizesAreRecordedUnderTheRoute() {
+		QueryContext context = QueryContext.open("POST /items");
+		try {
+			jdbc.batchUpdate("insert into items (id, name) values (?, ?)",
+					List.of(new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}));
+			assertEquals(3, jdbc.queryForList("select name from items", String.class).size());
+			listener.finishRequest(context, "POST /items");
+		} finally {
+			QueryContext.close();
+		}
+
+		assertEquals(3.0, registry.get("db.query.rows").tags("route", "POST /items", "type", "select").summary().totalAmount());
+		assertEquals(3.0, registry.get("db.query.batch.size").tags("route", "POST /items").summary().max());
+		assertEquals(2, context.statements);
+	}
+
+	@Test
+	void repeatedSelectsInOneRequestAreFlagged() {
+		QueryContext context = QueryContext.open("GET /items");
+		try {
+			for (int i = 0; i < 6; i++) {
+				jdbc.queryForList("select name from items where id = ?", String.class, i);
+			}
+			jdbc.queryForList("select count(*) from items", Integer.class);
+			assertTrue(context.summary(5).endsWith("n-plus-one=1"));
+			listener.finishRequest(context, "GET /items");
+		} finally {
+			QueryContext.close();
+		}
+		assertEquals(1.0, registry.get("db.query.n_plus_one").tags("route", "GET /items").counter().count());
+	}
+
+	@Test
+	void statementsOutsideRequestsAreRecordedImmediately() {
+		QueryContext.enterRepository("ItemRepository.findAll");
+		try {
+			jdbc.queryForList("select name from items", String.class);
+		} finally {
+			QueryContext.exitRepository();
+		}
+		assertEquals(1, registry.get("db.query").tags("repository", "ItemRepository.findAll", "route", "none").timer().count());
+	}
+}
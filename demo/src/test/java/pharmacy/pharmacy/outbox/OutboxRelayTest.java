@@ -0,0 +1,197 @@
+package pharmacy.pharmacy.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.support.TransactionTemplate;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+import pharmacy.pharmacy.tenancy.TenantAdmission;
+import pharmacy.pharmacy.tenancy.TenantContext;
+import pharmacy.pharmacy.tenancy.TenantDataSources;
+import pharmacy.pharmacy.tenancy.TenantRoutingDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the real migrations on H2 in MySQL mode. The relays are run by hand; nothing here is
+ * scheduled.
+ */
+class OutboxRelayTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final List<List<UserLifecycleEvent>> batches = new ArrayList<>();
+	private String url;
+	private DriverManagerDataSource dataSource;
+	private JdbcTemplate jdbcTemplate;
+	private UserOutbox outbox;
+	private TransactionTemplate transactionTemplate;
+
+	@BeforeEach
+	void createOutbox() {
+		url = "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+		dataSource = new DriverManagerDataSource(url, "sa", "");
+		Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		outbox = new UserOutbox(jdbcTemplate, new ObjectMapper());
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
+	@Test
+	void eventsAreRelayedInIdOrderAndRemovedOnceAccepted() {
+		transactionTemplate.executeWithoutResult(status -> {
+			outbox.append(UserLifecycleEvent.Type.USER_CREATED, 1, Map.of("username", "alice"));
+			outbox.append(UserLifecycleEvent.Type.USER_CREATED, 2, Map.of("username", "bob"));
+			outbox.appendAll(UserLifecycleEvent.Type.ROLE_ASSIGNED,
+					Map.of(1, Map.of("roles", List.of("ROLE_ADMIN"))));
+			outbox.append(UserLifecycleEvent.Type.USER_DELETED, 1, Map.of());
+		});
+
+		OutboxRelay relay = relay(batches::add, 2, Duration.ofSeconds(1));
+		assertEquals(4, relay.relay());
+		assertEquals(List.of(2, 2), batches.stream().map(List::size).toList());
+		List<UserLifecycleEvent> events = batches.stream().flatMap(List::stream).toList();
+		assertEquals(List.of(UserLifecycleEvent.Type.USER_CREATED, UserLifecycleEvent.Type.USER_CREATED,
+				UserLifecycleEvent.Type.ROLE_ASSIGNED, UserLifecycleEvent.Type.USER_DELETED),
+				events.stream().map(UserLifecycleEvent::type).toList());
+		assertEquals("{\"roles\":[\"ROLE_ADMIN\"]}", events.get(2).data());
+		assertEquals(0, pending());
+		assertEquals(4, meterRegistry.counter("outbox.delivered").count());
+		assertEquals(0, relay.relay());
+	}
+
+	@Test
+	void aRejectedBatchStaysAndIsOfferedAgainAfterTheBackoff() throws Exception {
+		append(3);
+		List<Long> offered = new ArrayList<>();
+		OutboxRelay relay = relay(batch -> {
+			batch.forEach(event -> offered.add(event.id()));
+			if (offered.size() <= 3) {
+				throw new OutboxSink.RetryLaterException("busy", Duration.ofMillis(200));
+			}
+		}, 10, Duration.ofMillis(10));
+
+		assertEquals(0, relay.relay());
+		assertEquals(3, pending());
+		assertTrue(meterRegistry.get("outbox.lag").timeGauge().value(TimeUnit.MILLISECONDS) >= 0);
+		// Retry-After outweighs the 10 ms initial backoff
+		assertEquals(0, relay.relay());
+		assertEquals(3, offered.size());
+
+		Thread.sleep(250);
+		assertEquals(3, relay.relay());
+		assertEquals(offered.subList(0, 3), offered.subList(3, 6));
+		assertEquals(0, pending());
+		assertEquals(1, meterRegistry.counter("outbox.failed").count());
+	}
+
+	@Test
+	void onlyTheLeaseHolderRelays() {
+		append(2);
+		List<List<UserLifecycleEvent>> otherNode = new ArrayList<>();
+		OutboxRelay first = relay(batches::add, 10, Duration.ofSeconds(1));
+		OutboxRelay second = relay(otherNode::add, 10, Duration.ofSeconds(1));
+
+		assertEquals(2, first.relay());
+		append(1);
+		assertEquals(0, second.relay());
+		assertEquals(1, first.relay());
+		assertEquals(List.of(), otherNode);
+
+		// A lease that ran out can be taken over
+		jdbcTemplate.update("update job_cursors set position = 0 where name = ?", OutboxRelay.LEASE_NAME);
+		append(1);
+		assertEquals(1, second.relay());
+		assertEquals(0, first.relay());
+	}
+
+	@Test
+	void anEventCommittedBelowRelayedOnesIsRelayedOnTheNextRun() throws Exception {
+		OutboxRelay relay = relay(batches::add, 10, Duration.ofSeconds(1));
+		try (Connection slow = dataSource.getConnection()) {
+			slow.setAutoCommit(false);
+			try (PreparedStatement insert = slow.prepareStatement(
+					"insert into user_outbox (event_type, user_id, payload, created_at) values ('USER_UPDATED', 7, '{}', 0)")) {
+				insert.executeUpdate();
+			}
+			append(1);
+			assertEquals(1, relay.relay());
+			slow.commit();
+		}
+		assertEquals(1, relay.relay());
+		assertEquals(7, batches.get(1).get(0).userId());
+		assertTrue(batches.get(1).get(0).id() < batches.get(0).get(0).id());
+	}
+
+	@Test
+	void tenantEventsAreRelayedFromTheTenantsOwnDatabaseWhileItsPoolIsOpen() throws Exception {
+		HikariDataSource defaultPool = new HikariDataSource();
+		defaultPool.setJdbcUrl(url);
+		defaultPool.setUsername("sa");
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("tenancy.tenant.chain-a.url", "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE")
+				.withProperty("tenancy.tenant.chain-a.username", "sa");
+		try (TenantDataSources tenants = new TenantDataSources(defaultPool, environment, new TenantAdmission(4),
+				pool -> Flyway.configure().dataSource(pool).locations("classpath:db/migration").load().migrate(),
+				meterRegistry, 2, Duration.ofSeconds(1), Duration.ofMillis(300))) {
+			TenantRoutingDataSource routing = new TenantRoutingDataSource(tenants);
+			UserOutbox tenantOutbox = new UserOutbox(new JdbcTemplate(routing), new ObjectMapper());
+			TransactionTemplate tenantTransaction = new TransactionTemplate(new DataSourceTransactionManager(routing));
+			OutboxRelay relay = new OutboxRelay(jdbcTemplate, tenants, batches::add, meterRegistry, 10,
+					Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(1), Duration.ofSeconds(1));
+
+			append(1);
+			TenantContext.set("chain-a");
+			try {
+				tenantTransaction.executeWithoutResult(status ->
+						tenantOutbox.append(UserLifecycleEvent.Type.USER_CREATED, 1, Map.of("username", "alice")));
+			} finally {
+				TenantContext.clear();
+			}
+
+			assertEquals(2, relay.relay());
+			assertEquals(List.of("default", "chain-a"), batches.stream().map(batch -> batch.get(0).tenant()).toList());
+			assertEquals(0, new JdbcTemplate(new TenantRoutingDataSource(tenants, "chain-a"))
+					.queryForObject("select count(*) from user_outbox", Integer.class));
+
+			// Relaying does not count as use, so the idle pool still closes and is left closed
+			Thread.sleep(400);
+			assertEquals(0, relay.relay());
+			tenants.evictIdle();
+			assertEquals(0, tenants.openPools());
+			assertEquals(0, relay.relay());
+		}
+	}
+
+	private OutboxRelay relay(OutboxSink sink, int batchSize, Duration initialBackoff) {
+		return new OutboxRelay(jdbcTemplate, null, sink, meterRegistry, batchSize, Duration.ofSeconds(5),
+				Duration.ofSeconds(30), initialBackoff, Duration.ofSeconds(1));
+	}
+
+	private void append(int count) {
+		transactionTemplate.executeWithoutResult(status -> {
+			for (int i = 0; i < count; i++) {
+				outbox.append(UserLifecycleEvent.Type.USER_UPDATED, 100 + i, Map.of());
+			}
+		});
+	}
+
+	private int pending() {
+		return jdbcTemplate.queryForObject("select count(*) from user_outbox", Integer.class);
+	}
+}
@@ -0,0 +1,84 @@
+package pharmacy.pharmacy.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pharmacy.pharmacy.event.UserLifecycleEvent;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Posts to a JDK HTTP server on a free local port.
+ */
+class WebhookOutboxSinkTest {
+
+	private static final List<UserLifecycleEvent> BATCH = List.of(
+			new UserLifecycleEvent(41, "default", UserLifecycleEvent.Type.USER_CREATED, 7, 1000, "{\"username\":\"alice\"}"),
+			new UserLifecycleEvent(42, "default", UserLifecycleEvent.Type.USER_DELETED, 7, 2000, "{}"));
+
+	private final List<String> bodies = new ArrayList<>();
+	private final List<String> signatures = new ArrayList<>();
+	private final AtomicInteger status = new AtomicInteger(204);
+	private HttpServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/hook", exchange -> {
+			bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+			signatures.add(exchange.getRequestHeaders().getFirst(WebhookOutboxSink.SIGNATURE_HEADER));
+			if (status.get() == 429) {
+				exchange.getResponseHeaders().add("Retry-After", "7");
+			}
+			exchange.sendResponseHeaders(status.get(), -1);
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void batchesArePostedAsSignedJson() throws Exception {
+		sink("s3cret").deliver(BATCH);
+
+		assertEquals("{\"events\":[{\"id\":41,\"tenant\":\"default\",\"type\":\"USER_CREATED\",\"userId\":7,\"occurredAt\":1000,"
+				+ "\"data\":{\"username\":\"alice\"}},{\"id\":42,\"tenant\":\"default\",\"type\":\"USER_DELETED\",\"userId\":7,"
+				+ "\"occurredAt\":2000,\"data\":{}}]}", bodies.get(0));
+		assertEquals(WebhookOutboxSink.sign("s3cret".getBytes(StandardCharsets.UTF_8),
+				bodies.get(0).getBytes(StandardCharsets.UTF_8)), signatures.get(0));
+	}
+
+	@Test
+	void refusalsFailTheBatch() {
+		WebhookOutboxSink sink = sink("");
+
+		status.set(429);
+		OutboxSink.RetryLaterException busy = assertThrows(OutboxSink.RetryLaterException.class, () -> sink.deliver(BATCH));
+		assertEquals(Duration.ofSeconds(7), busy.getRetryAfter());
+		assertNull(signatures.get(0));
+
+		status.set(500);
+		assertThrows(IOException.class, () -> sink.deliver(BATCH));
+	}
+
+	private WebhookOutboxSink sink(String secret) {
+		URI url = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/hook");
+		return new WebhookOutboxSink(HttpClient.newHttpClient(), url, secret, Duration.ofSeconds(5), new ObjectMapper());
+	}
+}
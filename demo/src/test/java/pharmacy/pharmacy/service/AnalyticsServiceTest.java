@@ -0,0 +1,152 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import pharmacy.pharmacy.dao.JobCursorRepository;
+import pharmacy.pharmacy.dao.SaleLineRepository;
+import pharmacy.pharmacy.dao.SalesRollupRepository;
+import pharmacy.pharmacy.dto.ReportPointDTO;
+import pharmacy.pharmacy.entity.SaleLine;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two services on one database stand in for two nodes flushing the same rollups.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:analytics;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+class AnalyticsServiceTest {
+
+	@Autowired
+	private SalesRollupRepository salesRollupRepository;
+
+	@Autowired
+	private SaleLineRepository saleLineRepository;
+
+	@Autowired
+	private JobCursorRepository jobCursorRepository;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private AnalyticsService nodeA;
+	private AnalyticsService nodeB;
+
+	@BeforeEach
+	void nodes() {
+		// Ids are not rolled back with earlier tests, so the watermark starts just below the next one
+		long last = sale("-", 0, LocalDateTime.now());
+		saleLineRepository.deleteById(last);
+		saleLineRepository.flush();
+		jdbcTemplate.update("update job_cursors set position = ? where name = 'sales-rollups'", last);
+		nodeA = node();
+		nodeB = node();
+	}
+
+	@Test
+	void flushesFromEitherNodeAddUp() {
+		sale("A", 2, LocalDateTime.now());
+		sale("A", 3, LocalDateTime.now());
+		nodeA.flush();
+		sale("A", 5, LocalDateTime.now());
+		nodeB.flush();
+		nodeA.flush();
+
+		assertEquals(10, storedQuantity("A"));
+		assertEquals(1000, storedRevenueCents("A"));
+	}
+
+	@Test
+	void theWatermarkWaitsAtAGapUntilTheLineAfterItSettles() {
+		long first = sale("A", 1, LocalDateTime.now());
+		long rolledBack = sale("A", 100, LocalDateTime.now());
+		long after = sale("A", 4, LocalDateTime.now());
+		saleLineRepository.deleteById(rolledBack);
+		saleLineRepository.flush();
+
+		nodeA.flush();
+		assertEquals(1, storedQuantity("A"));
+		assertEquals(first, watermark());
+
+		SaleLine settled = saleLineRepository.findById(after).orElseThrow();
+		settled.setSoldAt(LocalDateTime.now().minusMinutes(1));
+		saleLineRepository.saveAndFlush(settled);
+		nodeB.flush();
+		assertEquals(5, storedQuantity("A"));
+		assertEquals(after, watermark());
+	}
+
+	@Test
+	void everyNodeReportsSalesRecordedOnAnother() {
+		nodeA.restore();
+		nodeB.restore();
+		sale("A", 2, LocalDateTime.now());
+		sale("B", 3, LocalDateTime.now());
+
+		nodeB.refresh();
+		nodeB.refresh();
+		LocalDateTime from = LocalDateTime.now().minusDays(1);
+		LocalDateTime to = LocalDateTime.now().plusDays(1);
+		List<ReportPointDTO> top = nodeB.getTopSkus(from, to, null, "quantity", 10);
+		assertEquals(List.of("B", "A"), top.stream().map(ReportPointDTO::getSku).toList());
+		assertEquals(3, top.get(0).getQuantity());
+		assertTrue(nodeA.getTopSkus(from, to, null, "quantity", 10).isEmpty());
+	}
+
+	@Test
+	void compactionFoldsStoredHoursIntoDays() {
+		sale("A", 2, LocalDateTime.now().minusDays(10));
+		sale("A", 3, LocalDateTime.now().minusDays(10).plusMinutes(1));
+		sale("A", 1, LocalDateTime.now());
+		// Not compacted yet, so this node still files the old sales by hour
+		nodeA.flush();
+
+		nodeB.compact();
+		assertEquals(5, jdbcTemplate.queryForObject(
+				"select sum(quantity) from sales_rollups where sku = 'A' and granularity = 'DAY'", Long.class));
+		assertEquals(6, storedQuantity("A"));
+	}
+
+	private AnalyticsService node() {
+		return new AnalyticsService(salesRollupRepository, saleLineRepository, jobCursorRepository, jdbcTemplate,
+				Duration.ofDays(2), Duration.ofDays(90), Duration.ofSeconds(30));
+	}
+
+	private long sale(String sku, int quantity, LocalDateTime soldAt) {
+		SaleLine line = new SaleLine();
+		line.setSku(sku);
+		line.setBranchId(1);
+		line.setQuantity(quantity);
+		line.setUnitPrice(new BigDecimal("1.00"));
+		line.setSoldAt(soldAt);
+		return saleLineRepository.saveAndFlush(line).getId();
+	}
+
+	private long storedQuantity(String sku) {
+		return jdbcTemplate.queryForObject("select coalesce(sum(quantity), 0) from sales_rollups where sku = ?", Long.class, sku);
+	}
+
+	private long storedRevenueCents(String sku) {
+		return jdbcTemplate.queryForObject("select coalesce(sum(revenue_cents), 0) from sales_rollups where sku = ?", Long.class, sku);
+	}
+
+	private long watermark() {
+		return jdbcTemplate.queryForObject("select position from job_cursors where name = 'sales-rollups'", Long.class);
+	}
+}
@@ -0,0 +1,115 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pharmacy.pharmacy.entity.AuditAction;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditJournalTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void recordsAreReadBackInOrderAndFilteredByUser() throws Exception {
+		try (AuditJournal journal = new AuditJournal(dir, 1 << 16, AuditJournal.FsyncPolicy.BATCH, 1000)) {
+			journal.append(AuditAction.USER_CREATED, 1, "admin", "username=alice");
+			journal.append(AuditAction.ROLE_ASSIGNED, 2, "admin", "role=ROLE_PHARMACIST");
+			journal.append(AuditAction.USER_DELETED, 1, "admin", "");
+
+			List<AuditJournal.Entry> all = awaitRecords(journal, 3);
+			assertEquals(List.of(AuditAction.USER_CREATED, AuditAction.ROLE_ASSIGNED, AuditAction.USER_DELETED),
+					all.stream().map(AuditJournal.Entry::action).toList());
+			assertEquals("role=ROLE_PHARMACIST", all.get(1).detail());
+
+			List<AuditJournal.Entry> alice = journal.read(0, Long.MAX_VALUE, 1, 100);
+			assertEquals(2, alice.size());
+			assertTrue(alice.stream().allMatch(e -> e.targetUserId() == 1));
+		}
+	}
+
+	@Test
+	void segmentsRotateAndSurviveReopen() throws Exception {
+		try (AuditJournal journal = new AuditJournal(dir, 1024, AuditJournal.FsyncPolicy.BATCH, 1000)) {
+			for (int i = 0; i < 100; i++) {
+				journal.append(AuditAction.USER_UPDATED, i, "admin", "email");
+			}
+			awaitRecords(journal, 100);
+			assertTrue(journal.segmentCount() > 1);
+		}
+
+		try (AuditJournal reopened = new AuditJournal(dir, 1024, AuditJournal.FsyncPolicy.BATCH, 1000)) {
+			List<AuditJournal.Entry> all = reopened.read(0, Long.MAX_VALUE, null, 1000);
+			assertEquals(100, all.size());
+			for (int i = 1; i < all.size(); i++) {
+				assertTrue(all.get(i).timestamp() >= all.get(i - 1).timestamp());
+			}
+			long middle = all.get(50).timestamp();
+			assertTrue(reopened.read(middle, Long.MAX_VALUE, null, 1000).stream().allMatch(e -> e.timestamp() >= middle));
+		}
+	}
+
+	@Test
+	void archivalMovesSealedSegmentsOut() throws Exception {
+		try (AuditJournal journal = new AuditJournal(dir, 1024, AuditJournal.FsyncPolicy.NONE, 1000)) {
+			for (int i = 0; i < 100; i++) {
+				journal.append(AuditAction.USER_UPDATED, i, "admin", "email");
+			}
+			awaitRecords(journal, 100);
+			int before = journal.segmentCount();
+
+			int archived = journal.archiveBefore(Long.MAX_VALUE, dir.resolve("archive"));
+			assertEquals(before - 1, archived);
+			assertEquals(1, journal.segmentCount());
+			try (var files = Files.list(dir.resolve("archive"))) {
+				assertEquals(archived, files.count());
+			}
+		}
+	}
+
+	@Test
+	void recordsAreKeptAndRetriedWhileTheSegmentCannotBeCreated() throws Exception {
+		Path journalDir = dir.resolve("journal");
+		try (AuditJournal journal = new AuditJournal(journalDir, 1 << 16, AuditJournal.FsyncPolicy.BATCH, 1000)) {
+			Files.delete(journalDir);
+			journal.append(AuditAction.USER_CREATED, 1, "admin", "username=alice");
+			journal.append(AuditAction.USER_CREATED, 2, "admin", "username=bob");
+			Thread.sleep(200);
+			assertTrue(journal.read(0, Long.MAX_VALUE, null, 10).isEmpty());
+
+			Files.createDirectories(journalDir);
+			assertEquals(2, awaitRecords(journal, 2).size());
+			assertEquals(0, journal.droppedCount());
+		}
+	}
+
+	@Test
+	void recordsTooLargeForASegmentAreDroppedAndCounted() throws Exception {
+		try (AuditJournal journal = new AuditJournal(dir, 128, AuditJournal.FsyncPolicy.BATCH, 1000)) {
+			journal.append(AuditAction.USER_UPDATED, 1, "admin", "x".repeat(200));
+			journal.append(AuditAction.USER_UPDATED, 2, "admin", "email");
+
+			assertEquals(2, awaitRecords(journal, 1).get(0).targetUserId());
+			assertEquals(1, journal.droppedCount());
+		}
+	}
+
+	private static List<AuditJournal.Entry> awaitRecords(AuditJournal journal, int expected) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		List<AuditJournal.Entry> records;
+		do {
+			records = journal.read(0, Long.MAX_VALUE, null, expected + 1);
+			if (records.size() >= expected) {
+				return records;
+			}
+			Thread.sleep(10);
+		} while (System.currentTimeMillis() < deadline);
+		fail("Expected " + expected + " records but found " + records.size());
+		return records;
+	}
+}
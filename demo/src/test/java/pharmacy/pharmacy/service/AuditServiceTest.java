@@ -0,0 +1,56 @@
+package pharmacy.pharmacy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pharmacy.pharmacy.dto.AuditRecordDTO;
+import pharmacy.pharmacy.entity.AuditAction;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditServiceTest {
+
+	@TempDir
+	Path dir;
+
+	private AuditService auditService;
+
+	@AfterEach
+	void reset() {
+		TenantContext.clear();
+		auditService.destroy();
+	}
+
+	@Test
+	void eachTenantReadsOnlyItsOwnTrail() throws Exception {
+		auditService = new AuditService(new SimpleMeterRegistry(), dir, dir.resolve("archive"), 1 << 16,
+				AuditJournal.FsyncPolicy.BATCH, 1000, Duration.ofDays(30));
+		auditService.record(AuditAction.USER_CREATED, 1, "username=alice");
+		TenantContext.set("chain-a");
+		auditService.record(AuditAction.USER_CREATED, 1, "username=bob");
+
+		assertEquals(List.of("username=bob"), awaitDetails());
+		TenantContext.clear();
+		assertEquals(List.of("username=alice"), awaitDetails());
+	}
+
+	private List<String> awaitDetails() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		List<AuditRecordDTO> records;
+		do {
+			records = auditService.getRecords(Instant.EPOCH, Instant.now().plusSeconds(60), null, 10);
+			if (!records.isEmpty()) {
+				break;
+			}
+			Thread.sleep(10);
+		} while (System.currentTimeMillis() < deadline);
+		return records.stream().map(AuditRecordDTO::getDetail).toList();
+	}
+}
@@ -0,0 +1,105 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import pharmacy.pharmacy.dto.ExpiryEventDTO;
+import pharmacy.pharmacy.entity.ExpiryStage;
+import pharmacy.pharmacy.entity.StockBatch;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiryIndexTest {
+
+	private static final LocalDate TODAY = LocalDate.of(2025, 3, 1);
+
+	@Test
+	void firesNearExpiryThenExpiry() {
+		ExpiryIndex index = new ExpiryIndex(30);
+		index.schedule(batch(1L, TODAY.plusDays(40)));
+
+		assertTrue(fire(index, TODAY).isEmpty());
+
+		List<ExpiryEventDTO> near = fire(index, TODAY.plusDays(10));
+		assertEquals(1, near.size());
+		assertEquals(ExpiryStage.NEAR_EXPIRY, near.get(0).getStage());
+		assertTrue(fire(index, TODAY.plusDays(11)).isEmpty());
+
+		List<ExpiryEventDTO> expired = fire(index, TODAY.plusDays(40));
+		assertEquals(1, expired.size());
+		assertEquals(ExpiryStage.EXPIRED, expired.get(0).getStage());
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	void rescheduleAndCancelReplaceThePendingEntry() {
+		ExpiryIndex index = new ExpiryIndex(30);
+		StockBatch batch = batch(1L, TODAY.plusDays(5));
+		index.schedule(batch);
+		batch.setExpiryDate(TODAY.plusDays(100));
+		index.schedule(batch);
+		index.schedule(batch(2L, TODAY.minusDays(1)));
+		index.cancel(2L);
+
+		assertTrue(fire(index, TODAY).isEmpty());
+		assertEquals(1, index.size());
+	}
+
+	@Test
+	void alreadyExpiredBatchSkipsStraightToExpired() {
+		ExpiryIndex index = new ExpiryIndex(30);
+		index.schedule(batch(1L, TODAY.minusDays(2)));
+
+		List<ExpiryEventDTO> events = fire(index, TODAY);
+		assertEquals(1, events.size());
+		assertEquals(ExpiryStage.EXPIRED, events.get(0).getStage());
+	}
+
+	@Test
+	void peekedEventsRepeatUntilMarkedFired() {
+		ExpiryIndex index = new ExpiryIndex(30);
+		index.schedule(batch(1L, TODAY.minusDays(1)));
+
+		// A tick that rolled back never marks its events, so the next one sees them again
+		assertEquals(1, index.peekDue(TODAY).size());
+		List<ExpiryEventDTO> events = index.peekDue(TODAY);
+		assertEquals(1, events.size());
+
+		index.markFired(events);
+		assertTrue(index.peekDue(TODAY).isEmpty());
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	void markingFiredSkipsBatchesRescheduledSinceThePeek() {
+		ExpiryIndex index = new ExpiryIndex(30);
+		StockBatch batch = batch(1L, TODAY.plusDays(5));
+		index.schedule(batch);
+		List<ExpiryEventDTO> events = index.peekDue(TODAY);
+
+		batch.setExpiryDate(TODAY.plusDays(100));
+		index.schedule(batch);
+		index.markFired(events);
+
+		assertEquals(1, index.size());
+		assertTrue(index.peekDue(TODAY.plusDays(69)).isEmpty());
+		assertEquals(ExpiryStage.NEAR_EXPIRY, index.peekDue(TODAY.plusDays(70)).get(0).getStage());
+	}
+
+	private static List<ExpiryEventDTO> fire(ExpiryIndex index, LocalDate today) {
+		List<ExpiryEventDTO> events = index.peekDue(today);
+		index.markFired(events);
+		return events;
+	}
+
+	private static StockBatch batch(long id, LocalDate expiry) {
+		StockBatch batch = new StockBatch();
+		batch.setId(id);
+		batch.setSku("SKU-" + id);
+		batch.setLotNumber("LOT-" + id);
+		batch.setQuantity(10);
+		batch.setExpiryDate(expiry);
+		return batch;
+	}
+}
@@ -0,0 +1,75 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import pharmacy.pharmacy.entity.PrescriptionUrgency;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrescriptionSchedulerTest {
+
+	private static final Instant NOW = Instant.parse("2025-03-01T10:00:00Z");
+
+	@Test
+	void urgencyOutranksArrivalOrder() {
+		PrescriptionScheduler scheduler = new PrescriptionScheduler();
+		scheduler.submit(item(1, PrescriptionUrgency.REFILL, 60));
+		scheduler.submit(item(2, PrescriptionUrgency.ROUTINE, 30));
+		scheduler.submit(item(3, PrescriptionUrgency.STAT, 90));
+		scheduler.submit(item(4, PrescriptionUrgency.ROUTINE, 10));
+
+		assertEquals(3, claim(scheduler, 7));
+		assertEquals(4, claim(scheduler, 7));
+		assertEquals(2, claim(scheduler, 7));
+		assertEquals(1, claim(scheduler, 7));
+		assertTrue(scheduler.claim(7, NOW).isEmpty());
+	}
+
+	@Test
+	void idlePharmacistStealsMoreUrgentWorkFromPeer() {
+		PrescriptionScheduler scheduler = new PrescriptionScheduler();
+		scheduler.claim(1, NOW);
+		scheduler.submit(item(10, PrescriptionUrgency.ROUTINE, 30));
+		scheduler.submit(item(11, PrescriptionUrgency.URGENT, 30));
+		assertEquals(2, scheduler.queuedPerPharmacist().get(1));
+
+		assertEquals(11, claim(scheduler, 2));
+		assertEquals(10, claim(scheduler, 1));
+	}
+
+	@Test
+	void expiredLeaseReturnsItemToQueue() {
+		PrescriptionScheduler scheduler = new PrescriptionScheduler();
+		scheduler.submit(item(5, PrescriptionUrgency.URGENT, 30));
+		scheduler.claim(1, NOW.plusSeconds(60));
+
+		assertTrue(scheduler.expireLeases(NOW).isEmpty());
+		assertEquals(1, scheduler.expireLeases(NOW.plusSeconds(61)).size());
+		assertTrue(scheduler.complete(5, 1).isEmpty());
+		assertEquals(5, claim(scheduler, 2));
+		assertTrue(scheduler.complete(5, 2).isPresent());
+	}
+
+	@Test
+	void itemsQueuedOrLeasedAreNotQueuedTwice() {
+		PrescriptionScheduler scheduler = new PrescriptionScheduler();
+		scheduler.submit(item(6, PrescriptionUrgency.ROUTINE, 30));
+		scheduler.submit(item(6, PrescriptionUrgency.ROUTINE, 30));
+		assertEquals(6, claim(scheduler, 1));
+		scheduler.submit(item(6, PrescriptionUrgency.ROUTINE, 30));
+		assertTrue(scheduler.claim(2, NOW).isEmpty());
+
+		scheduler.complete(6, 1);
+		scheduler.submit(item(6, PrescriptionUrgency.ROUTINE, 30));
+		assertEquals(6, claim(scheduler, 2));
+	}
+
+	private static long claim(PrescriptionScheduler scheduler, int pharmacistId) {
+		return scheduler.claim(pharmacistId, NOW.plusSeconds(600)).orElseThrow().item().id();
+	}
+
+	private static PrescriptionScheduler.Item item(long id, PrescriptionUrgency urgency, long slaMinutes) {
+		return new PrescriptionScheduler.Item(id, urgency, NOW.plusSeconds(slaMinutes * 60), NOW);
+	}
+}
@@ -0,0 +1,183 @@
+package pharmacy.pharmacy.service;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import pharmacy.pharmacy.invalidation.InMemoryInvalidationTransport;
+import pharmacy.pharmacy.invalidation.InvalidationBus;
+import pharmacy.pharmacy.security.JdbcRefreshFamilyStore;
+import pharmacy.pharmacy.security.JwtUtils;
+import pharmacy.pharmacy.security.RevokedTokenSet;
+import pharmacy.pharmacy.tenancy.TenantContext;
+
+import java.sql.Connection;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Families are kept in the refresh_families table on H2 in MySQL mode; services sharing it
+ * stand in for separate nodes.
+ */
+class RefreshTokenServiceTest {
+
+	private final JwtUtils jwtUtils = new JwtUtils();
+	private final InMemoryInvalidationTransport transport = new InMemoryInvalidationTransport();
+	private JdbcTemplate jdbcTemplate;
+	private RefreshTokenService service;
+
+	@BeforeEach
+	void createFamilies() throws Exception {
+		DriverManagerDataSource dataSource = new DriverManagerDataSource(
+				"jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "");
+		try (Connection connection = dataSource.getConnection()) {
+			ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/migration/V9__refresh_families.sql"));
+		}
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		service = node();
+	}
+
+	@Test
+	void refreshRotatesTheToken() {
+		RefreshTokenService.TokenPair login = service.login("alice");
+
+		RefreshTokenService.TokenPair refreshed = service.refresh(login.refreshToken()).orElseThrow();
+		assertNotEquals(login.refreshToken(), refreshed.refreshToken());
+		assertEquals("alice", claims(refreshed.accessToken()).getSubject());
+		assertTrue(service.isAccessTokenUsable(claims(refreshed.accessToken())));
+
+		assertTrue(service.refresh(refreshed.refreshToken()).isPresent());
+	}
+
+	@Test
+	void reusingARotatedTokenEndsTheSession() {
+		RefreshTokenService.TokenPair login = service.login("alice");
+		RefreshTokenService.TokenPair refreshed = service.refresh(login.refreshToken()).orElseThrow();
+		rotatedLongAgo();
+
+		assertTrue(service.refresh(login.refreshToken()).isEmpty());
+
+		assertTrue(service.refresh(refreshed.refreshToken()).isEmpty());
+		assertFalse(service.isAccessTokenUsable(claims(refreshed.accessToken())));
+		assertFalse(service.isAccessTokenUsable(claims(login.accessToken())));
+	}
+
+	@Test
+	void logoutAndUserRevocationEndOnlyTheirSessions() {
+		RefreshTokenService.TokenPair phone = service.login("alice");
+		RefreshTokenService.TokenPair laptop = service.login("alice");
+		RefreshTokenService.TokenPair other = service.login("bob");
+
+		service.logout(phone.refreshToken());
+		assertFalse(service.isAccessTokenUsable(claims(phone.accessToken())));
+		assertTrue(service.isAccessTokenUsable(claims(laptop.accessToken())));
+
+		service.revokeUser("alice");
+		assertTrue(service.refresh(laptop.refreshToken()).isEmpty());
+		assertTrue(service.refresh(other.refreshToken()).isPresent());
+	}
+
+	@Test
+	void sessionsEndedOnOneNodeAreRejectedOnTheOthers() {
+		RefreshTokenService otherNode = node();
+		RefreshTokenService.TokenPair here = service.login("alice");
+		RefreshTokenService.TokenPair there = otherNode.login("alice");
+
+		service.revokeUser("alice");
+
+		assertTrue(otherNode.refresh(there.refreshToken()).isEmpty());
+		assertFalse(service.isAccessTokenUsable(claims(there.accessToken())));
+		assertFalse(otherNode.isAccessTokenUsable(claims(here.accessToken())));
+	}
+
+	@Test
+	void userRevocationStaysInItsTenant() {
+		RefreshTokenService.TokenPair here = service.login("alice");
+		TenantContext.set("acme");
+		RefreshTokenService.TokenPair there;
+		try {
+			there = service.login("alice");
+			service.revokeUser("alice");
+		} finally {
+			TenantContext.clear();
+		}
+
+		assertTrue(service.refresh(there.refreshToken()).isEmpty());
+		assertTrue(service.isAccessTokenUsable(claims(here.accessToken())));
+		assertTrue(service.refresh(here.refreshToken()).isPresent());
+	}
+
+	@Test
+	void aTokenRotatedOnOneNodeCannotBeReplayedOnAnother() {
+		RefreshTokenService otherNode = node();
+		RefreshTokenService.TokenPair login = service.login("alice");
+		RefreshTokenService.TokenPair refreshed = otherNode.refresh(login.refreshToken()).orElseThrow();
+		rotatedLongAgo();
+
+		assertTrue(service.refresh(login.refreshToken()).isEmpty());
+		assertTrue(otherNode.refresh(refreshed.refreshToken()).isEmpty());
+		assertFalse(otherNode.isAccessTokenUsable(claims(refreshed.accessToken())));
+	}
+
+	@Test
+	void aTokenSentTwiceAtOnceKeepsTheSession() {
+		RefreshTokenService.TokenPair login = service.login("alice");
+		RefreshTokenService.TokenPair refreshed = service.refresh(login.refreshToken()).orElseThrow();
+
+		assertTrue(node().refresh(login.refreshToken()).isEmpty());
+		assertTrue(service.isAccessTokenUsable(claims(refreshed.accessToken())));
+		assertTrue(service.refresh(refreshed.refreshToken()).isPresent());
+	}
+
+	@Test
+	void refreshTokensAreNotAccessTokens() {
+		RefreshTokenService.TokenPair login = service.login("alice");
+
+		assertFalse(service.isAccessTokenUsable(claims(login.refreshToken())));
+		assertTrue(service.refresh(login.accessToken()).isEmpty());
+		assertTrue(service.refresh("not-a-token").isEmpty());
+	}
+
+	@Test
+	void expiredBucketsAreDiscardedWhole() throws InterruptedException {
+		RevokedTokenSet revoked = new RevokedTokenSet(50);
+		long soon = System.currentTimeMillis() + 60;
+		long later = System.currentTimeMillis() + 60_000;
+		revoked.revoke("a", soon);
+		revoked.revoke("b", soon);
+		revoked.revoke("c", later);
+		assertTrue(revoked.isRevoked("a", soon));
+		assertTrue(revoked.isRevoked("c"));
+		assertFalse(revoked.isRevoked("c", soon));
+
+		Thread.sleep(150);
+		assertEquals(2, revoked.discardExpired());
+		assertFalse(revoked.isRevoked("a"));
+		assertTrue(revoked.isRevoked("c", later));
+		assertEquals(1, revoked.bucketCount());
+	}
+
+	// Long enough ago that a second use cannot pass for the same client sending the token twice
+	private void rotatedLongAgo() {
+		jdbcTemplate.update("update refresh_families set rotated_at = rotated_at - 60000");
+	}
+
+	private RefreshTokenService node() {
+		return new RefreshTokenService(jwtUtils, bus(), new JdbcRefreshFamilyStore(jdbcTemplate));
+	}
+
+	private InvalidationBus bus() {
+		InvalidationBus bus = new InvalidationBus(transport, new SimpleMeterRegistry());
+		bus.start();
+		return bus;
+	}
+
+	private Claims claims(String token) {
+		return jwtUtils.parseClaims(token);
+	}
+}
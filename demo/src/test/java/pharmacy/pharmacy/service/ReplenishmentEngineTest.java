@@ -0,0 +1,59 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import pharmacy.pharmacy.dto.ReorderSuggestionDTO;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplenishmentEngineTest {
+
+	private static final long TODAY = 20_000;
+
+	@Test
+	void suggestsOrderWhenStockFallsBelowReorderPoint() {
+		ReplenishmentEngine engine = new ReplenishmentEngine(10, 2, 5, 0, ForkJoinPool.commonPool());
+		for (int day = 0; day < 10; day++) {
+			engine.recordSale("A", 1, TODAY - day, 10);
+			engine.recordSale("B", 1, TODAY - day, 1);
+		}
+		engine.setOnHand("A", 1, 5);
+		engine.setOnHand("B", 1, 100);
+		engine.run(TODAY);
+
+		List<ReorderSuggestionDTO> suggestions = engine.getSuggestions();
+		assertEquals(1, suggestions.size());
+		ReorderSuggestionDTO a = suggestions.get(0);
+		assertEquals("A", a.getSku());
+		assertEquals(10.0, a.getDailyDemand(), 1e-9);
+		assertEquals(20.0, a.getReorderPoint(), 1e-9);
+		assertEquals(65, a.getSuggestedQuantity());
+	}
+
+	@Test
+	void recomputesOnlyDirtySlotsWithinTheSameDay() {
+		ReplenishmentEngine engine = new ReplenishmentEngine(7, 2, 5, 1.65, ForkJoinPool.commonPool());
+		engine.recordSale("A", 1, TODAY, 3);
+		engine.recordSale("B", 1, TODAY, 3);
+		engine.recordSale("C", 2, TODAY, 3);
+		assertEquals(3, engine.run(TODAY));
+
+		engine.recordSale("B", 1, TODAY, 1);
+		assertEquals(1, engine.run(TODAY));
+		assertEquals(0, engine.run(TODAY));
+		assertEquals(3, engine.run(TODAY + 1));
+	}
+
+	@Test
+	void salesOutsideTheWindowAgeOut() {
+		ReplenishmentEngine engine = new ReplenishmentEngine(7, 2, 5, 0, ForkJoinPool.commonPool());
+		engine.recordSale("A", 1, TODAY, 70);
+		engine.run(TODAY);
+		assertEquals(1, engine.getSuggestions().size());
+
+		engine.run(TODAY + 7);
+		assertTrue(engine.getSuggestions().isEmpty());
+	}
+}
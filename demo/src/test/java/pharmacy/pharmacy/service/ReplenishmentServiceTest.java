@@ -0,0 +1,102 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.TestPropertySource;
+import pharmacy.pharmacy.dao.SaleLineRepository;
+import pharmacy.pharmacy.dao.StockBatchRepository;
+import pharmacy.pharmacy.dto.ReorderSuggestionDTO;
+import pharmacy.pharmacy.entity.SaleLine;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two services on one database stand in for two nodes; sales are inserted directly, as
+ * another node would.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:replenishment;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+class ReplenishmentServiceTest {
+
+	@Autowired
+	private SaleLineRepository saleLineRepository;
+
+	@Autowired
+	private StockBatchRepository stockBatchRepository;
+
+	private ReplenishmentService nodeA;
+	private ReplenishmentService nodeB;
+
+	@BeforeEach
+	void nodes() {
+		sale("A", 7, LocalDateTime.now().minusDays(1));
+		nodeA = node();
+		nodeB = node();
+		nodeA.seed();
+		nodeB.seed();
+	}
+
+	@AfterEach
+	void stop() {
+		nodeA.destroy();
+		nodeB.destroy();
+	}
+
+	@Test
+	void salesMadeAnywhereCountTowardsEveryNodesVelocity() {
+		sale("A", 7, LocalDateTime.now());
+		sale("B", 14, LocalDateTime.now());
+
+		nodeB.recompute();
+		assertEquals(2.0, dailyDemand(nodeB, "A"), 1e-9);
+		assertEquals(2.0, dailyDemand(nodeB, "B"), 1e-9);
+		nodeB.recompute();
+		assertEquals(2.0, dailyDemand(nodeB, "A"), 1e-9);
+	}
+
+	@Test
+	void salesPastAGapWaitUntilItSettles() {
+		long rolledBack = sale("A", 100, LocalDateTime.now());
+		sale("A", 7, LocalDateTime.now());
+		saleLineRepository.deleteById(rolledBack);
+		saleLineRepository.flush();
+
+		nodeA.recompute();
+		assertEquals(1.0, dailyDemand(nodeA, "A"), 1e-9);
+	}
+
+	private ReplenishmentService node() {
+		return new ReplenishmentService(saleLineRepository, stockBatchRepository, 7, 3, 7, 1.65, 1, Duration.ofSeconds(30));
+	}
+
+	private static double dailyDemand(ReplenishmentService node, String sku) {
+		List<ReorderSuggestionDTO> suggestions = node.getSuggestions(null, PageRequest.of(0, 100)).getContent();
+		return suggestions.stream().filter(s -> s.getSku().equals(sku)).findFirst().orElseThrow().getDailyDemand();
+	}
+
+	private long sale(String sku, int quantity, LocalDateTime soldAt) {
+		SaleLine line = new SaleLine();
+		line.setSku(sku);
+		line.setBranchId(1);
+		line.setQuantity(quantity);
+		line.setUnitPrice(new BigDecimal("1.00"));
+		line.setSoldAt(soldAt);
+		return saleLineRepository.saveAndFlush(line).getId();
+	}
+}
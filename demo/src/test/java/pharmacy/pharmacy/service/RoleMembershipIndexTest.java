@@ -0,0 +1,57 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+import pharmacy.pharmacy.entity.ERole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoleMembershipIndexTest {
+
+	@Test
+	void intersectionsAndUnionsArePagedInIdOrder() {
+		RoleMembershipIndex index = new RoleMembershipIndex();
+		RoaringBitmap pharmacists = RoaringBitmap.bitmapOf(3, 5, 7, 9, 11, 100_000);
+		RoaringBitmap admins = RoaringBitmap.bitmapOf(1, 5, 9, 100_000);
+		index.replaceAll(Map.of(ERole.ROLE_PHARMACIST, pharmacists, ERole.ROLE_ADMIN, admins));
+
+		RoleMembershipIndex.Slice both = index.members(Set.of(ERole.ROLE_PHARMACIST, ERole.ROLE_ADMIN), true, 0, 2);
+		assertEquals(3, both.total());
+		assertArrayEquals(new int[]{5, 9}, both.ids());
+		assertArrayEquals(new int[]{100_000}, index.members(Set.of(ERole.ROLE_PHARMACIST, ERole.ROLE_ADMIN), true, 2, 2).ids());
+
+		RoleMembershipIndex.Slice either = index.members(Set.of(ERole.ROLE_PHARMACIST, ERole.ROLE_ADMIN), false, 3, 3);
+		assertEquals(7, either.total());
+		assertArrayEquals(new int[]{7, 9, 11}, either.ids());
+		assertEquals(0, index.members(Set.of(ERole.ROLE_ADMIN), true, 10, 5).ids().length);
+	}
+
+	@Test
+	void changesReplaceAUsersMemberships() {
+		RoleMembershipIndex index = new RoleMembershipIndex();
+		index.set(1, List.of(ERole.ROLE_CUSTOMER));
+		index.set(2, List.of(ERole.ROLE_CUSTOMER, ERole.ROLE_CASHIER));
+		index.set(1, List.of(ERole.ROLE_CASHIER));
+		index.remove(2);
+
+		Map<ERole, Long> counts = index.counts();
+		assertEquals(0L, counts.get(ERole.ROLE_CUSTOMER));
+		assertEquals(1L, counts.get(ERole.ROLE_CASHIER));
+		assertEquals(0L, counts.get(ERole.ROLE_SUPPLIER));
+		assertArrayEquals(new int[]{1}, index.members(Set.of(ERole.ROLE_CASHIER), true, 0, 10).ids());
+	}
+
+	@Test
+	void loadedBitmapsAreCopied() {
+		RoleMembershipIndex index = new RoleMembershipIndex();
+		RoaringBitmap customers = RoaringBitmap.bitmapOf(1, 2, 3);
+		index.replaceAll(Map.of(ERole.ROLE_CUSTOMER, customers));
+		customers.add(4);
+
+		assertEquals(3L, index.counts().get(ERole.ROLE_CUSTOMER));
+	}
+}
@@ -0,0 +1,60 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import pharmacy.pharmacy.dto.ReportPointDTO;
+import pharmacy.pharmacy.entity.RollupGranularity;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesRollupStoreTest {
+
+	private static final long DAY = 86_400;
+	private static final long NOW = Instant.parse("2025-03-15T12:00:00Z").getEpochSecond();
+
+	@Test
+	void topSkusRanksByRequestedMetric() {
+		SalesRollupStore store = new SalesRollupStore(2 * DAY, 90 * DAY);
+		store.add("A", 1, 10, 1_000, NOW);
+		store.add("B", 1, 3, 9_000, NOW);
+		store.add("A", 2, 5, 500, NOW - 3600);
+		store.add("C", 1, 1, 100, NOW);
+
+		List<ReportPointDTO> byQuantity = store.topSkus(NOW - DAY, NOW + DAY, null, false, 2);
+		assertEquals(List.of("A", "B"), byQuantity.stream().map(ReportPointDTO::getSku).toList());
+		assertEquals(15, byQuantity.get(0).getQuantity());
+
+		List<ReportPointDTO> byRevenue = store.topSkus(NOW - DAY, NOW + DAY, 1, true, 1);
+		assertEquals("B", byRevenue.get(0).getSku());
+	}
+
+	@Test
+	void compactionFoldsHoursIntoDaysWithoutChangingTotals() {
+		SalesRollupStore store = new SalesRollupStore(2 * DAY, 90 * DAY);
+		store.add("A", 1, 4, 400, NOW - 10 * DAY);
+		store.add("A", 1, 6, 600, NOW - 10 * DAY + 3600);
+		store.add("A", 1, 1, 100, NOW);
+
+		store.compact(NOW);
+		// Reported by hour, the folded sales come back as one daily bucket
+		assertEquals(2, store.timeSeries(NOW - 30 * DAY, NOW + DAY, "A", null, RollupGranularity.HOUR).size());
+
+		List<ReportPointDTO> series = store.timeSeries(NOW - 30 * DAY, NOW + DAY, "A", null, RollupGranularity.DAY);
+		assertEquals(2, series.size());
+		assertEquals(10, series.get(0).getQuantity());
+		assertEquals(1, series.get(1).getQuantity());
+	}
+
+	@Test
+	void salesOlderThanTheHourHorizonGoStraightToCoarserTiers() {
+		SalesRollupStore store = new SalesRollupStore(2 * DAY, 90 * DAY);
+		store.compact(NOW);
+		assertEquals(RollupGranularity.MONTH, store.tierFor(NOW - 200 * DAY));
+		store.add("A", 1, 2, 200, NOW - 200 * DAY);
+
+		List<ReportPointDTO> series = store.timeSeries(0, NOW, "A", null, RollupGranularity.HOUR);
+		assertEquals(RollupGranularity.MONTH.truncate(NOW - 200 * DAY), series.get(0).getBucketStart().getEpochSecond());
+	}
+}
@@ -0,0 +1,124 @@
+package pharmacy.pharmacy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import pharmacy.pharmacy.dao.UserRepository;
+import pharmacy.pharmacy.dao.UserRoleRepository;
+import pharmacy.pharmacy.entity.ERole;
+import pharmacy.pharmacy.entity.User;
+import pharmacy.pharmacy.entity.UserRole;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the real migrations on H2 in MySQL mode. Each test is one transaction, which the
+ * purge batches join; it also holds one pooled connection for the throttling case.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+		"spring.datasource.url=jdbc:h2:mem:purge;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa",
+		"spring.datasource.password="
+})
+class UserPurgeServiceTest {
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private UserRoleRepository roleRepository;
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Test
+	void softDeletedUsersAreHiddenButKeepTheirNames() {
+		List<Integer> ids = createUsers("hidden", 2);
+		assertEquals(1, userRepository.markDeleted(ids.get(0), Instant.now()));
+		assertEquals(0, userRepository.markDeleted(ids.get(0), Instant.now()));
+		entityManager.clear();
+
+		assertTrue(userRepository.findById(ids.get(0)).isEmpty());
+		assertTrue(userRepository.findByUsername("hidden0").isEmpty());
+		assertTrue(userRepository.findByEmail("hidden0@pharmacy.example").isEmpty());
+		assertTrue(userRepository.existsByUsername("hidden0"));
+		assertTrue(userRepository.existsByEmail("hidden0@pharmacy.example"));
+		assertTrue(userRepository.findById(ids.get(1)).isPresent());
+		assertEquals(List.of(ids.get(1)), userRepository.findAll().stream().map(User::getId).toList());
+	}
+
+	@Test
+	void purgeRemovesDeletedUsersAndTheirRolesInBatches() {
+		List<Integer> ids = createUsers("purged", 6);
+		Instant deletedAt = Instant.now().minusSeconds(1);
+		for (int id : ids.subList(0, 5)) {
+			userRepository.markDeleted(id, deletedAt);
+		}
+		// Still the customer on a prescription, so it stays soft-deleted
+		jdbc().update("insert into prescriptions (customer_id, medication, urgency, status, submitted_at, sla_deadline) "
+				+ "values (?, 'amoxicillin', 'ROUTINE', 'PENDING', current_timestamp, current_timestamp)", ids.get(4));
+
+		assertEquals(4, purgeService(0.9, Duration.ofSeconds(5)).purge());
+
+		assertEquals(List.of(ids.get(4), ids.get(5)),
+				jdbc().queryForList("select id from users where username like 'purged%' order by id", Integer.class));
+		assertEquals(2, jdbc().queryForObject("select count(*) from user_roles ur join users u on u.id = ur.user_id "
+				+ "where u.username like 'purged%'", Integer.class));
+		assertEquals(0, purgeService(0.9, Duration.ofSeconds(5)).purge());
+	}
+
+	@Test
+	void purgeBacksOffWhileThePoolIsBusy() {
+		List<Integer> ids = createUsers("busy", 1);
+		userRepository.markDeleted(ids.get(0), Instant.now().minusSeconds(1));
+
+		// The test's own transaction holds a connection, which is over a zero threshold
+		assertEquals(0, purgeService(0.0, Duration.ofMillis(200)).purge());
+		assertEquals(1, jdbc().queryForObject("select count(*) from users where id = ?", Integer.class, ids.get(0)));
+	}
+
+	private UserPurgeService purgeService(double maxPoolUtilization, Duration maxRun) {
+		return new UserPurgeService(userRepository, transactionManager, dataSource, new SimpleMeterRegistry(),
+				Duration.ZERO, 2, Duration.ZERO, maxPoolUtilization, Duration.ofMillis(20), maxRun);
+	}
+
+	private List<Integer> createUsers(String prefix, int count) {
+		UserRole customer = roleRepository.findByName(ERole.ROLE_CUSTOMER).orElseThrow();
+		List<Integer> ids = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			User user = new User();
+			user.setUsername(prefix + i);
+			user.setEmail(prefix + i + "@pharmacy.example");
+			user.setPassword("secret");
+			user.addRole(customer);
+			ids.add(userRepository.save(user).getId());
+		}
+		userRepository.flush();
+		return ids;
+	}
+
+	private JdbcTemplate jdbc() {
+		return new JdbcTemplate(dataSource);
+	}
+}
@@ -0,0 +1,94 @@
+package pharmacy.pharmacy.service;
+
+import org.junit.jupiter.api.Test;
+import pharmacy.pharmacy.entity.ERole;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserSearchIndexTest {
+
+	@Test
+	void exactUsernameComesFirstThenPrefixesThenEmailsThenWords() {
+		UserSearchIndex index = new UserSearchIndex();
+		index.replaceAll(List.of(
+				entry(1, "annabel", "belle@example.com", ERole.ROLE_CUSTOMER),
+				entry(2, "Ann", "a.smith@example.com", ERole.ROLE_CASHIER),
+				entry(3, "bob", "ann.jones@example.com", ERole.ROLE_CUSTOMER),
+				entry(4, "carol", "carol@ann-pharmacy.lk", ERole.ROLE_PHARMACIST),
+				entry(5, "dave", "dave@example.com", ERole.ROLE_CUSTOMER)));
+
+		List<UserSearchIndex.Hit> hits = index.search(" ANN", Set.of(), 10);
+
+		assertEquals(List.of(2, 1, 3, 4), hits.stream().map(UserSearchIndex.Hit::id).toList());
+		assertEquals(UserSearchIndex.Field.USERNAME, hits.get(0).matchedOn());
+		assertEquals(UserSearchIndex.Field.EMAIL, hits.get(2).matchedOn());
+		assertEquals(UserSearchIndex.Field.WORD, hits.get(3).matchedOn());
+		assertEquals("Ann", hits.get(0).username());
+		assertEquals(2, index.search("ann", Set.of(), 2).size());
+	}
+
+	@Test
+	void partsAfterSeparatorsMatchButTheMiddleOfAWordDoesNot() {
+		UserSearchIndex index = new UserSearchIndex();
+		index.put(1, "john_smith", "jsmith@pharmacy.lk", List.of(ERole.ROLE_CUSTOMER));
+
+		assertEquals(1, index.search("smith", Set.of(), 10).size());
+		assertEquals(1, index.search("pharmacy.l", Set.of(), 10).size());
+		assertTrue(index.search("mith", Set.of(), 10).isEmpty());
+		assertTrue(index.search("", Set.of(), 10).isEmpty());
+	}
+
+	@Test
+	void roleFilterKeepsUsersHoldingAnyOfTheRoles() {
+		UserSearchIndex index = new UserSearchIndex();
+		index.put(1, "pat", "pat@example.com", List.of(ERole.ROLE_CUSTOMER));
+		index.put(2, "patricia", "patricia@example.com", List.of(ERole.ROLE_PHARMACIST, ERole.ROLE_ADMIN));
+		index.put(3, "patrick", "patrick@example.com", List.of(ERole.ROLE_CASHIER));
+
+		List<UserSearchIndex.Hit> hits = index.search("pat", Set.of(ERole.ROLE_ADMIN, ERole.ROLE_CASHIER), 10);
+
+		assertEquals(List.of(2, 3), hits.stream().map(UserSearchIndex.Hit::id).toList());
+		assertEquals(Set.of(ERole.ROLE_PHARMACIST, ERole.ROLE_ADMIN), hits.get(0).roles());
+	}
+
+	@Test
+	void renamedAndRemovedUsersStopMatchingTheirOldTerms() {
+		UserSearchIndex index = new UserSearchIndex();
+		index.replaceAll(List.of(
+				entry(1, "alice", "alice@example.com", ERole.ROLE_CUSTOMER),
+				entry(2, "alfred", "alfred@example.com", ERole.ROLE_CUSTOMER)));
+
+		index.put(1, "zoe", "zoe@example.com", List.of(ERole.ROLE_CUSTOMER));
+		index.remove(2);
+		index.put(3, "albert", "albert@example.com", List.of(ERole.ROLE_CUSTOMER));
+
+		assertEquals(List.of(3), index.search("al", Set.of(), 10).stream().map(UserSearchIndex.Hit::id).toList());
+		assertEquals(List.of(1), index.search("zo", Set.of(), 10).stream().map(UserSearchIndex.Hit::id).toList());
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	void compactionKeepsTheSameAnswers() {
+		UserSearchIndex index = new UserSearchIndex(8);
+		for (int id = 1; id <= 200; id++) {
+			index.put(id, "user" + id, "user" + id + "@example.com", List.of(ERole.ROLE_CUSTOMER));
+		}
+		for (int id = 1; id <= 200; id += 2) {
+			index.put(id, "member" + id, "member" + id + "@example.com", List.of(ERole.ROLE_CUSTOMER));
+		}
+		index.put(2, "user2", "user2@example.com", List.of(ERole.ROLE_ADMIN));
+
+		assertEquals(100, index.search("user", Set.of(), 500).size());
+		assertEquals(100, index.search("member", Set.of(), 500).size());
+		assertEquals(List.of(2), index.search("user2", Set.of(ERole.ROLE_ADMIN), 500).stream()
+				.map(UserSearchIndex.Hit::id).toList());
+		assertEquals("user10", index.search("user1", Set.of(), 1).get(0).username());
+	}
+
+	private static UserSearchIndex.Entry entry(int id, String username, String email, ERole role) {
+		return new UserSearchIndex.Entry(id, username, email, List.of(role));
+	}
+}
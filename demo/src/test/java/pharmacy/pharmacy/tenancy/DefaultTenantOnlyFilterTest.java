@@ -0,0 +1,54 @@
+package pharmacy.pharmacy.tenancy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DefaultTenantOnlyFilterTest {
+
+	private final DefaultTenantOnlyFilter filter = new DefaultTenantOnlyFilter(new ObjectMapper().registerModule(new JavaTimeModule()),
+			List.of("/api/prescriptions/**", "/api/batches/**"));
+
+	@AfterEach
+	void reset() {
+		TenantContext.clear();
+	}
+
+	@Test
+	void otherTenantsAreRefusedOnDefaultOnlyPaths() throws Exception {
+		TenantContext.set("chain-a");
+		MockFilterChain chain = new MockFilterChain();
+		MockHttpServletResponse response = send("/api/batches/expiry-events", chain);
+
+		assertEquals(503, response.getStatus());
+		assertNull(chain.getRequest());
+		assertTrue(response.getContentAsString().contains("chain-a"));
+	}
+
+	@Test
+	void otherPathsAndTheDefaultTenantPassThrough() throws Exception {
+		TenantContext.set("chain-a");
+		MockFilterChain chain = new MockFilterChain();
+		assertEquals(200, send("/api/users/7", chain).getStatus());
+		assertNotNull(chain.getRequest());
+
+		TenantContext.clear();
+		chain = new MockFilterChain();
+		assertEquals(200, send("/api/prescriptions/claim", chain).getStatus());
+		assertNotNull(chain.getRequest());
+	}
+
+	private MockHttpServletResponse send(String path, MockFilterChain chain) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest("POST", path), response, chain);
+		return response;
+	}
+}
@@ -0,0 +1,58 @@
+package pharmacy.pharmacy.tenancy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantAdmissionTest {
+
+	@Test
+	void aTenantAloneMayUseEveryConnection() throws Exception {
+		TenantAdmission admission = new TenantAdmission(4);
+		for (int i = 0; i < 4; i++) {
+			assertTrue(admission.acquire("chain-a", 0, TimeUnit.MILLISECONDS));
+		}
+		assertFalse(admission.acquire("chain-a", 10, TimeUnit.MILLISECONDS));
+		assertEquals(4, admission.inUse("chain-a"));
+	}
+
+	@Test
+	void aBusyTenantIsHeldToItsShareOnceOthersCompete() throws Exception {
+		TenantAdmission admission = new TenantAdmission(4);
+		assertTrue(admission.acquire("chain-a", 0, TimeUnit.MILLISECONDS));
+		assertTrue(admission.acquire("chain-a", 0, TimeUnit.MILLISECONDS));
+		assertTrue(admission.acquire("chain-b", 0, TimeUnit.MILLISECONDS));
+		assertEquals(2, admission.share());
+
+		// chain-a is at its half, so the free slot goes to chain-b
+		assertFalse(admission.acquire("chain-a", 10, TimeUnit.MILLISECONDS));
+		assertTrue(admission.acquire("chain-b", 0, TimeUnit.MILLISECONDS));
+		assertFalse(admission.acquire("chain-b", 10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	void waitersAreAdmittedWhenASlotComesBack() throws Exception {
+		TenantAdmission admission = new TenantAdmission(2);
+		assertTrue(admission.acquire("chain-a", 0, TimeUnit.MILLISECONDS));
+		assertTrue(admission.acquire("chain-b", 0, TimeUnit.MILLISECONDS));
+
+		CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+			try {
+				return admission.acquire("chain-b", 5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(50);
+		assertFalse(waiting.isDone());
+
+		// chain-a going idle leaves chain-b alone, with the whole limit as its share
+		admission.release("chain-a");
+		assertTrue(waiting.get(5, TimeUnit.SECONDS));
+		assertEquals(2, admission.inUse("chain-b"));
+		assertEquals(0, admission.inUse("chain-a"));
+	}
+}
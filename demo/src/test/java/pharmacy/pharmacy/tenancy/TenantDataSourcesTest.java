@@ -0,0 +1,146 @@
+package pharmacy.pharmacy.tenancy;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every tenant is its own in-memory H2 database in MySQL mode, migrated by Flyway when its
+ * pool opens.
+ */
+class TenantDataSourcesTest {
+
+	private final TenantAdmission admission = new TenantAdmission(6);
+	private TenantDataSources tenants;
+	private TenantRoutingDataSource routing;
+
+	@BeforeEach
+	void createTenants() {
+		String run = UUID.randomUUID().toString();
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("tenancy.tenant.chain-a.url", url("a-" + run))
+				.withProperty("tenancy.tenant.chain-a.username", "sa")
+				.withProperty("tenancy.tenant.chain-b.url", url("b-" + run))
+				.withProperty("tenancy.tenant.chain-b.username", "sa");
+		HikariDataSource defaultPool = new HikariDataSource();
+		defaultPool.setJdbcUrl(url("default-" + run));
+		defaultPool.setUsername("sa");
+		migrate(defaultPool);
+
+		tenants = new TenantDataSources(defaultPool, environment, admission, TenantDataSourcesTest::migrate,
+				new SimpleMeterRegistry(), 2, Duration.ofMillis(100), Duration.ZERO);
+		routing = new TenantRoutingDataSource(tenants);
+	}
+
+	@AfterEach
+	void closeTenants() {
+		TenantContext.clear();
+		tenants.close();
+	}
+
+	@Test
+	void tenantsGetTheirOwnDatabaseOnFirstUse() {
+		JdbcTemplate jdbc = new JdbcTemplate(routing);
+		assertEquals(0, tenants.openPools());
+
+		TenantContext.set("chain-a");
+		jdbc.update("insert into users (version, username) values (0, 'alice')");
+		assertEquals(1, tenants.openPools());
+		// Migrated on opening, seeded roles included
+		assertEquals(5, jdbc.queryForObject("select count(*) from roles", Integer.class));
+
+		TenantContext.set("chain-b");
+		assertEquals(0, jdbc.queryForObject("select count(*) from users", Integer.class));
+		TenantContext.clear();
+		assertEquals(0, jdbc.queryForObject("select count(*) from users", Integer.class));
+		assertEquals(1, new JdbcTemplate(new TenantRoutingDataSource(tenants, "chain-a"))
+				.queryForObject("select count(*) from users", Integer.class));
+		assertEquals(2, tenants.openPools());
+	}
+
+	@Test
+	void unknownTenantsAreRefused() {
+		assertTrue(tenants.isKnown(TenantContext.DEFAULT));
+		assertTrue(tenants.isKnown("chain-a"));
+		assertFalse(tenants.isKnown("chain-c"));
+		assertFalse(tenants.isKnown("Chain-A"));
+		assertFalse(tenants.isKnown("chain-a.url"));
+		assertThrows(SQLException.class, () -> tenants.getConnection("chain-c"));
+	}
+
+	@Test
+	void idlePoolsAreClosedAndReopenedOnDemand() throws SQLException {
+		try (Connection connection = tenants.getConnection("chain-a")) {
+			tenants.evictIdle();
+			assertEquals(1, tenants.openPools());
+			assertTrue(connection.isValid(1));
+		}
+		tenants.evictIdle();
+		assertEquals(0, tenants.openPools());
+
+		try (Connection connection = tenants.getConnection("chain-a")) {
+			assertTrue(connection.isValid(1));
+		}
+		assertEquals(1, tenants.openPools());
+	}
+
+	@Test
+	void closingAConnectionHandsBackItsAdmission() throws SQLException {
+		Connection connection = tenants.getConnection("chain-b");
+		assertEquals(1, admission.inUse("chain-b"));
+		connection.close();
+		connection.close();
+		assertEquals(0, admission.inUse("chain-b"));
+	}
+
+	@Test
+	void connectionsPastTheAdmissionLimitAreRefused() throws SQLException {
+		List<Connection> held = new ArrayList<>();
+		try {
+			for (int i = 0; i < 6; i++) {
+				held.add(tenants.getConnection(TenantContext.DEFAULT));
+			}
+			assertThrows(SQLTransientConnectionException.class, () -> tenants.getConnection("chain-a"));
+			assertEquals(0, admission.inUse("chain-a"));
+		} finally {
+			for (Connection connection : held) {
+				connection.close();
+			}
+		}
+		try (Connection connection = tenants.getConnection("chain-a")) {
+			assertTrue(connection.isValid(1));
+		}
+	}
+
+	@Test
+	void unwrappingReachesTheDefaultPool() {
+		assertSame(tenants.defaultPool(),
+				DataSourceUnwrapper.unwrap(routing, HikariConfigMXBean.class, HikariDataSource.class));
+	}
+
+	private static String url(String name) {
+		return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+	}
+
+	private static void migrate(DataSource dataSource) {
+		Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+	}
+}
@@ -0,0 +1,95 @@
+package pharmacy.pharmacy.tenancy;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import pharmacy.pharmacy.invalidation.InvalidationEvent;
+import pharmacy.pharmacy.invalidation.InvalidationTransport;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Transactions are stood in for by driving the synchronizations by hand.
+ */
+class TenantInvalidationTransportTest {
+
+	private final Recording delegate = new Recording();
+	private final Recording defaultTenantLog = new Recording();
+	private final TenantInvalidationTransport transport = new TenantInvalidationTransport(delegate, defaultTenantLog);
+
+	@AfterEach
+	void reset() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		TenantContext.clear();
+		transport.close();
+	}
+
+	@Test
+	void defaultTenantEventsGoIntoItsOwnTransaction() {
+		TransactionSynchronizationManager.initSynchronization();
+		transport.publish(event("7"));
+
+		assertEquals(List.of("7"), delegate.keys());
+		assertEquals(List.of(), defaultTenantLog.keys());
+	}
+
+	@Test
+	void otherTenantsEventsAreWrittenOnlyOnceTheirTransactionCommits() {
+		TenantContext.set("chain-a");
+		TransactionSynchronizationManager.initSynchronization();
+		transport.publish(event("7"));
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		assertEquals(List.of(), defaultTenantLog.keys());
+
+		TransactionSynchronizationManager.clearSynchronization();
+		synchronizations.forEach(TransactionSynchronization::afterCommit);
+		transport.close();
+		assertEquals(List.of("7"), defaultTenantLog.keys());
+		assertEquals(List.of(), delegate.keys());
+	}
+
+	@Test
+	void rolledBackTenantEventsNeverGoOut() {
+		TenantContext.set("chain-a");
+		TransactionSynchronizationManager.initSynchronization();
+		transport.publish(event("7"));
+
+		TransactionSynchronizationManager.getSynchronizations()
+				.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		transport.close();
+		assertEquals(List.of(), defaultTenantLog.keys());
+	}
+
+	private static InvalidationEvent event(String key) {
+		return new InvalidationEvent("users", key, "node", System.currentTimeMillis());
+	}
+
+	private static class Recording implements InvalidationTransport {
+
+		private final List<InvalidationEvent> published = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void publish(InvalidationEvent event) {
+			published.add(event);
+		}
+
+		@Override
+		public void start(Consumer<InvalidationEvent> consumer) {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		List<String> keys() {
+			return published.stream().map(InvalidationEvent::key).toList();
+		}
+	}
+}
@@ -0,0 +1,43 @@
+package pharmacy.pharmacy.warmup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyCurveTest {
+
+	@Test
+	void windowsFollowTheOrderSamplesWereTaken() {
+		LatencyCurve curve = new LatencyCurve(4);
+		for (int i = 1000; i >= 1; i--) {
+			curve.record(i * 1000L);
+		}
+
+		List<LatencyCurve.Window> windows = curve.windows(4);
+		assertEquals(4, windows.size());
+		assertEquals(1, windows.get(0).firstIteration());
+		assertEquals(1000, windows.get(3).lastIteration());
+		for (int i = 1; i < windows.size(); i++) {
+			assertEquals(windows.get(i - 1).lastIteration() + 1, windows.get(i).firstIteration());
+			assertTrue(windows.get(i).p50Nanos() < windows.get(i - 1).p50Nanos());
+		}
+		LatencyCurve.Window first = windows.get(0);
+		assertEquals(1_000_000, first.maxNanos());
+		assertEquals(875_000, first.p50Nanos());
+		assertEquals(998_000, first.p99Nanos());
+	}
+
+	@Test
+	void fewSamplesGiveFewerWindows() {
+		LatencyCurve curve = new LatencyCurve(0);
+		curve.record(5);
+		curve.record(7);
+
+		List<LatencyCurve.Window> windows = curve.windows(10);
+		assertEquals(2, windows.size());
+		assertEquals(7, windows.get(1).p99Nanos());
+		assertTrue(new LatencyCurve(0).windows(10).isEmpty());
+	}
+}
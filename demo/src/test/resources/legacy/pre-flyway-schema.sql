@@ -0,0 +1,28 @@
+-- The schema ddl-auto=update created before migrations existed: no version columns and none of
+-- the later tables. Runs on every new connection, so it must be repeatable.
+create table if not exists users (
+    id       integer not null auto_increment,
+    email    varchar(255),
+    password varchar(255),
+    username varchar(255),
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists roles (
+    id   integer not null auto_increment,
+    name enum ('ROLE_ADMIN','ROLE_CASHIER','ROLE_CUSTOMER','ROLE_PHARMACIST','ROLE_SUPPLIER'),
+    primary key (id)
+) engine=InnoDB;
+
+create table if not exists user_roles (
+    role_id integer not null,
+    user_id integer not null,
+    primary key (role_id, user_id),
+    constraint FKh8ciramu9cc9q3qcqiv4ue8a6 foreign key (role_id) references roles (id),
+    constraint FKhfh9dx7w3ubf1co1vdev94g3f foreign key (user_id) references users (id)
+) engine=InnoDB;
+
+insert into roles (id, name) select 1, 'ROLE_ADMIN' from dual where not exists (select 1 from roles where id = 1);
+insert into users (id, email, password, username)
+select 1, 'alice@pharmacy.example', 'secret', 'alice' from dual where not exists (select 1 from users where id = 1);
+insert into user_roles (role_id, user_id) select 1, 1 from dual where not exists (select 1 from user_roles);